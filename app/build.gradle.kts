@@ -30,6 +30,16 @@ android {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
     }
+    testOptions {
+        // Detectors log through android.util.Log; let host-side replay runs treat it as a no-op
+        unitTests.isReturnDefaultValues = true
+        // Robolectric-backed integration tests against FakeFirebaseServer need the merged manifest
+        unitTests.isIncludeAndroidResources = true
+        unitTests.all {
+            it.systemProperty("mindmotion.traceCorpus", project.findProperty("traceCorpus") ?: "")
+            it.systemProperty("mindmotion.loadDevices", project.findProperty("loadDevices") ?: "0")
+        }
+    }
 }
 
 dependencies {
@@ -53,6 +63,7 @@ dependencies {
     implementation("androidx.constraintlayout:constraintlayout:2.1.4")
 
     testImplementation("junit:junit:4.13.2")
+    testImplementation("org.robolectric:robolectric:4.14.1")
     androidTestImplementation("androidx.test.ext:junit:1.1.5")
     androidTestImplementation("androidx.test.espresso:espresso-core:3.5.1")
 }
\ No newline at end of file
@@ -0,0 +1,155 @@
+package com.example.mindmotion;
+
+import android.os.Debug;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the old buffer + org.json decode of a 50-document session page with
+ * FirestoreDocumentReader. Needs the device runtime for JsonReader and allocation stats.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FirestoreDecodeBenchmarkTest {
+    private static final String TAG = "FirestoreDecodeBench";
+    private static final int DOCUMENTS = 50;
+    private static final int WARMUP_ROUNDS = 50;
+    private static final int MEASURED_ROUNDS = 200;
+    private static final String[] SESSION_FIELDS = {"motionType", "status", "timestamp"};
+
+    @Test
+    public void bothDecodersAgreeOnASessionPage() throws Exception {
+        byte[] page = buildSessionPage();
+
+        long[] tree = decodeWithJsonTree(page);
+        long[] streamed = decodeStreaming(page);
+
+        assertEquals(DOCUMENTS, tree[0]);
+        assertArrayEquals(tree, streamed);
+    }
+
+    @Test
+    public void streamingDecodeOfASessionPage() throws Exception {
+        byte[] page = buildSessionPage();
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            decodeWithJsonTree(page);
+            decodeStreaming(page);
+        }
+
+        long[] tree = measure(page, false);
+        long[] streamed = measure(page, true);
+
+        Log.i(TAG, String.format(Locale.US,
+                "%d docs, %d bytes: org.json %d us / %d KB per page, streaming %d us / %d KB per page",
+                DOCUMENTS, page.length, tree[0], tree[1] / 1024, streamed[0], streamed[1] / 1024));
+
+        // Timing is too noisy to assert on shared CI devices; allocation is not
+        assertTrue("streaming decode should allocate less", streamed[1] < tree[1]);
+    }
+
+    // Returns {microseconds per page, bytes allocated per page}
+    private static long[] measure(byte[] page, boolean streaming) throws Exception {
+        Runtime.getRuntime().gc();
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            if (streaming) {
+                decodeStreaming(page);
+            } else {
+                decodeWithJsonTree(page);
+            }
+        }
+        long elapsedMicros = (System.nanoTime() - start) / 1000;
+        long allocated = allocatedBytes() - allocatedBefore;
+        return new long[] {elapsedMicros / MEASURED_ROUNDS, allocated / MEASURED_ROUNDS};
+    }
+
+    // Previous code path: read lines into a StringBuilder, build the tree, walk it
+    private static long[] decodeWithJsonTree(byte[] page) throws Exception {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(page)));
+        StringBuilder response = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            response.append(line);
+        }
+        reader.close();
+
+        JSONArray documents = new JSONObject(response.toString()).getJSONArray("documents");
+        long count = 0;
+        long timestampSum = 0;
+        long waiting = 0;
+        for (int i = 0; i < documents.length(); i++) {
+            JSONObject fields = documents.getJSONObject(i).getJSONObject("fields");
+            count++;
+            timestampSum += Long.parseLong(fields.getJSONObject("timestamp").getString("integerValue"));
+            if ("waiting".equals(fields.getJSONObject("status").getString("stringValue"))) waiting++;
+            fields.getJSONObject("motionType").getString("stringValue");
+        }
+        return new long[] {count, timestampSum, waiting};
+    }
+
+    private static long[] decodeStreaming(byte[] page) throws Exception {
+        List<FirestoreDocumentReader.Document> documents;
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(page), StandardCharsets.UTF_8)) {
+            documents = FirestoreDocumentReader.readDocumentList(reader, SESSION_FIELDS);
+        }
+
+        long timestampSum = 0;
+        long waiting = 0;
+        for (FirestoreDocumentReader.Document document : documents) {
+            timestampSum += document.getLong("timestamp", 0);
+            if ("waiting".equals(document.getString("status"))) waiting++;
+            document.getString("motionType");
+        }
+        return new long[] {documents.size(), timestampSum, waiting};
+    }
+
+    // Full session documents as the legacy list poll returns them, pretty-printed like the server does
+    private static byte[] buildSessionPage() throws Exception {
+        String[] motions = {"clapping", "jumping", "marching", "waving", "raising_hand"};
+        JSONArray documents = new JSONArray();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            JSONObject fields = new JSONObject()
+                    .put("motionType", new JSONObject().put("stringValue", motions[i % motions.length]))
+                    .put("status", new JSONObject().put("stringValue", i % 4 == 0 ? "waiting" : "completed"))
+                    .put("timestamp", new JSONObject().put("integerValue", String.valueOf(1760000000L + i * 37)))
+                    .put("studentId", new JSONObject().put("stringValue", "student-" + (i % 7)))
+                    .put("teacherId", new JSONObject().put("stringValue", "teacher-abcdefghijklmnop"))
+                    .put("detected", new JSONObject().put("booleanValue", i % 4 != 0))
+                    .put("completedAt", new JSONObject().put("integerValue", String.valueOf(1760000000000L + i * 37000)))
+                    .put("notes", new JSONObject().put("mapValue", new JSONObject().put("fields", new JSONObject()
+                            .put("prompt", new JSONObject().put("stringValue", "Show me the motion for word " + i))
+                            .put("attempt", new JSONObject().put("integerValue", String.valueOf(i % 3))))));
+            documents.put(new JSONObject()
+                    .put("name", "projects/mindmotion-55c99/databases/(default)/documents/users/uid123/motion_sessions/session" + i)
+                    .put("fields", fields)
+                    .put("createTime", "2025-10-09T10:15:30.123456Z")
+                    .put("updateTime", "2025-10-09T10:16:07.654321Z"));
+        }
+        return new JSONObject().put("documents", documents).toString(2).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long allocatedBytes() {
+        String stat = Debug.getRuntimeStat("art.gc.bytes-allocated");
+        if (stat != null) return Long.parseLong(stat);
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
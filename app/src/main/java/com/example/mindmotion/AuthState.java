@@ -0,0 +1,28 @@
+package com.example.mindmotion;
+
+// Immutable snapshot of who is signed in and with which tokens. AuthStore swaps whole snapshots, so
+// a reader never sees the user of one login paired with the tokens of another.
+public final class AuthState {
+    public static final AuthState SIGNED_OUT = new AuthState("", "Student", "", TokenProvider.Tokens.EMPTY);
+
+    public final String userId;
+    public final String userName;
+    public final String email;
+    public final TokenProvider.Tokens tokens;
+
+    public AuthState(String userId, String userName, String email, TokenProvider.Tokens tokens) {
+        this.userId = userId != null ? userId : "";
+        this.userName = userName != null ? userName : "Student";
+        this.email = email != null ? email : "";
+        this.tokens = tokens != null ? tokens : TokenProvider.Tokens.EMPTY;
+    }
+
+    public AuthState withTokens(TokenProvider.Tokens newTokens) {
+        return new AuthState(userId, userName, email, newTokens);
+    }
+
+    // An expired ID token is fine as long as there is a refresh token to get a new one
+    public boolean isLoggedIn() {
+        return !userId.isEmpty() && !tokens.refreshToken.isEmpty();
+    }
+}
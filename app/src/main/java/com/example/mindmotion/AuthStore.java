@@ -0,0 +1,120 @@
+package com.example.mindmotion;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+// Process-wide auth state. SharedPreferences is read once, when the store is created; after that
+// every check is a plain read of the current AuthState, and login, token refresh and logout swap in
+// a new one. Persistence is write-behind: a swap schedules one background write of whatever state
+// is current by the time it runs, so a burst of swaps costs a single disk write.
+public class AuthStore {
+    private static final String TAG = "AuthStore";
+    private static final String PREFS_NAME = "MindMotionPrefs";
+
+    private static AuthStore instance;
+
+    public interface Persister {
+        void persist(AuthState state);
+    }
+
+    private final AtomicReference<AuthState> state;
+    private final Persister persister;
+    private final Executor writer;
+    private final AtomicBoolean writePending = new AtomicBoolean();
+
+    public static synchronized AuthStore getInstance(Context context) {
+        if (instance == null) {
+            SharedPreferences prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+            IoScheduler ioScheduler = IoScheduler.getInstance();
+            instance = new AuthStore(load(prefs), state -> save(prefs, state), work -> {
+                if (!ioScheduler.submit(IoScheduler.Priority.RESULT_MARKING, work)) {
+                    throw new RejectedExecutionException("I/O queue full");
+                }
+            });
+        }
+        return instance;
+    }
+
+    public AuthStore(AuthState initial, Persister persister, Executor writer) {
+        this.state = new AtomicReference<>(initial);
+        this.persister = persister;
+        this.writer = writer;
+    }
+
+    public AuthState get() {
+        return state.get();
+    }
+
+    public void set(AuthState newState) {
+        state.set(newState);
+        schedulePersist();
+    }
+
+    // Applies change to the current state, retrying if another thread swapped in between
+    public AuthState update(UnaryOperator<AuthState> change) {
+        AuthState current;
+        AuthState updated;
+        do {
+            current = state.get();
+            updated = change.apply(current);
+        } while (!state.compareAndSet(current, updated));
+        schedulePersist();
+        return updated;
+    }
+
+    private void schedulePersist() {
+        if (!writePending.compareAndSet(false, true)) return;
+        try {
+            writer.execute(this::persistLatest);
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Writer busy, persisting on caller");
+            persistLatest();
+        }
+    }
+
+    private void persistLatest() {
+        // Cleared before reading, so a swap from here on schedules another write rather than being lost
+        writePending.set(false);
+        persister.persist(state.get());
+    }
+
+    private static AuthState load(SharedPreferences prefs) {
+        return new AuthState(prefs.getString("USER_ID", ""), prefs.getString("USER_NAME", "Student"),
+                prefs.getString("USER_EMAIL", ""),
+                new TokenProvider.Tokens(prefs.getString("ID_TOKEN", ""), prefs.getString("REFRESH_TOKEN", ""),
+                        prefs.getLong("TOKEN_EXPIRATION_TIME", 0)));
+    }
+
+    // Runs on the writer thread, so commit() rather than queueing yet another write with apply()
+    private static void save(SharedPreferences prefs, AuthState state) {
+        SharedPreferences.Editor editor = prefs.edit();
+        if (state.userId.isEmpty()) {
+            editor.remove("USER_ID")
+                    .remove("USER_NAME")
+                    .remove("FIREBASE_UID")
+                    .remove("USER_EMAIL");
+        } else {
+            editor.putString("USER_ID", state.userId)
+                    .putString("USER_NAME", state.userName)
+                    .putString("FIREBASE_UID", state.userId)
+                    .putString("USER_EMAIL", state.email);
+        }
+        if (state.tokens.refreshToken.isEmpty()) {
+            editor.remove("ID_TOKEN")
+                    .remove("REFRESH_TOKEN")
+                    .remove("TOKEN_EXPIRATION_TIME");
+        } else {
+            editor.putString("ID_TOKEN", state.tokens.idToken)
+                    .putString("REFRESH_TOKEN", state.tokens.refreshToken)
+                    .putLong("TOKEN_EXPIRATION_TIME", state.tokens.expiresAtMs);
+        }
+        if (!editor.commit()) Log.w(TAG, "Could not persist auth state");
+    }
+}
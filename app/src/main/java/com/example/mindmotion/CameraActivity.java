@@ -4,8 +4,6 @@ import android.Manifest;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.util.Log;
 import android.util.Size;
 import android.widget.TextView;
@@ -28,6 +26,12 @@ import com.google.mediapipe.tasks.vision.poselandmarker.PoseLandmarker;
 import com.google.mediapipe.tasks.vision.poselandmarker.PoseLandmarker.PoseLandmarkerOptions;
 import com.google.mediapipe.tasks.vision.poselandmarker.PoseLandmarkerResult;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -44,7 +48,8 @@ public class CameraActivity extends AppCompatActivity
         RaisingHandDetector.DebugListener,
         MarchingDetector.MarchingListener,
         MarchingDetector.DebugListener,
-        RestAuthManager.TokenRefreshListener,
+        TokenProvider.SessionListener,
+        CircuitBreaker.Listener,
         SpeechRecognitionManager.SpeechListener {
 
     private static final String TAG = "CameraActivity";
@@ -54,6 +59,12 @@ public class CameraActivity extends AppCompatActivity
             Manifest.permission.RECORD_AUDIO
     };
     private static final int MAX_AUTH_RETRIES = 3;
+    // Sessions that time out or take this long are uploaded as pose traces for remote review
+    private static final long HARD_CASE_DURATION_MS = 20000;
+    private static final int TRACE_FRAME_RATE = 30;
+
+    // adb shell am start -n com.example.mindmotion/.CameraActivity --es trace systrace|json
+    public static final String EXTRA_TRACE = "trace";
 
     // UI Components
     private TextView statusText, motionTypeText, clapCounter, resultText;
@@ -65,6 +76,7 @@ public class CameraActivity extends AppCompatActivity
     private PoseLandmarker poseLandmarker;
     private ExecutorService cameraExecutor;
     private FirebaseRestManager firebaseManager;
+    private WordBatcher wordBatcher;
     private ClappingDetector clappingDetector;
     private WavingDetector wavingDetector;
     private JumpingDetector jumpingDetector;
@@ -72,21 +84,26 @@ public class CameraActivity extends AppCompatActivity
     private MarchingDetector marchingDetector;
     private RestAuthManager authManager;
     private SpeechRecognitionManager speechManager;
+    private final PipelineMetrics pipelineMetrics = new PipelineMetrics();
+    private PerformanceHud performanceHud;
+    private TraceUploader traceUploader;
+    private ModelTier modelTier = ModelTier.HEAVY;
 
     // Session State
     private String currentSessionId, currentMotionType;
+    // Written on the MediaPipe result thread while a session runs
+    private volatile PoseTrace sessionTrace;
     private int authRetryCount = 0;
     private boolean isHandlingAuthError = false;
 
     // Token refresh
-    private Handler tokenRefreshHandler = new Handler(Looper.getMainLooper());
-    private Runnable tokenRefreshRunnable;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_camera);
 
+        configureTracing(getIntent() != null ? getIntent().getStringExtra(EXTRA_TRACE) : null);
         initializeViews();
         initializeComponents();
 
@@ -104,9 +121,13 @@ public class CameraActivity extends AppCompatActivity
         super.onResume();
         authRetryCount = 0;
         isHandlingAuthError = false;
+        TraceSections.enableIfSystemTracing();
 
-        startPeriodicTokenRefresh();
+        TokenProvider.getInstance(this).addSessionListener(this);
+        HttpTransport.getInstance().addBreakerListener(this);
+        performanceHud.resume();
         if (firebaseManager != null) firebaseManager.onAppResume();
+        if (traceUploader != null) traceUploader.requestUpload();
         if (speechManager != null) speechManager.resumeListening();
         validateAuthenticationAndStartPolling();
     }
@@ -114,20 +135,60 @@ public class CameraActivity extends AppCompatActivity
     @Override
     protected void onPause() {
         super.onPause();
-        stopPeriodicTokenRefresh();
+        TokenProvider.getInstance(this).removeSessionListener(this);
+        HttpTransport.getInstance().removeBreakerListener(this);
+        performanceHud.pause();
         if (firebaseManager != null) firebaseManager.stopPolling();
         if (speechManager != null) speechManager.pauseListening();
+        if (wordBatcher != null) wordBatcher.flush();
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        stopPeriodicTokenRefresh();
+        Log.i(TAG, "Pipeline metrics at shutdown: " + pipelineMetrics.snapshot());
         if (cameraExecutor != null) cameraExecutor.shutdown();
         if (poseLandmarker != null) poseLandmarker.close();
+        if (wordBatcher != null) {
+            wordBatcher.flush();
+            Log.i(TAG, "Voice word batches at shutdown: " + wordBatcher);
+        }
         if (firebaseManager != null) firebaseManager.cleanup();
         if (authManager != null) authManager.cleanup();
         if (speechManager != null) speechManager.cleanup();
+        writeChromeTrace();
+    }
+
+    // "systrace" emits android.os.Trace sections for Perfetto; "json" records an in-app Chrome trace
+    // that is written to files/traces/ when the activity is destroyed
+    private void configureTracing(String mode) {
+        if ("json".equals(mode)) {
+            TraceSections.setSink(new ChromeTraceWriter());
+            TraceSections.setEnabled(true);
+        } else if ("systrace".equals(mode)) {
+            TraceSections.setSink(TraceSections.ANDROID_SINK);
+            TraceSections.setEnabled(true);
+        }
+    }
+
+    private void writeChromeTrace() {
+        if (!(TraceSections.getSink() instanceof ChromeTraceWriter)) return;
+
+        ChromeTraceWriter writer = (ChromeTraceWriter) TraceSections.getSink();
+        TraceSections.setEnabled(false);
+        TraceSections.setSink(null);
+
+        File dir = new File(getFilesDir(), "traces");
+        File file = new File(dir, "camera-" + System.currentTimeMillis() + ".json");
+        IoScheduler.getInstance().submit(IoScheduler.Priority.TELEMETRY, () -> {
+            if (!dir.isDirectory() && !dir.mkdirs()) return;
+            try (Writer out = new BufferedWriter(new FileWriter(file))) {
+                writer.writeTo(out);
+                Log.i(TAG, "Chrome trace written to " + file.getAbsolutePath());
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to write Chrome trace", e);
+            }
+        });
     }
 
     private void initializeViews() {
@@ -141,24 +202,37 @@ public class CameraActivity extends AppCompatActivity
         debugClapStatus = findViewById(R.id.debug_clap_status);
         speechStatusText = findViewById(R.id.speech_status_text);
         lastWordText = findViewById(R.id.last_word_text);
+
+        performanceHud = new PerformanceHud(findViewById(R.id.perf_hud), pipelineMetrics);
+        performanceHud.setModelTier(modelTier);
+        findViewById(R.id.debug_panel).setOnClickListener(v -> togglePerformanceHud());
+    }
+
+    // The HUD takes the place of the detector debug lines while it is showing
+    private void togglePerformanceHud() {
+        if (performanceHud.isShowing()) {
+            performanceHud.hide();
+        } else {
+            performanceHud.show();
+        }
+
+        int detectorDebugVisibility = performanceHud.isShowing() ? TextView.GONE : TextView.VISIBLE;
+        debugPoseStatus.setVisibility(detectorDebugVisibility);
+        debugWristDistance.setVisibility(detectorDebugVisibility);
+        debugFingerDistance.setVisibility(detectorDebugVisibility);
+        debugClapStatus.setVisibility(detectorDebugVisibility);
     }
 
     private void initializeComponents() {
         cameraExecutor = Executors.newSingleThreadExecutor();
         authManager = new RestAuthManager(this);
 
-        tokenRefreshRunnable = new Runnable() {
-            @Override
-            public void run() {
-                if (authManager != null && authManager.isUserLoggedIn()) {
-                    authManager.refreshTokenIfNeeded(CameraActivity.this);
-                }
-                tokenRefreshHandler.postDelayed(tokenRefreshRunnable, 30 * 60 * 1000);
-            }
-        };
-
         firebaseManager = new FirebaseRestManager(this);
         firebaseManager.setListener(this);
+        performanceHud.setNetworkSource(firebaseManager);
+        wordBatcher = new WordBatcher(firebaseManager::saveVoiceData);
+        traceUploader = TraceUploader.getInstance(this);
+        performanceHud.setTraceUploader(traceUploader);
 
         clappingDetector = new ClappingDetector();
         clappingDetector.setListener(this);
@@ -190,7 +264,7 @@ public class CameraActivity extends AppCompatActivity
     private void initializeMediaPipe() {
         try {
             BaseOptions baseOptions = BaseOptions.builder()
-                    .setModelAssetPath("pose_landmarker_heavy.task")
+                    .setModelAssetPath(modelTier.getAssetPath())
                     .build();
 
             PoseLandmarkerOptions options = PoseLandmarkerOptions.builder()
@@ -251,22 +325,66 @@ public class CameraActivity extends AppCompatActivity
 
     @SuppressWarnings("UnsafeOptInUsageError")
     private void analyzeImage(@NonNull ImageProxy imageProxy) {
+        boolean traced = TraceSections.begin("analyzeImage");
+        pipelineMetrics.onFrameArrived(imageProxy.getImageInfo().getTimestamp());
+
         if (poseLandmarker == null) {
+            pipelineMetrics.recordDrop(PipelineMetrics.DropReason.NO_LANDMARKER);
             imageProxy.close();
+            TraceSections.end(traced);
             return;
         }
 
         try {
+            boolean tracedConvert = TraceSections.begin("toBitmap");
+            long convertStart = System.nanoTime();
             MPImage mpImage = new BitmapImageBuilder(imageProxy.toBitmap()).build();
-            poseLandmarker.detectAsync(mpImage, System.currentTimeMillis());
+            pipelineMetrics.recordStage(PipelineMetrics.Stage.CONVERT, convertStart);
+            TraceSections.end(tracedConvert);
+
+            long frameTimestampMs = System.currentTimeMillis();
+            pipelineMetrics.onInferenceSubmitted(frameTimestampMs, System.nanoTime());
+            // The async slice spans submit -> result callback; the cookie is the frame timestamp
+            TraceSections.beginAsync("inference", (int) frameTimestampMs);
+            boolean tracedDetect = TraceSections.begin("detectAsync");
+            try {
+                poseLandmarker.detectAsync(mpImage, frameTimestampMs);
+            } finally {
+                TraceSections.end(tracedDetect);
+            }
         } catch (Exception e) {
+            pipelineMetrics.recordDrop(PipelineMetrics.DropReason.ANALYZER_ERROR);
             Log.e(TAG, "Error during pose detection", e);
         } finally {
             imageProxy.close();
+            TraceSections.end(traced);
         }
     }
 
     private void onPoseDetectionResult(PoseLandmarkerResult result, MPImage image) {
+        TraceSections.endAsync("inference", (int) result.timestampMs());
+        boolean traced = TraceSections.begin("onPoseDetectionResult");
+        try {
+            pipelineMetrics.onInferenceResult(result.timestampMs());
+            recordTraceFrame(result);
+
+            long detectorStart = System.nanoTime();
+            dispatchToActiveDetector(result);
+            pipelineMetrics.recordStage(PipelineMetrics.Stage.RESULT_TO_DETECTOR, detectorStart);
+        } finally {
+            TraceSections.end(traced);
+        }
+    }
+
+    private void recordTraceFrame(PoseLandmarkerResult result) {
+        PoseTrace trace = sessionTrace;
+        if (trace == null || result.landmarks().isEmpty()) return;
+        synchronized (trace) {
+            trace.addFrame(result.timestampMs(), result.landmarks().get(0));
+        }
+    }
+
+    private void dispatchToActiveDetector(PoseLandmarkerResult result) {
         if ("clapping".equals(currentMotionType) && clappingDetector.isActive()) {
             clappingDetector.analyzePoseResult(result);
         } else if ("wave".equals(currentMotionType) && wavingDetector.isActive()) {
@@ -281,33 +399,32 @@ public class CameraActivity extends AppCompatActivity
     }
 
     private void onPoseDetectionError(RuntimeException error) {
+        pipelineMetrics.onInferenceError();
         runOnUiThread(() -> debugPoseStatus.setText("Pose: Error - " + error.getMessage()));
     }
 
-    // Token refresh management
-    private void startPeriodicTokenRefresh() {
-        tokenRefreshHandler.removeCallbacks(tokenRefreshRunnable);
-        tokenRefreshHandler.postDelayed(tokenRefreshRunnable, 5 * 60 * 1000);
-    }
-
-    private void stopPeriodicTokenRefresh() {
-        tokenRefreshHandler.removeCallbacks(tokenRefreshRunnable);
-    }
-
+    // TokenProvider refreshes ahead of expiry on its own; this only hears when that fails for good
     @Override
-    public void onTokenRefreshSuccess() {
-        if (firebaseManager != null) firebaseManager.reloadTokensFromPreferences();
+    public void onSessionExpired() {
+        Toast.makeText(this, "Session expired. Returning to login.", Toast.LENGTH_LONG).show();
+        authManager.logout();
+        redirectToLogin();
     }
 
+    // Breakers change state on I/O threads. Only the session poll is worth telling the child about:
+    // results and voice words stay logged and go out once their endpoint recovers.
     @Override
-    public void onTokenRefreshFailed(String error) {
-        if (error.contains("Session expired") || error.contains("No refresh token")) {
-            runOnUiThread(() -> {
-                Toast.makeText(this, "Session expired. Returning to login.", Toast.LENGTH_LONG).show();
-                authManager.logout();
-                redirectToLogin();
-            });
-        }
+    public void onStateChanged(String endpoint, CircuitBreaker.State state, long retryAfterMs) {
+        if (!endpoint.equals("firestore.runQuery") && !endpoint.equals("firestore.list")) return;
+        runOnUiThread(() -> {
+            if (currentSessionId != null) return;
+            if (state == CircuitBreaker.State.OPEN) {
+                updateUI(String.format(Locale.US, "Can't reach the server, retrying in %d s...",
+                        Math.max(1, retryAfterMs / 1000)), "", false, false);
+            } else if (state == CircuitBreaker.State.CLOSED) {
+                updateUI("Connected. Waiting for the next motion...", "", false, false);
+            }
+        });
     }
 
     private void validateAuthenticationAndStartPolling() {
@@ -325,7 +442,6 @@ public class CameraActivity extends AppCompatActivity
             @Override
             public void onTokenRefreshSuccess() {
                 if (firebaseManager != null) {
-                    firebaseManager.reloadTokensFromPreferences();
                     firebaseManager.startPollingForSessions();
                 }
             }
@@ -348,11 +464,14 @@ public class CameraActivity extends AppCompatActivity
     }
 
     // Firebase REST Manager Listener Methods
+    // The manager hands sessions over one at a time, oldest first, and has already marked the
+    // detector busy
     @Override
     public void onNewSessionFound(String sessionId, String motionType, String studentId) {
         runOnUiThread(() -> {
             currentSessionId = sessionId;
             currentMotionType = motionType;
+            pipelineMetrics.reset();
 
             if ("clapping".equals(motionType)) {
                 startClappingDetection();
@@ -366,7 +485,23 @@ public class CameraActivity extends AppCompatActivity
                 startMarchingDetection();
             } else {
                 updateUI("Unknown motion type: " + motionType, motionType, false, false);
+                SessionTimeline.getInstance().discard(sessionId);
+                resetSession();
+                return;
             }
+            SessionTimeline.getInstance().onDetectorStarted(sessionId);
+            traceUploader.setSessionActive(true);
+            sessionTrace = new PoseTrace(motionType, 0, modelTier, TRACE_FRAME_RATE);
+        });
+    }
+
+    // Detectors and the landmarker are already running, so all that is left is telling the child
+    @Override
+    public void onNextSessionQueued(String sessionId, String motionType, int queued) {
+        runOnUiThread(() -> {
+            if (currentMotionType == null) return;
+            motionTypeText.setText(String.format(Locale.US, "Motion: %s  (next: %s%s)", currentMotionType,
+                    motionType, queued > 1 ? ", +" + (queued - 1) : ""));
         });
     }
 
@@ -412,7 +547,6 @@ public class CameraActivity extends AppCompatActivity
             public void onTokenRefreshSuccess() {
                 isHandlingAuthError = false;
                 if (firebaseManager != null) {
-                    firebaseManager.reloadTokensFromPreferences();
                     firebaseManager.startPollingForSessions();
                 }
             }
@@ -442,12 +576,12 @@ public class CameraActivity extends AppCompatActivity
     // Clapping Detection Listener Methods
     @Override
     public void onClappingDetected(int clapCount) {
-        runOnUiThread(() -> updateClapCounter(clapCount, clappingDetector.getRequiredClapCount(), "claps"));
+        postDetectorUpdate(() -> updateClapCounter(clapCount, clappingDetector.getRequiredClapCount(), "claps"));
     }
 
     @Override
     public void onClappingCompleted() {
-        runOnUiThread(() -> {
+        postDetectorUpdate(() -> {
             updateUI("Motion detected successfully! 🎉", currentMotionType, false, true);
             onMotionCompleted();
         });
@@ -455,12 +589,12 @@ public class CameraActivity extends AppCompatActivity
 
     @Override
     public void onClappingProgress(int currentClaps, int requiredClaps) {
-        runOnUiThread(() -> updateClapCounter(currentClaps, requiredClaps, "claps"));
+        postDetectorUpdate(() -> updateClapCounter(currentClaps, requiredClaps, "claps"));
     }
 
     @Override
     public void onDetectionTimeout() {
-        runOnUiThread(() -> {
+        postDetectorUpdate(() -> {
             updateUI("Motion detection timed out", currentMotionType, false, false);
             onMotionTimedOut();
         });
@@ -468,66 +602,66 @@ public class CameraActivity extends AppCompatActivity
 
     // Waving Detection Listener Methods
     public void onWavingDetected(int waveCount) {
-        runOnUiThread(() -> updateClapCounter(waveCount, wavingDetector.getRequiredWaveCount(), "waves"));
+        postDetectorUpdate(() -> updateClapCounter(waveCount, wavingDetector.getRequiredWaveCount(), "waves"));
     }
 
     public void onWavingCompleted() {
-        runOnUiThread(() -> {
+        postDetectorUpdate(() -> {
             updateUI("Motion detected successfully! 🌊", currentMotionType, false, true);
             onMotionCompleted();
         });
     }
 
     public void onWavingProgress(int currentWaves, int requiredWaves) {
-        runOnUiThread(() -> updateClapCounter(currentWaves, requiredWaves, "waves"));
+        postDetectorUpdate(() -> updateClapCounter(currentWaves, requiredWaves, "waves"));
     }
 
     // Jumping Detection Listener Methods
     public void onJumpingDetected(int jumpCount) {
-        runOnUiThread(() -> updateClapCounter(jumpCount, jumpingDetector.getRequiredJumpCount(), "jumps"));
+        postDetectorUpdate(() -> updateClapCounter(jumpCount, jumpingDetector.getRequiredJumpCount(), "jumps"));
     }
 
     public void onJumpingCompleted() {
-        runOnUiThread(() -> {
+        postDetectorUpdate(() -> {
             updateUI("Motion detected successfully! 🦘", currentMotionType, false, true);
             onMotionCompleted();
         });
     }
 
     public void onJumpingProgress(int currentJumps, int requiredJumps) {
-        runOnUiThread(() -> updateClapCounter(currentJumps, requiredJumps, "jumps"));
+        postDetectorUpdate(() -> updateClapCounter(currentJumps, requiredJumps, "jumps"));
     }
 
     // Raising Hand Detection Listener Methods
     public void onHandRaised(int raiseCount) {
-        runOnUiThread(() -> updateClapCounter(raiseCount, raisingHandDetector.getRequiredRaiseCount(), "raises"));
+        postDetectorUpdate(() -> updateClapCounter(raiseCount, raisingHandDetector.getRequiredRaiseCount(), "raises"));
     }
 
     public void onHandRaisingCompleted() {
-        runOnUiThread(() -> {
+        postDetectorUpdate(() -> {
             updateUI("Motion detected successfully! ✋", currentMotionType, false, true);
             onMotionCompleted();
         });
     }
 
     public void onHandRaisingProgress(int currentRaises, int requiredRaises) {
-        runOnUiThread(() -> updateClapCounter(currentRaises, requiredRaises, "raises"));
+        postDetectorUpdate(() -> updateClapCounter(currentRaises, requiredRaises, "raises"));
     }
 
     // Marching Detection Listener Methods
     public void onMarchStepDetected(int stepCount) {
-        runOnUiThread(() -> updateClapCounter(stepCount, marchingDetector.getRequiredStepCount(), "steps"));
+        postDetectorUpdate(() -> updateClapCounter(stepCount, marchingDetector.getRequiredStepCount(), "steps"));
     }
 
     public void onMarchingCompleted() {
-        runOnUiThread(() -> {
+        postDetectorUpdate(() -> {
             updateUI("Motion detected successfully! 🚶", currentMotionType, false, true);
             onMotionCompleted();
         });
     }
 
     public void onMarchingProgress(int currentSteps, int requiredSteps) {
-        runOnUiThread(() -> updateClapCounter(currentSteps, requiredSteps, "steps"));
+        postDetectorUpdate(() -> updateClapCounter(currentSteps, requiredSteps, "steps"));
     }
 
     // Speech Recognition Listener Methods
@@ -535,8 +669,8 @@ public class CameraActivity extends AppCompatActivity
     public void onWordDetected(String word) {
         runOnUiThread(() -> {
             updateSpeechUI("Listening...", "Last word: " + word);
-            if (firebaseManager != null) {
-                firebaseManager.saveVoiceData(word);
+            if (wordBatcher != null) {
+                wordBatcher.add(word);
             }
         });
     }
@@ -556,7 +690,7 @@ public class CameraActivity extends AppCompatActivity
 
     // Debug Listener Methods - ClappingDetector.DebugListener
     public void onClapDebugUpdate(String poseStatus, String wristDistance, String fingerDistance, String clapStatus) {
-        runOnUiThread(() -> {
+        postDetectorUpdate(() -> {
             debugPoseStatus.setText("Pose: " + poseStatus);
             debugWristDistance.setText("Wrist distance: " + wristDistance);
             debugFingerDistance.setText("Finger distance: " + fingerDistance);
@@ -566,7 +700,7 @@ public class CameraActivity extends AppCompatActivity
 
     // Debug Listener Methods - WavingDetector.DebugListener
     public void onWaveDebugUpdate(String poseStatus, String handsHeight, String waveMovement, String waveStatus) {
-        runOnUiThread(() -> {
+        postDetectorUpdate(() -> {
             debugPoseStatus.setText("Pose: " + poseStatus);
             debugWristDistance.setText("Hands height: " + handsHeight);
             debugFingerDistance.setText("Wave movement: " + waveMovement);
@@ -576,7 +710,7 @@ public class CameraActivity extends AppCompatActivity
 
     // Debug Listener Methods - JumpingDetector.DebugListener
     public void onJumpDebugUpdate(String poseStatus, String bodyHeight, String feetStatus, String jumpStatus) {
-        runOnUiThread(() -> {
+        postDetectorUpdate(() -> {
             debugPoseStatus.setText("Pose: " + poseStatus);
             debugWristDistance.setText("Body height: " + bodyHeight);
             debugFingerDistance.setText("Feet status: " + feetStatus);
@@ -586,7 +720,7 @@ public class CameraActivity extends AppCompatActivity
 
     // Debug Listener Methods - RaisingHandDetector.DebugListener
     public void onRaiseDebugUpdate(String poseStatus, String leftHandHeight, String rightHandHeight, String raiseStatus) {
-        runOnUiThread(() -> {
+        postDetectorUpdate(() -> {
             debugPoseStatus.setText("Pose: " + poseStatus);
             debugWristDistance.setText("Left hand: " + leftHandHeight);
             debugFingerDistance.setText("Right hand: " + rightHandHeight);
@@ -596,7 +730,7 @@ public class CameraActivity extends AppCompatActivity
 
     // Debug Listener Methods - MarchingDetector.DebugListener
     public void onMarchDebugUpdate(String poseStatus, String leftKneeStatus, String rightKneeStatus, String marchStatus) {
-        runOnUiThread(() -> {
+        postDetectorUpdate(() -> {
             debugPoseStatus.setText("Pose: " + poseStatus);
             debugWristDistance.setText("Left knee: " + leftKneeStatus);
             debugFingerDistance.setText("Right knee: " + rightKneeStatus);
@@ -604,6 +738,15 @@ public class CameraActivity extends AppCompatActivity
         });
     }
 
+    // Detector callbacks arrive on the MediaPipe result thread; time how long they wait for the main looper
+    private void postDetectorUpdate(Runnable update) {
+        runOnUiThread(pipelineMetrics.timeUiUpdate(update));
+    }
+
+    public PipelineMetrics getPipelineMetrics() {
+        return pipelineMetrics;
+    }
+
     private void updateSpeechUI(String status, String lastWord) {
         if (speechStatusText != null) {
             speechStatusText.setText(status);
@@ -659,30 +802,86 @@ public class CameraActivity extends AppCompatActivity
         marchingDetector.startDetection();
     }
 
+    // The detector is released straight away so a queued session starts with no gap; the result
+    // stays up only while nothing else is waiting
     private void onMotionCompleted() {
-        if (currentSessionId != null) firebaseManager.markMotionDetected(currentSessionId);
-
-        resultText.postDelayed(() -> {
-            resetSession();
-            updateUI("Searching for motion sessions...", "", false, false);
-        }, 3000);
+        dumpPipelineMetrics("completed");
+        RepSummary reps = activeRepSummary();
+        if (currentSessionId != null) firebaseManager.markMotionDetected(currentSessionId, reps);
+        finishTrace(false, reps);
+        firebaseManager.onSessionCompleted();
+        if (firebaseManager.getQueuedSessionCount() > 0) {
+            Toast.makeText(this, statusText.getText(), Toast.LENGTH_SHORT).show();
+        }
+        finishSession(3000);
     }
 
     private void onMotionTimedOut() {
+        dumpPipelineMetrics("timed out");
+        if (currentSessionId != null) SessionTimeline.getInstance().discard(currentSessionId);
+        finishTrace(true, activeRepSummary());
+        finishSession(2000);
+    }
+
+    // Hard cases go up for remote review; the rest are dropped
+    private void finishTrace(boolean timedOut, RepSummary reps) {
+        PoseTrace trace = sessionTrace;
+        sessionTrace = null;
+        if (trace == null || currentSessionId == null) return;
+        // Waits out a frame still being appended on the result thread; nothing writes to it after this
+        synchronized (trace) {
+            if (!timedOut && trace.durationMs() < HARD_CASE_DURATION_MS) return;
+            trace.setExpectedReps(reps != null ? reps.getRepCount() : 0);
+        }
+        traceUploader.enqueue(AuthStore.getInstance(this).get().userId, currentSessionId, trace);
+    }
+
+    private void finishSession(long resultDisplayMs) {
+        resetSession();
         resultText.postDelayed(() -> {
-            resetSession();
-            updateUI("Searching for motion sessions...", "", false, false);
-        }, 2000);
+            if (currentSessionId == null) updateUI("Searching for motion sessions...", "", false, false);
+        }, resultDisplayMs);
+    }
+
+    // The detector has just stopped itself, so its rep lists are no longer being written
+    private RepSummary activeRepSummary() {
+        RepSummary reps;
+        if ("clapping".equals(currentMotionType)) {
+            reps = clappingDetector.getRepSummary();
+        } else if ("wave".equals(currentMotionType)) {
+            reps = wavingDetector.getRepSummary();
+        } else if ("jump".equals(currentMotionType)) {
+            reps = jumpingDetector.getRepSummary();
+        } else if ("raise_hand".equals(currentMotionType)) {
+            reps = raisingHandDetector.getRepSummary();
+        } else if ("march".equals(currentMotionType)) {
+            reps = marchingDetector.getRepSummary();
+        } else {
+            return null;
+        }
+        // Stage histograms are in microseconds and were reset when the session started
+        LatencyHistogram.Snapshot inference = pipelineMetrics.snapshot().getStage(PipelineMetrics.Stage.INFERENCE);
+        return reps.withInferenceLatency(inference.getValueAtPercentile(50) / 1000,
+                inference.getValueAtPercentile(95) / 1000);
+    }
+
+    private void dumpPipelineMetrics(String outcome) {
+        Log.i(TAG, "Pipeline metrics for " + currentMotionType + " session " + currentSessionId
+                + " (" + outcome + "): " + pipelineMetrics.snapshot());
     }
 
     private void resetSession() {
         currentSessionId = null;
         currentMotionType = null;
+        sessionTrace = null;
         clappingDetector.stopDetection();
         wavingDetector.stopDetection();
         jumpingDetector.stopDetection();
         raisingHandDetector.stopDetection();
         marchingDetector.stopDetection();
+        // Before the detector is released, which may start the next queued session straight away
+        if (traceUploader != null) traceUploader.setSessionActive(false);
+        if (firebaseManager != null) firebaseManager.setDetectorActive(false);
     }
 
     private void updateUI(String status, String motionType, boolean showCounter, boolean showResult) {
@@ -704,6 +903,7 @@ public class CameraActivity extends AppCompatActivity
 
     private void updateClapCounter(int current, int required, String motionName) {
         clapCounter.setText(current + " / " + required + " " + motionName + " detected");
+        if (current > 0 && currentSessionId != null) SessionTimeline.getInstance().onRep(currentSessionId);
     }
 
     private boolean allPermissionsGranted() {
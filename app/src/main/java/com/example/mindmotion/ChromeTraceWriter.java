@@ -0,0 +1,151 @@
+package com.example.mindmotion;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// In-memory TraceSections sink that produces Chrome trace JSON (chrome://tracing, ui.perfetto.dev).
+// Used where android.os.Trace is unavailable: JVM replay runs on Linux, or on-device captures
+// without a Perfetto session. Memory is bounded by maxEvents; later events are counted and dropped.
+public class ChromeTraceWriter implements TraceSections.Sink {
+    private static final int DEFAULT_MAX_EVENTS = 500_000;
+    private static final int PID = 1;
+
+    private static class Event {
+        final char phase;
+        final String name;
+        final long timestampUs;
+        final long threadId;
+        final long value; // async cookie or counter value
+
+        Event(char phase, String name, long timestampUs, long threadId, long value) {
+            this.phase = phase;
+            this.name = name;
+            this.timestampUs = timestampUs;
+            this.threadId = threadId;
+            this.value = value;
+        }
+    }
+
+    private final int maxEvents;
+    private final long originNanos = System.nanoTime();
+    private final List<Event> events = new ArrayList<>();
+    private final Map<Long, String> threadNames = new LinkedHashMap<>();
+    private long droppedEvents = 0;
+
+    public ChromeTraceWriter() {
+        this(DEFAULT_MAX_EVENTS);
+    }
+
+    public ChromeTraceWriter(int maxEvents) {
+        this.maxEvents = maxEvents;
+    }
+
+    @Override
+    public void beginSection(String name) {
+        add('B', name, 0);
+    }
+
+    @Override
+    public void endSection() {
+        add('E', null, 0);
+    }
+
+    @Override
+    public void beginAsync(String name, int cookie) {
+        add('b', name, cookie);
+    }
+
+    @Override
+    public void endAsync(String name, int cookie) {
+        add('e', name, cookie);
+    }
+
+    @Override
+    public void counter(String name, long value) {
+        add('C', name, value);
+    }
+
+    private void add(char phase, String name, long value) {
+        long timestampUs = (System.nanoTime() - originNanos) / 1000;
+        Thread thread = Thread.currentThread();
+        long threadId = thread.getId();
+
+        synchronized (this) {
+            if (events.size() >= maxEvents) {
+                droppedEvents++;
+                return;
+            }
+            if (!threadNames.containsKey(threadId)) threadNames.put(threadId, thread.getName());
+            events.add(new Event(phase, name, timestampUs, threadId, value));
+        }
+    }
+
+    public synchronized int getEventCount() {
+        return events.size();
+    }
+
+    public synchronized long getDroppedEvents() {
+        return droppedEvents;
+    }
+
+    public synchronized void clear() {
+        events.clear();
+        threadNames.clear();
+        droppedEvents = 0;
+    }
+
+    public synchronized void writeTo(Writer out) throws IOException {
+        out.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        boolean first = true;
+
+        for (Map.Entry<Long, String> thread : threadNames.entrySet()) {
+            if (!first) out.write(',');
+            first = false;
+            out.write("\n{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":" + PID + ",\"tid\":" + thread.getKey()
+                    + ",\"args\":{\"name\":");
+            writeString(out, thread.getValue());
+            out.write("}}");
+        }
+
+        for (Event event : events) {
+            if (!first) out.write(',');
+            first = false;
+            out.write("\n{\"ph\":\"");
+            out.write(event.phase);
+            out.write("\",\"ts\":" + event.timestampUs + ",\"pid\":" + PID + ",\"tid\":" + event.threadId);
+            if (event.name != null) {
+                out.write(",\"name\":");
+                writeString(out, event.name);
+            }
+            if (event.phase == 'b' || event.phase == 'e') {
+                out.write(",\"cat\":\"async\",\"id\":\"0x" + Long.toHexString(event.value & 0xffffffffL) + "\"");
+            } else if (event.phase == 'C') {
+                out.write(",\"args\":{\"value\":" + event.value + "}");
+            }
+            out.write('}');
+        }
+
+        out.write("\n],\"otherData\":{\"droppedEvents\":" + droppedEvents + "}}\n");
+        out.flush();
+    }
+
+    private static void writeString(Writer out, String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c < 0x20) {
+                out.write(String.format("\\u%04x", (int) c));
+            } else {
+                out.write(c);
+            }
+        }
+        out.write('"');
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.mindmotion;
+
+import android.os.SystemClock;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+// Guards one backend endpoint. After FAILURE_THRESHOLD failures in a row (no response, 429 or 5xx)
+// the circuit opens and calls fail fast without touching the network. Once the open period is over
+// a single probe is let through (half-open): success closes the circuit, failure opens it again for
+// twice as long, up to MAX_OPEN_MS.
+//
+// Retries draw on a separate budget so a struggling backend is not hit harder just because it is
+// failing: every first attempt earns RETRY_RATIO of a retry, and MIN_RETRIES_PER_MINUTE trickle in
+// regardless, capped at MAX_RETRY_TOKENS.
+public class CircuitBreaker {
+    static final int FAILURE_THRESHOLD = 5;
+    static final long BASE_OPEN_MS = 5000;
+    static final long MAX_OPEN_MS = 5 * 60 * 1000;
+    static final double JITTER = 0.2;
+    static final double RETRY_RATIO = 0.2;
+    static final double MIN_RETRIES_PER_MINUTE = 6;
+    static final double MAX_RETRY_TOKENS = 10;
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    public interface Listener {
+        // Called on the thread whose call caused the change; retryAfterMs is 0 unless the state is OPEN
+        void onStateChanged(String endpoint, State state, long retryAfterMs);
+    }
+
+    // Thrown instead of sending the request; nothing went over the network
+    public static class RejectedException extends IOException {
+        public final long retryAfterMs;
+
+        RejectedException(String message, long retryAfterMs) {
+            super(message);
+            this.retryAfterMs = retryAfterMs;
+        }
+    }
+
+    private final String endpoint;
+    private final LongSupplier clock;
+    private final Random random;
+    private final Listener listener;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private int consecutiveTrips = 0;
+    private long openUntilMs = 0;
+    private boolean probeInFlight = false;
+    private double retryTokens = MAX_RETRY_TOKENS;
+    private long lastRefillMs;
+
+    private long tripCount = 0;
+    private long shortCircuitedCount = 0;
+    private long retriesDeniedCount = 0;
+
+    public CircuitBreaker(String endpoint, Listener listener) {
+        this(endpoint, SystemClock::elapsedRealtime, new Random(), listener);
+    }
+
+    public CircuitBreaker(String endpoint, LongSupplier clock, Random random, Listener listener) {
+        this.endpoint = endpoint;
+        this.clock = clock;
+        this.random = random;
+        this.listener = listener;
+        this.lastRefillMs = clock.getAsLong();
+    }
+
+    // Call before every attempt. isRetry marks a call repeating work that just failed.
+    public void acquire(boolean isRetry) throws RejectedException {
+        boolean halfOpened = false;
+        synchronized (this) {
+            long now = clock.getAsLong();
+            if (state == State.OPEN) {
+                if (now < openUntilMs) {
+                    shortCircuitedCount++;
+                    throw new RejectedException(endpoint + " circuit open", openUntilMs - now);
+                }
+                state = State.HALF_OPEN;
+                halfOpened = true;
+            }
+            if (state == State.HALF_OPEN) {
+                if (probeInFlight) {
+                    shortCircuitedCount++;
+                    throw new RejectedException(endpoint + " circuit half-open, probe in flight", BASE_OPEN_MS);
+                }
+                probeInFlight = true;
+            } else {
+                refillRetryTokens(now);
+                if (isRetry) {
+                    if (retryTokens < 1) {
+                        retriesDeniedCount++;
+                        throw new RejectedException(endpoint + " retry budget exhausted",
+                                (long) ((1 - retryTokens) * 60000 / MIN_RETRIES_PER_MINUTE));
+                    }
+                    retryTokens -= 1;
+                } else {
+                    retryTokens = Math.min(MAX_RETRY_TOKENS, retryTokens + RETRY_RATIO);
+                }
+            }
+        }
+        if (halfOpened) notifyListener(State.HALF_OPEN, 0);
+    }
+
+    // The endpoint answered with something other than 429 or 5xx
+    public void onSuccess() {
+        boolean closed;
+        synchronized (this) {
+            consecutiveFailures = 0;
+            probeInFlight = false;
+            closed = state != State.CLOSED;
+            if (closed) {
+                state = State.CLOSED;
+                consecutiveTrips = 0;
+            }
+        }
+        if (closed) notifyListener(State.CLOSED, 0);
+    }
+
+    // No response, 429 or 5xx
+    public void onFailure() {
+        long openMs;
+        synchronized (this) {
+            consecutiveFailures++;
+            boolean probeFailed = state == State.HALF_OPEN;
+            probeInFlight = false;
+            if (!probeFailed && (state == State.OPEN || consecutiveFailures < FAILURE_THRESHOLD)) return;
+
+            openMs = applyJitter(Math.min(MAX_OPEN_MS, BASE_OPEN_MS << Math.min(consecutiveTrips, 16)));
+            consecutiveTrips++;
+            tripCount++;
+            state = State.OPEN;
+            openUntilMs = clock.getAsLong() + openMs;
+        }
+        notifyListener(State.OPEN, openMs);
+    }
+
+    // The call was abandoned before it reached the network; frees the probe slot without a verdict
+    public synchronized void onCancelled() {
+        probeInFlight = false;
+    }
+
+    private void refillRetryTokens(long now) {
+        long elapsed = now - lastRefillMs;
+        if (elapsed <= 0) return;
+        retryTokens = Math.min(MAX_RETRY_TOKENS, retryTokens + elapsed * MIN_RETRIES_PER_MINUTE / 60000);
+        lastRefillMs = now;
+    }
+
+    private long applyJitter(long delay) {
+        double factor = 1.0 + JITTER * (2 * random.nextDouble() - 1);
+        return Math.max(1, (long) (delay * factor));
+    }
+
+    private void notifyListener(State newState, long retryAfterMs) {
+        if (listener != null) listener.onStateChanged(endpoint, newState, retryAfterMs);
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    // How long until an OPEN circuit lets a probe through; 0 otherwise
+    public synchronized long getRetryAfterMs() {
+        return state == State.OPEN ? Math.max(0, openUntilMs - clock.getAsLong()) : 0;
+    }
+
+    public synchronized long getTripCount() {
+        return tripCount;
+    }
+
+    // Calls refused because the circuit was open or a probe was already out
+    public synchronized long getShortCircuitedCount() {
+        return shortCircuitedCount;
+    }
+
+    public synchronized long getRetriesDeniedCount() {
+        return retriesDeniedCount;
+    }
+}
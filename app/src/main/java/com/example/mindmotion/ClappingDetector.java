@@ -22,6 +22,8 @@ public class ClappingDetector {
     private static final int LEFT_INDEX = 19;
     private static final int RIGHT_INDEX = 20;
 
+    private final Config config;
+
     // State tracking
     private List<Long> clapTimes;
     private long lastClapTime;
@@ -47,7 +49,20 @@ public class ClappingDetector {
         void onClapDebugUpdate(String poseStatus, String wristDistance, String fingerDistance, String clapStatus);
     }
 
+    // Tunable parameters, defaulting to the hand-picked values above
+    public static class Config {
+        public double clapDistanceThreshold = CLAP_DISTANCE_THRESHOLD;
+        public int requiredClapCount = REQUIRED_CLAP_COUNT;
+        public long clapCooldownMs = CLAP_COOLDOWN_MS;
+        public long detectionTimeoutMs = DETECTION_TIMEOUT_MS;
+    }
+
     public ClappingDetector() {
+        this(new Config());
+    }
+
+    public ClappingDetector(Config config) {
+        this.config = config;
         clapTimes = new ArrayList<>();
         reset();
     }
@@ -61,13 +76,17 @@ public class ClappingDetector {
     }
 
     public void startDetection() {
+        startDetection(System.currentTimeMillis());
+    }
+
+    public void startDetection(long startTimeMs) {
         Log.d(TAG, "Starting clapping detection...");
         reset();
         isDetectionActive = true;
-        detectionStartTime = System.currentTimeMillis();
+        detectionStartTime = startTimeMs;
 
         if (listener != null) {
-            listener.onClappingProgress(0, REQUIRED_CLAP_COUNT);
+            listener.onClappingProgress(0, config.requiredClapCount);
         }
 
         updateDebugInfo();
@@ -91,13 +110,29 @@ public class ClappingDetector {
     }
 
     public void analyzePoseResult(PoseLandmarkerResult result) {
-        if (!isDetectionActive || result == null || result.landmarks().isEmpty()) {
+        List<NormalizedLandmark> landmarks =
+                result == null || result.landmarks().isEmpty() ? null : result.landmarks().get(0);
+        analyzeLandmarks(landmarks, System.currentTimeMillis());
+    }
+
+    // Frame-level entry point, also used to replay recorded traces with their own timestamps
+    public void analyzeLandmarks(List<NormalizedLandmark> landmarks, long frameTimeMs) {
+        boolean traced = TraceSections.begin("ClappingDetector.analyze");
+        try {
+            analyzeFrame(landmarks, frameTimeMs);
+        } finally {
+            TraceSections.end(traced);
+        }
+    }
+
+    private void analyzeFrame(List<NormalizedLandmark> landmarks, long frameTimeMs) {
+        if (!isDetectionActive || landmarks == null) {
             updateDebugInfo("No pose detected", "N/A", "N/A", "Inactive");
             return;
         }
 
         // Check if detection has timed out
-        if (System.currentTimeMillis() - detectionStartTime > DETECTION_TIMEOUT_MS) {
+        if (frameTimeMs - detectionStartTime > config.detectionTimeoutMs) {
             Log.d(TAG, "Clapping detection timed out");
             if (listener != null) {
                 listener.onDetectionTimeout();
@@ -106,9 +141,6 @@ public class ClappingDetector {
             return;
         }
 
-        // Get the first person's landmarks
-        List<NormalizedLandmark> landmarks = result.landmarks().get(0);
-
         if (landmarks.size() <= Math.max(LEFT_INDEX, RIGHT_INDEX)) {
             updateDebugInfo("Insufficient landmarks", "N/A", "N/A", "Active - Waiting for pose");
             return;
@@ -143,21 +175,22 @@ public class ClappingDetector {
         lastClapState = isCurrentlyClapping;
 
         if (isCurrentlyClapping) {
-            long currentTime = System.currentTimeMillis();
-
             // Check cooldown to avoid multiple detections of same clap
-            if (currentTime - lastClapTime > CLAP_COOLDOWN_MS) {
-                registerClap(currentTime);
+            if (frameTimeMs - lastClapTime > config.clapCooldownMs) {
+                registerClap(frameTimeMs);
             }
         }
 
+        // Skip formatting debug strings nobody will read (e.g. during trace replay)
+        if (debugListener == null) return;
+
         // Update debug information
         String poseStatus = handsVisible ? "Both hands visible" : "Hands not visible";
-        String wristDistanceStr = String.format("%.3f (thresh: %.3f)", wristDistance, CLAP_DISTANCE_THRESHOLD);
-        String fingerDistanceStr = String.format("%.3f (thresh: %.3f)", fingerDistance, CLAP_DISTANCE_THRESHOLD);
+        String wristDistanceStr = String.format("%.3f (thresh: %.3f)", wristDistance, config.clapDistanceThreshold);
+        String fingerDistanceStr = String.format("%.3f (thresh: %.3f)", fingerDistance, config.clapDistanceThreshold);
         String clapStatus = String.format("Active - %s (%d/%d claps)",
                 isCurrentlyClapping ? "CLAPPING" : "Waiting for clap",
-                clapTimes.size(), REQUIRED_CLAP_COUNT);
+                clapTimes.size(), config.requiredClapCount);
 
         updateDebugInfo(poseStatus, wristDistanceStr, fingerDistanceStr, clapStatus);
     }
@@ -175,22 +208,22 @@ public class ClappingDetector {
 
     private boolean isClap(double wristDistance, double fingerDistance) {
         // Both wrists AND fingers must be close together for a proper clap
-        return wristDistance < CLAP_DISTANCE_THRESHOLD && fingerDistance < CLAP_DISTANCE_THRESHOLD;
+        return wristDistance < config.clapDistanceThreshold && fingerDistance < config.clapDistanceThreshold;
     }
 
     private void registerClap(long currentTime) {
         clapTimes.add(currentTime);
         lastClapTime = currentTime;
 
-        Log.d(TAG, "Clap detected! Count: " + clapTimes.size() + "/" + REQUIRED_CLAP_COUNT);
+        Log.d(TAG, "Clap detected! Count: " + clapTimes.size() + "/" + config.requiredClapCount);
 
         if (listener != null) {
             listener.onClappingDetected(clapTimes.size());
-            listener.onClappingProgress(clapTimes.size(), REQUIRED_CLAP_COUNT);
+            listener.onClappingProgress(clapTimes.size(), config.requiredClapCount);
         }
 
         // Check if we've reached the required number of claps
-        if (clapTimes.size() >= REQUIRED_CLAP_COUNT) {
+        if (clapTimes.size() >= config.requiredClapCount) {
             Log.d(TAG, "Clapping sequence completed!");
             if (listener != null) {
                 listener.onClappingCompleted();
@@ -223,7 +256,12 @@ public class ClappingDetector {
     }
 
     public int getRequiredClapCount() {
-        return REQUIRED_CLAP_COUNT;
+        return config.requiredClapCount;
+    }
+
+    // Rep times so far, for the completion record
+    public RepSummary getRepSummary() {
+        return new RepSummary(detectionStartTime, clapTimes);
     }
 
     public long getRemainingTime() {
@@ -231,6 +269,6 @@ public class ClappingDetector {
             return 0;
         }
         long elapsed = System.currentTimeMillis() - detectionStartTime;
-        return Math.max(0, DETECTION_TIMEOUT_MS - elapsed);
+        return Math.max(0, config.detectionTimeoutMs - elapsed);
     }
 }
\ No newline at end of file
@@ -0,0 +1,200 @@
+package com.example.mindmotion;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+// Streaming decoder for Firestore REST documents. Reads straight off the response body and keeps
+// only the requested top-level fields, so a page of sessions never exists as a String or a JSONObject
+// tree. Values are kept in their wire form ("12", "waiting", "true"); map and array values are skipped.
+public final class FirestoreDocumentReader {
+
+    private FirestoreDocumentReader() {
+    }
+
+    public static class Document {
+        private final String name;
+        private final String[] fieldNames;
+        private final String[] values;
+        private final String updateTime;
+
+        Document(String name, String[] fieldNames, String[] values) {
+            this(name, fieldNames, values, null);
+        }
+
+        Document(String name, String[] fieldNames, String[] values, String updateTime) {
+            this.name = name;
+            this.fieldNames = fieldNames;
+            this.values = values;
+            this.updateTime = updateTime;
+        }
+
+        // Full resource name: projects/.../documents/users/{uid}/motion_sessions/{id}
+        public String getName() {
+            return name;
+        }
+
+        public String getId() {
+            return name == null ? null : name.substring(name.lastIndexOf('/') + 1);
+        }
+
+        // Microseconds since the epoch of the document's last write, or 0 if the response left it out
+        public long getUpdateTimeMicros() {
+            return parseTimestampMicros(updateTime);
+        }
+
+        public boolean has(String field) {
+            return getString(field) != null;
+        }
+
+        public String getString(String field) {
+            for (int i = 0; i < fieldNames.length; i++) {
+                if (fieldNames[i].equals(field)) return values[i];
+            }
+            return null;
+        }
+
+        public long getLong(String field, long defaultValue) {
+            String value = getString(field);
+            if (value == null) return defaultValue;
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                return defaultValue;
+            }
+        }
+    }
+
+    // A single document, as returned by documents.get
+    public static Document readSingle(Reader body, String... fields) throws IOException {
+        JsonReader reader = new JsonReader(body);
+        return readDocument(reader, fields);
+    }
+
+    // documents.list: {"documents": [...], "nextPageToken": "..."}; an empty page is just {}
+    public static List<Document> readDocumentList(Reader body, String... fields) throws IOException {
+        List<Document> documents = new ArrayList<>();
+        JsonReader reader = new JsonReader(body);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("documents".equals(reader.nextName())) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    documents.add(readDocument(reader, fields));
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return documents;
+    }
+
+    // runQuery: [{"document": {...}, "readTime": "..."}, ...]; an empty result is a lone {"readTime"}
+    public static List<Document> readRunQuery(Reader body, String... fields) throws IOException {
+        List<Document> documents = new ArrayList<>();
+        JsonReader reader = new JsonReader(body);
+        reader.beginArray();
+        while (reader.hasNext()) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("document".equals(reader.nextName())) {
+                    documents.add(readDocument(reader, fields));
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+        return documents;
+    }
+
+    // Reads one {"name", "fields", "createTime", "updateTime"} object at the reader's position
+    public static Document readDocument(JsonReader reader, String... fields) throws IOException {
+        String name = null;
+        String updateTime = null;
+        String[] values = new String[fields.length];
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if ("name".equals(key)) {
+                name = reader.nextString();
+            } else if ("fields".equals(key)) {
+                readFields(reader, fields, values);
+            } else if ("updateTime".equals(key)) {
+                updateTime = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new Document(name, fields, values, updateTime);
+    }
+
+    private static void readFields(JsonReader reader, String[] fields, String[] values) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            int index = indexOf(fields, reader.nextName());
+            if (index >= 0) {
+                values[index] = readScalarValue(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    // Reads a Firestore Value object ({"stringValue": "..."}, {"integerValue": "12"}, ...) as a string
+    static String readScalarValue(JsonReader reader) throws IOException {
+        String result = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            reader.nextName();
+            JsonToken token = reader.peek();
+            if (result == null && (token == JsonToken.STRING || token == JsonToken.NUMBER)) {
+                result = reader.nextString();
+            } else if (result == null && token == JsonToken.BOOLEAN) {
+                result = String.valueOf(reader.nextBoolean());
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return result;
+    }
+
+    // RFC 3339 in UTC with 0 to 9 fractional digits, e.g. "2024-05-01T12:34:56.123456Z"; 0 if malformed
+    static long parseTimestampMicros(String timestamp) {
+        if (timestamp == null || timestamp.length() < 20 || !timestamp.endsWith("Z")) return 0;
+        try {
+            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("UTC"));
+            long micros = format.parse(timestamp.substring(0, 19)).getTime() * 1000;
+            if (timestamp.charAt(19) == '.') {
+                String fraction = timestamp.substring(20, timestamp.length() - 1) + "000000";
+                micros += Long.parseLong(fraction.substring(0, 6));
+            }
+            return micros;
+        } catch (ParseException | NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static int indexOf(String[] fields, String name) {
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i].equals(name)) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,276 @@
+package com.example.mindmotion;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPInputStream;
+
+// Process-wide HTTP client used by every Firebase call.
+//
+// HttpURLConnection already keeps a pool of idle keep-alive sockets, but a socket only goes back to
+// the pool once its response body has been read to the end and closed, and disconnect() throws it
+// away. Every request made through here therefore drains and closes the body (error bodies too) and
+// never calls disconnect(), so sequential calls to the same host reuse one TLS connection.
+// Concurrency is capped at MAX_CONNECTIONS so bursts cannot open more sockets than the pool keeps.
+// Every endpoint name gets its own CircuitBreaker; while one is open, calls to that endpoint throw
+// CircuitBreaker.RejectedException without touching the network.
+// The platform stack speaks HTTP/1.1 only; HTTP/2 multiplexing would need a different client.
+public class HttpTransport {
+    private static final String TAG = "HttpTransport";
+    static final int CONNECT_TIMEOUT_MS = 15000;
+    static final int READ_TIMEOUT_MS = 15000;
+    private static final int MAX_CONNECTIONS = 5;
+
+    private static volatile HttpTransport instance;
+
+    public interface ResponseHandler<T> {
+        // body is the decoded (gunzipped) response or error stream, never null
+        T handle(int statusCode, Reader body) throws Exception;
+    }
+
+    public static class Request {
+        final String endpoint;
+        final String method;
+        final String url;
+        final String body;
+        String contentType = "application/json";
+        String bearerToken;
+        final Map<String, String> headers = new LinkedHashMap<>();
+        int readTimeoutMs = READ_TIMEOUT_MS;
+        boolean isRetry = false;
+
+        private Request(String endpoint, String method, String url, String body) {
+            this.endpoint = endpoint;
+            this.method = method;
+            this.url = url;
+            this.body = body;
+        }
+
+        // endpoint names the latency histogram the request is recorded under, e.g. "firestore.runQuery"
+        public static Request get(String endpoint, String url) {
+            return new Request(endpoint, "GET", url, null);
+        }
+
+        public static Request post(String endpoint, String url, String body) {
+            return new Request(endpoint, "POST", url, body);
+        }
+
+        public Request bearer(String token) {
+            this.bearerToken = token;
+            return this;
+        }
+
+        public Request header(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+
+        public Request contentType(String contentType) {
+            this.contentType = contentType;
+            return this;
+        }
+
+        public Request readTimeout(int readTimeoutMs) {
+            this.readTimeoutMs = readTimeoutMs;
+            return this;
+        }
+
+        // Marks a repeat of work that just failed; it is sent only if the endpoint's retry budget allows
+        public Request retry(boolean isRetry) {
+            this.isRetry = isRetry;
+            return this;
+        }
+    }
+
+    public static class Response {
+        public final int statusCode;
+        public final String body;
+
+        Response(int statusCode, String body) {
+            this.statusCode = statusCode;
+            this.body = body;
+        }
+
+        public boolean isSuccessful() {
+            return statusCode >= 200 && statusCode < 300;
+        }
+    }
+
+    private static final ResponseHandler<Response> BUFFERED = (statusCode, body) -> new Response(statusCode, readFully(body));
+
+    private final Semaphore connectionPermits = new Semaphore(MAX_CONNECTIONS, true);
+    private final Map<String, LatencyHistogram> endpointLatencyMs = new ConcurrentHashMap<>();
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final List<CircuitBreaker.Listener> breakerListeners = new CopyOnWriteArrayList<>();
+    private final CircuitBreaker.Listener breakerFanOut = (endpoint, state, retryAfterMs) -> {
+        Log.w(TAG, "Circuit " + endpoint + " " + state + (retryAfterMs > 0 ? " for " + retryAfterMs + " ms" : ""));
+        for (CircuitBreaker.Listener listener : breakerListeners) listener.onStateChanged(endpoint, state, retryAfterMs);
+    };
+
+    public static HttpTransport getInstance() {
+        if (instance == null) {
+            synchronized (HttpTransport.class) {
+                if (instance == null) instance = new HttpTransport();
+            }
+        }
+        return instance;
+    }
+
+    HttpTransport() {
+        // Read by the platform connection pool when it is first created
+        if (System.getProperty("http.maxConnections") == null) {
+            System.setProperty("http.maxConnections", String.valueOf(MAX_CONNECTIONS));
+        }
+    }
+
+    public Response execute(Request request) throws IOException {
+        return execute(request, BUFFERED);
+    }
+
+    public <T> T execute(Request request, ResponseHandler<T> handler) throws IOException {
+        CircuitBreaker breaker = getBreaker(request.endpoint);
+        breaker.acquire(request.isRetry);
+        try {
+            connectionPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            breaker.onCancelled();
+            throw new IOException("Interrupted waiting for a connection", e);
+        }
+
+        long start = SystemClock.elapsedRealtime();
+        int statusCode = -1;
+        try {
+            HttpURLConnection connection = open(request);
+            statusCode = connection.getResponseCode();
+
+            try (Reader body = openBody(connection, statusCode)) {
+                T result = handler.handle(statusCode, body);
+                drain(body);
+                return result;
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Failed to handle " + request.endpoint + " response", e);
+        } finally {
+            recordLatency(request.endpoint, SystemClock.elapsedRealtime() - start);
+            connectionPermits.release();
+            // Any answer other than 429 or 5xx means the backend is up, even if it refused this call
+            if (statusCode < 0 || statusCode == 429 || statusCode >= 500) {
+                breaker.onFailure();
+            } else {
+                breaker.onSuccess();
+            }
+        }
+    }
+
+    // For long-lived responses (the Listen stream). The caller owns the connection and must close its
+    // body; it does not count against the pool because it never goes back into it. The stream has its
+    // own reconnect backoff and polling fallback, so it bypasses the circuit breakers.
+    public HttpURLConnection openStreaming(Request request) throws IOException {
+        return open(request);
+    }
+
+    private HttpURLConnection open(Request request) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(request.url).openConnection();
+        connection.setRequestMethod(request.method);
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(request.readTimeoutMs);
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        if (request.contentType != null) connection.setRequestProperty("Content-Type", request.contentType);
+        if (request.bearerToken != null) connection.setRequestProperty("Authorization", "Bearer " + request.bearerToken);
+        for (Map.Entry<String, String> header : request.headers.entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
+
+        if (request.body != null) {
+            byte[] payload = request.body.getBytes(StandardCharsets.UTF_8);
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(payload.length);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(payload);
+            }
+        }
+        return connection;
+    }
+
+    // Setting Accept-Encoding ourselves turns off the platform's transparent gzip, so unwrap it here
+    public static Reader openBody(HttpURLConnection connection, int statusCode) throws IOException {
+        InputStream stream = statusCode >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        if (stream == null) return new StringReader("");
+        if ("gzip".equalsIgnoreCase(connection.getHeaderField("Content-Encoding"))) {
+            stream = new GZIPInputStream(stream);
+        }
+        return new InputStreamReader(stream, StandardCharsets.UTF_8);
+    }
+
+    public static String readFully(Reader reader) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[4096];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            sb.append(buffer, 0, read);
+        }
+        return sb.toString();
+    }
+
+    private static void drain(Reader reader) {
+        try {
+            char[] buffer = new char[1024];
+            while (reader.read(buffer) != -1) {
+                // discard so the socket can be reused
+            }
+        } catch (IOException e) {
+            Log.d(TAG, "Could not drain response body", e);
+        }
+    }
+
+    private void recordLatency(String endpoint, long latencyMs) {
+        LatencyHistogram histogram = endpointLatencyMs.get(endpoint);
+        if (histogram == null) {
+            histogram = endpointLatencyMs.computeIfAbsent(endpoint, key -> new LatencyHistogram());
+        }
+        histogram.record(latencyMs);
+    }
+
+    public CircuitBreaker getBreaker(String endpoint) {
+        CircuitBreaker breaker = breakers.get(endpoint);
+        if (breaker == null) {
+            breaker = breakers.computeIfAbsent(endpoint, key -> new CircuitBreaker(key, breakerFanOut));
+        }
+        return breaker;
+    }
+
+    // Listeners hear about every endpoint, on whichever thread made the call that changed its state
+    public void addBreakerListener(CircuitBreaker.Listener listener) {
+        if (!breakerListeners.contains(listener)) breakerListeners.add(listener);
+    }
+
+    public void removeBreakerListener(CircuitBreaker.Listener listener) {
+        breakerListeners.remove(listener);
+    }
+
+    public Map<String, LatencyHistogram.Snapshot> getLatencySnapshots() {
+        Map<String, LatencyHistogram.Snapshot> snapshots = new LinkedHashMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : endpointLatencyMs.entrySet()) {
+            snapshots.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return snapshots;
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.mindmotion;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Process-wide pool for network and disk work. A few background-priority threads serve one
+// priority queue, so a burst of voice uploads or retries cannot spawn threads that compete with
+// camera inference, and session discovery always runs ahead of everything else.
+//
+// Each priority has its own queue limit; work past it is rejected. Tasks submitted with a coalesce
+// key are dropped while an identical one is still waiting (a second "poll" adds nothing), and a
+// higher-priority duplicate replaces the queued one.
+public class IoScheduler {
+    private static final String TAG = "IoScheduler";
+    private static final int THREAD_COUNT = 3;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    public enum Priority {
+        // Highest first; the ordinal is the sort key
+        SESSION_DISCOVERY(8),
+        RESULT_MARKING(32),
+        VOICE_DATA(32),
+        TELEMETRY(8);
+
+        final int maxQueued;
+
+        Priority(int maxQueued) {
+            this.maxQueued = maxQueued;
+        }
+    }
+
+    private static volatile IoScheduler instance;
+
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, Task> queuedByKey = new HashMap<>();
+    private final int[] queued = new int[Priority.values().length];
+    private final long[] rejected = new long[Priority.values().length];
+    private long coalesced = 0;
+    private final AtomicLong completed = new AtomicLong();
+    private final LatencyHistogram queueWaitMs = new LatencyHistogram();
+
+    private final class Task implements Runnable, Comparable<Task> {
+        final Priority priority;
+        final String coalesceKey;
+        final Runnable work;
+        final long order = sequence.getAndIncrement();
+        final long enqueuedMs = SystemClock.elapsedRealtime();
+        // Replaced by a higher-priority duplicate; guarded by the scheduler's lock
+        boolean cancelled = false;
+
+        Task(Priority priority, String coalesceKey, Runnable work) {
+            this.priority = priority;
+            this.coalesceKey = coalesceKey;
+            this.work = work;
+        }
+
+        @Override
+        public void run() {
+            if (!dequeue(this)) return;
+            queueWaitMs.record(SystemClock.elapsedRealtime() - enqueuedMs);
+            try {
+                work.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Task failed", e);
+            } finally {
+                completed.incrementAndGet();
+            }
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            int byPriority = Integer.compare(priority.ordinal(), other.priority.ordinal());
+            return byPriority != 0 ? byPriority : Long.compare(order, other.order);
+        }
+    }
+
+    public static IoScheduler getInstance() {
+        if (instance == null) {
+            synchronized (IoScheduler.class) {
+                if (instance == null) instance = new IoScheduler(THREAD_COUNT);
+            }
+        }
+        return instance;
+    }
+
+    IoScheduler(int threadCount) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "mindmotion-io-" + threadNumber.incrementAndGet());
+
+        // With an unbounded queue the pool never grows past its core size, so core == max
+        executor = new ThreadPoolExecutor(threadCount, threadCount, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public boolean submit(Priority priority, Runnable work) {
+        return submit(priority, null, work);
+    }
+
+    // Returns false if the task was rejected or coalesced into one already waiting
+    public boolean submit(Priority priority, String coalesceKey, Runnable work) {
+        Task task = new Task(priority, coalesceKey, work);
+        synchronized (this) {
+            if (coalesceKey != null) {
+                Task waiting = queuedByKey.get(coalesceKey);
+                if (waiting != null) {
+                    if (waiting.priority.ordinal() <= priority.ordinal()) {
+                        coalesced++;
+                        return false;
+                    }
+                    // Same work wanted sooner: cancel the queued copy and fall through to queue this one.
+                    // If a worker has already taken it, or it has not reached the executor yet, the
+                    // copy still runs dequeue, which releases its slot and skips the work.
+                    waiting.cancelled = true;
+                    queuedByKey.remove(coalesceKey);
+                    coalesced++;
+                    if (executor.remove(waiting)) queued[waiting.priority.ordinal()]--;
+                }
+            }
+
+            if (queued[priority.ordinal()] >= priority.maxQueued) {
+                rejected[priority.ordinal()]++;
+                Log.w(TAG, "Rejected " + priority + (coalesceKey != null ? " " + coalesceKey : "") + " task, queue full");
+                return false;
+            }
+            queued[priority.ordinal()]++;
+            if (coalesceKey != null) queuedByKey.put(coalesceKey, task);
+        }
+
+        executor.execute(task);
+        return true;
+    }
+
+    // Moves a task from waiting to running, releasing its queue slot; false if it was cancelled by
+    // coalescing. Tasks pulled out of the executor never get here, so each slot is released once.
+    private synchronized boolean dequeue(Task task) {
+        queued[task.priority.ordinal()]--;
+        if (task.coalesceKey != null && queuedByKey.get(task.coalesceKey) == task) {
+            queuedByKey.remove(task.coalesceKey);
+        }
+        return !task.cancelled;
+    }
+
+    public synchronized int getQueuedCount(Priority priority) {
+        return queued[priority.ordinal()];
+    }
+
+    public synchronized long getRejectedCount(Priority priority) {
+        return rejected[priority.ordinal()];
+    }
+
+    public synchronized long getTotalRejectedCount() {
+        long total = 0;
+        for (long count : rejected) total += count;
+        return total;
+    }
+
+    public synchronized long getCoalescedCount() {
+        return coalesced;
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public LatencyHistogram.Snapshot getQueueWaitSnapshot() {
+        return queueWaitMs.snapshot();
+    }
+}
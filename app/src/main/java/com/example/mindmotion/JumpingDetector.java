@@ -14,6 +14,20 @@ public class JumpingDetector {
     private static final long JUMP_COOLDOWN_MS = 400;
     private static final long DETECTION_TIMEOUT_MS = 30000;
 
+    // Jump state machine thresholds (normalized by torso length, velocities per frame)
+    private static final double RISE_VELOCITY = -0.001; // ULTRA sensitive - any upward motion
+    private static final double RISE_HEIGHT = 0.01; // Only 1cm needed!
+    private static final double AIRBORNE_HEIGHT = 0.02;
+    private static final double PEAK_VELOCITY = 0.002;
+    private static final double FALL_VELOCITY = 0.002;
+    private static final double LANDING_VELOCITY = 0.012;
+    private static final double LANDING_HEIGHT = 0.15;
+    private static final double MIN_JUMP_HEIGHT = 0.015; // Only 1.5cm
+    private static final int MIN_AIRBORNE_FRAMES = 2;
+    private static final int MAX_RISE_FRAMES = 12;
+    private static final int MAX_AIRBORNE_FRAMES = 25;
+    private static final int MAX_LANDING_FRAMES = 20;
+
     // Pose landmark indices
     private static final int LEFT_HIP = 23;
     private static final int RIGHT_HIP = 24;
@@ -24,8 +38,11 @@ public class JumpingDetector {
     private static final int LEFT_SHOULDER = 11;
     private static final int RIGHT_SHOULDER = 12;
 
+    private final Config config;
+
     // Jump tracking
     private List<Long> jumpTimes;
+    private final List<Integer> jumpHeightsCm = new ArrayList<>();
     private long lastJumpTime;
     private long detectionStartTime;
     private boolean isDetectionActive;
@@ -59,7 +76,32 @@ public class JumpingDetector {
         void onJumpDebugUpdate(String poseStatus, String bodyHeight, String feetStatus, String jumpStatus);
     }
 
+    // Tunable parameters, defaulting to the hand-picked values above
+    public static class Config {
+        public int requiredJumpCount = REQUIRED_JUMP_COUNT;
+        public long jumpCooldownMs = JUMP_COOLDOWN_MS;
+        public long detectionTimeoutMs = DETECTION_TIMEOUT_MS;
+        public int baselineWindow = BASELINE_WINDOW;
+        public double riseVelocity = RISE_VELOCITY;
+        public double riseHeight = RISE_HEIGHT;
+        public double airborneHeight = AIRBORNE_HEIGHT;
+        public double peakVelocity = PEAK_VELOCITY;
+        public double fallVelocity = FALL_VELOCITY;
+        public double landingVelocity = LANDING_VELOCITY;
+        public double landingHeight = LANDING_HEIGHT;
+        public double minJumpHeight = MIN_JUMP_HEIGHT;
+        public int minAirborneFrames = MIN_AIRBORNE_FRAMES;
+        public int maxRiseFrames = MAX_RISE_FRAMES;
+        public int maxAirborneFrames = MAX_AIRBORNE_FRAMES;
+        public int maxLandingFrames = MAX_LANDING_FRAMES;
+    }
+
     public JumpingDetector() {
+        this(new Config());
+    }
+
+    public JumpingDetector(Config config) {
+        this.config = config;
         jumpTimes = new ArrayList<>();
         reset();
     }
@@ -73,13 +115,17 @@ public class JumpingDetector {
     }
 
     public void startDetection() {
+        startDetection(System.currentTimeMillis());
+    }
+
+    public void startDetection(long startTimeMs) {
         Log.d(TAG, "Starting jumping detection for kids - NO calibration needed!");
         reset();
         isDetectionActive = true;
-        detectionStartTime = System.currentTimeMillis();
+        detectionStartTime = startTimeMs;
 
         if (listener != null) {
-            listener.onJumpingProgress(0, REQUIRED_JUMP_COUNT);
+            listener.onJumpingProgress(0, config.requiredJumpCount);
         }
 
         updateDebugInfo("Ready!", "Start jumping anytime", "No need to stand still", "Jump when ready!");
@@ -93,6 +139,7 @@ public class JumpingDetector {
 
     public void reset() {
         jumpTimes.clear();
+        jumpHeightsCm.clear();
         lastJumpTime = 0;
         detectionStartTime = 0;
         isDetectionActive = false;
@@ -107,20 +154,35 @@ public class JumpingDetector {
     }
 
     public void analyzePoseResult(PoseLandmarkerResult result) {
-        if (!isDetectionActive || result == null || result.landmarks().isEmpty()) {
+        List<NormalizedLandmark> landmarks =
+                result == null || result.landmarks().isEmpty() ? null : result.landmarks().get(0);
+        analyzeLandmarks(landmarks, System.currentTimeMillis());
+    }
+
+    // Frame-level entry point, also used to replay recorded traces with their own timestamps
+    public void analyzeLandmarks(List<NormalizedLandmark> landmarks, long frameTimeMs) {
+        boolean traced = TraceSections.begin("JumpingDetector.analyze");
+        try {
+            analyzeFrame(landmarks, frameTimeMs);
+        } finally {
+            TraceSections.end(traced);
+        }
+    }
+
+    private void analyzeFrame(List<NormalizedLandmark> landmarks, long frameTimeMs) {
+        if (!isDetectionActive || landmarks == null) {
             updateDebugInfo("No pose", "N/A", "N/A", "Inactive");
             return;
         }
 
         // Timeout check
-        if (System.currentTimeMillis() - detectionStartTime > DETECTION_TIMEOUT_MS) {
+        if (frameTimeMs - detectionStartTime > config.detectionTimeoutMs) {
             Log.d(TAG, "Detection timed out");
             if (listener != null) listener.onDetectionTimeout();
             stopDetection();
             return;
         }
 
-        List<NormalizedLandmark> landmarks = result.landmarks().get(0);
         if (landmarks.size() <= RIGHT_KNEE) {
             updateDebugInfo("Insufficient landmarks", "N/A", "N/A", "Show full body");
             return;
@@ -156,7 +218,7 @@ public class JumpingDetector {
         // Add to rolling window
         recentHipHeights.add(hipY);
         recentAnkleHeights.add(ankleY);
-        if (recentHipHeights.size() > BASELINE_WINDOW) {
+        if (recentHipHeights.size() > config.baselineWindow) {
             recentHipHeights.remove(0);
             recentAnkleHeights.remove(0);
         }
@@ -164,8 +226,10 @@ public class JumpingDetector {
         // Need at least 5 frames to establish baseline
         if (recentHipHeights.size() < 5) {
             lastHipY = hipY;
-            updateDebugInfo("Initializing...", "Collecting data", "Move around freely!",
-                    String.format("%d/5 frames", recentHipHeights.size()));
+            if (debugListener != null) {
+                updateDebugInfo("Initializing...", "Collecting data", "Move around freely!",
+                        String.format("%d/5 frames", recentHipHeights.size()));
+            }
             return;
         }
 
@@ -212,8 +276,8 @@ public class JumpingDetector {
                 // Detect ANY UPWARD MOTION (ULTRA SENSITIVE - detects even 1cm!)
                 // 1. ANY upward velocity
                 // 2. Body rising even slightly above recent baseline
-                boolean anyUpwardMotion = smoothVelocity < -0.001; // ULTRA sensitive!
-                boolean slightRise = relativeHeight > 0.01; // Only 1cm needed!
+                boolean anyUpwardMotion = smoothVelocity < config.riseVelocity; // ULTRA sensitive!
+                boolean slightRise = relativeHeight > config.riseHeight; // Only 1cm needed!
 
                 if (anyUpwardMotion && slightRise) {
                     jumpPhase = JumpPhase.DETECTED_RISE;
@@ -227,11 +291,11 @@ public class JumpingDetector {
                 airborneFrames++;
 
                 // Check if still rising or at peak (VERY LENIENT)
-                if (smoothVelocity < 0.002 && relativeHeight > 0.02) {
+                if (smoothVelocity < config.peakVelocity && relativeHeight > config.airborneHeight) {
                     // Still going up or at peak
                     jumpPhase = JumpPhase.AIRBORNE;
                     Log.d(TAG, String.format("✈️ AIRBORNE! Peak height: %.3f", maxHeightInJump));
-                } else if (relativeHeight < 0.01 || airborneFrames > 12) {
+                } else if (relativeHeight < config.riseHeight || airborneFrames > config.maxRiseFrames) {
                     // False alarm - didn't actually get airborne
                     Log.d(TAG, "❌ False jump - resetting");
                     jumpPhase = JumpPhase.WAITING;
@@ -244,13 +308,13 @@ public class JumpingDetector {
                 airborneFrames++;
 
                 // Detect FALLING (velocity becomes positive = moving down)
-                if (smoothVelocity > 0.002) {
+                if (smoothVelocity > config.fallVelocity) {
                     jumpPhase = JumpPhase.DETECTED_FALL;
                     Log.d(TAG, String.format("⬇️ FALLING detected! vel=%.4f", smoothVelocity));
                 }
 
                 // Timeout if airborne too long (probably an error)
-                if (airborneFrames > 25) {
+                if (airborneFrames > config.maxAirborneFrames) {
                     Log.d(TAG, "⚠️ Airborne too long - resetting");
                     jumpPhase = JumpPhase.WAITING;
                     maxHeightInJump = 0;
@@ -262,17 +326,17 @@ public class JumpingDetector {
                 airborneFrames++;
 
                 // Detect LANDING (VERY LENIENT for tiny jumps)
-                boolean velocityStable = Math.abs(smoothVelocity) < 0.012;
-                boolean nearGround = relativeHeight < 0.15;
+                boolean velocityStable = Math.abs(smoothVelocity) < config.landingVelocity;
+                boolean nearGround = relativeHeight < config.landingHeight;
 
                 if (velocityStable && nearGround) {
                     // JUMP COMPLETED!
-                    boolean validJump = maxHeightInJump > 0.015 && airborneFrames >= 2; // Only 1.5cm + 2 frames!
+                    boolean validJump = maxHeightInJump > config.minJumpHeight
+                            && airborneFrames >= config.minAirborneFrames; // Only 1.5cm + 2 frames!
 
                     if (validJump) {
-                        long currentTime = System.currentTimeMillis();
-                        if (currentTime - lastJumpTime > JUMP_COOLDOWN_MS) {
-                            registerJump(currentTime, maxHeightInJump * torsoLength);
+                        if (frameTimeMs - lastJumpTime > config.jumpCooldownMs) {
+                            registerJump(frameTimeMs, maxHeightInJump * torsoLength);
                             Log.d(TAG, String.format("✅ JUMP REGISTERED! Height: %.2fcm, Frames: %d",
                                     maxHeightInJump * torsoLength * 100, airborneFrames));
                         } else {
@@ -290,7 +354,7 @@ public class JumpingDetector {
                 }
 
                 // Timeout
-                if (airborneFrames > 20) {
+                if (airborneFrames > config.maxLandingFrames) {
                     Log.d(TAG, "⚠️ Landing timeout - resetting");
                     jumpPhase = JumpPhase.WAITING;
                     maxHeightInJump = 0;
@@ -299,6 +363,9 @@ public class JumpingDetector {
                 break;
         }
 
+        // Skip formatting debug strings nobody will read (e.g. during trace replay)
+        if (debugListener == null) return;
+
         // Debug output
         String phaseEmoji = jumpPhase == JumpPhase.WAITING ? "⏳" :
                 jumpPhase == JumpPhase.DETECTED_RISE ? "🚀" :
@@ -310,7 +377,7 @@ public class JumpingDetector {
         String phaseStr = String.format("%s %s (f:%d max:%.3f)",
                 phaseEmoji, jumpPhase.name(), airborneFrames, maxHeightInJump);
         String jumpStr = String.format("%.0fcm | %d/%d jumps",
-                maxHeightInJump * torsoLength * 100, jumpTimes.size(), REQUIRED_JUMP_COUNT);
+                maxHeightInJump * torsoLength * 100, jumpTimes.size(), config.requiredJumpCount);
 
         updateDebugInfo(poseStatus, heightStr, phaseStr, jumpStr);
     }
@@ -321,6 +388,7 @@ public class JumpingDetector {
 
     private void registerJump(long currentTime, double jumpHeightMeters) {
         jumpTimes.add(currentTime);
+        jumpHeightsCm.add((int) Math.round(jumpHeightMeters * 100));
         lastJumpTime = currentTime;
 
         Log.d(TAG, String.format("🎯 JUMP #%d COUNTED! Height: %.1fcm",
@@ -328,10 +396,10 @@ public class JumpingDetector {
 
         if (listener != null) {
             listener.onJumpingDetected(jumpTimes.size());
-            listener.onJumpingProgress(jumpTimes.size(), REQUIRED_JUMP_COUNT);
+            listener.onJumpingProgress(jumpTimes.size(), config.requiredJumpCount);
         }
 
-        if (jumpTimes.size() >= REQUIRED_JUMP_COUNT) {
+        if (jumpTimes.size() >= config.requiredJumpCount) {
             Log.d(TAG, "🎉🎉🎉 ALL JUMPS COMPLETED!");
             if (listener != null) listener.onJumpingCompleted();
             stopDetection();
@@ -353,12 +421,17 @@ public class JumpingDetector {
     }
 
     public int getRequiredJumpCount() {
-        return REQUIRED_JUMP_COUNT;
+        return config.requiredJumpCount;
+    }
+
+    // Rep times so far, for the completion record
+    public RepSummary getRepSummary() {
+        return new RepSummary(detectionStartTime, jumpTimes).withHeightsCm(jumpHeightsCm);
     }
 
     public long getRemainingTime() {
         if (!isDetectionActive) return 0;
         long elapsed = System.currentTimeMillis() - detectionStartTime;
-        return Math.max(0, DETECTION_TIMEOUT_MS - elapsed);
+        return Math.max(0, config.detectionTimeoutMs - elapsed);
     }
 }
\ No newline at end of file
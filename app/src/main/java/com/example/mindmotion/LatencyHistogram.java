@@ -0,0 +1,126 @@
+package com.example.mindmotion;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Lock-free log-linear histogram in the spirit of HdrHistogram. Values below LINEAR_LIMIT get their
+// own bucket; above that every power of two is split into SUB_BUCKETS slices, so any recorded value
+// is reported within ~6% of its true size. Recording is a few atomic adds and never allocates.
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+    private static final int LINEAR_BITS = SUB_BUCKET_BITS + 1;
+    // Highest power of two split into sub-buckets. Values up to 2^41 - 1 keep ~6% precision: about
+    // 25 days in microseconds, decades in milliseconds. Anything larger lands in the last bucket.
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKET_COUNT = LINEAR_LIMIT + (MAX_EXPONENT - LINEAR_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalSum = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(bucketIndex(value));
+        totalCount.incrementAndGet();
+        totalSum.addAndGet(value);
+
+        long currentMax = maxValue.get();
+        while (value > currentMax && !maxValue.compareAndSet(currentMax, value)) {
+            currentMax = maxValue.get();
+        }
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) counts.set(i, 0);
+        totalCount.set(0);
+        totalSum.set(0);
+        maxValue.set(0);
+    }
+
+    // Copies the current counts; concurrent records may land on either side of the copy
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, totalSum.get(), maxValue.get());
+    }
+
+    static int bucketIndex(long value) {
+        if (value < LINEAR_LIMIT) return (int) value;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) return BUCKET_COUNT - 1;
+
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - LINEAR_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    // Largest value that maps to the given bucket
+    static long bucketUpperBound(int index) {
+        if (index < LINEAR_LIMIT) return index;
+
+        int exponent = (index - LINEAR_LIMIT) / SUB_BUCKETS + LINEAR_BITS;
+        int subBucket = (index - LINEAR_LIMIT) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + (subBucket + 1) * width - 1;
+    }
+
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        // percentile in [0, 100]; returns the upper bound of the bucket holding that rank
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0) return 0;
+
+            long rank = (long) Math.ceil(count * Math.min(100.0, Math.max(0.0, percentile)) / 100.0);
+            if (rank < 1) rank = 1;
+
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(bucketUpperBound(i), max);
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "n=%d p50=%d p95=%d p99=%d max=%d",
+                    count, getValueAtPercentile(50), getValueAtPercentile(95),
+                    getValueAtPercentile(99), max);
+        }
+    }
+}
@@ -1,10 +1,8 @@
 package com.example.mindmotion;
 
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
+import android.view.View;
 import android.widget.ImageButton;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -13,18 +11,11 @@ import androidx.activity.OnBackPressedCallback;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 
-public class MainMenuActivity extends AppCompatActivity implements RestAuthManager.TokenRefreshListener {
+import java.util.Locale;
+
+public class MainMenuActivity extends AppCompatActivity implements TokenProvider.SessionListener {
     private RestAuthManager authManager;
-    private Handler tokenRefreshHandler = new Handler(Looper.getMainLooper());
-    private Runnable tokenRefreshRunnable = new Runnable() {
-        @Override
-        public void run() {
-            if (authManager != null && authManager.isUserLoggedIn()) {
-                authManager.refreshTokenIfNeeded(MainMenuActivity.this);
-            }
-            tokenRefreshHandler.postDelayed(this, 30 * 60 * 1000); // 30 minutes
-        }
-    };
+    private SessionHistoryStore historyStore;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -32,6 +23,7 @@ public class MainMenuActivity extends AppCompatActivity implements RestAuthManag
         setContentView(R.layout.activity_main_menu);
 
         authManager = new RestAuthManager(this);
+        historyStore = SessionHistoryStore.getInstance(this);
         initializeViews();
         setupWelcomeMessage();
         setupBackPressHandler();
@@ -40,50 +32,33 @@ public class MainMenuActivity extends AppCompatActivity implements RestAuthManag
     @Override
     protected void onResume() {
         super.onResume();
-        startPeriodicTokenRefresh();
+        TokenProvider.getInstance(this).addSessionListener(this);
+        showHistory();
     }
 
     @Override
     protected void onPause() {
         super.onPause();
-        stopPeriodicTokenRefresh();
+        TokenProvider.getInstance(this).removeSessionListener(this);
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        stopPeriodicTokenRefresh();
         if (authManager != null) {
             authManager.cleanup();
         }
     }
 
-    private void startPeriodicTokenRefresh() {
-        tokenRefreshHandler.removeCallbacks(tokenRefreshRunnable);
-        tokenRefreshHandler.postDelayed(tokenRefreshRunnable, 5 * 60 * 1000); // 5 minutes initial delay
-    }
-
-    private void stopPeriodicTokenRefresh() {
-        tokenRefreshHandler.removeCallbacks(tokenRefreshRunnable);
-    }
-
+    // TokenProvider refreshes ahead of expiry on its own; this only hears when that fails for good
     @Override
-    public void onTokenRefreshSuccess() {
-        // Background refresh successful - no action needed
-    }
-
-    @Override
-    public void onTokenRefreshFailed(String error) {
-        if (error.contains("Session expired") || error.contains("No refresh token")) {
-            runOnUiThread(() -> {
-                Toast.makeText(this, "Session expired. Please login again.", Toast.LENGTH_LONG).show();
-                authManager.logout();
-                Intent intent = new Intent(this, LoginActivity.class);
-                intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-                startActivity(intent);
-                finish();
-            });
-        }
+    public void onSessionExpired() {
+        Toast.makeText(this, "Session expired. Please login again.", Toast.LENGTH_LONG).show();
+        authManager.logout();
+        Intent intent = new Intent(this, LoginActivity.class);
+        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+        startActivity(intent);
+        finish();
     }
 
     private void initializeViews() {
@@ -104,9 +79,46 @@ public class MainMenuActivity extends AppCompatActivity implements RestAuthManag
         TextView welcomeText = findViewById(R.id.welcome_text);
         if (welcomeText == null) return;
 
-        SharedPreferences prefs = getSharedPreferences("MindMotionPrefs", MODE_PRIVATE);
-        String userName = prefs.getString("USER_NAME", "Student");
-        welcomeText.setText("Welcome, " + userName + "!");
+        welcomeText.setText("Welcome, " + authManager.getCurrentUserName() + "!");
+    }
+
+    // Shows what is on disk right away, then syncs in the background and redraws only if it changed
+    private void showHistory() {
+        String userId = authManager.getCurrentUserId();
+        if (userId == null || userId.isEmpty()) return;
+
+        historyStore.loadStats(userId, stats -> runOnUiThread(() -> showStats(stats)));
+        historyStore.sync(userId, () -> historyStore.loadStats(userId, stats -> runOnUiThread(() -> showStats(stats))));
+    }
+
+    private void showStats(SessionHistoryStore.Stats stats) {
+        TextView historyText = findViewById(R.id.history_text);
+        if (historyText == null || isFinishing()) return;
+
+        StringBuilder text = new StringBuilder();
+        if (stats.completed == 0 && stats.wordsSpoken == 0) {
+            text.append("No motions yet - press play to start!");
+        } else {
+            text.append(String.format(Locale.US, "%d motions completed, %d this week", stats.completed,
+                    stats.completedThisWeek));
+            if (stats.favouriteMotion != null) {
+                text.append(String.format(Locale.US, "\nFavourite: %s (%d)", stats.favouriteMotion.replace('_', ' '),
+                        stats.favouriteMotionCount));
+            }
+            if (!stats.recent.isEmpty()) {
+                SessionHistoryStore.Session last = stats.recent.get(0);
+                text.append("\nLast: ").append(last.motionType == null ? "motion" : last.motionType.replace('_', ' '));
+                if ("timeout".equals(last.status)) {
+                    text.append(" (timed out)");
+                } else if (last.repCount > 0) {
+                    text.append(String.format(Locale.US, ", %d reps", last.repCount));
+                }
+            }
+            text.append(String.format(Locale.US, "\n%d words spoken", stats.wordsSpoken));
+        }
+
+        historyText.setText(text.toString());
+        historyText.setVisibility(View.VISIBLE);
     }
 
     private void setupBackPressHandler() {
@@ -132,7 +144,6 @@ public class MainMenuActivity extends AppCompatActivity implements RestAuthManag
     }
 
     private void performLogout() {
-        stopPeriodicTokenRefresh();
         authManager.logout();
         Toast.makeText(this, "Logged out successfully", Toast.LENGTH_SHORT).show();
 
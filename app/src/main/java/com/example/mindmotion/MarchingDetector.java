@@ -25,8 +25,11 @@ public class MarchingDetector {
     private static final int LEFT_ANKLE = 27;
     private static final int RIGHT_ANKLE = 28;
 
+    private final Config config;
+
     // State tracking
     private List<Long> marchTimes;
+    private final StringBuilder marchSides = new StringBuilder();
     private long lastMarchTime;
     private long detectionStartTime;
     private boolean isDetectionActive;
@@ -60,7 +63,21 @@ public class MarchingDetector {
         void onMarchDebugUpdate(String poseStatus, String leftKneeStatus, String rightKneeStatus, String marchStatus);
     }
 
+    // Tunable parameters, defaulting to the hand-picked values above
+    public static class Config {
+        public double kneeLiftThreshold = KNEE_LIFT_THRESHOLD;
+        public int requiredMarchCount = REQUIRED_MARCH_COUNT;
+        public long marchCooldownMs = MARCH_COOLDOWN_MS;
+        public long detectionTimeoutMs = DETECTION_TIMEOUT_MS;
+        public int minFramesLifted = MIN_FRAMES_LIFTED;
+    }
+
     public MarchingDetector() {
+        this(new Config());
+    }
+
+    public MarchingDetector(Config config) {
+        this.config = config;
         marchTimes = new ArrayList<>();
         reset();
     }
@@ -74,13 +91,17 @@ public class MarchingDetector {
     }
 
     public void startDetection() {
+        startDetection(System.currentTimeMillis());
+    }
+
+    public void startDetection(long startTimeMs) {
         Log.d(TAG, "Starting marching detection...");
         reset();
         isDetectionActive = true;
-        detectionStartTime = System.currentTimeMillis();
+        detectionStartTime = startTimeMs;
 
         if (listener != null) {
-            listener.onMarchingProgress(0, REQUIRED_MARCH_COUNT);
+            listener.onMarchingProgress(0, config.requiredMarchCount);
         }
 
         updateDebugInfo();
@@ -94,6 +115,7 @@ public class MarchingDetector {
 
     public void reset() {
         marchTimes.clear();
+        marchSides.setLength(0);
         lastMarchTime = 0;
         detectionStartTime = 0;
         isDetectionActive = false;
@@ -112,13 +134,29 @@ public class MarchingDetector {
     }
 
     public void analyzePoseResult(PoseLandmarkerResult result) {
-        if (!isDetectionActive || result == null || result.landmarks().isEmpty()) {
+        List<NormalizedLandmark> landmarks =
+                result == null || result.landmarks().isEmpty() ? null : result.landmarks().get(0);
+        analyzeLandmarks(landmarks, System.currentTimeMillis());
+    }
+
+    // Frame-level entry point, also used to replay recorded traces with their own timestamps
+    public void analyzeLandmarks(List<NormalizedLandmark> landmarks, long frameTimeMs) {
+        boolean traced = TraceSections.begin("MarchingDetector.analyze");
+        try {
+            analyzeFrame(landmarks, frameTimeMs);
+        } finally {
+            TraceSections.end(traced);
+        }
+    }
+
+    private void analyzeFrame(List<NormalizedLandmark> landmarks, long frameTimeMs) {
+        if (!isDetectionActive || landmarks == null) {
             updateDebugInfo("No pose detected", "N/A", "N/A", "Inactive");
             return;
         }
 
         // Check if detection has timed out
-        if (System.currentTimeMillis() - detectionStartTime > DETECTION_TIMEOUT_MS) {
+        if (frameTimeMs - detectionStartTime > config.detectionTimeoutMs) {
             Log.d(TAG, "Marching detection timed out");
             if (listener != null) {
                 listener.onDetectionTimeout();
@@ -127,9 +165,6 @@ public class MarchingDetector {
             return;
         }
 
-        // Get the first person's landmarks
-        List<NormalizedLandmark> landmarks = result.landmarks().get(0);
-
         if (landmarks.size() <= Math.max(RIGHT_ANKLE, LEFT_ANKLE)) {
             updateDebugInfo("Insufficient landmarks", "N/A", "N/A", "Active - Show full body");
             return;
@@ -173,8 +208,8 @@ public class MarchingDetector {
         lastRightKneeHeight = rightKneeChange;
 
         // Check if knees are lifted
-        boolean leftKneeLifted = leftKneeChange > KNEE_LIFT_THRESHOLD;
-        boolean rightKneeLifted = rightKneeChange > KNEE_LIFT_THRESHOLD;
+        boolean leftKneeLifted = leftKneeChange > config.kneeLiftThreshold;
+        boolean rightKneeLifted = rightKneeChange > config.kneeLiftThreshold;
 
         // Track lifted frames
         if (leftKneeLifted) {
@@ -190,46 +225,47 @@ public class MarchingDetector {
         }
 
         // Determine which leg is currently lifted
-        if (leftKneeLifted && leftKneeFramesLifted >= MIN_FRAMES_LIFTED) {
+        if (leftKneeLifted && leftKneeFramesLifted >= config.minFramesLifted) {
             currentLiftedLeg = "left";
-        } else if (rightKneeLifted && rightKneeFramesLifted >= MIN_FRAMES_LIFTED) {
+        } else if (rightKneeLifted && rightKneeFramesLifted >= config.minFramesLifted) {
             currentLiftedLeg = "right";
         } else {
             currentLiftedLeg = "none";
         }
 
-        long currentTime = System.currentTimeMillis();
-
         // Detect marching steps - left leg lifted
-        if (leftKneeLifted && leftKneeFramesLifted >= MIN_FRAMES_LIFTED && !leftKneeWasLifted) {
+        if (leftKneeLifted && leftKneeFramesLifted >= config.minFramesLifted && !leftKneeWasLifted) {
             leftKneeWasLifted = true;
 
-            if (currentTime - lastMarchTime > MARCH_COOLDOWN_MS) {
-                registerMarchStep(currentTime, "left");
+            if (frameTimeMs - lastMarchTime > config.marchCooldownMs) {
+                registerMarchStep(frameTimeMs, "left");
             }
         } else if (!leftKneeLifted) {
             leftKneeWasLifted = false;
         }
 
         // Detect marching steps - right leg lifted
-        if (rightKneeLifted && rightKneeFramesLifted >= MIN_FRAMES_LIFTED && !rightKneeWasLifted) {
+        if (rightKneeLifted && rightKneeFramesLifted >= config.minFramesLifted && !rightKneeWasLifted) {
             rightKneeWasLifted = true;
 
-            if (currentTime - lastMarchTime > MARCH_COOLDOWN_MS) {
-                registerMarchStep(currentTime, "right");
+            if (frameTimeMs - lastMarchTime > config.marchCooldownMs) {
+                registerMarchStep(frameTimeMs, "right");
             }
         } else if (!rightKneeLifted) {
             rightKneeWasLifted = false;
         }
 
+        // Skip formatting debug strings nobody will read (e.g. during trace replay)
+        if (debugListener == null) return;
+
         // Update debug information
         String poseStatus = bodyVisible ? "Full body visible" : "Body not visible";
         String leftKneeStr = String.format("%.3f (thresh: %.3f) %s [%d frames]",
-                leftKneeChange, KNEE_LIFT_THRESHOLD, leftKneeLifted ? "↑" : "↓", leftKneeFramesLifted);
+                leftKneeChange, config.kneeLiftThreshold, leftKneeLifted ? "↑" : "↓", leftKneeFramesLifted);
         String rightKneeStr = String.format("%.3f (thresh: %.3f) %s [%d frames]",
-                rightKneeChange, KNEE_LIFT_THRESHOLD, rightKneeLifted ? "↑" : "↓", rightKneeFramesLifted);
+                rightKneeChange, config.kneeLiftThreshold, rightKneeLifted ? "↑" : "↓", rightKneeFramesLifted);
         String marchStatus = String.format("Active - %s leg lifted (%d/%d steps)",
-                currentLiftedLeg, marchTimes.size(), REQUIRED_MARCH_COUNT);
+                currentLiftedLeg, marchTimes.size(), config.requiredMarchCount);
 
         updateDebugInfo(poseStatus, leftKneeStr, rightKneeStr, marchStatus);
     }
@@ -240,18 +276,19 @@ public class MarchingDetector {
 
     private void registerMarchStep(long currentTime, String leg) {
         marchTimes.add(currentTime);
+        marchSides.append(RepSummary.sideLetter(leg));
         lastMarchTime = currentTime;
         lastLiftedLeg = leg;
 
-        Log.d(TAG, "March step detected! (" + leg + " leg) Count: " + marchTimes.size() + "/" + REQUIRED_MARCH_COUNT);
+        Log.d(TAG, "March step detected! (" + leg + " leg) Count: " + marchTimes.size() + "/" + config.requiredMarchCount);
 
         if (listener != null) {
             listener.onMarchStepDetected(marchTimes.size());
-            listener.onMarchingProgress(marchTimes.size(), REQUIRED_MARCH_COUNT);
+            listener.onMarchingProgress(marchTimes.size(), config.requiredMarchCount);
         }
 
         // Check if we've reached the required number of steps
-        if (marchTimes.size() >= REQUIRED_MARCH_COUNT) {
+        if (marchTimes.size() >= config.requiredMarchCount) {
             Log.d(TAG, "Marching sequence completed!");
             if (listener != null) {
                 listener.onMarchingCompleted();
@@ -284,7 +321,12 @@ public class MarchingDetector {
     }
 
     public int getRequiredStepCount() {
-        return REQUIRED_MARCH_COUNT;
+        return config.requiredMarchCount;
+    }
+
+    // Rep times so far, for the completion record
+    public RepSummary getRepSummary() {
+        return new RepSummary(detectionStartTime, marchTimes).withSides(marchSides.toString());
     }
 
     public long getRemainingTime() {
@@ -292,6 +334,6 @@ public class MarchingDetector {
             return 0;
         }
         long elapsed = System.currentTimeMillis() - detectionStartTime;
-        return Math.max(0, DETECTION_TIMEOUT_MS - elapsed);
+        return Math.max(0, config.detectionTimeoutMs - elapsed);
     }
 }
\ No newline at end of file
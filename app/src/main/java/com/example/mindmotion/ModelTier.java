@@ -0,0 +1,25 @@
+package com.example.mindmotion;
+
+// MediaPipe pose landmarker model variants, ordered from cheapest to most accurate
+public enum ModelTier {
+    LITE("pose_landmarker_lite.task"),
+    FULL("pose_landmarker_full.task"),
+    HEAVY("pose_landmarker_heavy.task");
+
+    private final String assetPath;
+
+    ModelTier(String assetPath) {
+        this.assetPath = assetPath;
+    }
+
+    public String getAssetPath() {
+        return assetPath;
+    }
+
+    public static ModelTier fromName(String name) {
+        for (ModelTier tier : values()) {
+            if (tier.name().equalsIgnoreCase(name)) return tier;
+        }
+        return HEAVY;
+    }
+}
@@ -0,0 +1,317 @@
+package com.example.mindmotion;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.LongSupplier;
+
+// Append-only log of Firestore mutations that have not been confirmed by the server yet. Every
+// mutation is written here before it is sent and marked done once a commit containing it succeeds,
+// so results recorded while offline, or right before the process dies, are sent on the next replay.
+//
+// One line per record, tab separated:
+//   A <key> <createdMs> <owner> <kind> <subject> <payload>   appended mutation
+//   D <key>                                               done (committed or given up on)
+// The in-memory queue is updated under the lock; the file is written on a single disk thread, in
+// the order the records were made, so append() never waits on I/O. Lines go to the file without
+// user-space buffering, so a record survives process death once the disk thread has written it. A
+// torn last line from a crash mid-write is skipped on load. The file is rewritten with only the
+// pending records on load and once enough done markers have piled up.
+public class PendingWriteQueue {
+    private static final String TAG = "PendingWriteQueue";
+    private static final String FILE_NAME = "pending_writes.log";
+    static final int MAX_PENDING = 2000;
+    private static final int COMPACT_AFTER_DONE = 200;
+    private static final long RATE_WINDOW_MS = 60000;
+    private static final int RATE_HISTORY = 256;
+
+    private static PendingWriteQueue instance;
+
+    public static class Entry {
+        // Unique per mutation; names the record in the log. It is not sent: replays are made safe by
+        // the writes themselves (currentDocument preconditions, voice IDs fixed inside the payload).
+        public final String key;
+        public final long createdMs;
+        // User whose token the mutation must be sent with
+        public final String owner;
+        // What the mutation is, e.g. "motion", and what it is about, e.g. the session ID
+        public final String kind;
+        public final String subject;
+        // Opaque to the queue: a JSON array of Firestore Write objects
+        public final String payload;
+
+        Entry(String key, long createdMs, String owner, String kind, String subject, String payload) {
+            this.key = key;
+            this.createdMs = createdMs;
+            this.owner = owner;
+            this.kind = kind;
+            this.subject = subject;
+            this.payload = payload;
+        }
+    }
+
+    private final File file;
+    private final LongSupplier clock;
+    private final Executor disk;
+    private final Map<String, Entry> pending = new LinkedHashMap<>();
+    // Only touched by tasks on disk
+    private OutputStream out;
+    private int doneSinceCompaction = 0;
+
+    private long totalFlushed = 0;
+    private long totalDropped = 0;
+    private final long[] flushTimes = new long[RATE_HISTORY];
+    private int flushCount = 0;
+
+    // The log is shared by every FirebaseRestManager in the process, so activity restarts never have
+    // two writers appending to the same file
+    public static synchronized PendingWriteQueue getInstance(Context context) {
+        if (instance == null) {
+            instance = new PendingWriteQueue(new File(context.getApplicationContext().getFilesDir(), FILE_NAME),
+                    System::currentTimeMillis,
+                    Executors.newSingleThreadExecutor(work -> new Thread(work, "PendingWriteQueue-disk")));
+        }
+        return instance;
+    }
+
+    // Writes the file on the calling thread
+    public PendingWriteQueue(File file, LongSupplier clock) {
+        this(file, clock, Runnable::run);
+    }
+
+    // disk must run tasks one at a time, in submission order
+    public PendingWriteQueue(File file, LongSupplier clock, Executor disk) {
+        this.file = file;
+        this.clock = clock;
+        this.disk = disk;
+        load();
+    }
+
+    public synchronized Entry append(String owner, String kind, String subject, String payload) {
+        Entry entry = new Entry(UUID.randomUUID().toString(), clock.getAsLong(), owner, kind, subject, payload);
+        writeLine("A\t" + entry.key + "\t" + entry.createdMs + "\t" + escape(owner) + "\t" + escape(kind)
+                + "\t" + escape(subject) + "\t" + escape(payload));
+        pending.put(entry.key, entry);
+
+        if (pending.size() > MAX_PENDING) {
+            // Oldest first: a result that has waited this long is the least likely to still matter
+            Entry oldest = pending.values().iterator().next();
+            Log.w(TAG, "Queue full, dropping " + oldest.kind + " " + oldest.subject);
+            markDone(oldest.key);
+            totalDropped++;
+        }
+        return entry;
+    }
+
+    // Oldest pending entries for one user, in the order they were appended
+    public synchronized List<Entry> peek(String owner, int max) {
+        List<Entry> batch = new ArrayList<>();
+        for (Entry entry : pending.values()) {
+            if (batch.size() >= max) break;
+            if (entry.owner.equals(owner)) batch.add(entry);
+        }
+        return batch;
+    }
+
+    // The server has the entries; stop sending them
+    public synchronized void acknowledge(Collection<Entry> entries) {
+        long now = clock.getAsLong();
+        for (Entry entry : entries) {
+            if (!pending.containsKey(entry.key)) continue;
+            markDone(entry.key);
+            totalFlushed++;
+            flushTimes[flushCount % RATE_HISTORY] = now;
+            flushCount++;
+        }
+        if (doneSinceCompaction >= COMPACT_AFTER_DONE) compact();
+    }
+
+    // The server rejected the entry for good; counted as dropped rather than flushed
+    public synchronized void discard(Entry entry) {
+        if (!pending.containsKey(entry.key)) return;
+        markDone(entry.key);
+        totalDropped++;
+        if (doneSinceCompaction >= COMPACT_AFTER_DONE) compact();
+    }
+
+    public synchronized int getDepth() {
+        return pending.size();
+    }
+
+    public synchronized int getDepth(String owner) {
+        int depth = 0;
+        for (Entry entry : pending.values()) {
+            if (entry.owner.equals(owner)) depth++;
+        }
+        return depth;
+    }
+
+    // Age of the oldest pending entry, 0 when the queue is empty
+    public synchronized long getOldestAgeMs() {
+        if (pending.isEmpty()) return 0;
+        return Math.max(0, clock.getAsLong() - pending.values().iterator().next().createdMs);
+    }
+
+    // Entries confirmed by the server over the last minute
+    public synchronized double getFlushedPerMinute() {
+        long now = clock.getAsLong();
+        int recent = 0;
+        int available = Math.min(flushCount, RATE_HISTORY);
+        for (int i = 0; i < available; i++) {
+            if (now - flushTimes[i] <= RATE_WINDOW_MS) recent++;
+        }
+        return recent * 60000.0 / RATE_WINDOW_MS;
+    }
+
+    public synchronized long getTotalFlushed() {
+        return totalFlushed;
+    }
+
+    public synchronized long getTotalDropped() {
+        return totalDropped;
+    }
+
+    private void markDone(String key) {
+        pending.remove(key);
+        writeLine("D\t" + key);
+        doneSinceCompaction++;
+    }
+
+    private void load() {
+        if (!file.exists()) return;
+
+        int corrupt = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", -1);
+                if (parts.length == 7 && "A".equals(parts[0])) {
+                    try {
+                        pending.put(parts[1], new Entry(parts[1], Long.parseLong(parts[2]), unescape(parts[3]),
+                                unescape(parts[4]), unescape(parts[5]), unescape(parts[6])));
+                    } catch (NumberFormatException e) {
+                        corrupt++;
+                    }
+                } else if (parts.length == 2 && "D".equals(parts[0])) {
+                    pending.remove(parts[1]);
+                    doneSinceCompaction++;
+                } else if (!line.isEmpty()) {
+                    corrupt++;
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Could not read pending writes", e);
+        }
+
+        if (corrupt > 0) Log.w(TAG, "Skipped " + corrupt + " unreadable records");
+        // Always rewrite, so new appends never land on the end of a torn line
+        compact();
+    }
+
+    // Snapshots the pending entries under the lock; the disk thread rewrites the log with them and
+    // swaps it in with a rename. Lines queued after the snapshot land on the new file.
+    private void compact() {
+        StringBuilder lines = new StringBuilder();
+        for (Entry entry : pending.values()) {
+            lines.append("A\t").append(entry.key).append('\t').append(entry.createdMs).append('\t')
+                    .append(escape(entry.owner)).append('\t').append(escape(entry.kind)).append('\t')
+                    .append(escape(entry.subject)).append('\t').append(escape(entry.payload)).append('\n');
+        }
+        doneSinceCompaction = 0;
+        byte[] content = lines.toString().getBytes(StandardCharsets.UTF_8);
+        disk.execute(() -> rewrite(content));
+    }
+
+    private void rewrite(byte[] content) {
+        File temp = new File(file.getPath() + ".tmp");
+        try (OutputStream tempOut = new FileOutputStream(temp)) {
+            tempOut.write(content);
+        } catch (IOException e) {
+            // The old log still holds every pending record, just with extra done markers
+            Log.e(TAG, "Could not compact pending writes", e);
+            temp.delete();
+            return;
+        }
+
+        closeOutput();
+        if (!temp.renameTo(file)) {
+            Log.e(TAG, "Could not replace pending writes log");
+            temp.delete();
+        }
+    }
+
+    // Called with the lock held, so lines reach disk in the order the records were made
+    private void writeLine(String line) {
+        byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+        disk.execute(() -> appendToFile(bytes));
+    }
+
+    private void appendToFile(byte[] bytes) {
+        try {
+            if (out == null) out = new FileOutputStream(file, true);
+            out.write(bytes);
+        } catch (IOException e) {
+            // Keep going in memory; the entry is only lost if the process dies before it is sent
+            Log.e(TAG, "Could not append to pending writes log", e);
+            closeOutput();
+        }
+    }
+
+    private void closeOutput() {
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException ignored) {
+            // nothing left to flush
+        }
+        out = null;
+    }
+
+    static String escape(String value) {
+        if (value == null) return "";
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\') sb.append("\\\\");
+            else if (c == '\t') sb.append("\\t");
+            else if (c == '\n') sb.append("\\n");
+            else if (c == '\r') sb.append("\\r");
+            else sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    static String unescape(String value) {
+        if (value.indexOf('\\') < 0) return value;
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                if (next == 't') sb.append('\t');
+                else if (next == 'n') sb.append('\n');
+                else if (next == 'r') sb.append('\r');
+                else sb.append(next);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.mindmotion;
+
+import android.os.Debug;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.View;
+import android.widget.TextView;
+
+import java.util.Locale;
+import java.util.Map;
+
+// Text overlay rendered from PipelineMetrics snapshots. Refreshes at most every REFRESH_INTERVAL_MS
+// and only while visible, so the HUD adds a couple of main-thread updates per second at most.
+public class PerformanceHud {
+    private static final long REFRESH_INTERVAL_MS = 500;
+    private static final String ALLOCATED_BYTES_STAT = "art.gc.bytes-allocated";
+
+    private final TextView hudView;
+    private final PipelineMetrics pipelineMetrics;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final StringBuilder text = new StringBuilder(512);
+
+    private FirebaseRestManager networkSource;
+    private TraceUploader traceUploader;
+    private ModelTier modelTier = ModelTier.HEAVY;
+    private boolean isShowing = false;
+
+    private long lastAllocatedBytes = -1;
+    private long lastSampleMs = 0;
+    private double allocationRateKbPerSec = 0;
+
+    private final Runnable refreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!isShowing) return;
+            render();
+            mainHandler.postDelayed(this, REFRESH_INTERVAL_MS);
+        }
+    };
+
+    public PerformanceHud(TextView hudView, PipelineMetrics pipelineMetrics) {
+        this.hudView = hudView;
+        this.pipelineMetrics = pipelineMetrics;
+    }
+
+    public void setNetworkSource(FirebaseRestManager networkSource) {
+        this.networkSource = networkSource;
+    }
+
+    public void setTraceUploader(TraceUploader traceUploader) {
+        this.traceUploader = traceUploader;
+    }
+
+    public void setModelTier(ModelTier modelTier) {
+        this.modelTier = modelTier;
+    }
+
+    public boolean isShowing() {
+        return isShowing;
+    }
+
+    public void show() {
+        if (isShowing) return;
+        isShowing = true;
+        lastAllocatedBytes = -1;
+        hudView.setVisibility(View.VISIBLE);
+        mainHandler.post(refreshRunnable);
+    }
+
+    public void hide() {
+        isShowing = false;
+        mainHandler.removeCallbacks(refreshRunnable);
+        hudView.setVisibility(View.GONE);
+    }
+
+    // Stops refreshing without forgetting whether the HUD was shown
+    public void pause() {
+        mainHandler.removeCallbacks(refreshRunnable);
+    }
+
+    public void resume() {
+        if (isShowing) {
+            mainHandler.removeCallbacks(refreshRunnable);
+            mainHandler.post(refreshRunnable);
+        }
+    }
+
+    private void render() {
+        PipelineMetrics.Snapshot snapshot = pipelineMetrics.snapshot();
+        sampleAllocationRate();
+
+        text.setLength(0);
+        text.append(String.format(Locale.US, "%s model  %.1f fps in / %.1f fps out\n",
+                modelTier.name(), snapshot.getAnalyzerFps(), snapshot.getResultFps()));
+
+        for (PipelineMetrics.Stage stage : PipelineMetrics.Stage.values()) {
+            LatencyHistogram.Snapshot stageStats = snapshot.getStage(stage);
+            text.append(String.format(Locale.US, "%-9s p50 %6.1f  p95 %6.1f ms\n", stage.getLabel(),
+                    stageStats.getValueAtPercentile(50) / 1000.0, stageStats.getValueAtPercentile(95) / 1000.0));
+        }
+
+        text.append("drops");
+        if (snapshot.getTotalDrops() == 0) {
+            text.append(" none");
+        } else {
+            for (PipelineMetrics.DropReason reason : PipelineMetrics.DropReason.values()) {
+                long count = snapshot.getDrops(reason);
+                if (count > 0) text.append(' ').append(reason.name().toLowerCase(Locale.US)).append('=').append(count);
+            }
+        }
+        text.append('\n');
+
+        text.append(String.format(Locale.US, "alloc %.0f KB/s", allocationRateKbPerSec));
+        if (networkSource != null) {
+            LatencyHistogram.Snapshot poll = networkSource.getPollLatencySnapshot();
+            text.append(String.format(Locale.US, "  poll p50 %d / p95 %d ms\n",
+                    poll.getValueAtPercentile(50), poll.getValueAtPercentile(95)));
+            text.append(String.format(Locale.US, "writes queued %d  oldest %.0f s  %.1f flushed/min\n",
+                    networkSource.getPendingWriteCount(), networkSource.getOldestPendingWriteAgeMs() / 1000.0,
+                    networkSource.getWritesFlushedPerMinute()));
+            text.append(String.format(Locale.US, "poll every %.1f s  %.1f req/min\n",
+                    networkSource.getCurrentPollIntervalMs() / 1000.0, networkSource.getPollRequestsPerMinute()));
+            IoScheduler io = IoScheduler.getInstance();
+            text.append(String.format(Locale.US, "io queued %d/%d/%d/%d  active %d  wait p95 %d ms  rejected %d",
+                    io.getQueuedCount(IoScheduler.Priority.SESSION_DISCOVERY),
+                    io.getQueuedCount(IoScheduler.Priority.RESULT_MARKING),
+                    io.getQueuedCount(IoScheduler.Priority.VOICE_DATA),
+                    io.getQueuedCount(IoScheduler.Priority.TELEMETRY),
+                    io.getActiveCount(), io.getQueueWaitSnapshot().getValueAtPercentile(95), io.getTotalRejectedCount()));
+            SessionTimeline timeline = SessionTimeline.getInstance();
+            if (timeline.getSampleCount() > 0) {
+                text.append(String.format(Locale.US, "\nwait p95 s  q %.1f  behind %.1f  start %.1f  rep1 %.1f  write %.1f  total p50 %.1f (%d)",
+                        timeline.getPercentileMs(SessionTimeline.Segment.QUEUED, 95) / 1000.0,
+                        timeline.getPercentileMs(SessionTimeline.Segment.WAITING, 95) / 1000.0,
+                        timeline.getPercentileMs(SessionTimeline.Segment.STARTUP, 95) / 1000.0,
+                        timeline.getPercentileMs(SessionTimeline.Segment.FIRST_REP, 95) / 1000.0,
+                        timeline.getPercentileMs(SessionTimeline.Segment.WRITE, 95) / 1000.0,
+                        timeline.getPercentileMs(SessionTimeline.Segment.TOTAL, 50) / 1000.0,
+                        timeline.getSampleCount()));
+            }
+            if (traceUploader != null && traceUploader.getUploadedCount() + traceUploader.getPendingCount() > 0) {
+                text.append(String.format(Locale.US, "\ntraces pending %d  sent %d  dropped %d  %.1f KB/min of motion",
+                        traceUploader.getPendingCount(), traceUploader.getUploadedCount(),
+                        traceUploader.getDroppedCount(), traceUploader.getKilobytesPerMinuteOfMotion()));
+            }
+            HttpTransport transport = HttpTransport.getInstance();
+            for (Map.Entry<String, LatencyHistogram.Snapshot> entry : transport.getLatencySnapshots().entrySet()) {
+                text.append(String.format(Locale.US, "\n%-18s p50 %d / p99 %d ms", entry.getKey(),
+                        entry.getValue().getValueAtPercentile(50), entry.getValue().getValueAtPercentile(99)));
+                CircuitBreaker breaker = transport.getBreaker(entry.getKey());
+                if (breaker.getState() != CircuitBreaker.State.CLOSED) {
+                    text.append(' ').append(breaker.getState().name().toLowerCase(Locale.US));
+                }
+                if (breaker.getTripCount() > 0 || breaker.getRetriesDeniedCount() > 0) {
+                    text.append(String.format(Locale.US, "  trips %d  short %d  no-retry %d", breaker.getTripCount(),
+                            breaker.getShortCircuitedCount(), breaker.getRetriesDeniedCount()));
+                }
+            }
+        }
+
+        hudView.setText(text);
+    }
+
+    // ART keeps a cumulative allocated-bytes counter; fall back to used-heap growth when it is missing
+    private void sampleAllocationRate() {
+        long nowMs = SystemClock.elapsedRealtime();
+        long allocated = readAllocatedBytes();
+
+        if (lastAllocatedBytes >= 0 && nowMs > lastSampleMs) {
+            long delta = Math.max(0, allocated - lastAllocatedBytes);
+            allocationRateKbPerSec = delta / 1024.0 * 1000.0 / (nowMs - lastSampleMs);
+        }
+        lastAllocatedBytes = allocated;
+        lastSampleMs = nowMs;
+    }
+
+    private static long readAllocatedBytes() {
+        String stat = Debug.getRuntimeStat(ALLOCATED_BYTES_STAT);
+        if (stat != null) {
+            try {
+                return Long.parseLong(stat);
+            } catch (NumberFormatException ignored) {
+                // fall through
+            }
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
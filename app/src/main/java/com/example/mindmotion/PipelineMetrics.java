@@ -0,0 +1,256 @@
+package com.example.mindmotion;
+
+import android.os.SystemClock;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Per-stage latency and frame-rate accounting for the camera -> MediaPipe -> detector -> UI pipeline.
+// Every hook is a couple of clock reads and atomic adds so it can stay on in release builds.
+public class PipelineMetrics {
+    private static final int MAX_IN_FLIGHT = 16;
+    private static final double FPS_SMOOTHING = 0.1;
+    private static final long MAX_CAPTURE_AGE_NS = 10_000_000_000L;
+
+    public enum Stage {
+        CAPTURE_TO_ANALYZE("capture"),
+        CONVERT("convert"),
+        INFERENCE("inference"),
+        RESULT_TO_DETECTOR("detector"),
+        DETECTOR_TO_UI("ui");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    public enum DropReason {
+        CAMERA_BACKPRESSURE,   // sensor frames ImageAnalysis discarded while the analyzer was busy
+        NO_LANDMARKER,         // MediaPipe not ready yet
+        ANALYZER_ERROR,        // toBitmap / detectAsync threw
+        INFERENCE_SKIPPED,     // submitted to detectAsync but MediaPipe never produced a result
+        INFERENCE_ERROR        // error listener fired
+    }
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+    private final AtomicLongArray drops = new AtomicLongArray(DropReason.values().length);
+
+    // detectAsync timestamps waiting for a result, guarded by this; camera thread adds, MediaPipe thread removes
+    private final long[] inFlightTimestamps = new long[MAX_IN_FLIGHT];
+    private final long[] inFlightSubmitNanos = new long[MAX_IN_FLIGHT];
+    private int inFlightCount = 0;
+
+    private volatile long lastSensorTimestampNs = 0;
+    private volatile double sensorIntervalNs = 0;
+    private volatile long lastAnalyzedNanos = 0;
+    private volatile double analyzeIntervalNs = 0;
+    private volatile long lastResultNanos = 0;
+    private volatile double resultIntervalNs = 0;
+    private volatile long windowStartMs = SystemClock.elapsedRealtime();
+
+    public PipelineMetrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public void recordStage(Stage stage, long startNanos) {
+        recordStageMicros(stage, (System.nanoTime() - startNanos) / 1000);
+    }
+
+    public void recordStageMicros(Stage stage, long micros) {
+        histograms[stage.ordinal()].record(micros);
+    }
+
+    public void recordDrop(DropReason reason) {
+        drops.incrementAndGet(reason.ordinal());
+    }
+
+    // Called at the top of the analyzer with ImageInfo.getTimestamp(), which CameraX reports on the
+    // elapsedRealtimeNanos timebase. Gaps much larger than the running sensor interval mean
+    // KEEP_ONLY_LATEST threw frames away while we were busy.
+    public void onFrameArrived(long sensorTimestampNs) {
+        long nowNanos = System.nanoTime();
+        long age = SystemClock.elapsedRealtimeNanos() - sensorTimestampNs;
+        if (age >= 0 && age < MAX_CAPTURE_AGE_NS) {
+            recordStageMicros(Stage.CAPTURE_TO_ANALYZE, age / 1000);
+        }
+
+        long previousSensor = lastSensorTimestampNs;
+        lastSensorTimestampNs = sensorTimestampNs;
+        if (previousSensor > 0 && sensorTimestampNs > previousSensor) {
+            long gap = sensorTimestampNs - previousSensor;
+            double interval = sensorIntervalNs;
+            if (interval > 0 && gap > interval * 1.5) {
+                long skipped = Math.round(gap / interval) - 1;
+                if (skipped > 0) drops.addAndGet(DropReason.CAMERA_BACKPRESSURE.ordinal(), skipped);
+                // A long gap is mostly skipped frames; only nudge the interval estimate
+                sensorIntervalNs = interval + FPS_SMOOTHING * (gap / (double) (skipped + 1) - interval);
+            } else {
+                sensorIntervalNs = interval == 0 ? gap : interval + FPS_SMOOTHING * (gap - interval);
+            }
+        }
+
+        long previous = lastAnalyzedNanos;
+        lastAnalyzedNanos = nowNanos;
+        if (previous > 0) analyzeIntervalNs = smooth(analyzeIntervalNs, nowNanos - previous);
+    }
+
+    public synchronized void onInferenceSubmitted(long frameTimestampMs, long submitNanos) {
+        if (inFlightCount == MAX_IN_FLIGHT) {
+            // Oldest entry never came back
+            removeInFlight(0);
+            recordDrop(DropReason.INFERENCE_SKIPPED);
+        }
+        inFlightTimestamps[inFlightCount] = frameTimestampMs;
+        inFlightSubmitNanos[inFlightCount] = submitNanos;
+        inFlightCount++;
+    }
+
+    // MediaPipe LIVE_STREAM silently skips frames when it falls behind, so anything submitted before
+    // the frame that just came back is counted as a drop.
+    public void onInferenceResult(long frameTimestampMs) {
+        long nowNanos = System.nanoTime();
+        long submitNanos = -1;
+
+        synchronized (this) {
+            int i = 0;
+            while (i < inFlightCount) {
+                long ts = inFlightTimestamps[i];
+                if (ts == frameTimestampMs) {
+                    submitNanos = inFlightSubmitNanos[i];
+                    removeInFlight(i);
+                } else if (ts < frameTimestampMs) {
+                    removeInFlight(i);
+                    recordDrop(DropReason.INFERENCE_SKIPPED);
+                } else {
+                    i++;
+                }
+            }
+        }
+
+        if (submitNanos >= 0) recordStageMicros(Stage.INFERENCE, (nowNanos - submitNanos) / 1000);
+
+        long previous = lastResultNanos;
+        lastResultNanos = nowNanos;
+        if (previous > 0) resultIntervalNs = smooth(resultIntervalNs, nowNanos - previous);
+    }
+
+    public synchronized void onInferenceError() {
+        if (inFlightCount > 0) removeInFlight(0);
+        recordDrop(DropReason.INFERENCE_ERROR);
+    }
+
+    private void removeInFlight(int index) {
+        int tail = inFlightCount - index - 1;
+        if (tail > 0) {
+            System.arraycopy(inFlightTimestamps, index + 1, inFlightTimestamps, index, tail);
+            System.arraycopy(inFlightSubmitNanos, index + 1, inFlightSubmitNanos, index, tail);
+        }
+        inFlightCount--;
+    }
+
+    private static double smooth(double current, long sample) {
+        return current == 0 ? sample : current + FPS_SMOOTHING * (sample - current);
+    }
+
+    // Wraps a UI update so the time it waits on the main looper lands in DETECTOR_TO_UI
+    public Runnable timeUiUpdate(Runnable update) {
+        long postedNanos = System.nanoTime();
+        return () -> {
+            recordStage(Stage.DETECTOR_TO_UI, postedNanos);
+            update.run();
+        };
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) histogram.reset();
+        for (int i = 0; i < drops.length(); i++) drops.set(i, 0);
+        synchronized (this) {
+            inFlightCount = 0;
+        }
+        windowStartMs = SystemClock.elapsedRealtime();
+    }
+
+    public Snapshot snapshot() {
+        LatencyHistogram.Snapshot[] stages = new LatencyHistogram.Snapshot[histograms.length];
+        for (int i = 0; i < histograms.length; i++) {
+            stages[i] = histograms[i].snapshot();
+        }
+        long[] dropCounts = new long[drops.length()];
+        for (int i = 0; i < dropCounts.length; i++) {
+            dropCounts[i] = drops.get(i);
+        }
+        return new Snapshot(stages, dropCounts, toFps(analyzeIntervalNs, lastAnalyzedNanos),
+                toFps(resultIntervalNs, lastResultNanos), SystemClock.elapsedRealtime() - windowStartMs);
+    }
+
+    private static double toFps(double intervalNs, long lastNanos) {
+        // Stale once nothing has arrived for a second
+        if (intervalNs <= 0 || System.nanoTime() - lastNanos > 1_000_000_000L) return 0;
+        return 1_000_000_000.0 / intervalNs;
+    }
+
+    public static class Snapshot {
+        private final LatencyHistogram.Snapshot[] stages;
+        private final long[] drops;
+        private final double analyzerFps;
+        private final double resultFps;
+        private final long windowMs;
+
+        Snapshot(LatencyHistogram.Snapshot[] stages, long[] drops, double analyzerFps, double resultFps, long windowMs) {
+            this.stages = stages;
+            this.drops = drops;
+            this.analyzerFps = analyzerFps;
+            this.resultFps = resultFps;
+            this.windowMs = windowMs;
+        }
+
+        public LatencyHistogram.Snapshot getStage(Stage stage) {
+            return stages[stage.ordinal()];
+        }
+
+        public long getDrops(DropReason reason) {
+            return drops[reason.ordinal()];
+        }
+
+        public long getTotalDrops() {
+            long total = 0;
+            for (long count : drops) total += count;
+            return total;
+        }
+
+        public double getAnalyzerFps() {
+            return analyzerFps;
+        }
+
+        public double getResultFps() {
+            return resultFps;
+        }
+
+        public long getWindowMs() {
+            return windowMs;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.US, "window=%dms analyzer=%.1ffps results=%.1ffps",
+                    windowMs, analyzerFps, resultFps));
+            for (Stage stage : Stage.values()) {
+                sb.append("\n  ").append(stage.getLabel()).append(" (us): ").append(getStage(stage));
+            }
+            sb.append("\n  drops:");
+            for (DropReason reason : DropReason.values()) {
+                sb.append(' ').append(reason.name().toLowerCase(Locale.US)).append('=').append(getDrops(reason));
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.mindmotion;
+
+import android.os.SystemClock;
+
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+// Decides how long to wait before the next session poll.
+//  - right after a session completes, poll quickly: teachers tend to queue the next motion
+//  - otherwise poll at the base rate, backing off exponentially once the device has been idle a while
+//  - server and network errors back off exponentially up to MAX_ERROR_INTERVAL_MS
+//  - while a detector is running, keep polling at the base rate so the next queued session is already
+//    known when this one ends; the device is in use, so there is no idle backoff
+// Every delay gets +/- JITTER so a classroom of devices does not poll in lockstep.
+public class PollingScheduler {
+    static final long BASE_INTERVAL_MS = 3000;
+    static final long FAST_INTERVAL_MS = 1000;
+    static final long FAST_WINDOW_MS = 30000;
+    static final long IDLE_BEFORE_BACKOFF_MS = 2 * 60 * 1000;
+    static final long MAX_IDLE_INTERVAL_MS = 30000;
+    static final long MAX_ERROR_INTERVAL_MS = 60000;
+    static final long AUTH_RETRY_INTERVAL_MS = 5000;
+    static final double IDLE_BACKOFF_FACTOR = 1.5;
+    static final double JITTER = 0.2;
+    private static final long RATE_WINDOW_MS = 60000;
+    private static final int RATE_HISTORY = 256;
+
+    public enum Outcome {
+        SESSION_FOUND,
+        EMPTY,
+        SERVER_ERROR,
+        NETWORK_ERROR,
+        AUTH_RETRY
+    }
+
+    private final LongSupplier clock;
+    private final Random random;
+
+    private long lastActivityMs;
+    private long lastCompletionMs = -1;
+    private long idleInterval = BASE_INTERVAL_MS;
+    private int errorStreak = 0;
+    private boolean detectorActive = false;
+    private volatile long currentIntervalMs = BASE_INTERVAL_MS;
+
+    // Ring buffer of recent request times for the per-device request rate
+    private final long[] requestTimes = new long[RATE_HISTORY];
+    private int requestCount = 0;
+
+    public PollingScheduler() {
+        this(SystemClock::elapsedRealtime, new Random());
+    }
+
+    public PollingScheduler(LongSupplier clock, Random random) {
+        this.clock = clock;
+        this.random = random;
+        this.lastActivityMs = clock.getAsLong();
+    }
+
+    public synchronized void setDetectorActive(boolean active) {
+        detectorActive = active;
+        lastActivityMs = clock.getAsLong();
+        idleInterval = BASE_INTERVAL_MS;
+    }
+
+    public synchronized void onSessionCompleted() {
+        lastCompletionMs = clock.getAsLong();
+        lastActivityMs = lastCompletionMs;
+        idleInterval = BASE_INTERVAL_MS;
+    }
+
+    public synchronized void onRequestSent() {
+        requestTimes[requestCount % RATE_HISTORY] = clock.getAsLong();
+        requestCount++;
+    }
+
+    // Delay before the next poll, given how the last one went
+    public synchronized long nextDelayMs(Outcome outcome) {
+        long now = clock.getAsLong();
+        long delay;
+
+        switch (outcome) {
+            case SERVER_ERROR:
+            case NETWORK_ERROR:
+                errorStreak++;
+                delay = Math.min(MAX_ERROR_INTERVAL_MS, BASE_INTERVAL_MS << Math.min(errorStreak, 16));
+                break;
+            case AUTH_RETRY:
+                delay = AUTH_RETRY_INTERVAL_MS;
+                break;
+            case SESSION_FOUND:
+                errorStreak = 0;
+                lastActivityMs = now;
+                idleInterval = BASE_INTERVAL_MS;
+                delay = BASE_INTERVAL_MS;
+                break;
+            default:
+                errorStreak = 0;
+                delay = detectorActive ? BASE_INTERVAL_MS : idleDelay(now);
+                break;
+        }
+
+        delay = applyJitter(delay);
+        currentIntervalMs = delay;
+        return delay;
+    }
+
+    private long idleDelay(long now) {
+        if (lastCompletionMs >= 0 && now - lastCompletionMs < FAST_WINDOW_MS) return FAST_INTERVAL_MS;
+        if (now - lastActivityMs < IDLE_BEFORE_BACKOFF_MS) return BASE_INTERVAL_MS;
+
+        idleInterval = Math.min(MAX_IDLE_INTERVAL_MS, (long) (idleInterval * IDLE_BACKOFF_FACTOR));
+        return idleInterval;
+    }
+
+    private long applyJitter(long delay) {
+        double factor = 1.0 + JITTER * (2 * random.nextDouble() - 1);
+        return Math.max(1, (long) (delay * factor));
+    }
+
+    public long getCurrentIntervalMs() {
+        return currentIntervalMs;
+    }
+
+    public synchronized double getRequestsPerMinute() {
+        long now = clock.getAsLong();
+        int recent = 0;
+        int available = Math.min(requestCount, RATE_HISTORY);
+        for (int i = 0; i < available; i++) {
+            if (now - requestTimes[i] <= RATE_WINDOW_MS) recent++;
+        }
+        return recent * 60000.0 / RATE_WINDOW_MS;
+    }
+}
@@ -0,0 +1,293 @@
+package com.example.mindmotion;
+
+import com.google.mediapipe.tasks.components.containers.NormalizedLandmark;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+// Recorded pose landmarks for one motion session, labeled with the motion type, the reps actually
+// performed and the model tier / frame rate it was captured at. Frames are packed in one float array.
+public class PoseTrace {
+    public static final int LANDMARK_COUNT = 33;
+    public static final int FLOATS_PER_LANDMARK = 4; // x, y, z, visibility
+
+    private static final int MAGIC = 0x4D4D5452; // "MMTR"
+    private static final int VERSION = 1;
+    private static final int FRAME_STRIDE = LANDMARK_COUNT * FLOATS_PER_LANDMARK;
+
+    // Compressed form for uploads: values quantized to these steps per normalized unit, delta-coded
+    // against the previous frame as zigzag varints, then deflated. Steady landmarks cost a few bits.
+    private static final int COMPRESSED_MAGIC = 0x4D4D5443; // "MMTC"
+    private static final int COMPRESSED_VERSION = 1;
+    static final int XY_STEPS = 256;   // ~2.5 px across a 640 px frame; detector thresholds are 15x that
+    static final int Z_STEPS = 32;     // no detector reads depth
+    static final int VISIBILITY_STEPS = 32;
+
+    private final String motionType;
+    private int expectedReps;
+    private final ModelTier modelTier;
+    private final int frameRate;
+
+    private long[] timestamps;
+    private float[] data;
+    private int frameCount;
+
+    private volatile List<List<NormalizedLandmark>> decodedFrames;
+
+    public PoseTrace(String motionType, int expectedReps, ModelTier modelTier, int frameRate) {
+        this(motionType, expectedReps, modelTier, frameRate, 256);
+    }
+
+    public PoseTrace(String motionType, int expectedReps, ModelTier modelTier, int frameRate, int initialFrames) {
+        this.motionType = motionType;
+        this.expectedReps = expectedReps;
+        this.modelTier = modelTier;
+        this.frameRate = frameRate;
+        int capacity = Math.max(1, initialFrames);
+        this.timestamps = new long[capacity];
+        this.data = new float[capacity * FRAME_STRIDE];
+    }
+
+    public void addFrame(long timestampMs, List<NormalizedLandmark> landmarks) {
+        int offset = reserveFrame(timestampMs);
+        int count = Math.min(landmarks.size(), LANDMARK_COUNT);
+        for (int i = 0; i < count; i++) {
+            NormalizedLandmark lm = landmarks.get(i);
+            int base = offset + i * FLOATS_PER_LANDMARK;
+            data[base] = lm.x();
+            data[base + 1] = lm.y();
+            data[base + 2] = lm.z();
+            data[base + 3] = lm.visibility().isPresent() ? lm.visibility().get() : 1f;
+        }
+    }
+
+    // Appends a frame from packed x,y,z,visibility values (LANDMARK_COUNT * FLOATS_PER_LANDMARK floats)
+    public void addFrame(long timestampMs, float[] packed, int packedOffset) {
+        int offset = reserveFrame(timestampMs);
+        System.arraycopy(packed, packedOffset, data, offset, FRAME_STRIDE);
+    }
+
+    private int reserveFrame(long timestampMs) {
+        if (frameCount == timestamps.length) {
+            int capacity = timestamps.length * 2;
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            data = Arrays.copyOf(data, capacity * FRAME_STRIDE);
+        }
+        timestamps[frameCount] = timestampMs;
+        decodedFrames = null;
+        return frameCount++ * FRAME_STRIDE;
+    }
+
+    public String getMotionType() {
+        return motionType;
+    }
+
+    public int getExpectedReps() {
+        return expectedReps;
+    }
+
+    // For traces recorded live, where the reps are only known once the session is over
+    public void setExpectedReps(int expectedReps) {
+        this.expectedReps = expectedReps;
+    }
+
+    public ModelTier getModelTier() {
+        return modelTier;
+    }
+
+    public int getFrameRate() {
+        return frameRate;
+    }
+
+    public int frameCount() {
+        return frameCount;
+    }
+
+    public long timestampAt(int frame) {
+        return timestamps[frame];
+    }
+
+    public float valueAt(int frame, int landmark, int component) {
+        return data[frame * FRAME_STRIDE + landmark * FLOATS_PER_LANDMARK + component];
+    }
+
+    public long durationMs() {
+        return frameCount < 2 ? 0 : timestamps[frameCount - 1] - timestamps[0];
+    }
+
+    // Landmark lists in the shape the detectors consume; built once, then shared
+    public List<List<NormalizedLandmark>> frames() {
+        List<List<NormalizedLandmark>> frames = decodedFrames;
+        if (frames != null) return frames;
+
+        synchronized (this) {
+            if (decodedFrames != null) return decodedFrames;
+
+            List<List<NormalizedLandmark>> decoded = new ArrayList<>(frameCount);
+            for (int f = 0; f < frameCount; f++) {
+                List<NormalizedLandmark> landmarks = new ArrayList<>(LANDMARK_COUNT);
+                for (int i = 0; i < LANDMARK_COUNT; i++) {
+                    int base = f * FRAME_STRIDE + i * FLOATS_PER_LANDMARK;
+                    landmarks.add(NormalizedLandmark.create(data[base], data[base + 1], data[base + 2],
+                            Optional.of(data[base + 3]), Optional.empty()));
+                }
+                decoded.add(Collections.unmodifiableList(landmarks));
+            }
+            decodedFrames = Collections.unmodifiableList(decoded);
+            return decodedFrames;
+        }
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream dataOut = new DataOutputStream(out);
+        dataOut.writeInt(MAGIC);
+        dataOut.writeInt(VERSION);
+        dataOut.writeUTF(motionType);
+        dataOut.writeInt(expectedReps);
+        dataOut.writeUTF(modelTier.name());
+        dataOut.writeInt(frameRate);
+        dataOut.writeInt(frameCount);
+        for (int f = 0; f < frameCount; f++) {
+            dataOut.writeLong(timestamps[f]);
+            int base = f * FRAME_STRIDE;
+            for (int i = 0; i < FRAME_STRIDE; i++) {
+                dataOut.writeFloat(data[base + i]);
+            }
+        }
+        dataOut.flush();
+    }
+
+    public static PoseTrace readFrom(InputStream in) throws IOException {
+        DataInputStream dataIn = new DataInputStream(in);
+        if (dataIn.readInt() != MAGIC) throw new IOException("Not a pose trace");
+        int version = dataIn.readInt();
+        if (version != VERSION) throw new IOException("Unsupported pose trace version: " + version);
+
+        String motionType = dataIn.readUTF();
+        int expectedReps = dataIn.readInt();
+        ModelTier tier = ModelTier.fromName(dataIn.readUTF());
+        int frameRate = dataIn.readInt();
+        int frames = dataIn.readInt();
+
+        PoseTrace trace = new PoseTrace(motionType, expectedReps, tier, frameRate, frames);
+        float[] frame = new float[FRAME_STRIDE];
+        for (int f = 0; f < frames; f++) {
+            long timestamp = dataIn.readLong();
+            for (int i = 0; i < FRAME_STRIDE; i++) {
+                frame[i] = dataIn.readFloat();
+            }
+            trace.addFrame(timestamp, frame, 0);
+        }
+        return trace;
+    }
+
+    // Lossy: positions come back to within half a quantization step
+    public void writeCompressedTo(OutputStream out) throws IOException {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            DeflaterOutputStream deflated = new DeflaterOutputStream(out, deflater, 8192);
+            DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(deflated));
+            dataOut.writeInt(COMPRESSED_MAGIC);
+            dataOut.writeInt(COMPRESSED_VERSION);
+            dataOut.writeUTF(motionType);
+            dataOut.writeInt(expectedReps);
+            dataOut.writeUTF(modelTier.name());
+            dataOut.writeInt(frameRate);
+            dataOut.writeInt(frameCount);
+            dataOut.writeLong(frameCount > 0 ? timestamps[0] : 0);
+
+            int[] previous = new int[FRAME_STRIDE];
+            for (int f = 0; f < frameCount; f++) {
+                writeVarint(dataOut, f == 0 ? 0 : zigzag(timestamps[f] - timestamps[f - 1]));
+                int base = f * FRAME_STRIDE;
+                for (int i = 0; i < FRAME_STRIDE; i++) {
+                    int quantized = Math.round(data[base + i] * stepsFor(i));
+                    writeVarint(dataOut, zigzag(quantized - previous[i]));
+                    previous[i] = quantized;
+                }
+            }
+            dataOut.flush();
+            deflated.finish();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static PoseTrace readCompressedFrom(InputStream in) throws IOException {
+        DataInputStream dataIn = new DataInputStream(new BufferedInputStream(new InflaterInputStream(in)));
+        if (dataIn.readInt() != COMPRESSED_MAGIC) throw new IOException("Not a compressed pose trace");
+        int version = dataIn.readInt();
+        if (version != COMPRESSED_VERSION) throw new IOException("Unsupported compressed pose trace version: " + version);
+
+        String motionType = dataIn.readUTF();
+        int expectedReps = dataIn.readInt();
+        ModelTier tier = ModelTier.fromName(dataIn.readUTF());
+        int frameRate = dataIn.readInt();
+        int frames = dataIn.readInt();
+        long timestamp = dataIn.readLong();
+
+        PoseTrace trace = new PoseTrace(motionType, expectedReps, tier, frameRate, frames);
+        int[] previous = new int[FRAME_STRIDE];
+        float[] frame = new float[FRAME_STRIDE];
+        for (int f = 0; f < frames; f++) {
+            timestamp += unzigzag(readVarint(dataIn));
+            for (int i = 0; i < FRAME_STRIDE; i++) {
+                previous[i] += (int) unzigzag(readVarint(dataIn));
+                frame[i] = previous[i] / (float) stepsFor(i);
+            }
+            trace.addFrame(timestamp, frame, 0);
+        }
+        return trace;
+    }
+
+    private static int stepsFor(int valueIndex) {
+        switch (valueIndex % FLOATS_PER_LANDMARK) {
+            case 2:
+                return Z_STEPS;
+            case 3:
+                return VISIBILITY_STEPS;
+            default:
+                return XY_STEPS;
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarint(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new EOFException("Malformed varint");
+    }
+}
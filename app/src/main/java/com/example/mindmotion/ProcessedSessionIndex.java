@@ -0,0 +1,186 @@
+package com.example.mindmotion;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+// Sessions the app has already acted on, keyed by session ID with the session's timestamp. A
+// session past the 70 s expiry window can only ever be timed out, so entries are kept for that
+// window plus RETENTION_MARGIN_MS and then evicted; MAX_ENTRIES caps the map regardless.
+//
+// Lookups and claims are single ConcurrentHashMap operations, so the poll and stream threads never
+// take a lock. Settled sessions, the ones whose completion or timeout write is queued, are written
+// behind to a small file (one "id<TAB>timestampMs" line per entry) so a restart does not re-evaluate
+// them. A claim alone stays in memory: a session still queued or mid-detection when the app is killed
+// is still "waiting" in Firestore and has to be found again after the restart.
+public class ProcessedSessionIndex {
+    private static final String TAG = "ProcessedSessionIndex";
+    private static final String FILE_NAME = "processed_sessions.idx";
+    static final long SESSION_EXPIRY_MS = 70000;
+    static final long RETENTION_MARGIN_MS = 5 * 60 * 1000;
+    static final int MAX_ENTRIES = 512;
+
+    private static ProcessedSessionIndex instance;
+
+    private final File file;
+    private final LongSupplier clock;
+    private final Executor writer;
+    private final ConcurrentHashMap<String, Long> sessions = new ConcurrentHashMap<>();
+    private final Set<String> settled = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean writePending = new AtomicBoolean();
+    private long evicted = 0;
+
+    public static synchronized ProcessedSessionIndex getInstance(Context context) {
+        if (instance == null) {
+            IoScheduler ioScheduler = IoScheduler.getInstance();
+            instance = new ProcessedSessionIndex(new File(context.getApplicationContext().getFilesDir(), FILE_NAME),
+                    System::currentTimeMillis, work -> {
+                        if (!ioScheduler.submit(IoScheduler.Priority.TELEMETRY, work)) {
+                            throw new RejectedExecutionException("I/O queue full");
+                        }
+                    });
+        }
+        return instance;
+    }
+
+    public ProcessedSessionIndex(File file, LongSupplier clock, Executor writer) {
+        this.file = file;
+        this.clock = clock;
+        this.writer = writer;
+        load();
+    }
+
+    public boolean contains(String sessionId) {
+        return sessions.containsKey(sessionId);
+    }
+
+    // Records the session; returns false if another caller had already claimed it. timestampMs is
+    // the session's creation time, or 0 if unknown, in which case the claim time is used.
+    public boolean claim(String sessionId, long timestampMs) {
+        long now = clock.getAsLong();
+        if (sessions.putIfAbsent(sessionId, timestampMs > 0 ? timestampMs : now) != null) return false;
+        if (sessions.size() > MAX_ENTRIES) evict(now);
+        return true;
+    }
+
+    // Marks the session as handled for good once its completion or timeout write is queued, and
+    // writes it to disk. Settling a session that was never claimed claims it too.
+    public void settle(String sessionId) {
+        sessions.putIfAbsent(sessionId, clock.getAsLong());
+        if (settled.add(sessionId)) schedulePersist();
+    }
+
+    // Gives up a claim that was never settled, so the next poll or stream event picks it up again
+    public void release(String sessionId) {
+        if (!settled.contains(sessionId)) sessions.remove(sessionId);
+    }
+
+    public boolean isExpired(long timestampMs) {
+        return clock.getAsLong() - timestampMs > SESSION_EXPIRY_MS;
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    public synchronized long getEvictedCount() {
+        return evicted;
+    }
+
+    // Drops entries past the retention window, then the oldest ones if the map is still over the cap.
+    // Runs only once the cap is exceeded, so the scan is amortized over MAX_ENTRIES claims.
+    private synchronized void evict(long now) {
+        long cutoff = now - SESSION_EXPIRY_MS - RETENTION_MARGIN_MS;
+        int before = sessions.size();
+        sessions.values().removeIf(timestampMs -> timestampMs < cutoff);
+
+        while (sessions.size() > MAX_ENTRIES) {
+            String oldestId = null;
+            long oldest = Long.MAX_VALUE;
+            for (Map.Entry<String, Long> entry : sessions.entrySet()) {
+                if (entry.getValue() < oldest) {
+                    oldest = entry.getValue();
+                    oldestId = entry.getKey();
+                }
+            }
+            if (oldestId == null) break;
+            sessions.remove(oldestId);
+        }
+        settled.removeIf(sessionId -> !sessions.containsKey(sessionId));
+        evicted += before - sessions.size();
+    }
+
+    private void schedulePersist() {
+        if (!writePending.compareAndSet(false, true)) return;
+        try {
+            writer.execute(this::persist);
+        } catch (RejectedExecutionException e) {
+            // Nothing is lost: the next settle tries again, and at worst a restart re-checks a session
+            writePending.set(false);
+        }
+    }
+
+    // Rewrites the whole file; at MAX_ENTRIES short lines that is a few KB at most
+    private void persist() {
+        writePending.set(false);
+        long cutoff = clock.getAsLong() - SESSION_EXPIRY_MS - RETENTION_MARGIN_MS;
+        File temp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            StringBuilder lines = new StringBuilder();
+            for (Map.Entry<String, Long> entry : sessions.entrySet()) {
+                if (entry.getValue() < cutoff || !settled.contains(entry.getKey())) continue;
+                lines.append(entry.getKey()).append('\t').append(entry.getValue()).append('\n');
+            }
+            out.write(lines.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            Log.e(TAG, "Could not write processed sessions", e);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            Log.e(TAG, "Could not replace processed sessions file");
+            temp.delete();
+        }
+    }
+
+    private void load() {
+        if (!file.exists()) return;
+
+        long cutoff = clock.getAsLong() - SESSION_EXPIRY_MS - RETENTION_MARGIN_MS;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab <= 0) continue;
+                try {
+                    long timestampMs = Long.parseLong(line.substring(tab + 1));
+                    if (timestampMs < cutoff) continue;
+                    String sessionId = line.substring(0, tab);
+                    sessions.put(sessionId, timestampMs);
+                    settled.add(sessionId);
+                } catch (NumberFormatException ignored) {
+                    // torn last line
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Could not read processed sessions", e);
+        }
+
+        if (sessions.size() > MAX_ENTRIES) evict(clock.getAsLong());
+    }
+}
@@ -35,8 +35,11 @@ public class RaisingHandDetector {
     private static final int RIGHT_ELBOW = 14;
     private static final int NOSE = 0;
 
+    private final Config config;
+
     // State tracking
     private List<Long> raiseTimes;
+    private final StringBuilder raiseSides = new StringBuilder();
     private long lastRaiseTime;
     private long detectionStartTime;
     private boolean isDetectionActive;
@@ -66,7 +69,25 @@ public class RaisingHandDetector {
         void onRaiseDebugUpdate(String poseStatus, String leftHandHeight, String rightHandHeight, String raiseStatus);
     }
 
+    // Tunable parameters, defaulting to the hand-picked values above
+    public static class Config {
+        public double baseHandRaiseThreshold = BASE_HAND_RAISE_THRESHOLD;
+        public int requiredRaiseCount = REQUIRED_RAISE_COUNT;
+        public long raiseCooldownMs = RAISE_COOLDOWN_MS;
+        public long detectionTimeoutMs = DETECTION_TIMEOUT_MS;
+        public long minRaiseDurationMs = MIN_RAISE_DURATION_MS;
+        public double smoothAlpha = SMOOTH_ALPHA;
+        public double adaptiveThresholdRatio = ADAPTIVE_THRESHOLD_RATIO;
+        public double minArmLength = MIN_ARM_LENGTH;
+        public double minHorizSep = MIN_HORIZ_SEP;
+    }
+
     public RaisingHandDetector() {
+        this(new Config());
+    }
+
+    public RaisingHandDetector(Config config) {
+        this.config = config;
         raiseTimes = new ArrayList<>();
         reset();
     }
@@ -80,13 +101,17 @@ public class RaisingHandDetector {
     }
 
     public void startDetection() {
+        startDetection(System.currentTimeMillis());
+    }
+
+    public void startDetection(long startTimeMs) {
         Log.d(TAG, "Starting hand raising detection...");
         reset();
         isDetectionActive = true;
-        detectionStartTime = System.currentTimeMillis();
+        detectionStartTime = startTimeMs;
 
         if (listener != null) {
-            listener.onHandRaisingProgress(0, REQUIRED_RAISE_COUNT);
+            listener.onHandRaisingProgress(0, config.requiredRaiseCount);
         }
 
         updateDebugInfo();
@@ -100,6 +125,7 @@ public class RaisingHandDetector {
 
     public void reset() {
         raiseTimes.clear();
+        raiseSides.setLength(0);
         lastRaiseTime = 0;
         detectionStartTime = 0;
         isDetectionActive = false;
@@ -114,13 +140,29 @@ public class RaisingHandDetector {
     }
 
     public void analyzePoseResult(PoseLandmarkerResult result) {
-        if (!isDetectionActive || result == null || result.landmarks().isEmpty()) {
+        List<NormalizedLandmark> landmarks =
+                result == null || result.landmarks().isEmpty() ? null : result.landmarks().get(0);
+        analyzeLandmarks(landmarks, System.currentTimeMillis());
+    }
+
+    // Frame-level entry point, also used to replay recorded traces with their own timestamps
+    public void analyzeLandmarks(List<NormalizedLandmark> landmarks, long frameTimeMs) {
+        boolean traced = TraceSections.begin("RaisingHandDetector.analyze");
+        try {
+            analyzeFrame(landmarks, frameTimeMs);
+        } finally {
+            TraceSections.end(traced);
+        }
+    }
+
+    private void analyzeFrame(List<NormalizedLandmark> landmarks, long frameTimeMs) {
+        if (!isDetectionActive || landmarks == null) {
             updateDebugInfo("No pose detected", "N/A", "N/A", "Inactive");
             return;
         }
 
         // Check timeout
-        if (System.currentTimeMillis() - detectionStartTime > DETECTION_TIMEOUT_MS) {
+        if (frameTimeMs - detectionStartTime > config.detectionTimeoutMs) {
             Log.d(TAG, "Hand raising detection timed out");
             if (listener != null) {
                 listener.onDetectionTimeout();
@@ -129,9 +171,6 @@ public class RaisingHandDetector {
             return;
         }
 
-        // Get landmarks for first person
-        List<NormalizedLandmark> landmarks = result.landmarks().get(0);
-
         if (landmarks.size() <= Math.max(RIGHT_WRIST, RIGHT_SHOULDER)) {
             updateDebugInfo("Insufficient landmarks", "N/A", "N/A", "Active - Show hands");
             return;
@@ -164,9 +203,9 @@ public class RaisingHandDetector {
         shoulderWidth = Math.max(shoulderWidth, MIN_SHOULDER_WIDTH);
 
         // Adaptive threshold based on shoulder width
-        double adaptiveThreshold = shoulderWidth * ADAPTIVE_THRESHOLD_RATIO;
+        double adaptiveThreshold = shoulderWidth * config.adaptiveThresholdRatio;
         // Clamp fallback if tiny or weird
-        adaptiveThreshold = Math.max(adaptiveThreshold, BASE_HAND_RAISE_THRESHOLD * 0.12); // keep minimum tiny fallback
+        adaptiveThreshold = Math.max(adaptiveThreshold, config.baseHandRaiseThreshold * 0.12); // keep minimum tiny fallback
 
         // Raw heights (positive when wrist is above shoulder because y increases downward)
         double rawLeftHeight = leftShoulder.y() - leftWrist.y();
@@ -179,12 +218,12 @@ public class RaisingHandDetector {
         double rightHoriz = Math.abs(rightShoulder.x() - rightWrist.x());
 
         // Smooth heights (exponential moving average)
-        lastLeftHandHeight = ema(lastLeftHandHeight, rawLeftHeight, SMOOTH_ALPHA);
-        lastRightHandHeight = ema(lastRightHandHeight, rawRightHeight, SMOOTH_ALPHA);
+        lastLeftHandHeight = ema(lastLeftHandHeight, rawLeftHeight, config.smoothAlpha);
+        lastRightHandHeight = ema(lastRightHandHeight, rawRightHeight, config.smoothAlpha);
 
         // Apply additional sanity checks: if arm length too short or horizontal sep too small, treat as not raised
-        boolean leftArmValid = leftArmLen >= MIN_ARM_LENGTH && leftHoriz >= MIN_HORIZ_SEP;
-        boolean rightArmValid = rightArmLen >= MIN_ARM_LENGTH && rightHoriz >= MIN_HORIZ_SEP;
+        boolean leftArmValid = leftArmLen >= config.minArmLength && leftHoriz >= config.minHorizSep;
+        boolean rightArmValid = rightArmLen >= config.minArmLength && rightHoriz >= config.minHorizSep;
 
         // Decide left/right raised based on smoothed height exceeding adaptiveThreshold AND arm validity
         boolean leftHandRaised = leftArmValid && lastLeftHandHeight > adaptiveThreshold;
@@ -202,7 +241,7 @@ public class RaisingHandDetector {
             currentRaisedHand = "none";
         }
 
-        long currentTime = System.currentTimeMillis();
+        long currentTime = frameTimeMs;
 
         // STATE MACHINE: Only count raises when hand is ABOVE threshold and stable
         if (anyHandRaised) {
@@ -222,8 +261,8 @@ public class RaisingHandDetector {
                 // Only count if:
                 // 1) held long enough
                 // 2) cooldown since last counted raise
-                if (raiseDuration >= MIN_RAISE_DURATION_MS &&
-                        currentTime - lastRaiseTime > RAISE_COOLDOWN_MS) {
+                if (raiseDuration >= config.minRaiseDurationMs &&
+                        currentTime - lastRaiseTime > config.raiseCooldownMs) {
                     registerHandRaise(currentTime);
                     raiseAlreadyCounted = true;
                 }
@@ -239,6 +278,9 @@ public class RaisingHandDetector {
             }
         }
 
+        // Skip formatting debug strings nobody will read (e.g. during trace replay)
+        if (debugListener == null) return;
+
         // Debug strings
         String poseStatus = handsVisible ? "Hands visible" : "Hands not visible";
         String leftHeightStr = String.format("%.3f (thresh: %.3f) %s%s",
@@ -255,10 +297,10 @@ public class RaisingHandDetector {
             long duration = currentTime - handRaisedStartTime;
             String countedStr = raiseAlreadyCounted ? " [COUNTED]" : "";
             raiseStatus = String.format("Active - Holding %s hand (%dms)%s (%d/%d raises)",
-                    currentRaisedHand, duration, countedStr, raiseTimes.size(), REQUIRED_RAISE_COUNT);
+                    currentRaisedHand, duration, countedStr, raiseTimes.size(), config.requiredRaiseCount);
         } else {
             raiseStatus = String.format("Active - Raise hand (%d/%d raises)",
-                    raiseTimes.size(), REQUIRED_RAISE_COUNT);
+                    raiseTimes.size(), config.requiredRaiseCount);
         }
 
         updateDebugInfo(poseStatus, leftHeightStr, rightHeightStr, raiseStatus);
@@ -270,16 +312,17 @@ public class RaisingHandDetector {
 
     private void registerHandRaise(long currentTime) {
         raiseTimes.add(currentTime);
+        raiseSides.append(RepSummary.sideLetter(currentRaisedHand));
         lastRaiseTime = currentTime;
 
-        Log.d(TAG, "Hand raise registered! Count: " + raiseTimes.size() + "/" + REQUIRED_RAISE_COUNT);
+        Log.d(TAG, "Hand raise registered! Count: " + raiseTimes.size() + "/" + config.requiredRaiseCount);
 
         if (listener != null) {
             listener.onHandRaised(raiseTimes.size());
-            listener.onHandRaisingProgress(raiseTimes.size(), REQUIRED_RAISE_COUNT);
+            listener.onHandRaisingProgress(raiseTimes.size(), config.requiredRaiseCount);
         }
 
-        if (raiseTimes.size() >= REQUIRED_RAISE_COUNT) {
+        if (raiseTimes.size() >= config.requiredRaiseCount) {
             Log.d(TAG, "Hand raising sequence completed!");
             if (listener != null) {
                 listener.onHandRaisingCompleted();
@@ -312,7 +355,12 @@ public class RaisingHandDetector {
     }
 
     public int getRequiredRaiseCount() {
-        return REQUIRED_RAISE_COUNT;
+        return config.requiredRaiseCount;
+    }
+
+    // Rep times so far, for the completion record
+    public RepSummary getRepSummary() {
+        return new RepSummary(detectionStartTime, raiseTimes).withSides(raiseSides.toString());
     }
 
     public long getRemainingTime() {
@@ -320,7 +368,7 @@ public class RaisingHandDetector {
             return 0;
         }
         long elapsed = System.currentTimeMillis() - detectionStartTime;
-        return Math.max(0, DETECTION_TIMEOUT_MS - elapsed);
+        return Math.max(0, config.detectionTimeoutMs - elapsed);
     }
 
     // ----------------- Helper methods -----------------
@@ -0,0 +1,107 @@
+package com.example.mindmotion;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// What a completed session looked like rep by rep, built from a detector's own bookkeeping and
+// written with the completion update so teachers' reports need no follow-up reads. Per-rep values
+// go out as short delimited strings rather than Firestore arrays, where every element would carry
+// its own {"integerValue": "..."} wrapper.
+public class RepSummary {
+    private final long startMs;
+    private final List<Long> repTimesMs;
+    private List<Integer> heightsCm = new ArrayList<>();
+    private String sides = "";
+    private long inferenceP50Ms = -1;
+    private long inferenceP95Ms = -1;
+
+    // repTimesMs and startMs share a clock; the list is copied
+    public RepSummary(long startMs, List<Long> repTimesMs) {
+        this.startMs = startMs;
+        this.repTimesMs = new ArrayList<>(repTimesMs);
+    }
+
+    public RepSummary withHeightsCm(List<Integer> heightsCm) {
+        this.heightsCm = new ArrayList<>(heightsCm);
+        return this;
+    }
+
+    // One letter per rep: L, R or B (both)
+    public RepSummary withSides(String sides) {
+        this.sides = sides;
+        return this;
+    }
+
+    public RepSummary withInferenceLatency(long p50Ms, long p95Ms) {
+        this.inferenceP50Ms = p50Ms;
+        this.inferenceP95Ms = p95Ms;
+        return this;
+    }
+
+    public int getRepCount() {
+        return repTimesMs.size();
+    }
+
+    // Delta-encoded rep times: the first value is measured from detector start, each later one from
+    // the rep before. "2310,640,702" is three reps.
+    public String getRepGapsMs() {
+        StringBuilder text = new StringBuilder();
+        long previous = startMs;
+        for (long repTime : repTimesMs) {
+            if (text.length() > 0) text.append(',');
+            text.append(Math.max(0, repTime - previous));
+            previous = repTime;
+        }
+        return text.toString();
+    }
+
+    // Reps per minute between the first and last rep; 0 with fewer than two reps
+    public double getCadencePerMinute() {
+        if (repTimesMs.size() < 2) return 0;
+        long spanMs = repTimesMs.get(repTimesMs.size() - 1) - repTimesMs.get(0);
+        if (spanMs <= 0) return 0;
+        return Math.round((repTimesMs.size() - 1) * 600000.0 / spanMs) / 10.0;
+    }
+
+    public String getHeightsCm() {
+        StringBuilder text = new StringBuilder();
+        for (int height : heightsCm) {
+            if (text.length() > 0) text.append(',');
+            text.append(height);
+        }
+        return text.toString();
+    }
+
+    public String getSides() {
+        return sides;
+    }
+
+    // -1 when no inference latency was attached
+    public long getInferenceP50Ms() {
+        return inferenceP50Ms;
+    }
+
+    public long getInferenceP95Ms() {
+        return inferenceP95Ms;
+    }
+
+    static String sideLetter(String side) {
+        switch (side) {
+            case "left":
+                return "L";
+            case "right":
+                return "R";
+            case "both":
+                return "B";
+            default:
+                return "?";
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%d reps, gaps %s ms, %.1f/min", getRepCount(), getRepGapsMs(),
+                getCadencePerMinute());
+    }
+}
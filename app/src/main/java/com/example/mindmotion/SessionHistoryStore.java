@@ -0,0 +1,517 @@
+package com.example.mindmotion;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.LongUnaryOperator;
+
+// Local SQLite copy of the student's sessions and spoken words, so the menu shows history and stats
+// straight from disk. Rows come from two places: the results this app writes, recorded as they are
+// enqueued, and an incremental sync that picks up what was written elsewhere (sessions timed out by
+// another device, words saved before this install).
+//
+// Firestore queries cannot filter on a document's updateTime, so the sync walks each collection's
+// timestamp field instead. sync_state keeps a cursor per collection, a page asks only for documents
+// at or after it, and a row is rewritten only if the document's updateTime is newer than the one
+// stored. The sessions cursor never moves past a session that is still waiting, since that one can
+// still change.
+public class SessionHistoryStore extends SQLiteOpenHelper {
+    private static final String TAG = "SessionHistoryStore";
+    private static final String DATABASE_NAME = "session_history.db";
+    private static final int DATABASE_VERSION = 1;
+    private static final String ENDPOINT = "firestore.historySync";
+    static final String SESSIONS = "motion_sessions";
+    static final String VOICE_DATA = "voice_data";
+    static final String[] SESSION_FIELDS = {"motionType", "status", "timestamp", "completedAt", "timedOutAt"};
+    static final String[] VOICE_FIELDS = {"word", "date", "timestamp"};
+    static final int PAGE_SIZE = 100;
+    static final int MAX_PAGES_PER_SYNC = 10;
+    static final long MIN_SYNC_INTERVAL_MS = 10 * 60 * 1000;
+    // A session still waiting after this long was abandoned and no longer holds the cursor back
+    static final long ABANDONED_SESSION_MS = 24 * 60 * 60 * 1000L;
+    static final long WEEK_MS = 7 * 24 * 60 * 60 * 1000L;
+    static final int RECENT_SESSIONS = 3;
+
+    public interface QuerySource {
+        // Hands over an ID token without blocking; the callback may run on any thread
+        void getToken(TokenProvider.Callback callback);
+
+        // Runs the structured query under users/{userId}; null if it could not be answered
+        List<FirestoreDocumentReader.Document> runQuery(String userId, String idToken, JSONObject query,
+                                                        String... fields);
+    }
+
+    public static class Session {
+        public final String sessionId;
+        public final String motionType;
+        public final String status;
+        public final long settledMs;
+        public final int repCount;
+
+        Session(String sessionId, String motionType, String status, long settledMs, int repCount) {
+            this.sessionId = sessionId;
+            this.motionType = motionType;
+            this.status = status;
+            this.settledMs = settledMs;
+            this.repCount = repCount;
+        }
+    }
+
+    public static class Stats {
+        public final int completed;
+        public final int timedOut;
+        public final int completedThisWeek;
+        // null until a session with a known motion type has been completed
+        public final String favouriteMotion;
+        public final int favouriteMotionCount;
+        public final int wordsSpoken;
+        // Newest first, at most RECENT_SESSIONS
+        public final List<Session> recent;
+        // 0 if this user was never synced in full
+        public final long lastSyncedMs;
+
+        Stats(int completed, int timedOut, int completedThisWeek, String favouriteMotion, int favouriteMotionCount,
+              int wordsSpoken, List<Session> recent, long lastSyncedMs) {
+            this.completed = completed;
+            this.timedOut = timedOut;
+            this.completedThisWeek = completedThisWeek;
+            this.favouriteMotion = favouriteMotion;
+            this.favouriteMotionCount = favouriteMotionCount;
+            this.wordsSpoken = wordsSpoken;
+            this.recent = recent;
+            this.lastSyncedMs = lastSyncedMs;
+        }
+    }
+
+    private interface DocumentWriter {
+        // Writes one document's row; true if anything changed
+        boolean write(SQLiteDatabase db, String userId, FirestoreDocumentReader.Document document);
+    }
+
+    private static SessionHistoryStore instance;
+
+    private final QuerySource source;
+    private final Executor executor;
+    private final LongSupplier clock;
+    private final AtomicBoolean syncRunning = new AtomicBoolean();
+
+    public static synchronized SessionHistoryStore getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            IoScheduler ioScheduler = IoScheduler.getInstance();
+            TokenProvider tokenProvider = TokenProvider.getInstance(appContext);
+            AuthStore authStore = AuthStore.getInstance(appContext);
+            FirebaseEndpoints endpoints = FirebaseEndpoints.get();
+
+            instance = new SessionHistoryStore(appContext, DATABASE_NAME,
+                    new QuerySource() {
+                        @Override
+                        public void getToken(TokenProvider.Callback callback) {
+                            tokenProvider.getToken(false, callback);
+                        }
+
+                        @Override
+                        public List<FirestoreDocumentReader.Document> runQuery(String userId, String idToken,
+                                                                               JSONObject query, String... fields) {
+                            // History is only fetched for whoever holds the token
+                            if (!userId.equals(authStore.get().userId)) return null;
+                            return SessionHistoryStore.runQuery(endpoints, tokenProvider, userId, idToken, query, fields);
+                        }
+                    },
+                    work -> {
+                        if (!ioScheduler.submit(IoScheduler.Priority.TELEMETRY, work)) {
+                            throw new RejectedExecutionException("I/O queue full");
+                        }
+                    },
+                    System::currentTimeMillis);
+        }
+        return instance;
+    }
+
+    // A null name keeps the database in memory
+    public SessionHistoryStore(Context context, String name, QuerySource source, Executor executor, LongSupplier clock) {
+        super(context, name, null, DATABASE_VERSION);
+        this.source = source;
+        this.executor = executor;
+        this.clock = clock;
+        // Stats reads then never wait behind a sync transaction
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE sessions (" +
+                "user_id TEXT NOT NULL, session_id TEXT NOT NULL, motion_type TEXT, " +
+                "status TEXT NOT NULL DEFAULT 'waiting', created_ms INTEGER NOT NULL DEFAULT 0, " +
+                "settled_ms INTEGER NOT NULL DEFAULT 0, rep_count INTEGER NOT NULL DEFAULT 0, " +
+                "cadence REAL NOT NULL DEFAULT 0, update_time_us INTEGER NOT NULL DEFAULT 0, " +
+                "PRIMARY KEY (user_id, session_id))");
+        db.execSQL("CREATE INDEX sessions_by_settled ON sessions (user_id, settled_ms)");
+        db.execSQL("CREATE INDEX sessions_by_motion ON sessions (user_id, motion_type)");
+        db.execSQL("CREATE TABLE voice_words (" +
+                "user_id TEXT NOT NULL, word_id TEXT NOT NULL, word TEXT NOT NULL DEFAULT '', day TEXT, " +
+                "spoken_ms INTEGER NOT NULL DEFAULT 0, update_time_us INTEGER NOT NULL DEFAULT 0, " +
+                "PRIMARY KEY (user_id, word_id))");
+        db.execSQL("CREATE TABLE sync_state (" +
+                "user_id TEXT NOT NULL, collection TEXT NOT NULL, cursor INTEGER NOT NULL DEFAULT 0, " +
+                "synced_at_ms INTEGER NOT NULL DEFAULT 0, PRIMARY KEY (user_id, collection))");
+    }
+
+    // Everything here can be fetched again, so an upgrade simply starts over
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS sessions");
+        db.execSQL("DROP TABLE IF EXISTS voice_words");
+        db.execSQL("DROP TABLE IF EXISTS sync_state");
+        onCreate(db);
+    }
+
+    // The session was handed to the detector; it stays 'waiting' until recordSessionSettled
+    public void recordSessionStarted(String userId, String sessionId, String motionType, long createdMs) {
+        if (userId.isEmpty()) return;
+        run(() -> {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                db.execSQL("INSERT OR IGNORE INTO sessions (user_id, session_id) VALUES (?, ?)",
+                        new Object[]{userId, sessionId});
+                db.execSQL("UPDATE sessions SET motion_type = ?, created_ms = ? WHERE user_id = ? AND session_id = ?",
+                        new Object[]{motionType, createdMs, userId, sessionId});
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        });
+    }
+
+    // status is "completed" or "timeout"; reps may be null
+    public void recordSessionSettled(String userId, String sessionId, String status, long settledMs, RepSummary reps) {
+        if (userId.isEmpty()) return;
+        run(() -> {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                db.execSQL("INSERT OR IGNORE INTO sessions (user_id, session_id) VALUES (?, ?)",
+                        new Object[]{userId, sessionId});
+                db.execSQL("UPDATE sessions SET status = ?, settled_ms = ?, rep_count = ?, cadence = ? " +
+                                "WHERE user_id = ? AND session_id = ?",
+                        new Object[]{status, settledMs, reps == null ? 0 : reps.getRepCount(),
+                                reps == null ? 0 : reps.getCadencePerMinute(), userId, sessionId});
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        });
+    }
+
+    // wordIds are the voice_data document IDs, so the sync recognizes these words as already known
+    public void recordVoiceWords(String userId, List<String> wordIds, List<String> words, String day, long spokenMs) {
+        if (userId.isEmpty() || words.isEmpty()) return;
+        List<String> ids = new ArrayList<>(wordIds);
+        List<String> texts = new ArrayList<>(words);
+        run(() -> {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                SQLiteStatement insert = db.compileStatement("INSERT OR IGNORE INTO voice_words " +
+                        "(user_id, word_id, word, day, spoken_ms) VALUES (?, ?, ?, ?, ?)");
+                for (int i = 0; i < ids.size(); i++) {
+                    insert.bindString(1, userId);
+                    insert.bindString(2, ids.get(i));
+                    insert.bindString(3, texts.get(i));
+                    insert.bindString(4, day);
+                    insert.bindLong(5, spokenMs);
+                    insert.executeInsert();
+                }
+                insert.close();
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        });
+    }
+
+    // Reads the stats on the store's executor and hands them to the callback there
+    public void loadStats(String userId, Consumer<Stats> callback) {
+        run(() -> callback.accept(readStats(userId)));
+    }
+
+    // Pulls what changed since the last sync, at most once per MIN_SYNC_INTERVAL_MS. onChanged runs
+    // on the store's executor, and only if a row was added or rewritten. The token is fetched before
+    // the sync is queued, so no pool thread sits waiting on a refresh that needs the same pool.
+    public void sync(String userId, Runnable onChanged) {
+        if (userId.isEmpty()) return;
+        run(() -> {
+            if (clock.getAsLong() - lastSyncedMs(getReadableDatabase(), userId) < MIN_SYNC_INTERVAL_MS) return;
+            source.getToken(new TokenProvider.Callback() {
+                @Override
+                public void onToken(String idToken) {
+                    run(() -> {
+                        if (!syncRunning.compareAndSet(false, true)) return;
+                        try {
+                            if (syncNow(userId, idToken) > 0) onChanged.run();
+                        } finally {
+                            syncRunning.set(false);
+                        }
+                    });
+                }
+
+                @Override
+                public void onTokenError(String error, boolean sessionExpired) {
+                    // The menu keeps showing what is on disk; the next resume tries again
+                    Log.w(TAG, "History sync deferred: " + error);
+                }
+            });
+        });
+    }
+
+    // Returns the number of rows changed
+    int syncNow(String userId, String idToken) {
+        // Session timestamps are whole seconds; the cursor stops at the oldest session still waiting
+        long abandonedBeforeMs = clock.getAsLong() - ABANDONED_SESSION_MS;
+        int changed = pull(userId, idToken, SESSIONS, SESSION_FIELDS, this::writeSession, since -> {
+            long oldestWaitingMs = oldestWaitingSessionMs(userId, abandonedBeforeMs);
+            return oldestWaitingMs > 0 ? Math.min(since, oldestWaitingMs / 1000) : since;
+        });
+        int words = pull(userId, idToken, VOICE_DATA, VOICE_FIELDS, this::writeVoiceWord, since -> since);
+        if (changed < 0 || words < 0) return Math.max(0, changed) + Math.max(0, words);
+
+        getWritableDatabase().execSQL("UPDATE sync_state SET synced_at_ms = ? WHERE user_id = ?",
+                new Object[]{clock.getAsLong(), userId});
+        return changed + words;
+    }
+
+    // Reads pages ordered by timestamp from the stored cursor on. The cursor is saved even if a page
+    // fails, so the next sync does not start over. Returns the rows changed, or -1 if a page failed.
+    private int pull(String userId, String idToken, String collection, String[] fields, DocumentWriter writer,
+                     LongUnaryOperator holdBack) {
+        SQLiteDatabase db = getWritableDatabase();
+        long since = readCursor(db, userId, collection);
+        int changed = 0;
+        boolean failed = false;
+
+        for (int page = 0; page < MAX_PAGES_PER_SYNC; page++) {
+            List<FirestoreDocumentReader.Document> documents;
+            try {
+                documents = source.runQuery(userId, idToken, buildSyncQuery(collection, since, fields), fields);
+            } catch (Exception e) {
+                documents = null;
+            }
+            if (documents == null) {
+                failed = true;
+                break;
+            }
+
+            long newest = since;
+            db.beginTransaction();
+            try {
+                for (FirestoreDocumentReader.Document document : documents) {
+                    if (writer.write(db, userId, document)) changed++;
+                    newest = Math.max(newest, document.getLong("timestamp", 0));
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+
+            // >= makes each page start with the last timestamp of the one before; updateTime makes
+            // the overlap free. A full page that did not move the cursor would loop, so stop there.
+            boolean done = documents.size() < PAGE_SIZE || newest == since;
+            since = newest;
+            if (done) break;
+        }
+
+        writeCursor(db, userId, collection, holdBack.applyAsLong(since));
+        return failed ? -1 : changed;
+    }
+
+    static JSONObject buildSyncQuery(String collection, long since, String... fields) throws Exception {
+        JSONArray projection = new JSONArray();
+        for (String field : fields) {
+            projection.put(new JSONObject().put("fieldPath", field));
+        }
+
+        JSONObject structuredQuery = new JSONObject()
+                .put("select", new JSONObject().put("fields", projection))
+                .put("from", new JSONArray().put(new JSONObject().put("collectionId", collection)))
+                .put("where", FirebaseRestManager.fieldFilter("timestamp", "GREATER_THAN_OR_EQUAL",
+                        new JSONObject().put("integerValue", String.valueOf(since))))
+                .put("orderBy", new JSONArray().put(new JSONObject()
+                        .put("field", new JSONObject().put("fieldPath", "timestamp"))
+                        .put("direction", "ASCENDING")))
+                .put("limit", PAGE_SIZE);
+
+        return new JSONObject().put("structuredQuery", structuredQuery);
+    }
+
+    // A 'waiting' from the server never overwrites a result recorded here but not yet committed
+    private boolean writeSession(SQLiteDatabase db, String userId, FirestoreDocumentReader.Document document) {
+        String status = document.getString("status");
+        long settledMs = Math.max(document.getLong("completedAt", 0), document.getLong("timedOutAt", 0));
+        db.execSQL("INSERT OR IGNORE INTO sessions (user_id, session_id) VALUES (?, ?)",
+                new Object[]{userId, document.getId()});
+        SQLiteStatement update = db.compileStatement("UPDATE sessions SET " +
+                "status = CASE WHEN ?1 = 'waiting' AND status != 'waiting' THEN status ELSE ?1 END, " +
+                "motion_type = ?2, created_ms = ?3, settled_ms = MAX(settled_ms, ?4), update_time_us = ?5 " +
+                "WHERE user_id = ?6 AND session_id = ?7 AND update_time_us < ?5");
+        try {
+            update.bindString(1, status == null ? "waiting" : status);
+            bindNullable(update, 2, document.getString("motionType"));
+            update.bindLong(3, document.getLong("timestamp", 0) * 1000);
+            update.bindLong(4, settledMs);
+            update.bindLong(5, document.getUpdateTimeMicros());
+            update.bindString(6, userId);
+            update.bindString(7, document.getId());
+            return update.executeUpdateDelete() > 0;
+        } finally {
+            update.close();
+        }
+    }
+
+    private boolean writeVoiceWord(SQLiteDatabase db, String userId, FirestoreDocumentReader.Document document) {
+        db.execSQL("INSERT OR IGNORE INTO voice_words (user_id, word_id) VALUES (?, ?)",
+                new Object[]{userId, document.getId()});
+        SQLiteStatement update = db.compileStatement("UPDATE voice_words SET word = ?, day = ?, spoken_ms = ?, " +
+                "update_time_us = ? WHERE user_id = ? AND word_id = ? AND update_time_us < ?");
+        try {
+            String word = document.getString("word");
+            update.bindString(1, word == null ? "" : word);
+            bindNullable(update, 2, document.getString("date"));
+            update.bindLong(3, document.getLong("timestamp", 0));
+            update.bindLong(4, document.getUpdateTimeMicros());
+            update.bindString(5, userId);
+            update.bindString(6, document.getId());
+            update.bindLong(7, document.getUpdateTimeMicros());
+            return update.executeUpdateDelete() > 0;
+        } finally {
+            update.close();
+        }
+    }
+
+    Stats readStats(String userId) {
+        SQLiteDatabase db = getReadableDatabase();
+        long weekAgo = clock.getAsLong() - WEEK_MS;
+        int completed = 0;
+        int timedOut = 0;
+        try (Cursor cursor = db.rawQuery("SELECT status, COUNT(*) FROM sessions WHERE user_id = ? GROUP BY status",
+                new String[]{userId})) {
+            while (cursor.moveToNext()) {
+                if ("completed".equals(cursor.getString(0))) completed = cursor.getInt(1);
+                if ("timeout".equals(cursor.getString(0))) timedOut = cursor.getInt(1);
+            }
+        }
+
+        int completedThisWeek = queryInt(db, "SELECT COUNT(*) FROM sessions " +
+                "WHERE user_id = ? AND settled_ms >= ? AND status = 'completed'", userId, String.valueOf(weekAgo));
+
+        String favouriteMotion = null;
+        int favouriteMotionCount = 0;
+        try (Cursor cursor = db.rawQuery("SELECT motion_type, COUNT(*) AS n FROM sessions " +
+                "WHERE user_id = ? AND status = 'completed' AND motion_type IS NOT NULL " +
+                "GROUP BY motion_type ORDER BY n DESC, motion_type LIMIT 1", new String[]{userId})) {
+            if (cursor.moveToFirst()) {
+                favouriteMotion = cursor.getString(0);
+                favouriteMotionCount = cursor.getInt(1);
+            }
+        }
+
+        int wordsSpoken = queryInt(db, "SELECT COUNT(*) FROM voice_words WHERE user_id = ?", userId);
+
+        List<Session> recent = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery("SELECT session_id, motion_type, status, settled_ms, rep_count FROM sessions " +
+                "WHERE user_id = ? AND settled_ms > 0 ORDER BY settled_ms DESC LIMIT " + RECENT_SESSIONS,
+                new String[]{userId})) {
+            while (cursor.moveToNext()) {
+                recent.add(new Session(cursor.getString(0), cursor.getString(1), cursor.getString(2),
+                        cursor.getLong(3), cursor.getInt(4)));
+            }
+        }
+
+        return new Stats(completed, timedOut, completedThisWeek, favouriteMotion, favouriteMotionCount,
+                wordsSpoken, Collections.unmodifiableList(recent), lastSyncedMs(db, userId));
+    }
+
+    private long oldestWaitingSessionMs(String userId, long abandonedBeforeMs) {
+        try (Cursor cursor = getReadableDatabase().rawQuery("SELECT MIN(created_ms) FROM sessions " +
+                        "WHERE user_id = ? AND status = 'waiting' AND created_ms >= ?",
+                new String[]{userId, String.valueOf(Math.max(1, abandonedBeforeMs))})) {
+            return cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getLong(0) : 0;
+        }
+    }
+
+    private static long readCursor(SQLiteDatabase db, String userId, String collection) {
+        try (Cursor cursor = db.rawQuery("SELECT cursor FROM sync_state WHERE user_id = ? AND collection = ?",
+                new String[]{userId, collection})) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    private static void writeCursor(SQLiteDatabase db, String userId, String collection, long cursor) {
+        db.execSQL("INSERT OR IGNORE INTO sync_state (user_id, collection) VALUES (?, ?)", new Object[]{userId, collection});
+        db.execSQL("UPDATE sync_state SET cursor = ? WHERE user_id = ? AND collection = ?",
+                new Object[]{cursor, userId, collection});
+    }
+
+    // Both collections are marked together, so either row will do
+    private static long lastSyncedMs(SQLiteDatabase db, String userId) {
+        try (Cursor cursor = db.rawQuery("SELECT MIN(synced_at_ms) FROM sync_state WHERE user_id = ?",
+                new String[]{userId})) {
+            return cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getLong(0) : 0;
+        }
+    }
+
+    private static int queryInt(SQLiteDatabase db, String sql, String... args) {
+        try (Cursor cursor = db.rawQuery(sql, args)) {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        }
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    private static List<FirestoreDocumentReader.Document> runQuery(FirebaseEndpoints endpoints, TokenProvider tokenProvider,
+                                                                  String userId, String idToken, JSONObject query,
+                                                                  String... fields) {
+        try {
+            return HttpTransport.getInstance().execute(HttpTransport.Request.post(ENDPOINT,
+                    endpoints.documentsUrl() + "/users/" + userId + ":runQuery", query.toString()).bearer(idToken),
+                    (statusCode, body) -> {
+                        if (statusCode == HttpURLConnection.HTTP_UNAUTHORIZED) tokenProvider.invalidate(idToken);
+                        return statusCode == HttpURLConnection.HTTP_OK ? FirestoreDocumentReader.readRunQuery(body, fields) : null;
+                    });
+        } catch (Exception e) {
+            Log.w(TAG, "History sync failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void run(Runnable work) {
+        try {
+            executor.execute(work);
+        } catch (RejectedExecutionException e) {
+            // A dropped record comes back with the next sync; a dropped read with the next resume
+            Log.w(TAG, "History work dropped: " + e.getMessage());
+        }
+    }
+}
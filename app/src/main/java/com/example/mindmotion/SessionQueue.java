@@ -0,0 +1,57 @@
+package com.example.mindmotion;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+// Sessions discovered but not yet started, oldest first. A teacher queuing several motions gets
+// them in the order they were created, whichever of poll or stream saw them first. Filled from the
+// I/O and stream threads, drained on the main thread.
+public class SessionQueue {
+    public static final class Entry {
+        public final String sessionId;
+        public final String motionType;
+        public final long timestampMs;
+
+        Entry(String sessionId, String motionType, long timestampMs) {
+            this.sessionId = sessionId;
+            this.motionType = motionType;
+            this.timestampMs = timestampMs;
+        }
+    }
+
+    // Timestamps are whole seconds, so ties are common; the id keeps the order stable
+    private final TreeSet<Entry> entries = new TreeSet<>(Comparator
+            .comparingLong((Entry entry) -> entry.timestampMs)
+            .thenComparing(entry -> entry.sessionId));
+    private final Set<String> ids = new HashSet<>();
+
+    // Not bounded here: every entry holds a claim in ProcessedSessionIndex, so dropping one would hide
+    // the session until that claim is released, and a poll returns at most a page of them anyway
+    public synchronized boolean offer(String sessionId, String motionType, long timestampMs) {
+        if (ids.contains(sessionId)) return false;
+        ids.add(sessionId);
+        entries.add(new Entry(sessionId, motionType, timestampMs));
+        return true;
+    }
+
+    public synchronized Entry peek() {
+        return entries.isEmpty() ? null : entries.first();
+    }
+
+    public synchronized Entry poll() {
+        Entry entry = entries.pollFirst();
+        if (entry != null) ids.remove(entry.sessionId);
+        return entry;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        ids.clear();
+    }
+}
@@ -0,0 +1,301 @@
+package com.example.mindmotion;
+
+import android.util.JsonReader;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Streams changes to users/{uid}/motion_sessions through Firestore's documents:listen endpoint.
+// The REST transport answers a single addTarget request with a JSON array of ListenResponse messages
+// that stays open, so each element is parsed as it arrives. The last resume token is sent on
+// reconnect so only changes since then are replayed. After FAILURES_BEFORE_FALLBACK failures in a
+// row the listener stops and tells the callback the stream is unavailable, so the caller polls
+// instead; it does not keep reconnecting in the background. start() tries the stream again.
+//
+// Only endpoints with FirebaseEndpoints.listenSupported serve this; Firestore's own REST API does not.
+public class SessionStreamListener {
+    private static final String TAG = "SessionStreamListener";
+    private static final int TARGET_ID = 1;
+    private static final String[] SESSION_FIELDS = {"motionType", "status", "timestamp"};
+    private static final long INITIAL_BACKOFF_MS = 1000;
+    private static final long MAX_BACKOFF_MS = 30000;
+    private static final int FAILURES_BEFORE_FALLBACK = 3;
+    // Firestore closes idle listen streams on its own; a long read timeout only catches dead sockets
+    private static final int READ_TIMEOUT_MS = 5 * 60 * 1000;
+
+    public interface TokenSource {
+        // Returns a valid ID token, or null if the user can no longer be authenticated
+        String getIdToken(boolean forceRefresh);
+    }
+
+    public interface Callback {
+        void onSessionDocument(String sessionId, String motionType, String status, long timestamp);
+        void onStreamCurrent();
+        void onStreamUnavailable(String reason);
+    }
+
+    private final String apiRoot;
+    private final String databasePath;
+    private final String userId;
+    private final TokenSource tokenSource;
+    private final Callback callback;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    // disconnect() on a stream another thread is reading can block until the next chunk arrives,
+    // so it never runs on the caller's (usually the main) thread
+    private final ExecutorService closeExecutor =
+            Executors.newSingleThreadExecutor(work -> new Thread(work, "SessionStream-close"));
+
+    private volatile boolean running = false;
+    private volatile boolean isCurrent = false;
+    private volatile HttpURLConnection activeConnection;
+    private volatile String resumeToken;
+    private Future<?> streamTask;
+    private int consecutiveFailures = 0;
+    private boolean forceTokenRefresh = false;
+
+    // apiRoot is e.g. "https://firestore.googleapis.com/v1", databasePath "projects/{id}/databases/(default)"
+    public SessionStreamListener(String apiRoot, String databasePath, String userId,
+                                 TokenSource tokenSource, Callback callback) {
+        this.apiRoot = apiRoot;
+        this.databasePath = databasePath;
+        this.userId = userId;
+        this.tokenSource = tokenSource;
+        this.callback = callback;
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        consecutiveFailures = 0;
+        streamTask = executor.submit(this::runStreamLoop);
+    }
+
+    public synchronized void stop() {
+        running = false;
+        isCurrent = false;
+        HttpURLConnection connection = activeConnection;
+        if (connection != null) closeExecutor.execute(connection::disconnect);
+        if (streamTask != null) streamTask.cancel(true);
+        streamTask = null;
+    }
+
+    public void shutdown() {
+        stop();
+        executor.shutdownNow();
+        closeExecutor.shutdown();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    // True once the server has delivered a consistent snapshot on the current connection
+    public boolean isCurrent() {
+        return isCurrent;
+    }
+
+    public String getResumeToken() {
+        return resumeToken;
+    }
+
+    private void runStreamLoop() {
+        long backoffMs = INITIAL_BACKOFF_MS;
+
+        while (running) {
+            String failure = null;
+            try {
+                failure = listenOnce();
+            } catch (IOException e) {
+                failure = e.getClass().getSimpleName() + ": " + e.getMessage();
+            } catch (Exception e) {
+                Log.e(TAG, "Listen stream failed", e);
+                failure = "Listen error: " + e.getMessage();
+            } finally {
+                activeConnection = null;
+                isCurrent = false;
+            }
+
+            if (!running) break;
+
+            if (failure == null) {
+                // Clean server-side close after a healthy stream; reconnect straight away
+                backoffMs = INITIAL_BACKOFF_MS;
+                continue;
+            }
+
+            consecutiveFailures++;
+            Log.w(TAG, "Listen stream dropped (" + consecutiveFailures + "): " + failure);
+            if (consecutiveFailures >= FAILURES_BEFORE_FALLBACK) {
+                // Polling takes over; reconnecting behind it would only add requests
+                running = false;
+                callback.onStreamUnavailable(failure);
+                break;
+            }
+
+            long delay = backoffMs + (long) (Math.random() * backoffMs / 2);
+            backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    // Returns null when the server closed a healthy stream, otherwise a failure description
+    private String listenOnce() throws Exception {
+        String token = tokenSource.getIdToken(forceTokenRefresh);
+        forceTokenRefresh = false;
+        if (token == null) {
+            running = false;
+            callback.onStreamUnavailable("Authentication expired");
+            return "Authentication expired";
+        }
+
+        HttpURLConnection connection = HttpTransport.getInstance().openStreaming(HttpTransport.Request
+                .post("firestore.listen", apiRoot + "/" + databasePath + "/documents:listen", buildListenRequest().toString())
+                .bearer(token)
+                .readTimeout(READ_TIMEOUT_MS));
+        activeConnection = connection;
+        try {
+            int responseCode = connection.getResponseCode();
+            if (responseCode == 401 || responseCode == 403) {
+                forceTokenRefresh = true;
+                return "Listen rejected: " + responseCode;
+            }
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                return "Listen failed: " + responseCode;
+            }
+
+            try (JsonReader reader = new JsonReader(new BufferedReader(HttpTransport.openBody(connection, responseCode)))) {
+                reader.beginArray();
+                while (running && reader.hasNext()) {
+                    String failure = readListenResponse(reader);
+                    if (failure != null) return failure;
+                }
+                if (running) reader.endArray();
+            }
+            return isCurrent ? null : "Stream closed before catching up";
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private JSONObject buildListenRequest() throws Exception {
+        JSONObject statusValue = new JSONObject().put("stringValue", "waiting");
+        JSONObject fieldFilter = new JSONObject()
+                .put("field", new JSONObject().put("fieldPath", "status"))
+                .put("op", "EQUAL")
+                .put("value", statusValue);
+
+        JSONObject structuredQuery = new JSONObject()
+                .put("from", new JSONArray().put(new JSONObject().put("collectionId", "motion_sessions")))
+                .put("where", new JSONObject().put("fieldFilter", fieldFilter));
+
+        JSONObject target = new JSONObject()
+                .put("targetId", TARGET_ID)
+                .put("query", new JSONObject()
+                        .put("parent", databasePath + "/documents/users/" + userId)
+                        .put("structuredQuery", structuredQuery));
+        if (resumeToken != null) target.put("resumeToken", resumeToken);
+
+        return new JSONObject()
+                .put("database", databasePath)
+                .put("addTarget", target);
+    }
+
+    private String readListenResponse(JsonReader reader) throws IOException {
+        String failure = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("targetChange".equals(name)) {
+                failure = readTargetChange(reader);
+            } else if ("documentChange".equals(name)) {
+                readDocumentChange(reader);
+            } else {
+                // documentDelete / documentRemove / filter: a session leaving "waiting" needs no action
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return failure;
+    }
+
+    private String readTargetChange(JsonReader reader) throws IOException {
+        String changeType = "NO_CHANGE";
+        String token = null;
+        String causeMessage = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("targetChangeType".equals(name)) {
+                changeType = reader.nextString();
+            } else if ("resumeToken".equals(name)) {
+                token = reader.nextString();
+            } else if ("cause".equals(name)) {
+                causeMessage = readCauseMessage(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if ("REMOVE".equals(changeType)) {
+            return "Target removed: " + (causeMessage != null ? causeMessage : "unknown cause");
+        }
+
+        // A token on NO_CHANGE or CURRENT marks a consistent point we can resume from
+        if (token != null) resumeToken = token;
+
+        if ("CURRENT".equals(changeType) && !isCurrent) {
+            isCurrent = true;
+            consecutiveFailures = 0;
+            callback.onStreamCurrent();
+        }
+        return null;
+    }
+
+    private String readCauseMessage(JsonReader reader) throws IOException {
+        String message = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("message".equals(reader.nextName())) {
+                message = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return message;
+    }
+
+    private void readDocumentChange(JsonReader reader) throws IOException {
+        FirestoreDocumentReader.Document document = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("document".equals(reader.nextName())) {
+                document = FirestoreDocumentReader.readDocument(reader, SESSION_FIELDS);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (document != null && document.getName() != null) {
+            callback.onSessionDocument(document.getId(), document.getString("motionType"),
+                    document.getString("status"), document.getLong("timestamp", 0));
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.mindmotion;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+// How long a child waits, split by cause. Each session is stamped as it moves through the app:
+//   created (the session document's timestamp) -> discovered by poll or stream -> dispatched from
+//   SessionQueue -> detector started -> first rep -> completed -> completion write acknowledged
+// and the gaps between stamps are kept as rolling percentiles over the last WINDOW_SESSIONS
+// sessions. "Queued" is wall clock against the teacher device's whole-second timestamp, so it is
+// only good to about a second; every other segment uses this device's monotonic clock.
+public class SessionTimeline {
+    private static final String TAG = "SessionTimeline";
+    static final int WINDOW_SESSIONS = 100;
+    // Sessions that are never completed (timeouts, app restarts) must not pile up
+    private static final int MAX_OPEN_SESSIONS = 16;
+
+    public enum Segment {
+        QUEUED("queued", "queued"),             // created -> discovered: polling interval, stream lag, outages
+        WAITING("waiting", "waiting"),          // discovered -> dispatched: behind the session already running
+        STARTUP("startup", "startup"),          // dispatched -> detector started: main-thread dispatch
+        FIRST_REP("first rep", "firstRep"),     // detector started -> first rep: model warm-up plus the child's reaction
+        DETECTION("detection", "detection"),    // first rep -> completed: the remaining reps
+        WRITE("write", "write"),                // completed -> write acknowledged: commit, retries and replay
+        TOTAL("total", "total");                // created -> write acknowledged
+
+        private final String label;
+        private final String fieldName;
+
+        Segment(String label, String fieldName) {
+            this.label = label;
+            this.fieldName = fieldName;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        // Key under the completion record's latencyMs map
+        public String getFieldName() {
+            return fieldName;
+        }
+    }
+
+    private static final class Timeline {
+        final long createdWallMs;
+        final long discoveredWallMs;
+        final long discoveredMs;
+        long dispatchedMs = -1;
+        long detectorStartedMs = -1;
+        long firstRepMs = -1;
+        long completedMs = -1;
+
+        Timeline(long createdWallMs, long discoveredWallMs, long discoveredMs) {
+            this.createdWallMs = createdWallMs;
+            this.discoveredWallMs = discoveredWallMs;
+            this.discoveredMs = discoveredMs;
+        }
+
+        long queuedMs() {
+            return createdWallMs > 0 ? Math.max(0, discoveredWallMs - createdWallMs) : -1;
+        }
+
+        // Without a dispatch stamp (a caller that bypasses SessionQueue) startup runs from discovery
+        long startupFromMs() {
+            return dispatchedMs >= 0 ? dispatchedMs : discoveredMs;
+        }
+    }
+
+    // Last WINDOW_SESSIONS values of one segment
+    private static final class Window {
+        final long[] values = new long[WINDOW_SESSIONS];
+        int count = 0;
+
+        void record(long value) {
+            values[count % WINDOW_SESSIONS] = value;
+            count++;
+        }
+
+        long percentile(double percentile) {
+            int size = Math.min(count, WINDOW_SESSIONS);
+            if (size == 0) return 0;
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(size * percentile / 100.0);
+            return sorted[Math.max(0, Math.min(size - 1, rank - 1))];
+        }
+    }
+
+    private static SessionTimeline instance;
+
+    private final LongSupplier clock;
+    private final LongSupplier wallClock;
+    private final Map<String, Timeline> open = new LinkedHashMap<>();
+    private final Map<Segment, Window> windows = new EnumMap<>(Segment.class);
+
+    public static synchronized SessionTimeline getInstance() {
+        if (instance == null) instance = new SessionTimeline(SystemClock::elapsedRealtime, System::currentTimeMillis);
+        return instance;
+    }
+
+    public SessionTimeline(LongSupplier clock, LongSupplier wallClock) {
+        this.clock = clock;
+        this.wallClock = wallClock;
+        for (Segment segment : Segment.values()) windows.put(segment, new Window());
+    }
+
+    // createdWallMs is the session document's timestamp in milliseconds, or 0 if it had none
+    public synchronized void onDiscovered(String sessionId, long createdWallMs) {
+        if (open.containsKey(sessionId)) return;
+        open.put(sessionId, new Timeline(createdWallMs, wallClock.getAsLong(), clock.getAsLong()));
+        if (open.size() > MAX_OPEN_SESSIONS) {
+            Iterator<String> oldest = open.keySet().iterator();
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    // The session left SessionQueue and was handed to the detector screen
+    public synchronized void onDispatched(String sessionId) {
+        Timeline timeline = open.get(sessionId);
+        if (timeline != null && timeline.dispatchedMs < 0) timeline.dispatchedMs = clock.getAsLong();
+    }
+
+    public synchronized void onDetectorStarted(String sessionId) {
+        Timeline timeline = open.get(sessionId);
+        if (timeline != null && timeline.detectorStartedMs < 0) timeline.detectorStartedMs = clock.getAsLong();
+    }
+
+    // Safe to call on every rep; only the first one counts
+    public synchronized void onRep(String sessionId) {
+        Timeline timeline = open.get(sessionId);
+        if (timeline != null && timeline.detectorStartedMs >= 0 && timeline.firstRepMs < 0) {
+            timeline.firstRepMs = clock.getAsLong();
+        }
+    }
+
+    // Stamps completion and returns the segments known so far, for the completion record. Missing
+    // stamps (a session completed with no reps reported) leave their segments out.
+    public synchronized Map<Segment, Long> onCompleted(String sessionId) {
+        Map<Segment, Long> segments = new EnumMap<>(Segment.class);
+        Timeline timeline = open.get(sessionId);
+        if (timeline == null) return segments;
+        if (timeline.completedMs < 0) timeline.completedMs = clock.getAsLong();
+
+        long queued = timeline.queuedMs();
+        if (queued >= 0) segments.put(Segment.QUEUED, queued);
+        if (timeline.dispatchedMs >= 0) segments.put(Segment.WAITING, timeline.dispatchedMs - timeline.discoveredMs);
+        if (timeline.detectorStartedMs >= 0) {
+            segments.put(Segment.STARTUP, timeline.detectorStartedMs - timeline.startupFromMs());
+        }
+        if (timeline.firstRepMs >= 0) {
+            segments.put(Segment.FIRST_REP, timeline.firstRepMs - timeline.detectorStartedMs);
+            segments.put(Segment.DETECTION, timeline.completedMs - timeline.firstRepMs);
+        }
+        return segments;
+    }
+
+    // The completion write was committed; the session's segments join the rolling window
+    public synchronized void onCompletionAcknowledged(String sessionId) {
+        Timeline timeline = open.remove(sessionId);
+        if (timeline == null || timeline.completedMs < 0) return;
+        long now = clock.getAsLong();
+
+        long queued = timeline.queuedMs();
+        if (queued >= 0) windows.get(Segment.QUEUED).record(queued);
+        if (timeline.dispatchedMs >= 0) windows.get(Segment.WAITING).record(timeline.dispatchedMs - timeline.discoveredMs);
+        if (timeline.detectorStartedMs >= 0) {
+            windows.get(Segment.STARTUP).record(timeline.detectorStartedMs - timeline.startupFromMs());
+        }
+        if (timeline.firstRepMs >= 0) {
+            windows.get(Segment.FIRST_REP).record(timeline.firstRepMs - timeline.detectorStartedMs);
+            windows.get(Segment.DETECTION).record(timeline.completedMs - timeline.firstRepMs);
+        }
+        windows.get(Segment.WRITE).record(now - timeline.completedMs);
+        windows.get(Segment.TOTAL).record(Math.max(0, queued) + now - timeline.discoveredMs);
+
+        Log.i(TAG, "Session " + sessionId + " acknowledged; rolling " + summary());
+    }
+
+    // Timed out or abandoned; nothing to aggregate
+    public synchronized void discard(String sessionId) {
+        open.remove(sessionId);
+    }
+
+    public synchronized long getPercentileMs(Segment segment, double percentile) {
+        return windows.get(segment).percentile(percentile);
+    }
+
+    public synchronized int getSampleCount() {
+        return Math.min(windows.get(Segment.TOTAL).count, WINDOW_SESSIONS);
+    }
+
+    public synchronized String summary() {
+        StringBuilder text = new StringBuilder();
+        for (Segment segment : Segment.values()) {
+            if (text.length() > 0) text.append("  ");
+            text.append(String.format(Locale.US, "%s p50 %.1f / p95 %.1f s", segment.getLabel(),
+                    getPercentileMs(segment, 50) / 1000.0, getPercentileMs(segment, 95) / 1000.0));
+        }
+        return text.toString();
+    }
+}
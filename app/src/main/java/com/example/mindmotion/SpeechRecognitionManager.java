@@ -37,6 +37,8 @@ public class SpeechRecognitionManager implements RecognitionListener {
     private boolean shouldRestart = true;
     private int restartAttempts = 0;
     private Set<String> processedWords = new HashSet<>();
+    private int utteranceCookie = 0;
+    private boolean utteranceOpen = false;
 
     // Restart timer
     private Runnable restartRunnable = new Runnable() {
@@ -174,6 +176,8 @@ public class SpeechRecognitionManager implements RecognitionListener {
     @Override
     public void onBeginningOfSpeech() {
         Log.d(TAG, "Beginning of speech");
+        utteranceOpen = true;
+        TraceSections.beginAsync("speech.utterance", utteranceCookie);
     }
 
     @Override
@@ -193,6 +197,16 @@ public class SpeechRecognitionManager implements RecognitionListener {
 
     @Override
     public void onError(int error) {
+        endUtterance();
+        boolean traced = TraceSections.begin("speech.onError");
+        try {
+            handleError(error);
+        } finally {
+            TraceSections.end(traced);
+        }
+    }
+
+    private void handleError(int error) {
         String errorMsg = getErrorMessage(error);
         Log.e(TAG, "Speech recognition error: " + errorMsg);
 
@@ -228,17 +242,34 @@ public class SpeechRecognitionManager implements RecognitionListener {
 
     @Override
     public void onResults(Bundle results) {
-        ArrayList<String> matches = results.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
-        processRecognitionResults(matches);
+        endUtterance();
+        boolean traced = TraceSections.begin("speech.onResults");
+        try {
+            ArrayList<String> matches = results.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
+            processRecognitionResults(matches);
 
-        notifyStatusChanged(false);
-        scheduleRestart(); // Continue listening
+            notifyStatusChanged(false);
+            scheduleRestart(); // Continue listening
+        } finally {
+            TraceSections.end(traced);
+        }
     }
 
     @Override
     public void onPartialResults(Bundle results) {
-        ArrayList<String> matches = results.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
-        processRecognitionResults(matches);
+        boolean traced = TraceSections.begin("speech.onPartialResults");
+        try {
+            ArrayList<String> matches = results.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
+            processRecognitionResults(matches);
+        } finally {
+            TraceSections.end(traced);
+        }
+    }
+
+    private void endUtterance() {
+        if (!utteranceOpen) return;
+        utteranceOpen = false;
+        TraceSections.endAsync("speech.utterance", utteranceCookie++);
     }
 
     @Override
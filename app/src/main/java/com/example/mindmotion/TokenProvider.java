@@ -0,0 +1,297 @@
+package com.example.mindmotion;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// Process-wide owner of the Firebase ID token. The token is cached in memory and handed out
+// without I/O while it has more than EXPIRY_MARGIN_MS left. Concurrent callers that need a refresh
+// share a single securetoken request (single flight), and a timer refreshes REFRESH_AHEAD_MS
+// before expiry so callers rarely wait at all.
+//
+// Callbacks run on the caller's thread when the cached token is good, otherwise on the I/O thread
+// that finished the refresh; post to the main thread before touching views.
+public class TokenProvider {
+    private static final String TAG = "TokenProvider";
+    static final long EXPIRY_MARGIN_MS = 5 * 60 * 1000;
+    static final long REFRESH_AHEAD_MS = 10 * 60 * 1000;
+    private static final long RETRY_AFTER_FAILURE_MS = 60 * 1000;
+
+    private static TokenProvider instance;
+
+    public interface Callback {
+        void onToken(String idToken);
+        // sessionExpired is true when the refresh token was rejected and the user must log in again
+        void onTokenError(String error, boolean sessionExpired);
+    }
+
+    public interface SessionListener {
+        // Called on the main thread when a refresh finds the session is gone for good
+        void onSessionExpired();
+    }
+
+    public interface Refresher {
+        // Returns new tokens, or null if the server rejected the refresh token for good. Throws for
+        // failures worth retrying (network, 5xx).
+        Tokens refresh(String refreshToken) throws Exception;
+    }
+
+    public interface Store {
+        void save(Tokens tokens);
+    }
+
+    public static final class Tokens {
+        public static final Tokens EMPTY = new Tokens("", "", 0);
+
+        public final String idToken;
+        public final String refreshToken;
+        public final long expiresAtMs;
+
+        public Tokens(String idToken, String refreshToken, long expiresAtMs) {
+            this.idToken = idToken != null ? idToken : "";
+            this.refreshToken = refreshToken != null ? refreshToken : "";
+            this.expiresAtMs = expiresAtMs;
+        }
+    }
+
+    private final Refresher refresher;
+    private final Store store;
+    private final Executor executor;
+    private final LongSupplier clock;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable proactiveRefresh = this::refreshAhead;
+    private final List<SessionListener> sessionListeners = new CopyOnWriteArrayList<>();
+
+    private volatile Tokens tokens;
+    // Callers waiting on the refresh in flight; null when no refresh is running
+    private List<Callback> waiting;
+    private long refreshCount = 0;
+    private long joinedCount = 0;
+
+    public static synchronized TokenProvider getInstance(Context context) {
+        if (instance == null) {
+            AuthStore authStore = AuthStore.getInstance(context);
+            IoScheduler ioScheduler = IoScheduler.getInstance();
+            instance = new TokenProvider(authStore.get().tokens, TokenProvider::refreshWithSecureToken,
+                    saved -> authStore.update(state -> state.withTokens(saved)),
+                    work -> {
+                        if (!ioScheduler.submit(IoScheduler.Priority.SESSION_DISCOVERY, work)) {
+                            throw new RejectedExecutionException("I/O queue full");
+                        }
+                    },
+                    System::currentTimeMillis);
+        }
+        return instance;
+    }
+
+    public TokenProvider(Tokens initial, Refresher refresher, Store store, Executor executor, LongSupplier clock) {
+        this.tokens = initial;
+        this.refresher = refresher;
+        this.store = store;
+        this.executor = executor;
+        this.clock = clock;
+        scheduleProactiveRefresh(initial);
+    }
+
+    // Hands out the cached token if it is still good, otherwise joins (or starts) the one refresh
+    public void getToken(boolean forceRefresh, Callback callback) {
+        Tokens current = tokens;
+        if (!forceRefresh && isFresh(current)) {
+            callback.onToken(current.idToken);
+            return;
+        }
+        if (current.refreshToken.isEmpty()) {
+            callback.onTokenError("No refresh token", true);
+            return;
+        }
+        startRefresh(callback);
+    }
+
+    // Blocking variant for threads that exist only to wait, like the Listen stream's loop. Returns
+    // null if no token could be obtained within timeoutMs.
+    public String awaitToken(boolean forceRefresh, long timeoutMs) {
+        String[] result = new String[1];
+        CountDownLatch done = new CountDownLatch(1);
+        getToken(forceRefresh, new Callback() {
+            @Override
+            public void onToken(String idToken) {
+                result[0] = idToken;
+                done.countDown();
+            }
+
+            @Override
+            public void onTokenError(String error, boolean sessionExpired) {
+                done.countDown();
+            }
+        });
+        try {
+            done.await(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return result[0];
+    }
+
+    // The server refused idToken; the next getToken refreshes unless someone already replaced it
+    public void invalidate(String idToken) {
+        Tokens current = tokens;
+        if (current.idToken.equals(idToken)) {
+            setTokens(new Tokens("", current.refreshToken, 0));
+        }
+    }
+
+    // Called after sign-in with the tokens the auth endpoint returned
+    public void setTokens(Tokens newTokens) {
+        tokens = newTokens;
+        store.save(newTokens);
+        scheduleProactiveRefresh(newTokens);
+    }
+
+    public void clear() {
+        setTokens(Tokens.EMPTY);
+    }
+
+    public Tokens getTokens() {
+        return tokens;
+    }
+
+    public boolean hasValidToken() {
+        return isFresh(tokens);
+    }
+
+    public void addSessionListener(SessionListener sessionListener) {
+        if (!sessionListeners.contains(sessionListener)) sessionListeners.add(sessionListener);
+    }
+
+    public void removeSessionListener(SessionListener sessionListener) {
+        sessionListeners.remove(sessionListener);
+    }
+
+    public synchronized long getRefreshCount() {
+        return refreshCount;
+    }
+
+    // Callers that were served by a refresh someone else had already started
+    public synchronized long getJoinedCount() {
+        return joinedCount;
+    }
+
+    private boolean isFresh(Tokens current) {
+        return !current.idToken.isEmpty() && current.expiresAtMs - EXPIRY_MARGIN_MS > clock.getAsLong();
+    }
+
+    private void startRefresh(Callback callback) {
+        synchronized (this) {
+            if (waiting != null) {
+                if (callback != null) waiting.add(callback);
+                joinedCount++;
+                return;
+            }
+            waiting = new ArrayList<>();
+            if (callback != null) waiting.add(callback);
+            refreshCount++;
+        }
+
+        try {
+            executor.execute(this::runRefresh);
+        } catch (RejectedExecutionException e) {
+            finishRefresh(null, "Token refresh deferred: " + e.getMessage(), false);
+        }
+    }
+
+    private void runRefresh() {
+        Tokens current = tokens;
+        boolean traced = TraceSections.begin("Auth.refreshToken");
+        try {
+            Tokens refreshed = refresher.refresh(current.refreshToken);
+            if (!tokens.refreshToken.equals(current.refreshToken)) {
+                // Logged out or signed in again while the request was out; its answer is stale
+                finishRefresh(null, "Session changed during token refresh", false);
+            } else if (refreshed == null) {
+                Log.w(TAG, "Refresh token rejected; session expired");
+                setTokens(Tokens.EMPTY);
+                finishRefresh(null, "Session expired. Please login again.", true);
+            } else {
+                setTokens(refreshed);
+                finishRefresh(refreshed.idToken, null, false);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Token refresh failed", e);
+            // Try again ahead of expiry rather than waiting for a caller to hit a stale token, but not
+            // before the refresh endpoint's circuit would let the call through
+            long retryAfterMs = e instanceof CircuitBreaker.RejectedException
+                    ? Math.max(RETRY_AFTER_FAILURE_MS, ((CircuitBreaker.RejectedException) e).retryAfterMs)
+                    : RETRY_AFTER_FAILURE_MS;
+            mainHandler.removeCallbacks(proactiveRefresh);
+            mainHandler.postDelayed(proactiveRefresh, retryAfterMs);
+            finishRefresh(null, "Network error during token refresh", false);
+        } finally {
+            TraceSections.end(traced);
+        }
+    }
+
+    private void finishRefresh(String idToken, String error, boolean sessionExpired) {
+        List<Callback> callbacks;
+        synchronized (this) {
+            callbacks = waiting;
+            waiting = null;
+        }
+        for (Callback callback : callbacks) {
+            if (idToken != null) {
+                callback.onToken(idToken);
+            } else {
+                callback.onTokenError(error, sessionExpired);
+            }
+        }
+        if (sessionExpired) {
+            mainHandler.post(() -> {
+                for (SessionListener sessionListener : sessionListeners) sessionListener.onSessionExpired();
+            });
+        }
+    }
+
+    private void scheduleProactiveRefresh(Tokens scheduled) {
+        mainHandler.removeCallbacks(proactiveRefresh);
+        if (scheduled.refreshToken.isEmpty()) return;
+        long delay = Math.max(0, scheduled.expiresAtMs - REFRESH_AHEAD_MS - clock.getAsLong());
+        mainHandler.postDelayed(proactiveRefresh, delay);
+    }
+
+    private void refreshAhead() {
+        if (tokens.refreshToken.isEmpty()) return;
+        startRefresh(null);
+    }
+
+    // securetoken answers 400 for revoked, expired or disabled accounts; anything else may pass
+    private static Tokens refreshWithSecureToken(String refreshToken) throws Exception {
+        FirebaseEndpoints endpoints = FirebaseEndpoints.get();
+        HttpTransport.Response response = HttpTransport.getInstance().execute(HttpTransport.Request
+                .post("auth.refresh", endpoints.secureTokenUrl + "?key=" + endpoints.apiKey, "grant_type=refresh_token&refresh_token=" + refreshToken)
+                .contentType("application/x-www-form-urlencoded"));
+
+        if (response.statusCode == 200) {
+            JSONObject body = new JSONObject(response.body);
+            long expiresInSeconds = body.optLong("expires_in", 3600);
+            return new Tokens(body.getString("id_token"), body.optString("refresh_token", refreshToken),
+                    System.currentTimeMillis() + expiresInSeconds * 1000);
+        }
+        if (response.statusCode == 400 || response.statusCode == 401 || response.statusCode == 403) {
+            Log.w(TAG, "Refresh rejected: " + response.statusCode + " " + response.body);
+            return null;
+        }
+        throw new IOException("Token refresh failed: " + response.statusCode);
+    }
+}
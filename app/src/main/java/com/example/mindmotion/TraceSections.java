@@ -0,0 +1,103 @@
+package com.example.mindmotion;
+
+import android.os.Build;
+import android.os.Trace;
+
+// Named trace sections for Perfetto / systrace. Off by default: every call is a single volatile read
+// until setEnabled(true), so the hooks can stay in the hot paths. Section names must be constants;
+// never build them with string concatenation at the call site.
+//
+// Usage:
+//   boolean traced = TraceSections.begin("analyzeImage");
+//   try { ... } finally { TraceSections.end(traced); }
+//
+// end() takes the flag returned by begin() so toggling tracing mid-section never unbalances the stack.
+public final class TraceSections {
+
+    public interface Sink {
+        void beginSection(String name);
+        void endSection();
+        void beginAsync(String name, int cookie);
+        void endAsync(String name, int cookie);
+        void counter(String name, long value);
+    }
+
+    // Forwards to android.os.Trace; async slices and counters need API 29
+    public static final Sink ANDROID_SINK = new Sink() {
+        @Override
+        public void beginSection(String name) {
+            Trace.beginSection(name);
+        }
+
+        @Override
+        public void endSection() {
+            Trace.endSection();
+        }
+
+        @Override
+        public void beginAsync(String name, int cookie) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) Trace.beginAsyncSection(name, cookie);
+        }
+
+        @Override
+        public void endAsync(String name, int cookie) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) Trace.endAsyncSection(name, cookie);
+        }
+
+        @Override
+        public void counter(String name, long value) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) Trace.setCounter(name, value);
+        }
+    };
+
+    private static volatile boolean enabled = false;
+    private static volatile Sink sink = ANDROID_SINK;
+
+    private TraceSections() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    // Turns tracing on when a system trace (Perfetto, systrace) is currently recording this app
+    public static void enableIfSystemTracing() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && sink == ANDROID_SINK && Trace.isEnabled()) {
+            enabled = true;
+        }
+    }
+
+    public static Sink getSink() {
+        return sink;
+    }
+
+    public static void setSink(Sink newSink) {
+        sink = newSink != null ? newSink : ANDROID_SINK;
+    }
+
+    public static boolean begin(String name) {
+        if (!enabled) return false;
+        sink.beginSection(name);
+        return true;
+    }
+
+    public static void end(boolean began) {
+        if (began) sink.endSection();
+    }
+
+    public static void beginAsync(String name, int cookie) {
+        if (enabled) sink.beginAsync(name, cookie);
+    }
+
+    public static void endAsync(String name, int cookie) {
+        if (enabled) sink.endAsync(name, cookie);
+    }
+
+    public static void counter(String name, long value) {
+        if (enabled) sink.counter(name, value);
+    }
+}
@@ -0,0 +1,434 @@
+package com.example.mindmotion;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.util.Base64;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+// Uploads the pose traces of hard sessions for remote review. Each trace is compressed once
+// (PoseTrace.writeCompressedTo) into files/pose_uploads/<sessionId>.mmtc and sent in CHUNK_BYTES
+// pieces, one Firestore commit each, to users/<uid>/pose_traces/<sessionId>/chunks/<n>. Progress is
+// saved to a .meta file beside the trace after every chunk, so an upload cut short by the next
+// session, a metered network or process death resumes at the chunk it stopped on. The manifest
+// document users/<uid>/pose_traces/<sessionId> goes last, so reviewers only ever see whole traces.
+//
+// All work runs on the TELEMETRY lane, and chunks are only sent while no session is running and
+// the network is unmetered.
+public class TraceUploader {
+    private static final String TAG = "TraceUploader";
+    private static final String DIRECTORY = "pose_uploads";
+    private static final String TRACE_SUFFIX = ".mmtc";
+    private static final String META_SUFFIX = ".meta";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String ENDPOINT = "firestore.traceUpload";
+    static final int CHUNK_BYTES = 32 * 1024;
+    // Oldest traces are dropped beyond this, so a device that never sees Wi-Fi does not fill up
+    static final int MAX_PENDING_TRACES = 20;
+
+    public interface Transport {
+        // Hands over an ID token without blocking; the callback may run on any thread
+        void getToken(TokenProvider.Callback callback);
+
+        // Commits the writes as userId; returns the HTTP status, or -1 if the server was not reached
+        int commit(String userId, String idToken, JSONArray writes, boolean isRetry);
+    }
+
+    private static TraceUploader instance;
+
+    private final File directory;
+    private final FirebaseEndpoints endpoints;
+    private final Transport transport;
+    private final BooleanSupplier networkUnmetered;
+    private final Executor executor;
+
+    private volatile boolean sessionActive = false;
+    // The last chunk got no usable answer, so the next one is a retry against the breaker's budget
+    private volatile boolean lastAttemptFailed = false;
+    private final AtomicBoolean uploadRunning = new AtomicBoolean();
+    private volatile boolean uploadAgain = false;
+    private volatile int pendingCount = 0;
+
+    private long tracesUploaded = 0;
+    private long tracesDropped = 0;
+    private long bytesUploaded = 0;
+    private long motionMsUploaded = 0;
+
+    public static synchronized TraceUploader getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            IoScheduler ioScheduler = IoScheduler.getInstance();
+            ConnectivityManager connectivityManager =
+                    (ConnectivityManager) appContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+            TokenProvider tokenProvider = TokenProvider.getInstance(appContext);
+            AuthStore authStore = AuthStore.getInstance(appContext);
+            FirebaseEndpoints endpoints = FirebaseEndpoints.get();
+
+            instance = new TraceUploader(new File(appContext.getFilesDir(), DIRECTORY), endpoints,
+                    new Transport() {
+                        @Override
+                        public void getToken(TokenProvider.Callback callback) {
+                            tokenProvider.getToken(false, callback);
+                        }
+
+                        @Override
+                        public int commit(String userId, String idToken, JSONArray writes, boolean isRetry) {
+                            // Traces wait for their own user; the token belongs to whoever is logged in
+                            if (!userId.equals(authStore.get().userId)) return -1;
+                            int statusCode = TraceUploader.commit(endpoints, idToken, writes, isRetry);
+                            if (statusCode == 401) tokenProvider.invalidate(idToken);
+                            return statusCode;
+                        }
+                    },
+                    () -> connectivityManager != null && !connectivityManager.isActiveNetworkMetered(),
+                    telemetryExecutor(ioScheduler));
+        }
+        return instance;
+    }
+
+    // Runs work on the TELEMETRY lane, throwing RejectedExecutionException when the lane is full
+    static Executor telemetryExecutor(IoScheduler ioScheduler) {
+        return work -> {
+            if (!ioScheduler.submit(IoScheduler.Priority.TELEMETRY, work)) {
+                throw new RejectedExecutionException("I/O queue full");
+            }
+        };
+    }
+
+    public TraceUploader(File directory, FirebaseEndpoints endpoints, Transport transport,
+                         BooleanSupplier networkUnmetered, Executor executor) {
+        this.directory = directory;
+        this.endpoints = endpoints;
+        this.transport = transport;
+        this.networkUnmetered = networkUnmetered;
+        this.executor = executor;
+        // Half-written files from a run that died mid-store; their trace was never listed
+        File[] leftovers = directory.listFiles((dir, name) -> name.endsWith(TEMP_SUFFIX));
+        if (leftovers != null) for (File leftover : leftovers) leftover.delete();
+        // Traces left from an earlier run count as pending, so the first requestUpload sends them
+        pendingSessionIds();
+    }
+
+    // Compresses and stores the trace, then starts uploading if the device is idle. Returns false,
+    // and counts the trace as dropped, if the TELEMETRY lane is too backed up to take it.
+    public boolean enqueue(String userId, String sessionId, PoseTrace trace) {
+        if (userId.isEmpty() || trace.frameCount() == 0) return true;
+        try {
+            executor.execute(() -> {
+                try {
+                    store(userId, sessionId, trace);
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to store trace for " + sessionId, e);
+                    return;
+                }
+                prune();
+                requestUpload();
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Dropping trace " + sessionId + ": " + e.getMessage());
+            synchronized (this) {
+                tracesDropped++;
+            }
+            return false;
+        }
+    }
+
+    // Uploads pause for the length of every session and pick up again when it ends
+    public void setSessionActive(boolean active) {
+        sessionActive = active;
+        if (!active) requestUpload();
+    }
+
+    // Gets a token first, so no pool thread sits waiting on a refresh that needs the same pool
+    public void requestUpload() {
+        if (pendingCount == 0 || !canUpload()) return;
+        transport.getToken(new TokenProvider.Callback() {
+            @Override
+            public void onToken(String idToken) {
+                try {
+                    executor.execute(() -> uploadPending(idToken));
+                } catch (RejectedExecutionException e) {
+                    // Traces stay on disk; the next session end or resume retries
+                    Log.w(TAG, "Trace upload deferred: " + e.getMessage());
+                }
+            }
+
+            @Override
+            public void onTokenError(String error, boolean sessionExpired) {
+                // Traces stay on disk; the next session end or resume retries
+                Log.w(TAG, "Trace upload deferred: " + error);
+            }
+        });
+    }
+
+    private boolean canUpload() {
+        return !sessionActive && networkUnmetered.getAsBoolean();
+    }
+
+    // Both files are written under temporary names. The .meta goes into place before the .mmtc, and
+    // only .mmtc files are listed, so a pass never sees a trace that is half written or has no progress.
+    private void store(String userId, String sessionId, PoseTrace trace) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Cannot create " + directory);
+        File traceFile = new File(directory, sessionId + TRACE_SUFFIX);
+        File tempTrace = new File(directory, sessionId + TRACE_SUFFIX + TEMP_SUFFIX);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tempTrace))) {
+            trace.writeCompressedTo(out);
+        } catch (IOException e) {
+            tempTrace.delete();
+            throw e;
+        }
+
+        Properties meta = new Properties();
+        meta.setProperty("userId", userId);
+        meta.setProperty("motionType", trace.getMotionType());
+        meta.setProperty("frames", String.valueOf(trace.frameCount()));
+        meta.setProperty("durationMs", String.valueOf(trace.durationMs()));
+        meta.setProperty("nextChunk", "0");
+        writeMeta(sessionId, meta);
+        if (!tempTrace.renameTo(traceFile)) {
+            new File(directory, sessionId + META_SUFFIX).delete();
+            tempTrace.delete();
+            throw new IOException("Cannot move " + tempTrace + " into place");
+        }
+        Log.i(TAG, String.format("Stored %s trace %s: %d frames, %d bytes, %.1f KB per minute of motion",
+                trace.getMotionType(), sessionId, trace.frameCount(), traceFile.length(),
+                kilobytesPerMinute(traceFile.length(), trace.durationMs())));
+    }
+
+    // Oldest first. Only one pass runs at a time; a request that arrives mid-pass runs another
+    // pass afterwards.
+    private void uploadPending(String idToken) {
+        if (!uploadRunning.compareAndSet(false, true)) {
+            uploadAgain = true;
+            return;
+        }
+        try {
+            do {
+                uploadAgain = false;
+                for (String sessionId : pendingSessionIds()) {
+                    if (!canUpload() || !upload(sessionId, idToken)) break;
+                }
+            } while (uploadAgain && canUpload());
+        } finally {
+            uploadRunning.set(false);
+        }
+    }
+
+    // Returns false if the pass should stop: the device got busy or the server could not take it
+    private boolean upload(String sessionId, String idToken) {
+        File traceFile = new File(directory, sessionId + TRACE_SUFFIX);
+        Properties meta;
+        try {
+            meta = readMeta(sessionId);
+        } catch (FileNotFoundException e) {
+            // Discarded by another pass since the listing; nothing left to do
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "Dropping trace " + sessionId + " with unreadable progress", e);
+            discard(sessionId);
+            return true;
+        }
+
+        String userId = meta.getProperty("userId", "");
+        long length = traceFile.length();
+        int chunkCount = (int) ((length + CHUNK_BYTES - 1) / CHUNK_BYTES);
+        int nextChunk = Integer.parseInt(meta.getProperty("nextChunk", "0"));
+
+        try {
+            while (nextChunk < chunkCount) {
+                if (!canUpload()) return false;
+                byte[] chunk = readChunk(traceFile, nextChunk);
+                JSONArray writes = new JSONArray().put(buildChunkWrite(endpoints, userId, sessionId, nextChunk, chunk));
+                if (!send(sessionId, userId, idToken, writes)) return !lastAttemptFailed;
+
+                nextChunk++;
+                meta.setProperty("nextChunk", String.valueOf(nextChunk));
+                writeMeta(sessionId, meta);
+            }
+
+            if (!canUpload()) return false;
+            long durationMs = Long.parseLong(meta.getProperty("durationMs", "0"));
+            JSONArray writes = new JSONArray().put(buildManifestWrite(endpoints, userId, sessionId,
+                    meta.getProperty("motionType", ""), chunkCount, length,
+                    Integer.parseInt(meta.getProperty("frames", "0")), durationMs));
+            if (!send(sessionId, userId, idToken, writes)) return !lastAttemptFailed;
+
+            synchronized (this) {
+                tracesUploaded++;
+                bytesUploaded += length;
+                motionMsUploaded += durationMs;
+            }
+            Log.i(TAG, String.format("Uploaded trace %s in %d chunks, %d bytes; %.1f KB per minute of motion overall",
+                    sessionId, chunkCount, length, getKilobytesPerMinuteOfMotion()));
+            discard(sessionId);
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Upload of trace " + sessionId + " failed", e);
+            lastAttemptFailed = true;
+            return false;
+        }
+    }
+
+    // Returns true if the commit went through. A retryable failure leaves the trace for the next
+    // pass; anything else means the server will never take it.
+    private boolean send(String sessionId, String userId, String idToken, JSONArray writes) {
+        int statusCode = transport.commit(userId, idToken, writes, lastAttemptFailed);
+        if (statusCode == 200) {
+            lastAttemptFailed = false;
+            return true;
+        }
+        if (statusCode < 0 || statusCode == 401 || statusCode == 403 || statusCode == 429 || statusCode >= 500) {
+            Log.w(TAG, "Trace upload paused: " + statusCode);
+            lastAttemptFailed = true;
+        } else {
+            Log.w(TAG, "Dropping trace " + sessionId + " rejected with " + statusCode);
+            lastAttemptFailed = false;
+            discard(sessionId);
+            synchronized (this) {
+                tracesDropped++;
+            }
+        }
+        return false;
+    }
+
+    static JSONObject buildChunkWrite(FirebaseEndpoints endpoints, String userId, String sessionId, int index,
+                                      byte[] chunk) throws Exception {
+        JSONObject fields = new JSONObject()
+                .put("index", new JSONObject().put("integerValue", String.valueOf(index)))
+                .put("data", new JSONObject().put("bytesValue", Base64.encodeToString(chunk, Base64.NO_WRAP)));
+        return new JSONObject().put("update", new JSONObject()
+                .put("name", FirebaseRestManager.documentName(endpoints,
+                        "users/" + userId + "/pose_traces/" + sessionId + "/chunks/" + index))
+                .put("fields", fields));
+    }
+
+    static JSONObject buildManifestWrite(FirebaseEndpoints endpoints, String userId, String sessionId, String motionType,
+                                         int chunkCount, long bytes, int frames, long durationMs) throws Exception {
+        JSONObject fields = new JSONObject()
+                .put("sessionId", new JSONObject().put("stringValue", sessionId))
+                .put("motionType", new JSONObject().put("stringValue", motionType))
+                .put("format", new JSONObject().put("stringValue", "mmtc-1"))
+                .put("chunks", new JSONObject().put("integerValue", String.valueOf(chunkCount)))
+                .put("bytes", new JSONObject().put("integerValue", String.valueOf(bytes)))
+                .put("frames", new JSONObject().put("integerValue", String.valueOf(frames)))
+                .put("durationMs", new JSONObject().put("integerValue", String.valueOf(durationMs)))
+                .put("uploadedAt", new JSONObject().put("integerValue", String.valueOf(System.currentTimeMillis())));
+        return new JSONObject().put("update", new JSONObject()
+                .put("name", FirebaseRestManager.documentName(endpoints, "users/" + userId + "/pose_traces/" + sessionId))
+                .put("fields", fields));
+    }
+
+    private static int commit(FirebaseEndpoints endpoints, String idToken, JSONArray writes, boolean isRetry) {
+        try {
+            HttpTransport.Response response = HttpTransport.getInstance().execute(HttpTransport.Request.post(ENDPOINT,
+                    endpoints.documentsUrl() + ":commit", new JSONObject().put("writes", writes).toString())
+                    .bearer(idToken).retry(isRetry));
+            return response.statusCode;
+        } catch (Exception e) {
+            Log.w(TAG, "Trace chunk not sent: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    private List<String> pendingSessionIds() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(TRACE_SUFFIX));
+        pendingCount = files == null ? 0 : files.length;
+        if (files == null) return Collections.emptyList();
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        List<String> sessionIds = new ArrayList<>(files.length);
+        for (File file : files) {
+            sessionIds.add(file.getName().substring(0, file.getName().length() - TRACE_SUFFIX.length()));
+        }
+        return sessionIds;
+    }
+
+    private void prune() {
+        List<String> sessionIds = pendingSessionIds();
+        for (int i = 0; i < sessionIds.size() - MAX_PENDING_TRACES; i++) {
+            Log.w(TAG, "Dropping trace " + sessionIds.get(i) + ": too many waiting for an unmetered network");
+            discard(sessionIds.get(i));
+            synchronized (this) {
+                tracesDropped++;
+            }
+        }
+    }
+
+    private static byte[] readChunk(File traceFile, int index) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(traceFile, "r")) {
+            long offset = (long) index * CHUNK_BYTES;
+            byte[] chunk = new byte[(int) Math.min(CHUNK_BYTES, file.length() - offset)];
+            file.seek(offset);
+            file.readFully(chunk);
+            return chunk;
+        }
+    }
+
+    private Properties readMeta(String sessionId) throws IOException {
+        Properties meta = new Properties();
+        try (InputStream in = new FileInputStream(new File(directory, sessionId + META_SUFFIX))) {
+            meta.load(in);
+        }
+        return meta;
+    }
+
+    // Written to a temporary file and renamed, so a crash mid-write leaves the old progress
+    private void writeMeta(String sessionId, Properties meta) throws IOException {
+        File target = new File(directory, sessionId + META_SUFFIX);
+        File temp = new File(directory, sessionId + META_SUFFIX + TEMP_SUFFIX);
+        try (OutputStream out = new FileOutputStream(temp)) {
+            meta.store(out, null);
+        }
+        if (!temp.renameTo(target)) throw new IOException("Cannot replace " + target);
+    }
+
+    private void discard(String sessionId) {
+        new File(directory, sessionId + TRACE_SUFFIX).delete();
+        new File(directory, sessionId + META_SUFFIX).delete();
+        pendingCount = Math.max(0, pendingCount - 1);
+    }
+
+    private static double kilobytesPerMinute(long bytes, long durationMs) {
+        return durationMs <= 0 ? 0 : bytes / 1024.0 * 60000.0 / durationMs;
+    }
+
+    // As of the last pass over the upload directory
+    public int getPendingCount() {
+        return pendingCount;
+    }
+
+    public synchronized long getUploadedCount() {
+        return tracesUploaded;
+    }
+
+    public synchronized long getDroppedCount() {
+        return tracesDropped;
+    }
+
+    // Compressed upload size per minute of recorded motion, over everything uploaded so far
+    public synchronized double getKilobytesPerMinuteOfMotion() {
+        return kilobytesPerMinute(bytesUploaded, motionMsUploaded);
+    }
+}
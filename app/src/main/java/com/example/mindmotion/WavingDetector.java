@@ -25,6 +25,8 @@ public class WavingDetector {
     private static final int LEFT_ELBOW = 13;
     private static final int RIGHT_ELBOW = 14;
 
+    private final Config config;
+
     // State tracking for wave detection
     private List<Long> waveTimes;
     private long lastWaveTime;
@@ -56,7 +58,21 @@ public class WavingDetector {
         void onWaveDebugUpdate(String poseStatus, String handsHeight, String waveMovement, String waveStatus);
     }
 
+    // Tunable parameters, defaulting to the hand-picked values above
+    public static class Config {
+        public double waveHorizontalThreshold = WAVE_HORIZONTAL_THRESHOLD;
+        public int requiredWaveCount = REQUIRED_WAVE_COUNT;
+        public long waveCooldownMs = WAVE_COOLDOWN_MS;
+        public long detectionTimeoutMs = DETECTION_TIMEOUT_MS;
+        public double minWristHeight = -HANDS_VISIBLE_THRESHOLD; // wrist height relative to shoulder
+    }
+
     public WavingDetector() {
+        this(new Config());
+    }
+
+    public WavingDetector(Config config) {
+        this.config = config;
         waveTimes = new ArrayList<>();
         reset();
     }
@@ -70,13 +86,17 @@ public class WavingDetector {
     }
 
     public void startDetection() {
+        startDetection(System.currentTimeMillis());
+    }
+
+    public void startDetection(long startTimeMs) {
         Log.d(TAG, "Starting waving detection...");
         reset();
         isDetectionActive = true;
-        detectionStartTime = System.currentTimeMillis();
+        detectionStartTime = startTimeMs;
 
         if (listener != null) {
-            listener.onWavingProgress(0, REQUIRED_WAVE_COUNT);
+            listener.onWavingProgress(0, config.requiredWaveCount);
         }
 
         updateDebugInfo();
@@ -104,13 +124,29 @@ public class WavingDetector {
     }
 
     public void analyzePoseResult(PoseLandmarkerResult result) {
-        if (!isDetectionActive || result == null || result.landmarks().isEmpty()) {
+        List<NormalizedLandmark> landmarks =
+                result == null || result.landmarks().isEmpty() ? null : result.landmarks().get(0);
+        analyzeLandmarks(landmarks, System.currentTimeMillis());
+    }
+
+    // Frame-level entry point, also used to replay recorded traces with their own timestamps
+    public void analyzeLandmarks(List<NormalizedLandmark> landmarks, long frameTimeMs) {
+        boolean traced = TraceSections.begin("WavingDetector.analyze");
+        try {
+            analyzeFrame(landmarks, frameTimeMs);
+        } finally {
+            TraceSections.end(traced);
+        }
+    }
+
+    private void analyzeFrame(List<NormalizedLandmark> landmarks, long frameTimeMs) {
+        if (!isDetectionActive || landmarks == null) {
             updateDebugInfo("No pose detected", "N/A", "N/A", "Inactive");
             return;
         }
 
         // Check if detection has timed out
-        if (System.currentTimeMillis() - detectionStartTime > DETECTION_TIMEOUT_MS) {
+        if (frameTimeMs - detectionStartTime > config.detectionTimeoutMs) {
             Log.d(TAG, "Waving detection timed out");
             if (listener != null) {
                 listener.onDetectionTimeout();
@@ -119,9 +155,6 @@ public class WavingDetector {
             return;
         }
 
-        // Get the first person's landmarks
-        List<NormalizedLandmark> landmarks = result.landmarks().get(0);
-
         if (landmarks.size() <= Math.max(RIGHT_SHOULDER, RIGHT_WRIST)) {
             updateDebugInfo("Insufficient landmarks", "N/A", "N/A", "Active - Waiting for pose");
             return;
@@ -153,12 +186,15 @@ public class WavingDetector {
         lastRightWristHeight = rightWristHeight;
 
         // Very lenient height check - hands can be slightly below shoulders too
-        boolean handsAtReasonableHeight = leftWristHeight > -0.1 && rightWristHeight > -0.1;
+        boolean handsAtReasonableHeight = leftWristHeight > config.minWristHeight
+                && rightWristHeight > config.minWristHeight;
 
         if (!handsAtReasonableHeight) {
-            updateDebugInfo("Hands visible",
-                    String.format("L:%.3f R:%.3f (need >-0.1)", leftWristHeight, rightWristHeight),
-                    "Hands too low", "Active - Lift hands slightly");
+            if (debugListener != null) {
+                updateDebugInfo("Hands visible",
+                        String.format("L:%.3f R:%.3f (need >%.1f)", leftWristHeight, rightWristHeight, config.minWristHeight),
+                        "Hands too low", "Active - Lift hands slightly");
+            }
             return;
         }
 
@@ -167,22 +203,23 @@ public class WavingDetector {
         boolean waveDetected = detectSimpleWaveMotion(leftWrist, rightWrist);
 
         if (waveDetected) {
-            long currentTime = System.currentTimeMillis();
-
             // Check cooldown to avoid multiple detections of same wave
-            if (currentTime - lastWaveTime > WAVE_COOLDOWN_MS) {
-                registerWave(currentTime);
+            if (frameTimeMs - lastWaveTime > config.waveCooldownMs) {
+                registerWave(frameTimeMs);
                 framesSinceLastWave = 0;
             }
         }
 
+        // Skip formatting debug strings nobody will read (e.g. during trace replay)
+        if (debugListener == null) return;
+
         // Update debug information
         String poseStatus = handsVisible ? "Both hands visible" : "Hands not visible";
-        String handsHeightStr = String.format("L:%.3f R:%.3f (need >-0.1)",
-                leftWristHeight, rightWristHeight);
+        String handsHeightStr = String.format("L:%.3f R:%.3f (need >%.1f)",
+                leftWristHeight, rightWristHeight, config.minWristHeight);
         String waveStatus = String.format("Active - %s (%d/%d waves)",
                 waveDetected ? "WAVING" : "Wave hands side to side",
-                waveTimes.size(), REQUIRED_WAVE_COUNT);
+                waveTimes.size(), config.requiredWaveCount);
 
         updateDebugInfo(poseStatus, handsHeightStr, lastMovementDescription, waveStatus);
     }
@@ -207,8 +244,9 @@ public class WavingDetector {
         double rightMovement = currentRightX - rightWristLastX;
 
         // Check for significant movement in either hand
-        boolean leftMovedSignificantly = Math.abs(leftMovement) > WAVE_HORIZONTAL_THRESHOLD;
-        boolean rightMovedSignificantly = Math.abs(rightMovement) > WAVE_HORIZONTAL_THRESHOLD;
+        double threshold = config.waveHorizontalThreshold;
+        boolean leftMovedSignificantly = Math.abs(leftMovement) > threshold;
+        boolean rightMovedSignificantly = Math.abs(rightMovement) > threshold;
 
         boolean isWaveMotion = false;
         String movementDesc = "";
@@ -216,7 +254,7 @@ public class WavingDetector {
         // Simplified wave detection - look for coordinated outward or inward movement
         if (leftMovedSignificantly || rightMovedSignificantly) {
             // Outward motion (hands moving away from center)
-            if (leftMovement < -WAVE_HORIZONTAL_THRESHOLD && rightMovement > WAVE_HORIZONTAL_THRESHOLD) {
+            if (leftMovement < -threshold && rightMovement > threshold) {
                 if (!expectingInwardMotion) {
                     isWaveMotion = true;
                     expectingInwardMotion = true;
@@ -224,7 +262,7 @@ public class WavingDetector {
                 }
             }
             // Inward motion (hands moving toward center)
-            else if (leftMovement > WAVE_HORIZONTAL_THRESHOLD && rightMovement < -WAVE_HORIZONTAL_THRESHOLD) {
+            else if (leftMovement > threshold && rightMovement < -threshold) {
                 if (expectingInwardMotion) {
                     isWaveMotion = true;
                     expectingInwardMotion = false;
@@ -232,18 +270,21 @@ public class WavingDetector {
                 }
             }
             // Single hand wave is also acceptable
-            else if (leftMovedSignificantly && Math.abs(rightMovement) < WAVE_HORIZONTAL_THRESHOLD/2) {
+            else if (leftMovedSignificantly && Math.abs(rightMovement) < threshold/2) {
                 isWaveMotion = true;
                 movementDesc = "Left hand waving";
             }
-            else if (rightMovedSignificantly && Math.abs(leftMovement) < WAVE_HORIZONTAL_THRESHOLD/2) {
+            else if (rightMovedSignificantly && Math.abs(leftMovement) < threshold/2) {
                 isWaveMotion = true;
                 movementDesc = "Right hand waving";
             }
         }
 
-        lastMovementDescription = movementDesc.isEmpty() ?
-                String.format("L:%.3f R:%.3f", leftMovement, rightMovement) : movementDesc;
+        if (!movementDesc.isEmpty()) {
+            lastMovementDescription = movementDesc;
+        } else if (debugListener != null) {
+            lastMovementDescription = String.format("L:%.3f R:%.3f", leftMovement, rightMovement);
+        }
 
         // Update last positions
         leftWristLastX = currentLeftX;
@@ -256,15 +297,15 @@ public class WavingDetector {
         waveTimes.add(currentTime);
         lastWaveTime = currentTime;
 
-        Log.d(TAG, "Wave detected! Count: " + waveTimes.size() + "/" + REQUIRED_WAVE_COUNT);
+        Log.d(TAG, "Wave detected! Count: " + waveTimes.size() + "/" + config.requiredWaveCount);
 
         if (listener != null) {
             listener.onWavingDetected(waveTimes.size());
-            listener.onWavingProgress(waveTimes.size(), REQUIRED_WAVE_COUNT);
+            listener.onWavingProgress(waveTimes.size(), config.requiredWaveCount);
         }
 
         // Check if we've reached the required number of waves
-        if (waveTimes.size() >= REQUIRED_WAVE_COUNT) {
+        if (waveTimes.size() >= config.requiredWaveCount) {
             Log.d(TAG, "Waving sequence completed!");
             if (listener != null) {
                 listener.onWavingCompleted();
@@ -297,7 +338,12 @@ public class WavingDetector {
     }
 
     public int getRequiredWaveCount() {
-        return REQUIRED_WAVE_COUNT;
+        return config.requiredWaveCount;
+    }
+
+    // Rep times so far, for the completion record
+    public RepSummary getRepSummary() {
+        return new RepSummary(detectionStartTime, waveTimes);
     }
 
     public long getRemainingTime() {
@@ -305,6 +351,6 @@ public class WavingDetector {
             return 0;
         }
         long elapsed = System.currentTimeMillis() - detectionStartTime;
-        return Math.max(0, DETECTION_TIMEOUT_MS - elapsed);
+        return Math.max(0, config.detectionTimeoutMs - elapsed);
     }
 }
\ No newline at end of file
@@ -0,0 +1,106 @@
+package com.example.mindmotion;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Collects recognized words and hands them to the writer in batches. A batch is flushed once no new
+// word has arrived for QUIET_WINDOW_MS, MAX_DELAY_MS after its first word at the latest, or as soon as
+// it reaches maxBatchSize, so at most maxBatchSize words are ever held in memory.
+public class WordBatcher {
+    static final long QUIET_WINDOW_MS = 750;
+    static final long MAX_DELAY_MS = 3000;
+    static final int DEFAULT_MAX_BATCH_SIZE = 20;
+
+    public interface Flusher {
+        // Called outside the batcher's lock, on whichever thread triggered the flush
+        void flush(List<String> words);
+    }
+
+    private final Flusher flusher;
+    private final int maxBatchSize;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable flushRunnable = this::flush;
+
+    private List<String> pending;
+    private long firstWordMs;
+
+    private final LatencyHistogram batchSizes = new LatencyHistogram();
+    private long wordsFlushed = 0;
+    private long batchesFlushed = 0;
+
+    public WordBatcher(Flusher flusher) {
+        this(flusher, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    public WordBatcher(Flusher flusher, int maxBatchSize) {
+        this.flusher = flusher;
+        this.maxBatchSize = maxBatchSize;
+        this.pending = new ArrayList<>(maxBatchSize);
+    }
+
+    public void add(String word) {
+        boolean full;
+        synchronized (this) {
+            // The handler's clock, so the MAX_DELAY_MS cap and the posted flush agree
+            long now = SystemClock.uptimeMillis();
+            if (pending.isEmpty()) firstWordMs = now;
+            pending.add(word);
+            full = pending.size() >= maxBatchSize;
+
+            if (!full) {
+                // Slide the quiet window, but never past MAX_DELAY_MS from the first word
+                long delay = Math.min(QUIET_WINDOW_MS, firstWordMs + MAX_DELAY_MS - now);
+                handler.removeCallbacks(flushRunnable);
+                handler.postDelayed(flushRunnable, Math.max(0, delay));
+            }
+        }
+        if (full) flush();
+    }
+
+    // Sends whatever is pending now; used on pause and destroy so no word waits out the window
+    public void flush() {
+        List<String> batch;
+        synchronized (this) {
+            handler.removeCallbacks(flushRunnable);
+            if (pending.isEmpty()) return;
+            batch = pending;
+            pending = new ArrayList<>(maxBatchSize);
+
+            batchSizes.record(batch.size());
+            wordsFlushed += batch.size();
+            batchesFlushed++;
+        }
+        flusher.flush(batch);
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    public synchronized long getWordsFlushed() {
+        return wordsFlushed;
+    }
+
+    public synchronized long getBatchesFlushed() {
+        return batchesFlushed;
+    }
+
+    // Requests avoided compared with one commit per word
+    public synchronized long getRequestsSaved() {
+        return wordsFlushed - batchesFlushed;
+    }
+
+    public LatencyHistogram.Snapshot getBatchSizeSnapshot() {
+        return batchSizes.snapshot();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "words " + wordsFlushed + " in " + batchesFlushed + " batches (" + getRequestsSaved()
+                + " requests saved), batch size " + batchSizes.snapshot();
+    }
+}
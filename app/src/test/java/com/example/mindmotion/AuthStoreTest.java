@@ -0,0 +1,50 @@
+package com.example.mindmotion;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AuthStoreTest {
+
+    private final List<AuthState> persisted = new ArrayList<>();
+    private final List<Runnable> pendingWrites = new ArrayList<>();
+    private final AuthStore store = new AuthStore(AuthState.SIGNED_OUT, persisted::add, pendingWrites::add);
+
+    @Test
+    public void burstOfSwapsIsPersistedOnceWithTheLatestState() {
+        TokenProvider.Tokens first = new TokenProvider.Tokens("id1", "refresh1", 1000);
+        store.set(new AuthState("uid1", "Ana", "ana@example.com", first));
+        store.update(state -> state.withTokens(new TokenProvider.Tokens("id2", "refresh2", 2000)));
+        store.update(state -> state.withTokens(new TokenProvider.Tokens("id3", "refresh3", 3000)));
+
+        assertEquals("id3", store.get().tokens.idToken);
+        assertTrue(persisted.isEmpty());
+        assertEquals(1, pendingWrites.size());
+
+        pendingWrites.remove(0).run();
+        assertEquals(1, persisted.size());
+        assertEquals("id3", persisted.get(0).tokens.idToken);
+        assertEquals("uid1", persisted.get(0).userId);
+    }
+
+    @Test
+    public void swapAfterWriteStartsSchedulesAnotherWrite() {
+        store.set(new AuthState("uid1", "Ana", "", new TokenProvider.Tokens("id1", "refresh1", 1000)));
+        pendingWrites.remove(0).run();
+
+        store.set(AuthState.SIGNED_OUT);
+        assertEquals(1, pendingWrites.size());
+        pendingWrites.remove(0).run();
+        assertFalse(persisted.get(persisted.size() - 1).isLoggedIn());
+    }
+
+    @Test
+    public void loggedInNeedsUserAndRefreshToken() {
+        assertFalse(AuthState.SIGNED_OUT.isLoggedIn());
+        assertFalse(new AuthState("uid1", null, null, null).isLoggedIn());
+        assertTrue(new AuthState("uid1", null, null, new TokenProvider.Tokens("", "refresh1", 0)).isLoggedIn());
+    }
+}
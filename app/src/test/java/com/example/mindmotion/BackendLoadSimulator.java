@@ -0,0 +1,515 @@
+package com.example.mindmotion;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Sizes backend traffic for a fleet of classroom tablets. Each simulated device signs in, polls for
+// sessions, "performs" the motion it finds, marks it detected and saves the words it heard, using
+// the app's own request builders, PollingScheduler, TokenProvider and FirestoreDocumentReader
+// against a FakeFirebaseServer. A teacher queues a new session for every device on a fixed cadence.
+//
+// This is a model of the app's request pattern, not the app: the device loop below stands in for
+// FirebaseRestManager, which is built around process-wide singletons and the main looper and cannot
+// run a fleet in one JVM. It leaves out PendingWriteQueue replay and its circuit breaker, IoScheduler
+// lane limits, WordBatcher timing, the Listen stream and trace uploads. Its numbers compare polling
+// and write strategies against each other; they are not a measurement of what the shipped app sends.
+//
+// Simulated time runs timeScale times faster than wall time, so an hour of classroom traffic fits in
+// a test run. Rates are reported per simulated minute; latency is real loopback time (plus any
+// latency injected into the server) and is not scaled.
+//
+// Devices share one scheduled pool (Java 11 has no virtual threads); a device only holds a thread
+// while one of its steps is running.
+public class BackendLoadSimulator {
+    private static final String PASSWORD = "load-test";
+    private static final String[] WORDS = {"apple", "ball", "cat", "dog", "egg", "fish"};
+    private static final String[] MOTIONS = {"clapping", "wave", "jumping", "marching", "raising_hand"};
+    private static final long TOKEN_TIMEOUT_MS = 10000;
+
+    public enum PollStrategy {
+        // Full list of the 50 newest sessions every 3 s, filtered on the device
+        FIXED_LIST,
+        // Filtered, projected, incremental runQuery every 3 s
+        FIXED_QUERY,
+        // Incremental runQuery on the PollingScheduler cadence, including while a detector runs
+        ADAPTIVE_QUERY
+    }
+
+    public enum WriteStrategy {
+        // Each word: read the counters twice, rewrite them, then create the voice_data document
+        PER_WORD_REQUESTS,
+        // The motion mark and each word batch go out as one documents:commit
+        BATCHED_COMMIT
+    }
+
+    public enum TokenStrategy {
+        // Polling and writes each keep and refresh their own token
+        PER_CALLER,
+        // One single-flight TokenProvider per device
+        SHARED_PROVIDER
+    }
+
+    public static final class Scenario {
+        public final String name;
+        public final PollStrategy poll;
+        public final WriteStrategy writes;
+        public final TokenStrategy tokens;
+
+        public Scenario(String name, PollStrategy poll, WriteStrategy writes, TokenStrategy tokens) {
+            this.name = name;
+            this.poll = poll;
+            this.writes = writes;
+            this.tokens = tokens;
+        }
+
+        public static List<Scenario> standard() {
+            return Arrays.asList(
+                    new Scenario("legacy", PollStrategy.FIXED_LIST, WriteStrategy.PER_WORD_REQUESTS, TokenStrategy.PER_CALLER),
+                    new Scenario("query", PollStrategy.FIXED_QUERY, WriteStrategy.PER_WORD_REQUESTS, TokenStrategy.PER_CALLER),
+                    new Scenario("query+commit", PollStrategy.FIXED_QUERY, WriteStrategy.BATCHED_COMMIT, TokenStrategy.PER_CALLER),
+                    new Scenario("query+commit+token", PollStrategy.FIXED_QUERY, WriteStrategy.BATCHED_COMMIT, TokenStrategy.SHARED_PROVIDER),
+                    new Scenario("current", PollStrategy.ADAPTIVE_QUERY, WriteStrategy.BATCHED_COMMIT, TokenStrategy.SHARED_PROVIDER));
+        }
+    }
+
+    public static final class Result {
+        public final Scenario scenario;
+        public final int devices;
+        public final double simulatedMinutes;
+        public final long requests;
+        public final long bytes;
+        public final long documentReads;
+        public final long tokenRefreshes;
+        public final long sessionsCompleted;
+        public final long failedRequests;
+        public final LatencyHistogram.Snapshot latencyMs;
+
+        Result(Scenario scenario, int devices, double simulatedMinutes, long requests, long bytes, long documentReads,
+               long tokenRefreshes, long sessionsCompleted, long failedRequests, LatencyHistogram.Snapshot latencyMs) {
+            this.scenario = scenario;
+            this.devices = devices;
+            this.simulatedMinutes = simulatedMinutes;
+            this.requests = requests;
+            this.bytes = bytes;
+            this.documentReads = documentReads;
+            this.tokenRefreshes = tokenRefreshes;
+            this.sessionsCompleted = sessionsCompleted;
+            this.failedRequests = failedRequests;
+            this.latencyMs = latencyMs;
+        }
+
+        public double getRequestsPerMinute() {
+            return requests / simulatedMinutes;
+        }
+
+        public double getBytesPerMinute() {
+            return bytes / simulatedMinutes;
+        }
+
+        public double getDocumentReadsPerMinute() {
+            return documentReads / simulatedMinutes;
+        }
+    }
+
+    private final int devices;
+    private final long simulatedMs;
+    private final int timeScale;
+    private final int threads;
+    private long sessionIntervalMs = 2 * 60 * 1000;
+    private long motionDurationMs = 20000;
+    private int wordsPerSession = 3;
+    private int historyPerDevice = 30;
+    private int tokenLifetimeSeconds = 3600;
+    private long serverLatencyMs = 0;
+
+    public BackendLoadSimulator(int devices, long simulatedMinutes, int timeScale, int threads) {
+        this.devices = devices;
+        this.simulatedMs = simulatedMinutes * 60 * 1000;
+        this.timeScale = Math.max(1, timeScale);
+        this.threads = Math.max(1, threads);
+    }
+
+    // How often the teacher queues a motion for each device, in simulated time
+    public BackendLoadSimulator sessionInterval(long sessionIntervalMs) {
+        this.sessionIntervalMs = sessionIntervalMs;
+        return this;
+    }
+
+    public BackendLoadSimulator wordsPerSession(int wordsPerSession) {
+        this.wordsPerSession = wordsPerSession;
+        return this;
+    }
+
+    // Completed sessions already in each device's collection; the full-list poll reads all of them
+    public BackendLoadSimulator history(int historyPerDevice) {
+        this.historyPerDevice = historyPerDevice;
+        return this;
+    }
+
+    public BackendLoadSimulator tokenLifetime(int seconds) {
+        this.tokenLifetimeSeconds = seconds;
+        return this;
+    }
+
+    public BackendLoadSimulator serverLatency(long latencyMs) {
+        this.serverLatencyMs = latencyMs;
+        return this;
+    }
+
+    public List<Result> runAll(List<Scenario> scenarios) throws Exception {
+        List<Result> results = new ArrayList<>();
+        for (Scenario scenario : scenarios) results.add(run(scenario));
+        return results;
+    }
+
+    // Each scenario gets a fresh server so its counters and data start clean
+    public Result run(Scenario scenario) throws Exception {
+        // Lets the platform keep-alive pool hold a socket per device instead of five in total
+        System.setProperty("http.maxConnections", String.valueOf(Math.max(5, devices)));
+
+        try (FakeFirebaseServer server = new FakeFirebaseServer()) {
+            server.setTokenLifetimeSeconds(tokenLifetimeSeconds);
+            long realStartNanos = System.nanoTime();
+            long simulatedStartMs = System.currentTimeMillis();
+            LongSupplier clock = () -> simulatedStartMs + (System.nanoTime() - realStartNanos) / 1000000 * timeScale;
+
+            Fleet fleet = new Fleet(server, scenario, clock);
+            for (int i = 0; i < devices; i++) fleet.devices.add(new Device(fleet, i));
+            // Sign-in and seeding are not part of the steady state being sized
+            long setupRequests = server.getTotalRequestCount();
+            long setupBytes = server.getBytesServed() + server.getBytesReceived();
+            long setupReads = server.getDocumentReadCount();
+            server.setLatencyMs(serverLatencyMs);
+
+            ScheduledExecutorService pool = Executors.newScheduledThreadPool(threads);
+            fleet.pool = pool;
+            long runStartMs = clock.getAsLong();
+            fleet.endMs = runStartMs + simulatedMs;
+            for (Device device : fleet.devices) {
+                pool.schedule(device::step, fleet.random.nextInt((int) toRealMs(PollingScheduler.BASE_INTERVAL_MS) + 1),
+                        TimeUnit.MILLISECONDS);
+            }
+
+            Thread.sleep(toRealMs(simulatedMs));
+            double minutes = (clock.getAsLong() - runStartMs) / 60000.0;
+            pool.shutdown();
+            pool.awaitTermination(HttpTransport.READ_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            pool.shutdownNow();
+
+            return new Result(scenario, devices, minutes,
+                    server.getTotalRequestCount() - setupRequests,
+                    server.getBytesServed() + server.getBytesReceived() - setupBytes,
+                    server.getDocumentReadCount() - setupReads,
+                    server.getRequestCount("refresh"),
+                    fleet.sessionsCompleted.get(),
+                    fleet.failedRequests.get(),
+                    fleet.latencyMs.snapshot());
+        }
+    }
+
+    private long toRealMs(long simulatedDelayMs) {
+        return Math.max(1, simulatedDelayMs / timeScale);
+    }
+
+    // State shared by every device in one scenario run
+    private final class Fleet {
+        final FakeFirebaseServer server;
+        final FirebaseEndpoints endpoints;
+        final Scenario scenario;
+        final LongSupplier clock;
+        final Random random = new Random(7);
+        final List<Device> devices = new ArrayList<>();
+        final LatencyHistogram latencyMs = new LatencyHistogram();
+        final AtomicLong sessionsCompleted = new AtomicLong();
+        final AtomicLong failedRequests = new AtomicLong();
+        ScheduledExecutorService pool;
+        long endMs;
+
+        Fleet(FakeFirebaseServer server, Scenario scenario, LongSupplier clock) {
+            this.server = server;
+            this.endpoints = server.getEndpoints();
+            this.scenario = scenario;
+            this.clock = clock;
+        }
+    }
+
+    private final class Device {
+        final Fleet fleet;
+        final String uid;
+        final HttpTransport transport = new HttpTransport();
+        final PollingScheduler pollingScheduler;
+        final TokenProvider pollTokens;
+        final TokenProvider writeTokens;
+        final Set<String> processed = new HashSet<>();
+        // Found while a motion was running; started in order as each one finishes, like SessionQueue
+        final ArrayDeque<String> queued = new ArrayDeque<>();
+        final Random random;
+        long lastSeenTimestamp = 0;
+        long nextSessionAtMs;
+        int sessionCounter = 0;
+        int voiceCounter = 0;
+        String activeSessionId;
+        long detectionEndsAtMs;
+
+        Device(Fleet fleet, int index) throws Exception {
+            this.fleet = fleet;
+            this.uid = "device-" + index;
+            this.random = new Random(index);
+            this.pollingScheduler = new PollingScheduler(fleet.clock, random);
+
+            String email = uid + "@example.com";
+            fleet.server.addAccount(email, PASSWORD, uid);
+            Map<String, Object> profile = new HashMap<>();
+            profile.put("userType", "student");
+            profile.put("name", uid);
+            fleet.server.putDocument("users/" + uid, profile);
+            long now = fleet.clock.getAsLong();
+            for (int i = 0; i < historyPerDevice; i++) {
+                putSession("history" + i, "completed", now / 1000 - (historyPerDevice - i) * 60L);
+            }
+            nextSessionAtMs = now + (long) (random.nextDouble() * sessionIntervalMs);
+
+            TokenProvider.Tokens initial = signIn(email);
+            pollTokens = newTokenProvider(initial);
+            writeTokens = fleet.scenario.tokens == TokenStrategy.SHARED_PROVIDER ? pollTokens : newTokenProvider(initial);
+        }
+
+        private TokenProvider newTokenProvider(TokenProvider.Tokens initial) {
+            // Refreshes run inline on the device's own thread: there is nothing else for it to do
+            return new TokenProvider(initial, this::refresh, saved -> { }, Runnable::run, fleet.clock);
+        }
+
+        private TokenProvider.Tokens signIn(String email) throws Exception {
+            FirebaseEndpoints endpoints = fleet.endpoints;
+            HttpTransport.Response response = transport.execute(HttpTransport.Request.post("auth.signIn",
+                    endpoints.authBaseUrl + ":signInWithPassword?key=" + endpoints.apiKey,
+                    new JSONObject().put("email", email).put("password", PASSWORD).put("returnSecureToken", true).toString()));
+            JSONObject body = new JSONObject(response.body);
+            return new TokenProvider.Tokens(body.getString("idToken"), body.getString("refreshToken"),
+                    fleet.clock.getAsLong() + body.optLong("expiresIn", 3600) * 1000);
+        }
+
+        private TokenProvider.Tokens refresh(String refreshToken) throws Exception {
+            FirebaseEndpoints endpoints = fleet.endpoints;
+            HttpTransport.Response response = send(HttpTransport.Request
+                    .post("auth.refresh", endpoints.secureTokenUrl + "?key=" + endpoints.apiKey,
+                            "grant_type=refresh_token&refresh_token=" + refreshToken)
+                    .contentType("application/x-www-form-urlencoded"));
+            if (!response.isSuccessful()) return null;
+            JSONObject body = new JSONObject(response.body);
+            return new TokenProvider.Tokens(body.getString("id_token"), body.optString("refresh_token", refreshToken),
+                    fleet.clock.getAsLong() + body.optLong("expires_in", 3600) * 1000);
+        }
+
+        void step() {
+            long now = fleet.clock.getAsLong();
+            if (now >= fleet.endMs) return;
+            long delayMs;
+            try {
+                queueTeacherSession(now);
+                if (activeSessionId != null && now >= detectionEndsAtMs) finishSession(now);
+                delayMs = poll(now);
+            } catch (Exception e) {
+                fleet.failedRequests.incrementAndGet();
+                delayMs = PollingScheduler.BASE_INTERVAL_MS;
+            }
+            try {
+                fleet.pool.schedule(this::step, toRealMs(delayMs), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // The run is over
+            }
+        }
+
+        // The teacher's device writes sessions directly; that traffic is not what is being sized
+        private void queueTeacherSession(long now) {
+            if (now < nextSessionAtMs) return;
+            putSession("session" + (sessionCounter++), "waiting", now / 1000);
+            nextSessionAtMs = now + (long) (sessionIntervalMs * (0.8 + 0.4 * random.nextDouble()));
+        }
+
+        private void putSession(String sessionId, String status, long timestampSeconds) {
+            Map<String, Object> session = new HashMap<>();
+            session.put("motionType", MOTIONS[Math.abs(sessionId.hashCode()) % MOTIONS.length]);
+            session.put("status", status);
+            session.put("timestamp", timestampSeconds);
+            fleet.server.putDocument("users/" + uid + "/motion_sessions/" + sessionId, session);
+        }
+
+        // Returns the simulated delay before the next step
+        private long poll(long now) throws Exception {
+            boolean adaptive = fleet.scenario.poll == PollStrategy.ADAPTIVE_QUERY;
+            String idToken = pollTokens.awaitToken(false, TOKEN_TIMEOUT_MS);
+            if (idToken == null) {
+                fleet.failedRequests.incrementAndGet();
+                return adaptive ? pollingScheduler.nextDelayMs(PollingScheduler.Outcome.AUTH_RETRY)
+                        : PollingScheduler.BASE_INTERVAL_MS;
+            }
+
+            boolean incremental = fleet.scenario.poll != PollStrategy.FIXED_LIST;
+            HttpTransport.Request request = incremental
+                    ? FirebaseRestManager.buildSessionQueryRequest(fleet.endpoints, uid, lastSeenTimestamp, idToken)
+                    : FirebaseRestManager.buildSessionListRequest(fleet.endpoints, uid, idToken);
+            pollingScheduler.onRequestSent();
+            List<FirestoreDocumentReader.Document> documents = sendAndDecode(request, incremental);
+
+            PollingScheduler.Outcome outcome = PollingScheduler.Outcome.SERVER_ERROR;
+            if (documents != null) {
+                outcome = PollingScheduler.Outcome.EMPTY;
+                for (FirestoreDocumentReader.Document document : documents) {
+                    long timestamp = document.getLong("timestamp", 0);
+                    if (incremental) lastSeenTimestamp = Math.max(lastSeenTimestamp, timestamp);
+                    if (!"waiting".equals(document.getString("status"))) continue;
+                    if (processed.add(document.getId())) {
+                        // A device performs one motion at a time; anything else queues behind it
+                        if (activeSessionId == null) {
+                            startSession(document.getId(), now);
+                        } else {
+                            queued.add(document.getId());
+                        }
+                        outcome = PollingScheduler.Outcome.SESSION_FOUND;
+                    }
+                }
+            }
+            if (!adaptive) return PollingScheduler.BASE_INTERVAL_MS;
+            return pollingScheduler.nextDelayMs(outcome);
+        }
+
+        private void startSession(String sessionId, long now) {
+            activeSessionId = sessionId;
+            detectionEndsAtMs = now + motionDurationMs;
+            pollingScheduler.setDetectorActive(true);
+        }
+
+        private List<FirestoreDocumentReader.Document> sendAndDecode(HttpTransport.Request request, boolean incremental)
+                throws Exception {
+            long start = System.nanoTime();
+            try {
+                return transport.execute(request, (statusCode, body) -> {
+                    if (statusCode != 200) return null;
+                    return incremental
+                            ? FirestoreDocumentReader.readRunQuery(body, FirebaseRestManager.SESSION_FIELDS)
+                            : FirestoreDocumentReader.readDocumentList(body, FirebaseRestManager.SESSION_FIELDS);
+                });
+            } finally {
+                fleet.latencyMs.record((System.nanoTime() - start) / 1000000);
+            }
+        }
+
+        private HttpTransport.Response send(HttpTransport.Request request) throws Exception {
+            long start = System.nanoTime();
+            try {
+                HttpTransport.Response response = transport.execute(request);
+                // The original write path read the counters before they existed; a 404 there is expected
+                if (!response.isSuccessful() && response.statusCode != 404) fleet.failedRequests.incrementAndGet();
+                return response;
+            } finally {
+                fleet.latencyMs.record((System.nanoTime() - start) / 1000000);
+            }
+        }
+
+        private void finishSession(long now) throws Exception {
+            List<String> words = new ArrayList<>();
+            for (int i = 0; i < wordsPerSession; i++) words.add(WORDS[random.nextInt(WORDS.length)]);
+
+            String idToken = writeTokens.awaitToken(false, TOKEN_TIMEOUT_MS);
+            if (idToken != null) {
+                if (fleet.scenario.writes == WriteStrategy.BATCHED_COMMIT) {
+                    commitResults(idToken, now, words);
+                } else {
+                    writeResultsPerWord(idToken, now, words);
+                }
+                fleet.sessionsCompleted.incrementAndGet();
+            } else {
+                fleet.failedRequests.incrementAndGet();
+            }
+
+            activeSessionId = null;
+            pollingScheduler.setDetectorActive(false);
+            pollingScheduler.onSessionCompleted();
+            if (!queued.isEmpty()) startSession(queued.poll(), now);
+        }
+
+        private JSONObject detectedFields(long now) throws Exception {
+            return new JSONObject()
+                    .put("detected", new JSONObject().put("booleanValue", true))
+                    .put("status", new JSONObject().put("stringValue", "completed"))
+                    .put("completedAt", new JSONObject().put("integerValue", String.valueOf(now)));
+        }
+
+        // What the app sends today: the mark, then the word batch, each as one commit
+        private void commitResults(String idToken, long now, List<String> words) throws Exception {
+            FirebaseEndpoints endpoints = fleet.endpoints;
+            send(FirebaseRestManager.buildCommitRequest(endpoints, new JSONArray()
+                    .put(FirebaseRestManager.buildSessionUpdateWrite(endpoints, uid, activeSessionId, detectedFields(now))), idToken));
+
+            JSONArray writes = new JSONArray();
+            for (String word : words) {
+                writes.put(FirebaseRestManager.buildVoiceEntryWrite(endpoints, uid, FirebaseRestManager.newDocumentId(), word, "2026-01-01"));
+            }
+            writes.put(FirebaseRestManager.buildVoiceCounterWrite(endpoints, uid, words.size()));
+            send(FirebaseRestManager.buildCommitRequest(endpoints, writes, idToken));
+        }
+
+        // The original request pattern: a PATCH for the mark, and four round trips for every word
+        private void writeResultsPerWord(String idToken, long now, List<String> words) throws Exception {
+            String userUrl = fleet.endpoints.documentsUrl() + "/users/" + uid;
+            send(patch("firestore.patch", userUrl + "/motion_sessions/" + activeSessionId
+                            + "?updateMask.fieldPaths=detected&updateMask.fieldPaths=status&updateMask.fieldPaths=completedAt",
+                    new JSONObject().put("fields", detectedFields(now)).toString()).bearer(idToken));
+
+            String counterUrl = userUrl + "/metadata/counters";
+            for (String word : words) {
+                send(HttpTransport.Request.get("firestore.get", counterUrl).bearer(idToken));
+                send(HttpTransport.Request.get("firestore.get", counterUrl).bearer(idToken));
+                voiceCounter++;
+                JSONObject counter = new JSONObject().put("fields", new JSONObject()
+                        .put("voiceCounter", new JSONObject().put("integerValue", String.valueOf(voiceCounter))));
+                send(patch("firestore.patch", counterUrl, counter.toString()).bearer(idToken));
+                JSONObject entry = new JSONObject().put("fields", new JSONObject()
+                        .put("word", new JSONObject().put("stringValue", word)));
+                send(patch("firestore.patch", userUrl + "/voice_data/" + voiceCounter, entry.toString())
+                        .bearer(idToken));
+            }
+        }
+
+        // The desktop JDK client rejects PATCH, so send it as a POST carrying the override header that
+        // Google APIs (and FakeFirebaseServer) honour
+        private HttpTransport.Request patch(String endpoint, String url, String body) {
+            return HttpTransport.Request.post(endpoint, url, body).header("X-HTTP-Method-Override", "PATCH");
+        }
+    }
+
+    public static void writeReport(List<Result> results, PrintStream out) {
+        if (results.isEmpty()) return;
+        Result first = results.get(0);
+        out.printf(Locale.US, "Backend load model: %d devices, %.1f simulated minutes per scenario%n",
+                first.devices, first.simulatedMinutes);
+        out.println("scenario\tpoll\twrites\ttokens\treq/min\treq/device/min\tKB/min\treads/min\tp50ms\tp99ms\trefreshes\tsessions\tfailed");
+        for (Result result : results) {
+            out.printf(Locale.US, "%s\t%s\t%s\t%s\t%.1f\t%.2f\t%.1f\t%.1f\t%d\t%d\t%d\t%d\t%d%n",
+                    result.scenario.name, result.scenario.poll, result.scenario.writes, result.scenario.tokens,
+                    result.getRequestsPerMinute(), result.getRequestsPerMinute() / result.devices,
+                    result.getBytesPerMinute() / 1024, result.getDocumentReadsPerMinute(),
+                    result.latencyMs.getValueAtPercentile(50), result.latencyMs.getValueAtPercentile(99),
+                    result.tokenRefreshes, result.sessionsCompleted, result.failedRequests);
+        }
+    }
+}
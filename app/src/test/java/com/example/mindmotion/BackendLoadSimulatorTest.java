@@ -0,0 +1,79 @@
+package com.example.mindmotion;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Small fleet comparison that always runs, plus a full strategy sweep that only runs when a fleet
+ * size is supplied: ./gradlew testDebugUnitTest -PloadDevices=300
+ * Sweep reports are written to app/build/reports/backend-load/.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BackendLoadSimulatorTest {
+    private static final int SWEEP_SIMULATED_MINUTES = 20;
+    // Request latency is real, so every round trip stretches by this factor in simulated time; keep it
+    // low enough that a slow response does not eat a noticeable part of the 3 s poll interval
+    private static final int SWEEP_TIME_SCALE = 10;
+    // Shorter than the real hour so refresh traffic shows up in the window; real refresh volume is a
+    // sixth of what the sweep reports
+    private static final int SWEEP_TOKEN_LIFETIME_SECONDS = 10 * 60;
+
+    @Test
+    public void currentStrategiesCutReadsBytesAndRefreshes() throws Exception {
+        BackendLoadSimulator simulator = new BackendLoadSimulator(4, 4, 60, 4)
+                .sessionInterval(60 * 1000)
+                // Short enough that every device refreshes a few times within the run
+                .tokenLifetime(6 * 60);
+        List<BackendLoadSimulator.Result> results = simulator.runAll(Arrays.asList(
+                BackendLoadSimulator.Scenario.standard().get(0),
+                BackendLoadSimulator.Scenario.standard().get(4)));
+        // Only shown when an assertion fails; the sweep is where reports get written
+        String report = reportOf(results);
+
+        BackendLoadSimulator.Result legacy = results.get(0);
+        BackendLoadSimulator.Result current = results.get(1);
+        assertTrue("legacy run completed no sessions\n" + report, legacy.sessionsCompleted > 0);
+        assertTrue("current run completed no sessions\n" + report, current.sessionsCompleted > 0);
+        // Request counts are not compared: right after each session the adaptive schedule polls every
+        // second, so with a session a minute it sends more (much smaller) requests than a fixed 3 s poll
+        assertTrue(report, current.getDocumentReadsPerMinute() < legacy.getDocumentReadsPerMinute());
+        assertTrue(report, current.getBytesPerMinute() < legacy.getBytesPerMinute());
+        assertTrue(report, current.tokenRefreshes < legacy.tokenRefreshes);
+    }
+
+    @Test
+    public void sweepStrategies() throws Exception {
+        int devices = Integer.getInteger("mindmotion.loadDevices", 0);
+        assumeTrue("No fleet size configured", devices > 0);
+
+        // A thread per device at most, so a slow backend shows up as latency rather than pool queueing
+        BackendLoadSimulator simulator = new BackendLoadSimulator(devices, SWEEP_SIMULATED_MINUTES, SWEEP_TIME_SCALE, devices)
+                .tokenLifetime(SWEEP_TOKEN_LIFETIME_SECONDS);
+        List<BackendLoadSimulator.Result> results = simulator.runAll(BackendLoadSimulator.Scenario.standard());
+
+        File reportDir = new File("build/reports/backend-load");
+        reportDir.mkdirs();
+        try (PrintStream out = new PrintStream(new File(reportDir, devices + "-devices.tsv"), "UTF-8")) {
+            BackendLoadSimulator.writeReport(results, out);
+        }
+        BackendLoadSimulator.writeReport(results, System.out);
+    }
+
+    private static String reportOf(List<BackendLoadSimulator.Result> results) throws Exception {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (PrintStream out = new PrintStream(buffer, true, "UTF-8")) {
+            BackendLoadSimulator.writeReport(results, out);
+        }
+        return buffer.toString("UTF-8");
+    }
+}
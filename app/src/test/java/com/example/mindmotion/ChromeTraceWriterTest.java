@@ -0,0 +1,88 @@
+package com.example.mindmotion;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays synthetic sessions with tracing routed to a ChromeTraceWriter, producing the same detector
+ * timeline as an on-device capture. Traces land in app/build/reports/traces/ for chrome://tracing.
+ */
+public class ChromeTraceWriterTest {
+
+    @After
+    public void disableTracing() {
+        TraceSections.setEnabled(false);
+        TraceSections.setSink(null);
+    }
+
+    @Test
+    public void replayProducesBalancedDetectorSections() throws Exception {
+        File reportDir = new File("build/reports/traces");
+        reportDir.mkdirs();
+
+        for (String motionType : MotionReplay.motionTypes()) {
+            ChromeTraceWriter writer = new ChromeTraceWriter();
+            TraceSections.setSink(writer);
+            TraceSections.setEnabled(true);
+
+            SyntheticPoseGenerator.Settings settings = new SyntheticPoseGenerator.Settings();
+            settings.motionType = motionType;
+            PoseTrace trace = new SyntheticPoseGenerator(settings).toTrace();
+            replay(MotionReplay.specFor(motionType), trace);
+            TraceSections.setEnabled(false);
+
+            StringWriter json = new StringWriter();
+            writer.writeTo(json);
+            String output = json.toString();
+
+            assertTrue(motionType, output.startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":["));
+            assertTrue(motionType, output.contains("Detector.analyze\""));
+            assertEquals(motionType, count(output, "\"ph\":\"B\""), count(output, "\"ph\":\"E\""));
+            assertTrue(motionType, count(output, "\"ph\":\"B\"") > trace.frameCount() / 2);
+
+            try (Writer out = new FileWriter(new File(reportDir, "replay-" + motionType + ".json"))) {
+                writer.writeTo(out);
+            }
+        }
+    }
+
+    @Test
+    public void disabledTracingRecordsNothing() {
+        ChromeTraceWriter writer = new ChromeTraceWriter();
+        TraceSections.setSink(writer);
+
+        boolean traced = TraceSections.begin("ignored");
+        TraceSections.end(traced);
+        TraceSections.beginAsync("ignored", 1);
+        TraceSections.counter("ignored", 1);
+
+        assertFalse(traced);
+        assertEquals(0, writer.getEventCount());
+    }
+
+    @Test
+    public void eventBufferIsBounded() {
+        ChromeTraceWriter writer = new ChromeTraceWriter(10);
+        for (int i = 0; i < 25; i++) writer.counter("reps", i);
+
+        assertEquals(10, writer.getEventCount());
+        assertEquals(15, writer.getDroppedEvents());
+    }
+
+    private static <C> void replay(MotionReplay.MotionSpec<C> spec, PoseTrace trace) {
+        spec.countReps(spec.newConfig(), trace, 1);
+    }
+
+    private static int count(String haystack, String needle) {
+        int count = 0;
+        for (int i = haystack.indexOf(needle); i >= 0; i = haystack.indexOf(needle, i + 1)) count++;
+        return count;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.mindmotion;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CircuitBreakerTest {
+    private long now = 1000;
+    private final List<CircuitBreaker.State> transitions = new ArrayList<>();
+    private final CircuitBreaker breaker = new CircuitBreaker("firestore.commit", () -> now, new Random(1),
+            (endpoint, state, retryAfterMs) -> transitions.add(state));
+
+    @Test
+    public void opensAfterConsecutiveFailuresAndFailsFast() throws Exception {
+        for (int i = 0; i < CircuitBreaker.FAILURE_THRESHOLD; i++) {
+            breaker.acquire(false);
+            breaker.onFailure();
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(1, breaker.getTripCount());
+        long retryAfterMs = breaker.getRetryAfterMs();
+        assertTrue(retryAfterMs >= CircuitBreaker.BASE_OPEN_MS * (1 - CircuitBreaker.JITTER));
+        assertRejected(false);
+        assertEquals(1, breaker.getShortCircuitedCount());
+    }
+
+    @Test
+    public void halfOpenLetsOneProbeThroughAndBacksOffWhenItFails() throws Exception {
+        trip();
+        now += CircuitBreaker.BASE_OPEN_MS * 2;
+
+        breaker.acquire(false);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertRejected(false);
+
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        // Second trip in a row: the open period doubles
+        assertTrue(breaker.getRetryAfterMs() >= 2 * CircuitBreaker.BASE_OPEN_MS * (1 - CircuitBreaker.JITTER));
+
+        now += CircuitBreaker.MAX_OPEN_MS;
+        breaker.acquire(false);
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(Arrays.asList(CircuitBreaker.State.OPEN, CircuitBreaker.State.HALF_OPEN,
+                CircuitBreaker.State.OPEN, CircuitBreaker.State.HALF_OPEN, CircuitBreaker.State.CLOSED), transitions);
+    }
+
+    @Test
+    public void retriesDrawOnABudgetThatRefillsOverTime() throws Exception {
+        int allowed = 0;
+        for (int i = 0; i < 100; i++) {
+            try {
+                breaker.acquire(true);
+                breaker.onSuccess();
+                allowed++;
+            } catch (CircuitBreaker.RejectedException e) {
+                assertTrue(e.retryAfterMs > 0);
+            }
+        }
+        assertEquals((int) CircuitBreaker.MAX_RETRY_TOKENS, allowed);
+        assertEquals(100 - allowed, breaker.getRetriesDeniedCount());
+
+        // First attempts always go through and earn a share of a retry
+        for (int i = 0; i < 5; i++) {
+            breaker.acquire(false);
+            breaker.onSuccess();
+        }
+        breaker.acquire(true);
+        assertRejected(true);
+
+        now += 60000;
+        breaker.acquire(true);
+    }
+
+    private void trip() throws Exception {
+        for (int i = 0; i < CircuitBreaker.FAILURE_THRESHOLD; i++) {
+            breaker.acquire(false);
+            breaker.onFailure();
+        }
+    }
+
+    private void assertRejected(boolean isRetry) {
+        try {
+            breaker.acquire(isRetry);
+        } catch (CircuitBreaker.RejectedException expected) {
+            return;
+        }
+        throw new AssertionError("Expected the call to be rejected");
+    }
+}
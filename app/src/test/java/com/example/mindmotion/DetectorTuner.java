@@ -0,0 +1,216 @@
+package com.example.mindmotion;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Grid / random search over detector Config values against a labeled trace corpus.
+// Traces are decoded once and shared by every candidate; candidates are scored in parallel.
+public class DetectorTuner<C> {
+    private static final int[] TARGET_FRAME_RATES = {30, 20, 15, 10};
+
+    private final MotionReplay.MotionSpec<C> spec;
+    private final List<PoseTrace> traces;
+    private final int threads;
+
+    // One (candidate, model tier, frame rate) evaluation
+    public static final class Point {
+        public final int candidate;
+        public final ModelTier tier;
+        public final int frameRate;
+        public final double accuracy;
+        public final int traces;
+
+        Point(int candidate, ModelTier tier, int frameRate, double accuracy, int traces) {
+            this.candidate = candidate;
+            this.tier = tier;
+            this.frameRate = frameRate;
+            this.accuracy = accuracy;
+            this.traces = traces;
+        }
+
+        boolean dominates(Point other) {
+            boolean noWorse = accuracy >= other.accuracy
+                    && tier.ordinal() <= other.tier.ordinal()
+                    && frameRate <= other.frameRate;
+            boolean better = accuracy > other.accuracy
+                    || tier.ordinal() < other.tier.ordinal()
+                    || frameRate < other.frameRate;
+            return noWorse && better;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static DetectorTuner<?> forMotion(String motionType, List<PoseTrace> corpus, int threads) {
+        List<PoseTrace> matching = new ArrayList<>();
+        for (PoseTrace trace : corpus) {
+            if (motionType.equals(trace.getMotionType())) matching.add(trace);
+        }
+        return new DetectorTuner<>((MotionReplay.MotionSpec<Object>) MotionReplay.specFor(motionType), matching, threads);
+    }
+
+    public DetectorTuner(MotionReplay.MotionSpec<C> spec, List<PoseTrace> traces, int threads) {
+        this.spec = spec;
+        this.traces = traces;
+        this.threads = Math.max(1, threads);
+
+        // Decode up front so worker threads only ever read the shared landmark lists
+        for (PoseTrace trace : traces) trace.frames();
+    }
+
+    public static List<PoseTrace> loadCorpus(File directory) throws IOException {
+        List<PoseTrace> corpus = new ArrayList<>();
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".trace"));
+        if (files == null) return corpus;
+
+        for (File file : files) {
+            try (InputStream in = new FileInputStream(file)) {
+                corpus.add(PoseTrace.readFrom(new java.io.BufferedInputStream(in)));
+            }
+        }
+        return corpus;
+    }
+
+    // Full grid with the given steps per parameter, falling back to random sampling when too large
+    public List<double[]> gridCandidates(int stepsPerParameter, int maxCandidates, long seed) {
+        List<MotionReplay.Parameter<C>> params = spec.parameters();
+        double total = Math.pow(stepsPerParameter, params.size());
+        if (total > maxCandidates) return randomCandidates(maxCandidates, seed);
+
+        List<double[]> candidates = new ArrayList<>();
+        candidates.add(new double[params.size()]);
+        for (int p = 0; p < params.size(); p++) {
+            MotionReplay.Parameter<C> param = params.get(p);
+            List<double[]> expanded = new ArrayList<>();
+            for (double[] partial : candidates) {
+                for (int step = 0; step < stepsPerParameter; step++) {
+                    double fraction = stepsPerParameter == 1 ? 0.5 : (double) step / (stepsPerParameter - 1);
+                    double[] next = partial.clone();
+                    next[p] = param.clamp(param.min + fraction * (param.max - param.min));
+                    expanded.add(next);
+                }
+            }
+            candidates = expanded;
+        }
+        return candidates;
+    }
+
+    public List<double[]> randomCandidates(int count, long seed) {
+        List<MotionReplay.Parameter<C>> params = spec.parameters();
+        Random random = new Random(seed);
+        List<double[]> candidates = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double[] values = new double[params.size()];
+            for (int p = 0; p < params.size(); p++) {
+                MotionReplay.Parameter<C> param = params.get(p);
+                values[p] = param.clamp(param.min + random.nextDouble() * (param.max - param.min));
+            }
+            candidates.add(values);
+        }
+        return candidates;
+    }
+
+    public List<Point> evaluate(List<double[]> candidates) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<Point>>> futures = new ArrayList<>(candidates.size());
+            for (int i = 0; i < candidates.size(); i++) {
+                final int index = i;
+                final double[] values = candidates.get(i);
+                futures.add(pool.submit(() -> evaluateCandidate(index, values)));
+            }
+
+            List<Point> points = new ArrayList<>();
+            for (Future<List<Point>> future : futures) {
+                points.addAll(future.get());
+            }
+            return points;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Candidate evaluation failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private List<Point> evaluateCandidate(int index, double[] values) {
+        C config = spec.configFor(values);
+        int required = spec.requiredReps(config);
+        List<Point> points = new ArrayList<>();
+
+        for (ModelTier tier : ModelTier.values()) {
+            for (int targetFps : TARGET_FRAME_RATES) {
+                int evaluated = 0;
+                int correct = 0;
+                for (PoseTrace trace : traces) {
+                    if (trace.getModelTier() != tier || trace.getFrameRate() < targetFps) continue;
+
+                    int frameStep = Math.max(1, Math.round((float) trace.getFrameRate() / targetFps));
+                    int counted = spec.countReps(config, trace, frameStep);
+                    if (counted == Math.min(trace.getExpectedReps(), required)) correct++;
+                    evaluated++;
+                }
+                if (evaluated > 0) {
+                    points.add(new Point(index, tier, targetFps, (double) correct / evaluated, evaluated));
+                }
+            }
+        }
+        return points;
+    }
+
+    public static List<Point> paretoFront(List<Point> points) {
+        List<Point> front = new ArrayList<>();
+        for (Point candidate : points) {
+            boolean dominated = false;
+            for (Point other : points) {
+                if (other.dominates(candidate)) {
+                    dominated = true;
+                    break;
+                }
+            }
+            if (!dominated) front.add(candidate);
+        }
+
+        // Equal points from different candidates add nothing; keep the first of each
+        front.sort(Comparator.<Point>comparingInt(p -> p.tier.ordinal())
+                .thenComparingInt(p -> p.frameRate)
+                .thenComparing(p -> -p.accuracy)
+                .thenComparingInt(p -> p.candidate));
+        List<Point> unique = new ArrayList<>();
+        for (Point point : front) {
+            Point last = unique.isEmpty() ? null : unique.get(unique.size() - 1);
+            if (last == null || last.tier != point.tier || last.frameRate != point.frameRate
+                    || last.accuracy != point.accuracy) {
+                unique.add(point);
+            }
+        }
+        return unique;
+    }
+
+    public void writeReport(List<double[]> candidates, List<Point> points, PrintStream out) {
+        List<MotionReplay.Parameter<C>> params = spec.parameters();
+        out.printf(Locale.US, "Detector tuning report: %s (%d traces, %d candidates)%n",
+                spec.motionType, traces.size(), candidates.size());
+        out.println("Pareto front: accuracy vs. required model tier and frame rate");
+        out.print("tier\tfps\taccuracy\ttraces");
+        for (MotionReplay.Parameter<C> param : params) out.print("\t" + param.name);
+        out.println();
+
+        for (Point point : paretoFront(points)) {
+            out.printf(Locale.US, "%s\t%d\t%.3f\t%d", point.tier, point.frameRate, point.accuracy, point.traces);
+            double[] values = candidates.get(point.candidate);
+            for (double value : values) out.printf(Locale.US, "\t%.4f", value);
+            out.println();
+        }
+    }
+}
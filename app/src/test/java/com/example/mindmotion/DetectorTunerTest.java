@@ -0,0 +1,119 @@
+package com.example.mindmotion;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Runs the detector parameter sweep against a labeled trace corpus on the host JVM.
+ * The corpus sweep is skipped unless one is supplied: ./gradlew testDebugUnitTest -PtraceCorpus=/path/to/traces
+ * Reports are written to app/build/reports/detector-tuning/. A small sweep over synthetic traces
+ * always runs, so the tuner itself stays covered.
+ */
+public class DetectorTunerTest {
+    private static final int CANDIDATES_PER_MOTION = 2000;
+
+    @Test
+    public void sweepCorpus() throws Exception {
+        String corpusPath = System.getProperty("mindmotion.traceCorpus", "");
+        assumeTrue("No trace corpus configured", !corpusPath.isEmpty());
+
+        List<PoseTrace> corpus = DetectorTuner.loadCorpus(new File(corpusPath));
+        assertFalse("Trace corpus is empty", corpus.isEmpty());
+
+        File reportDir = new File("build/reports/detector-tuning");
+        reportDir.mkdirs();
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        for (String motionType : MotionReplay.motionTypes()) {
+            DetectorTuner<?> tuner = DetectorTuner.forMotion(motionType, corpus, threads);
+            writeReport(tuner, new File(reportDir, motionType + ".tsv"));
+        }
+    }
+
+    @Test
+    public void syntheticSweepReportsAnOrderedParetoFront() throws Exception {
+        List<PoseTrace> corpus = new ArrayList<>();
+        long seed = 1;
+        for (ModelTier tier : new ModelTier[] {ModelTier.LITE, ModelTier.HEAVY}) {
+            for (int frameRate : new int[] {30, 15}) {
+                SyntheticPoseGenerator.Settings settings = new SyntheticPoseGenerator.Settings();
+                settings.modelTier = tier;
+                settings.frameRate = frameRate;
+                settings.jitter = 0.01;
+                settings.seed = seed++;
+                corpus.add(new SyntheticPoseGenerator(settings).toTrace());
+            }
+        }
+        // Another motion's trace, which the clapping tuner must leave out
+        SyntheticPoseGenerator.Settings wave = new SyntheticPoseGenerator.Settings();
+        wave.motionType = "wave";
+        corpus.add(new SyntheticPoseGenerator(wave).toTrace());
+
+        DetectorTuner<?> tuner = DetectorTuner.forMotion("clapping", corpus, 2);
+        List<double[]> candidates = tuner.gridCandidates(2, 16, 42L);
+        List<DetectorTuner.Point> points = tuner.evaluate(candidates);
+        assertFalse(points.isEmpty());
+        for (DetectorTuner.Point point : points) {
+            assertTrue(point.traces > 0);
+            assertTrue(point.accuracy >= 0 && point.accuracy <= 1);
+        }
+
+        List<DetectorTuner.Point> front = DetectorTuner.paretoFront(points);
+        assertFalse(front.isEmpty());
+        for (int i = 0; i < front.size(); i++) {
+            DetectorTuner.Point point = front.get(i);
+            for (DetectorTuner.Point other : points) {
+                assertFalse("front point is dominated", other.dominates(point));
+            }
+            if (i == 0) continue;
+            // Cheapest tier first, then lowest frame rate, then best accuracy; no repeated points
+            DetectorTuner.Point previous = front.get(i - 1);
+            int order = Integer.compare(previous.tier.ordinal(), point.tier.ordinal());
+            if (order == 0) order = Integer.compare(previous.frameRate, point.frameRate);
+            if (order == 0) order = Double.compare(point.accuracy, previous.accuracy);
+            assertTrue("front out of order at " + i, order < 0);
+        }
+        // Everything left out is beaten by, or a repeat of, a point on the front
+        for (DetectorTuner.Point point : points) {
+            boolean covered = false;
+            for (DetectorTuner.Point kept : front) {
+                covered |= kept.dominates(point) || (kept.tier == point.tier && kept.frameRate == point.frameRate
+                        && kept.accuracy == point.accuracy);
+            }
+            assertTrue(covered);
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (PrintStream out = new PrintStream(buffer, true, "UTF-8")) {
+            tuner.writeReport(candidates, points, out);
+        }
+        String[] lines = buffer.toString("UTF-8").split("\\R");
+        assertEquals("Detector tuning report: clapping (4 traces, " + candidates.size() + " candidates)", lines[0]);
+        assertTrue(lines[2].startsWith("tier\tfps\taccuracy\ttraces"));
+        assertEquals(3 + front.size(), lines.length);
+        int columns = lines[2].split("\t").length;
+        assertEquals(4 + candidates.get(0).length, columns);
+        for (int i = 0; i < front.size(); i++) {
+            String[] row = lines[3 + i].split("\t");
+            assertEquals(columns, row.length);
+            assertEquals(front.get(i).tier.name(), row[0]);
+            assertEquals(String.valueOf(front.get(i).frameRate), row[1]);
+        }
+    }
+
+    private static <C> void writeReport(DetectorTuner<C> tuner, File file) throws Exception {
+        List<double[]> candidates = tuner.gridCandidates(4, CANDIDATES_PER_MOTION, 42L);
+        List<DetectorTuner.Point> points = tuner.evaluate(candidates);
+        try (PrintStream out = new PrintStream(file, "UTF-8")) {
+            tuner.writeReport(candidates, points, out);
+        }
+    }
+}
@@ -0,0 +1,831 @@
+package com.example.mindmotion;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-process stand-in for the Firebase REST endpoints the app uses, for integration and load tests
+// on a plain JVM. Covers password sign-in, securetoken refresh, document GET/PATCH, collection list
+// with orderBy/pageSize, runQuery with field filters, commit with preconditions and increment
+// transforms, and documents:listen with resume tokens (which the real REST API does not serve; see
+// FirebaseEndpoints). Everything else answers 501.
+//
+// Faults are injectable: a fixed latency per request, the next N requests failing with a status,
+// expireIdTokens() to make every issued ID token answer 401, setListenEnabled(false) to answer
+// Listen the way production does, and closeListenStreams() to end every open stream.
+public class FakeFirebaseServer implements AutoCloseable {
+    public static final String PROJECT_ID = "demo-mindmotion";
+    private static final String DOCUMENTS_PREFIX = "/v1/projects/" + PROJECT_ID + "/databases/(default)/documents";
+    private static final String NAME_PREFIX = "projects/" + PROJECT_ID + "/databases/(default)/documents/";
+
+    private static final class Account {
+        final String password;
+        final String uid;
+
+        Account(String password, String uid) {
+            this.password = password;
+            this.uid = uid;
+        }
+    }
+
+    private static final class StoredDocument {
+        final JSONObject fields;
+        final String createTime;
+        final String updateTime;
+
+        StoredDocument(JSONObject fields, String createTime, String updateTime) {
+            this.fields = fields;
+            this.createTime = createTime;
+            this.updateTime = updateTime;
+        }
+    }
+
+    private final HttpServer server;
+    private final Map<String, Account> accounts = new HashMap<>();
+    private final Map<String, String> uidByRefreshToken = new HashMap<>();
+    private final Set<String> validIdTokens = new HashSet<>();
+    // Sorted by path, so listing a collection is a range scan
+    private final TreeMap<String, StoredDocument> documents = new TreeMap<>();
+
+    private volatile long latencyMs = 0;
+    private volatile int tokenLifetimeSeconds = 3600;
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private volatile int failureStatus = 503;
+    private volatile boolean compositeIndexesDeployed = true;
+    private final Map<String, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+    private final AtomicLong bytesServed = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    // Billed the way Firestore bills them: one per document returned, and at least one per query
+    private final AtomicLong documentReads = new AtomicLong();
+
+    // Listen: every write bumps changeVersion and stamps the document with it. A resume token is
+    // "v<changeVersion>", so a stream resumed from one sends only documents written after it.
+    private final Map<String, Long> documentVersions = new HashMap<>();
+    private long changeVersion = 0;
+    // Bumped to end every open stream
+    private long listenEpoch = 0;
+    private volatile boolean listenEnabled = true;
+    private final List<String> listenResumeTokens = new CopyOnWriteArrayList<>();
+    private final AtomicInteger listenDocumentsSent = new AtomicInteger();
+
+    public FakeFirebaseServer() throws IOException {
+        // Without this the JDK server leaves Nagle on, and every keep-alive response waits out a
+        // delayed ACK (~40 ms) on loopback. Read once, when the first server is created.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    public String getOrigin() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public FirebaseEndpoints getEndpoints() {
+        return FirebaseEndpoints.local(getOrigin(), PROJECT_ID);
+    }
+
+    @Override
+    public void close() {
+        closeListenStreams();
+        server.stop(0);
+    }
+
+    // ---- Setup and fault injection ----
+
+    public synchronized void addAccount(String email, String password, String uid) {
+        accounts.put(email, new Account(password, uid));
+    }
+
+    // Values may be String, Integer/Long, Double or Boolean
+    public synchronized void putDocument(String path, Map<String, Object> values) {
+        JSONObject fields = new JSONObject();
+        try {
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                fields.put(entry.getKey(), encodeValue(entry.getValue()));
+            }
+        } catch (Exception e) {
+            throw new IllegalArgumentException(e);
+        }
+        String now = Instant.now().toString();
+        documents.put(path, new StoredDocument(fields, now, now));
+        recordChange(path);
+    }
+
+    public void setLatencyMs(long latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+
+    public void setTokenLifetimeSeconds(int seconds) {
+        this.tokenLifetimeSeconds = seconds;
+    }
+
+    public void failNextRequests(int count, int status) {
+        failureStatus = status;
+        failuresLeft.set(count);
+    }
+
+    // Off: queries that need a composite index fail the way Firestore does before the indexes in
+    // firestore.indexes.json are deployed
+    public void setCompositeIndexesDeployed(boolean deployed) {
+        this.compositeIndexesDeployed = deployed;
+    }
+
+    // Off: documents:listen answers 501, as Firestore's REST API effectively does
+    public void setListenEnabled(boolean enabled) {
+        this.listenEnabled = enabled;
+    }
+
+    // Ends every open Listen stream cleanly, the way Firestore closes idle streams
+    public synchronized void closeListenStreams() {
+        listenEpoch++;
+        notifyAll();
+    }
+
+    public synchronized void expireIdTokens() {
+        validIdTokens.clear();
+    }
+
+    // ---- Inspection ----
+
+    public synchronized boolean hasDocument(String path) {
+        return documents.containsKey(path);
+    }
+
+    // The decoded value of one field, or null if the document or field is missing
+    public synchronized Object getField(String path, String field) {
+        StoredDocument document = documents.get(path);
+        if (document == null) return null;
+        JSONObject value = document.fields.optJSONObject(field);
+        return value != null ? decodeValue(value) : null;
+    }
+
+    // The resume token each Listen request carried, in order; "" for a request without one
+    public List<String> getListenResumeTokens() {
+        return new ArrayList<>(listenResumeTokens);
+    }
+
+    public int getListenDocumentsSent() {
+        return listenDocumentsSent.get();
+    }
+
+    public synchronized List<String> listDocumentPaths(String collectionPath) {
+        List<String> paths = new ArrayList<>();
+        for (String path : childrenOf(collectionPath).keySet()) paths.add(path);
+        return paths;
+    }
+
+    // Requests per route: signIn, refresh, get, patch, list, runQuery, commit, unsupported
+    public int getRequestCount(String route) {
+        AtomicInteger count = requestCounts.get(route);
+        return count != null ? count.get() : 0;
+    }
+
+    public int getTotalRequestCount() {
+        int total = 0;
+        for (AtomicInteger count : requestCounts.values()) total += count.get();
+        return total;
+    }
+
+    public long getBytesServed() {
+        return bytesServed.get();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    public long getDocumentReadCount() {
+        return documentReads.get();
+    }
+
+    // ---- Routing ----
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getRawPath();
+            String method = exchange.getRequestMethod();
+            String override = exchange.getRequestHeaders().getFirst("X-HTTP-Method-Override");
+            if (override != null) method = override;
+            String body = readBody(exchange.getRequestBody());
+            bytesReceived.addAndGet(body.getBytes(StandardCharsets.UTF_8).length);
+            String route = routeOf(method, path);
+            requestCounts.computeIfAbsent(route, key -> new AtomicInteger()).incrementAndGet();
+
+            if (latencyMs > 0) Thread.sleep(latencyMs);
+            if (failuresLeft.getAndUpdate(left -> Math.max(0, left - 1)) > 0) {
+                sendError(exchange, failureStatus, "UNAVAILABLE", "Injected failure");
+                return;
+            }
+            if (route.equals("listen") && !listenEnabled) route = "unsupported";
+
+            switch (route) {
+                case "signIn":
+                    signIn(exchange, new JSONObject(body));
+                    return;
+                case "refresh":
+                    refresh(exchange, parseForm(body));
+                    return;
+                case "unsupported":
+                    sendError(exchange, 501, "UNIMPLEMENTED", "Not supported by the stand-in server: " + method + " " + path);
+                    return;
+                default:
+                    break;
+            }
+
+            if (!isAuthorized(exchange)) {
+                sendError(exchange, 401, "UNAUTHENTICATED", "Missing or expired ID token");
+                return;
+            }
+
+            String relative = decode(path.substring(Math.min(path.length(), DOCUMENTS_PREFIX.length() + 1)));
+            switch (route) {
+                case "commit":
+                    commit(exchange, new JSONObject(body));
+                    break;
+                case "runQuery":
+                    runQuery(exchange, relative.substring(0, relative.indexOf(':')), new JSONObject(body));
+                    break;
+                case "listen":
+                    listen(exchange, new JSONObject(body));
+                    break;
+                case "list":
+                    list(exchange, relative, queryParams(exchange));
+                    break;
+                case "get":
+                    getDocument(exchange, relative);
+                    break;
+                case "patch":
+                    patchDocument(exchange, relative, new JSONObject(body), queryParams(exchange));
+                    break;
+                default:
+                    sendError(exchange, 501, "UNIMPLEMENTED", route);
+            }
+        } catch (Exception e) {
+            sendError(exchange, 400, "INVALID_ARGUMENT", String.valueOf(e.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String routeOf(String method, String path) {
+        if (path.equals("/v1/accounts:signInWithPassword") && method.equals("POST")) return "signIn";
+        if (path.equals("/v1/token") && method.equals("POST")) return "refresh";
+        if (!path.startsWith(DOCUMENTS_PREFIX)) return "unsupported";
+
+        if (path.endsWith(":commit") && method.equals("POST")) return "commit";
+        if (path.endsWith(":runQuery") && method.equals("POST")) return "runQuery";
+        if (path.endsWith(":listen") && method.equals("POST")) return "listen";
+        if (path.contains(":")) return "unsupported";
+
+        int segments = path.length() > DOCUMENTS_PREFIX.length()
+                ? path.substring(DOCUMENTS_PREFIX.length() + 1).split("/").length : 0;
+        boolean isDocument = segments > 0 && segments % 2 == 0;
+        if (isDocument && method.equals("GET")) return "get";
+        if (isDocument && method.equals("PATCH")) return "patch";
+        if (!isDocument && segments > 0 && method.equals("GET")) return "list";
+        return "unsupported";
+    }
+
+    // ---- Auth ----
+
+    private void signIn(HttpExchange exchange, JSONObject request) throws Exception {
+        String email = request.optString("email");
+        Account account;
+        synchronized (this) {
+            account = accounts.get(email);
+        }
+        if (account == null) {
+            sendError(exchange, 400, "INVALID_ARGUMENT", "EMAIL_NOT_FOUND");
+            return;
+        }
+        if (!account.password.equals(request.optString("password"))) {
+            sendError(exchange, 400, "INVALID_ARGUMENT", "INVALID_PASSWORD");
+            return;
+        }
+
+        String idToken = issueIdToken();
+        String refreshToken = "refresh-" + UUID.randomUUID();
+        synchronized (this) {
+            uidByRefreshToken.put(refreshToken, account.uid);
+        }
+        send(exchange, 200, new JSONObject()
+                .put("idToken", idToken)
+                .put("refreshToken", refreshToken)
+                .put("localId", account.uid)
+                .put("email", email)
+                .put("expiresIn", String.valueOf(tokenLifetimeSeconds)).toString());
+    }
+
+    private void refresh(HttpExchange exchange, Map<String, String> form) throws Exception {
+        String refreshToken = form.get("refresh_token");
+        String uid;
+        synchronized (this) {
+            uid = refreshToken != null ? uidByRefreshToken.get(refreshToken) : null;
+        }
+        if (!"refresh_token".equals(form.get("grant_type")) || uid == null) {
+            sendError(exchange, 400, "INVALID_ARGUMENT", "INVALID_REFRESH_TOKEN");
+            return;
+        }
+        send(exchange, 200, new JSONObject()
+                .put("id_token", issueIdToken())
+                .put("refresh_token", refreshToken)
+                .put("user_id", uid)
+                .put("expires_in", String.valueOf(tokenLifetimeSeconds)).toString());
+    }
+
+    private synchronized String issueIdToken() {
+        String idToken = "id-" + UUID.randomUUID();
+        validIdTokens.add(idToken);
+        return idToken;
+    }
+
+    private synchronized boolean isAuthorized(HttpExchange exchange) {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        return authorization != null && authorization.startsWith("Bearer ")
+                && validIdTokens.contains(authorization.substring("Bearer ".length()));
+    }
+
+    // ---- Documents ----
+
+    private void getDocument(HttpExchange exchange, String path) throws Exception {
+        JSONObject document;
+        synchronized (this) {
+            StoredDocument stored = documents.get(path);
+            document = stored != null ? toJson(path, stored, null) : null;
+        }
+        documentReads.incrementAndGet();
+        if (document == null) {
+            sendError(exchange, 404, "NOT_FOUND", "No document to get: " + path);
+        } else {
+            send(exchange, 200, document.toString());
+        }
+    }
+
+    private void patchDocument(HttpExchange exchange, String path, JSONObject body, Map<String, List<String>> params)
+            throws Exception {
+        JSONObject fields = body.optJSONObject("fields");
+        if (fields == null) fields = new JSONObject();
+        List<String> mask = params.get("updateMask.fieldPaths");
+
+        JSONObject document;
+        synchronized (this) {
+            StoredDocument existing = documents.get(path);
+            List<String> exists = params.get("currentDocument.exists");
+            if (exists != null && Boolean.parseBoolean(exists.get(0)) != (existing != null)) {
+                sendError(exchange, existing != null ? 409 : 404,
+                        existing != null ? "ALREADY_EXISTS" : "NOT_FOUND", "Precondition failed: " + path);
+                return;
+            }
+            StoredDocument updated = applyUpdate(existing, fields, mask != null ? new JSONArray(mask) : null);
+            documents.put(path, updated);
+            recordChange(path);
+            document = toJson(path, updated, null);
+        }
+        send(exchange, 200, document.toString());
+    }
+
+    private void list(HttpExchange exchange, String collectionPath, Map<String, List<String>> params) throws Exception {
+        int pageSize = params.containsKey("pageSize") ? Integer.parseInt(params.get("pageSize").get(0)) : 100;
+        String orderBy = params.containsKey("orderBy") ? params.get("orderBy").get(0).trim() : null;
+
+        JSONArray page = new JSONArray();
+        synchronized (this) {
+            List<Map.Entry<String, StoredDocument>> children = new ArrayList<>(childrenOf(collectionPath).entrySet());
+            if (orderBy != null) {
+                String[] parts = orderBy.split("\\s+");
+                boolean descending = parts.length > 1 && parts[1].equalsIgnoreCase("desc");
+                sortByField(children, parts[0], descending);
+            }
+            for (int i = 0; i < children.size() && i < pageSize; i++) {
+                page.put(toJson(children.get(i).getKey(), children.get(i).getValue(), null));
+            }
+        }
+        documentReads.addAndGet(Math.max(1, page.length()));
+        JSONObject response = new JSONObject();
+        if (page.length() > 0) response.put("documents", page);
+        send(exchange, 200, response.toString());
+    }
+
+    private void runQuery(HttpExchange exchange, String parentPath, JSONObject request) throws Exception {
+        JSONObject query = request.getJSONObject("structuredQuery");
+        String collectionId = query.getJSONArray("from").getJSONObject(0).getString("collectionId");
+        String collectionPath = parentPath.isEmpty() ? collectionId : parentPath + "/" + collectionId;
+
+        List<JSONObject> filters = filtersOf(query);
+        if (!compositeIndexesDeployed && needsCompositeIndex(filters)) {
+            sendError(exchange, 400, "FAILED_PRECONDITION", "The query requires an index. You can create it here: "
+                    + "https://console.firebase.google.com/project/" + PROJECT_ID + "/firestore/indexes");
+            return;
+        }
+
+        JSONArray projection = null;
+        JSONObject select = query.optJSONObject("select");
+        if (select != null) projection = select.optJSONArray("fields");
+
+        String readTime = Instant.now().toString();
+        JSONArray results = new JSONArray();
+        synchronized (this) {
+            List<Map.Entry<String, StoredDocument>> matches = new ArrayList<>();
+            for (Map.Entry<String, StoredDocument> entry : childrenOf(collectionPath).entrySet()) {
+                if (matchesAll(entry.getValue().fields, filters)) matches.add(entry);
+            }
+
+            JSONArray orderBy = query.optJSONArray("orderBy");
+            if (orderBy != null && orderBy.length() > 0) {
+                JSONObject order = orderBy.getJSONObject(0);
+                sortByField(matches, order.getJSONObject("field").getString("fieldPath"),
+                        "DESCENDING".equals(order.optString("direction")));
+            }
+
+            int limit = query.has("limit") ? query.getInt("limit") : Integer.MAX_VALUE;
+            for (int i = 0; i < matches.size() && i < limit; i++) {
+                results.put(new JSONObject()
+                        .put("document", toJson(matches.get(i).getKey(), matches.get(i).getValue(), projection))
+                        .put("readTime", readTime));
+            }
+        }
+        documentReads.addAndGet(Math.max(1, results.length()));
+        if (results.length() == 0) results.put(new JSONObject().put("readTime", readTime));
+        send(exchange, 200, results.toString());
+    }
+
+    // Checks every precondition before applying anything, so a commit is all-or-nothing
+    // Serves one addTarget the way Firestore's Listen does: a JSON array of ListenResponse messages
+    // that stays open. Matching documents written since the resume token (all of them without one)
+    // come first, then CURRENT with a new token; later writes follow as they happen, each batch
+    // closed by NO_CHANGE with a token. Only documents that match are sent, never removals.
+    private void listen(HttpExchange exchange, JSONObject request) throws Exception {
+        JSONObject target = request.getJSONObject("addTarget");
+        int targetId = target.getInt("targetId");
+        String resumeToken = target.optString("resumeToken", "");
+        listenResumeTokens.add(resumeToken);
+        JSONObject query = target.getJSONObject("query");
+        JSONObject structuredQuery = query.getJSONObject("structuredQuery");
+        String collectionPath = relativeName(query.getString("parent")) + "/"
+                + structuredQuery.getJSONArray("from").getJSONObject(0).getString("collectionId");
+        List<JSONObject> filters = filtersOf(structuredQuery);
+        long sentUpTo = resumeToken.startsWith("v") ? Long.parseLong(resumeToken.substring(1)) : 0;
+        JSONArray targetIds = new JSONArray().put(targetId);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            String separator = "[";
+            boolean current = false;
+            long epoch;
+            synchronized (this) {
+                epoch = listenEpoch;
+            }
+            while (true) {
+                List<JSONObject> messages = new ArrayList<>();
+                synchronized (this) {
+                    while (current && changeVersion == sentUpTo && listenEpoch == epoch) wait();
+                    if (listenEpoch != epoch) break;
+
+                    for (Map.Entry<String, StoredDocument> entry : childrenOf(collectionPath).entrySet()) {
+                        Long version = documentVersions.get(entry.getKey());
+                        if (version == null || version <= sentUpTo || !matchesAll(entry.getValue().fields, filters)) continue;
+                        messages.add(new JSONObject().put("documentChange", new JSONObject()
+                                .put("document", toJson(entry.getKey(), entry.getValue(), null))
+                                .put("targetIds", targetIds)));
+                    }
+                    sentUpTo = changeVersion;
+                }
+                listenDocumentsSent.addAndGet(messages.size());
+                messages.add(new JSONObject().put("targetChange", new JSONObject()
+                        .put("targetChangeType", current ? "NO_CHANGE" : "CURRENT")
+                        .put("targetIds", targetIds)
+                        .put("resumeToken", "v" + sentUpTo)));
+                current = true;
+
+                StringBuilder batch = new StringBuilder();
+                for (JSONObject message : messages) {
+                    batch.append(separator).append(message);
+                    separator = ",";
+                }
+                byte[] bytes = batch.toString().getBytes(StandardCharsets.UTF_8);
+                bytesServed.addAndGet(bytes.length);
+                out.write(bytes);
+                out.flush();
+            }
+            out.write((separator.equals("[") ? "[]" : "]").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void commit(HttpExchange exchange, JSONObject request) throws Exception {
+        JSONArray writes = request.optJSONArray("writes");
+        if (writes == null) writes = new JSONArray();
+        String commitTime = Instant.now().toString();
+
+        JSONArray writeResults = new JSONArray();
+        synchronized (this) {
+            Map<String, StoredDocument> staged = new HashMap<>();
+            Set<String> deleted = new HashSet<>();
+            for (int i = 0; i < writes.length(); i++) {
+                JSONObject write = writes.getJSONObject(i);
+                String path = write.has("delete") ? relativeName(write.getString("delete"))
+                        : relativeName(write.getJSONObject("update").getString("name"));
+                StoredDocument existing = deleted.contains(path) ? null
+                        : staged.containsKey(path) ? staged.get(path) : documents.get(path);
+
+                JSONObject precondition = write.optJSONObject("currentDocument");
+                if (precondition != null && precondition.has("exists")
+                        && precondition.getBoolean("exists") != (existing != null)) {
+                    if (existing != null) {
+                        sendError(exchange, 409, "ALREADY_EXISTS", "Document already exists: " + path);
+                    } else {
+                        sendError(exchange, 404, "NOT_FOUND", "No document to update: " + path);
+                    }
+                    return;
+                }
+
+                if (write.has("delete")) {
+                    staged.remove(path);
+                    deleted.add(path);
+                    writeResults.put(new JSONObject().put("updateTime", commitTime));
+                    continue;
+                }
+
+                JSONObject fields = write.getJSONObject("update").optJSONObject("fields");
+                JSONObject mask = write.optJSONObject("updateMask");
+                StoredDocument updated = applyUpdate(existing, fields != null ? fields : new JSONObject(),
+                        mask != null ? mask.optJSONArray("fieldPaths") : null);
+
+                JSONArray transformResults = new JSONArray();
+                JSONArray transforms = write.optJSONArray("updateTransforms");
+                if (transforms != null) {
+                    for (int t = 0; t < transforms.length(); t++) {
+                        transformResults.put(applyIncrement(updated.fields, transforms.getJSONObject(t)));
+                    }
+                }
+
+                deleted.remove(path);
+                staged.put(path, updated);
+                JSONObject result = new JSONObject().put("updateTime", commitTime);
+                if (transformResults.length() > 0) result.put("transformResults", transformResults);
+                writeResults.put(result);
+            }
+
+            for (String path : deleted) documents.remove(path);
+            documents.putAll(staged);
+            for (String path : deleted) recordChange(path);
+            for (String path : staged.keySet()) recordChange(path);
+        }
+        send(exchange, 200, new JSONObject().put("writeResults", writeResults).put("commitTime", commitTime).toString());
+    }
+
+    // Without a mask the fields replace the document; with one only the masked paths change
+    private static StoredDocument applyUpdate(StoredDocument existing, JSONObject fields, JSONArray mask) throws Exception {
+        String now = Instant.now().toString();
+        JSONObject merged;
+        if (mask == null) {
+            merged = new JSONObject(fields.toString());
+        } else {
+            merged = existing != null ? new JSONObject(existing.fields.toString()) : new JSONObject();
+            for (int i = 0; i < mask.length(); i++) {
+                String field = mask.getString(i);
+                if (fields.has(field)) {
+                    merged.put(field, fields.get(field));
+                } else {
+                    merged.remove(field);
+                }
+            }
+        }
+        return new StoredDocument(merged, existing != null ? existing.createTime : now, now);
+    }
+
+    private static JSONObject applyIncrement(JSONObject fields, JSONObject transform) throws Exception {
+        String field = transform.getString("fieldPath");
+        JSONObject increment = transform.getJSONObject("increment");
+        Object current = fields.has(field) ? decodeValue(fields.getJSONObject(field)) : null;
+
+        JSONObject result;
+        if (increment.has("doubleValue") || current instanceof Double) {
+            double base = current instanceof Number ? ((Number) current).doubleValue() : 0;
+            result = encodeValue(base + ((Number) decodeValue(increment)).doubleValue());
+        } else {
+            long base = current instanceof Number ? ((Number) current).longValue() : 0;
+            result = encodeValue(base + ((Number) decodeValue(increment)).longValue());
+        }
+        fields.put(field, result);
+        return result;
+    }
+
+    // Called with the lock held after every write, so open Listen streams wake up and send it
+    private void recordChange(String path) {
+        documentVersions.put(path, ++changeVersion);
+        notifyAll();
+    }
+
+    // Field filters of a structured query, whether a single fieldFilter or an AND of them
+    private static List<JSONObject> filtersOf(JSONObject query) throws Exception {
+        List<JSONObject> filters = new ArrayList<>();
+        JSONObject where = query.optJSONObject("where");
+        if (where != null) {
+            JSONObject composite = where.optJSONObject("compositeFilter");
+            if (composite != null) {
+                JSONArray parts = composite.getJSONArray("filters");
+                for (int i = 0; i < parts.length(); i++) filters.add(parts.getJSONObject(i).getJSONObject("fieldFilter"));
+            } else {
+                filters.add(where.getJSONObject("fieldFilter"));
+            }
+        }
+        return filters;
+    }
+
+    // Direct children of a collection, e.g. "users/u1/motion_sessions/s1" for "users/u1/motion_sessions"
+    private Map<String, StoredDocument> childrenOf(String collectionPath) {
+        String prefix = collectionPath + "/";
+        Map<String, StoredDocument> children = new TreeMap<>();
+        for (Map.Entry<String, StoredDocument> entry : documents.tailMap(prefix).entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) break;
+            if (entry.getKey().indexOf('/', prefix.length()) < 0) children.put(entry.getKey(), entry.getValue());
+        }
+        return children;
+    }
+
+    private static boolean matchesAll(JSONObject fields, List<JSONObject> filters) throws Exception {
+        for (JSONObject filter : filters) {
+            String field = filter.getJSONObject("field").getString("fieldPath");
+            if (!fields.has(field)) return false;
+            int comparison = compareValues(decodeValue(fields.getJSONObject(field)), decodeValue(filter.getJSONObject("value")));
+            String op = filter.getString("op");
+            boolean matches;
+            switch (op) {
+                case "EQUAL": matches = comparison == 0; break;
+                case "NOT_EQUAL": matches = comparison != 0; break;
+                case "LESS_THAN": matches = comparison < 0; break;
+                case "LESS_THAN_OR_EQUAL": matches = comparison <= 0; break;
+                case "GREATER_THAN": matches = comparison > 0; break;
+                case "GREATER_THAN_OR_EQUAL": matches = comparison >= 0; break;
+                default: throw new IllegalArgumentException("Unsupported operator " + op);
+            }
+            if (!matches) return false;
+        }
+        return true;
+    }
+
+    // Firestore serves single-field filters from its automatic indexes; equality on one field plus a
+    // range on another needs a composite index
+    private static boolean needsCompositeIndex(List<JSONObject> filters) throws Exception {
+        Set<String> equalityFields = new HashSet<>();
+        Set<String> rangeFields = new HashSet<>();
+        for (JSONObject filter : filters) {
+            String field = filter.getJSONObject("field").getString("fieldPath");
+            if ("EQUAL".equals(filter.getString("op"))) equalityFields.add(field);
+            else rangeFields.add(field);
+        }
+        if (equalityFields.isEmpty() || rangeFields.isEmpty()) return false;
+        rangeFields.removeAll(equalityFields);
+        return !rangeFields.isEmpty();
+    }
+
+    private static void sortByField(List<Map.Entry<String, StoredDocument>> entries, String field, boolean descending) {
+        entries.sort((a, b) -> {
+            JSONObject left = a.getValue().fields.optJSONObject(field);
+            JSONObject right = b.getValue().fields.optJSONObject(field);
+            if (left == null || right == null) return left == null ? (right == null ? 0 : -1) : 1;
+            int comparison = compareValues(decodeValue(left), decodeValue(right));
+            return descending ? -comparison : comparison;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compareValues(Object left, Object right) {
+        if (left instanceof Number && right instanceof Number) {
+            return Double.compare(((Number) left).doubleValue(), ((Number) right).doubleValue());
+        }
+        if (left == null || right == null || left.getClass() != right.getClass()) {
+            return String.valueOf(left).compareTo(String.valueOf(right));
+        }
+        return ((Comparable<Object>) left).compareTo(right);
+    }
+
+    private static JSONObject toJson(String path, StoredDocument document, JSONArray projection) throws Exception {
+        JSONObject fields = document.fields;
+        if (projection != null) {
+            fields = new JSONObject();
+            for (int i = 0; i < projection.length(); i++) {
+                String field = projection.getJSONObject(i).getString("fieldPath");
+                if (document.fields.has(field)) fields.put(field, document.fields.get(field));
+            }
+        }
+        return new JSONObject()
+                .put("name", NAME_PREFIX + path)
+                .put("fields", fields)
+                .put("createTime", document.createTime)
+                .put("updateTime", document.updateTime);
+    }
+
+    private static String relativeName(String name) {
+        if (!name.startsWith(NAME_PREFIX)) throw new IllegalArgumentException("Document outside this database: " + name);
+        return name.substring(NAME_PREFIX.length());
+    }
+
+    // ---- Firestore values ----
+
+    static JSONObject encodeValue(Object value) throws Exception {
+        if (value == null) return new JSONObject().put("nullValue", JSONObject.NULL);
+        if (value instanceof Boolean) return new JSONObject().put("booleanValue", value);
+        if (value instanceof Integer || value instanceof Long) return new JSONObject().put("integerValue", String.valueOf(value));
+        if (value instanceof Number) return new JSONObject().put("doubleValue", ((Number) value).doubleValue());
+        return new JSONObject().put("stringValue", String.valueOf(value));
+    }
+
+    static Object decodeValue(JSONObject value) {
+        if (value.has("stringValue")) return value.optString("stringValue");
+        if (value.has("integerValue")) return Long.parseLong(value.optString("integerValue"));
+        if (value.has("doubleValue")) return value.optDouble("doubleValue");
+        if (value.has("booleanValue")) return value.optBoolean("booleanValue");
+        if (value.has("timestampValue")) return value.optString("timestampValue");
+        return null;
+    }
+
+    // ---- HTTP plumbing ----
+
+    private void sendError(HttpExchange exchange, int status, String statusName, String message) throws IOException {
+        String body;
+        try {
+            body = new JSONObject().put("error", new JSONObject()
+                    .put("code", status).put("message", message).put("status", statusName)).toString();
+        } catch (Exception e) {
+            body = "{}";
+        }
+        send(exchange, status, body);
+    }
+
+    private void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        // Counted before the body goes out, so a client that has its answer sees the count too
+        bytesServed.addAndGet(bytes.length);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] chunk = new byte[4096];
+        int read;
+        while ((read = in.read(chunk)) != -1) buffer.write(chunk, 0, read);
+        return buffer.toString(StandardCharsets.UTF_8.name());
+    }
+
+    private static Map<String, List<String>> queryParams(HttpExchange exchange) {
+        Map<String, List<String>> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) return params;
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            String key = decode(equals < 0 ? pair : pair.substring(0, equals));
+            String value = equals < 0 ? "" : decode(pair.substring(equals + 1));
+            params.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+        }
+        return params;
+    }
+
+    private static Map<String, String> parseForm(String body) {
+        Map<String, String> form = new HashMap<>();
+        for (String pair : body.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) form.put(decode(pair.substring(0, equals)), decode(pair.substring(equals + 1)));
+        }
+        return form;
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8.name());
+        } catch (Exception e) {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package com.example.mindmotion;
+
+import android.content.Context;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+// Drives RestAuthManager and FirebaseRestManager end to end against FakeFirebaseServer. Robolectric
+// supplies a working main looper, org.json and JsonReader; the HTTP traffic is real, over loopback.
+@RunWith(RobolectricTestRunner.class)
+public class FirebaseRestIntegrationTest {
+    private static final String EMAIL = "kid@example.com";
+    private static final String PASSWORD = "secret";
+    private static final long TIMEOUT_MS = 10000;
+
+    private FakeFirebaseServer server;
+    private Context context;
+    private FirebaseRestManager firebaseManager;
+    private final List<String> events = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeFirebaseServer();
+        FirebaseEndpoints.set(server.getEndpoints());
+        context = RuntimeEnvironment.getApplication();
+    }
+
+    @After
+    public void tearDown() {
+        if (firebaseManager != null) firebaseManager.cleanup();
+        new RestAuthManager(context).logout();
+        FirebaseEndpoints.set(FirebaseEndpoints.PRODUCTION);
+        server.close();
+    }
+
+    @Test
+    public void discoversSessionMarksItAndSavesVoiceWords() throws Exception {
+        String uid = "uid-" + System.nanoTime();
+        String sessionPath = "users/" + uid + "/motion_sessions/session1";
+        seedStudent(uid);
+        server.putDocument(sessionPath, session("clapping"));
+
+        login(uid);
+        startManager();
+        runUntil(() -> events.contains("session:session1:clapping"));
+
+        firebaseManager.markMotionDetected("session1");
+        firebaseManager.saveVoiceData(Arrays.asList("apple", "ball"));
+        runUntil(() -> events.contains("marked:session1") && events.contains("voice:apple, ball"));
+
+        assertEquals("completed", server.getField(sessionPath, "status"));
+        assertEquals(true, server.getField(sessionPath, "detected"));
+        assertEquals(2, server.listDocumentPaths("users/" + uid + "/voice_data").size());
+        assertEquals(2L, server.getField("users/" + uid + "/metadata/counters", "voiceCounter"));
+    }
+
+    @Test
+    public void expiredIdTokenIsRefreshedOnceAndTheWriteGoesThrough() throws Exception {
+        String uid = "uid-" + System.nanoTime();
+        String sessionPath = "users/" + uid + "/motion_sessions/session2";
+        seedStudent(uid);
+        server.putDocument(sessionPath, session("wave"));
+
+        login(uid);
+        server.expireIdTokens();
+        startManager();
+        firebaseManager.markMotionDetected("session2");
+        runUntil(() -> events.contains("marked:session2"));
+
+        assertEquals("completed", server.getField(sessionPath, "status"));
+        assertEquals(1, server.getRequestCount("refresh"));
+    }
+
+    @Test
+    public void queuedSessionsStartOldestFirstOnceTheDetectorIsFree() throws Exception {
+        String uid = "uid-" + System.nanoTime();
+        seedStudent(uid);
+        long now = System.currentTimeMillis() / 1000;
+        server.putDocument("users/" + uid + "/motion_sessions/later", session("jump", now));
+        server.putDocument("users/" + uid + "/motion_sessions/earlier", session("wave", now - 5));
+
+        login(uid);
+        startManager();
+        runUntil(() -> events.contains("next:later:1"));
+        assertTrue(events.toString(), events.contains("session:earlier:wave"));
+        assertFalse(events.toString(), events.contains("session:later:jump"));
+
+        firebaseManager.setDetectorActive(false);
+        assertTrue(events.toString(), events.contains("session:later:jump"));
+        assertEquals(0, firebaseManager.getQueuedSessionCount());
+    }
+
+    @Test
+    public void sessionsCreatedDuringDetectionAreQueuedBeforeItEnds() throws Exception {
+        String uid = "uid-" + System.nanoTime();
+        seedStudent(uid);
+        server.putDocument("users/" + uid + "/motion_sessions/running", session("wave"));
+
+        login(uid);
+        startManager();
+        runUntil(() -> events.contains("session:running:wave"));
+
+        // The teacher queues the next motion while the child is still doing this one
+        server.putDocument("users/" + uid + "/motion_sessions/following", session("jump"));
+        runUntil(() -> events.contains("next:following:1"));
+
+        firebaseManager.setDetectorActive(false);
+        assertTrue(events.toString(), events.contains("session:following:jump"));
+    }
+
+    @Test
+    public void pollingFallsBackToTheListWhenTheCompositeIndexIsMissing() throws Exception {
+        String uid = "uid-" + System.nanoTime();
+        seedStudent(uid);
+        server.putDocument("users/" + uid + "/motion_sessions/session3", session("march"));
+        server.setCompositeIndexesDeployed(false);
+
+        login(uid);
+        startManager();
+        runUntil(() -> events.contains("session:session3:march"));
+
+        assertEquals(1, server.getRequestCount("runQuery"));
+        assertTrue(server.getRequestCount("list") >= 1);
+        assertFalse(events.toString(), events.stream().anyMatch(e -> e.startsWith("error:")));
+    }
+
+    @Test
+    public void sessionQueryReadsAndSendsFarLessThanTheListItReplaced() throws Exception {
+        String uid = "uid-" + System.nanoTime();
+        seedStudent(uid);
+        long now = System.currentTimeMillis() / 1000;
+        // A classroom's worth of finished sessions, as the app leaves them, and one waiting
+        for (int i = 0; i < 49; i++) {
+            Map<String, Object> done = session("clapping", now - 600 + i * 10);
+            done.put("status", "completed");
+            done.put("detected", true);
+            done.put("completedAt", (now - 595 + i * 10) * 1000);
+            server.putDocument("users/" + uid + "/motion_sessions/done" + i, done);
+        }
+        server.putDocument("users/" + uid + "/motion_sessions/waiting", session("wave", now));
+        login(uid);
+        String idToken = new RestAuthManager(context).getIdToken();
+        FirebaseEndpoints endpoints = server.getEndpoints();
+
+        long[] list = measure(FirebaseRestManager.buildSessionListRequest(endpoints, uid, idToken));
+        long[] firstQuery = measure(FirebaseRestManager.buildSessionQueryRequest(endpoints, uid, 0, idToken));
+        long[] laterQuery = measure(FirebaseRestManager.buildSessionQueryRequest(endpoints, uid, now + 1, idToken));
+        String report = String.format(Locale.US, "list %d B / %d reads, first query %d B / %d reads, later query %d B / %d reads",
+                list[0], list[1], firstQuery[0], firstQuery[1], laterQuery[0], laterQuery[1]);
+
+        assertEquals(report, 50, list[1]);
+        assertEquals(report, 1, firstQuery[1]);
+        // An empty runQuery result is still billed as one read
+        assertEquals(report, 1, laterQuery[1]);
+        assertTrue(report, firstQuery[0] * 20 < list[0]);
+        assertTrue(report, laterQuery[0] < firstQuery[0]);
+    }
+
+    // Bytes served and document reads charged for one request
+    private long[] measure(HttpTransport.Request request) throws Exception {
+        long bytesBefore = server.getBytesServed();
+        long readsBefore = server.getDocumentReadCount();
+        assertTrue(HttpTransport.getInstance().execute(request).isSuccessful());
+        return new long[]{server.getBytesServed() - bytesBefore, server.getDocumentReadCount() - readsBefore};
+    }
+
+    @Test
+    public void sessionsLeftUnfinishedAtCleanupAreFoundByTheNextManager() throws Exception {
+        String uid = "uid-" + System.nanoTime();
+        seedStudent(uid);
+        long now = System.currentTimeMillis() / 1000;
+        server.putDocument("users/" + uid + "/motion_sessions/active", session("wave", now - 5));
+        server.putDocument("users/" + uid + "/motion_sessions/queued", session("jump", now));
+
+        login(uid);
+        startManager();
+        runUntil(() -> events.contains("next:queued:1"));
+        assertTrue(events.toString(), events.contains("session:active:wave"));
+
+        // Torn down mid-detection with one session still queued, as when the activity is destroyed
+        firebaseManager.cleanup();
+        events.clear();
+        startManager();
+        runUntil(() -> events.contains("session:active:wave") && events.contains("next:queued:1"));
+    }
+
+    @Test
+    public void listenStreamDeliversSessionsWithoutPolling() throws Exception {
+        String uid = "uid-" + System.nanoTime();
+        seedStudent(uid);
+        server.putDocument("users/" + uid + "/motion_sessions/early", session("wave"));
+
+        login(uid);
+        startManager(true);
+        runUntil(() -> events.contains("session:early:wave"));
+
+        // Written while the stream is open, so it arrives as a live change
+        firebaseManager.setDetectorActive(false);
+        server.putDocument("users/" + uid + "/motion_sessions/live", session("jump"));
+        runUntil(() -> events.contains("session:live:jump"));
+
+        assertEquals(1, server.getRequestCount("listen"));
+        assertEquals(0, server.getRequestCount("runQuery") + server.getRequestCount("list"));
+    }
+
+    @Test
+    public void reconnectedStreamResumesFromTheLastToken() throws Exception {
+        String uid = "uid-" + System.nanoTime();
+        seedStudent(uid);
+        server.putDocument("users/" + uid + "/motion_sessions/before", session("wave"));
+
+        login(uid);
+        startManager(true);
+        runUntil(() -> events.contains("session:before:wave"));
+        assertEquals(1, server.getListenDocumentsSent());
+
+        server.closeListenStreams();
+        runUntil(() -> server.getListenResumeTokens().size() == 2);
+        firebaseManager.setDetectorActive(false);
+        server.putDocument("users/" + uid + "/motion_sessions/after", session("jump"));
+        runUntil(() -> events.contains("session:after:jump"));
+
+        List<String> tokens = server.getListenResumeTokens();
+        assertEquals("", tokens.get(0));
+        assertFalse(tokens.get(1).isEmpty());
+        // Only the new session was sent; the resumed stream did not replay the first one
+        assertEquals(2, server.getListenDocumentsSent());
+    }
+
+    @Test
+    public void unavailableStreamFallsBackToPolling() throws Exception {
+        String uid = "uid-" + System.nanoTime();
+        seedStudent(uid);
+        server.putDocument("users/" + uid + "/motion_sessions/fallback", session("march"));
+        server.setListenEnabled(false);
+
+        login(uid);
+        startManager(true);
+        runUntil(() -> events.contains("session:fallback:march"));
+
+        // Gave up after three attempts and left discovery to polling
+        assertEquals(3, server.getRequestCount("listen"));
+        assertTrue(server.getRequestCount("runQuery") >= 1);
+    }
+
+    @Test
+    public void endpointsWithoutListenOnlyPoll() throws Exception {
+        FirebaseEndpoints.set(server.getEndpoints().withListenSupported(false));
+        String uid = "uid-" + System.nanoTime();
+        seedStudent(uid);
+        server.putDocument("users/" + uid + "/motion_sessions/pollonly", session("clapping"));
+
+        login(uid);
+        startManager(true);
+        runUntil(() -> events.contains("session:pollonly:clapping"));
+
+        assertEquals(0, server.getRequestCount("listen"));
+        assertTrue(server.getRequestCount("runQuery") >= 1);
+    }
+
+    private void seedStudent(String uid) {
+        Map<String, Object> profile = new HashMap<>();
+        profile.put("userType", "student");
+        profile.put("name", "Kid");
+        server.putDocument("users/" + uid, profile);
+        server.addAccount(EMAIL, PASSWORD, uid);
+    }
+
+    private static Map<String, Object> session(String motionType) {
+        return session(motionType, System.currentTimeMillis() / 1000);
+    }
+
+    private static Map<String, Object> session(String motionType, long timestampSeconds) {
+        Map<String, Object> session = new HashMap<>();
+        session.put("motionType", motionType);
+        session.put("status", "waiting");
+        session.put("timestamp", timestampSeconds);
+        return session;
+    }
+
+    private void login(String uid) throws Exception {
+        new RestAuthManager(context).loginUser(EMAIL, PASSWORD, new RestAuthManager.AuthListener() {
+            @Override
+            public void onLoginSuccess(String userId) {
+                events.add("login:" + userId);
+            }
+
+            @Override
+            public void onLoginFailed(String error) {
+                events.add("loginFailed:" + error);
+            }
+        });
+        runUntil(() -> events.contains("login:" + uid) || events.stream().anyMatch(e -> e.startsWith("loginFailed")));
+        assertTrue(events.toString(), events.contains("login:" + uid));
+    }
+
+    private void startManager() {
+        startManager(false);
+    }
+
+    private void startManager(boolean streaming) {
+        firebaseManager = new FirebaseRestManager(context);
+        firebaseManager.setStreamingEnabled(streaming);
+        firebaseManager.setListener(new FirebaseRestManager.SessionPollerListener() {
+            @Override
+            public void onNewSessionFound(String sessionId, String motionType, String studentId) {
+                events.add("session:" + sessionId + ":" + motionType);
+            }
+
+            @Override
+            public void onNextSessionQueued(String sessionId, String motionType, int queued) {
+                events.add("next:" + sessionId + ":" + queued);
+            }
+
+            @Override
+            public void onSessionTimedOut(String sessionId) {
+                events.add("timedOut:" + sessionId);
+            }
+
+            @Override
+            public void onError(String error) {
+                events.add("error:" + error);
+            }
+
+            @Override
+            public void onMotionMarked(String sessionId) {
+                events.add("marked:" + sessionId);
+            }
+
+            @Override
+            public void onVoiceDataSaved(String date, String data) {
+                events.add("voice:" + data);
+            }
+        });
+        firebaseManager.startPollingForSessions();
+    }
+
+    // Callbacks arrive through the main looper, which Robolectric only runs when told to
+    private void runUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) fail("Timed out; events so far: " + events);
+            ShadowLooper.idleMainLooper(100, TimeUnit.MILLISECONDS);
+            Thread.sleep(10);
+        }
+    }
+}
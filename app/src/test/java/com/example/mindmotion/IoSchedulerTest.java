@@ -0,0 +1,108 @@
+package com.example.mindmotion;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class IoSchedulerTest {
+
+    private final IoScheduler scheduler = new IoScheduler(1);
+    private final List<String> ran = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void runsHigherPriorityWorkFirst() throws Exception {
+        CountDownLatch release = blockWorker();
+        CountDownLatch done = new CountDownLatch(3);
+        scheduler.submit(IoScheduler.Priority.TELEMETRY, record("trace", done));
+        scheduler.submit(IoScheduler.Priority.VOICE_DATA, record("voice", done));
+        scheduler.submit(IoScheduler.Priority.SESSION_DISCOVERY, record("poll", done));
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("poll", "voice", "trace"), ran);
+    }
+
+    @Test
+    public void coalescesDuplicatesAndPromotesToTheHigherPriority() throws Exception {
+        CountDownLatch release = blockWorker();
+        CountDownLatch done = new CountDownLatch(2);
+        assertTrue(scheduler.submit(IoScheduler.Priority.VOICE_DATA, "replay", record("replay-low", done)));
+        assertFalse(scheduler.submit(IoScheduler.Priority.VOICE_DATA, "replay", record("replay-dup", done)));
+        assertTrue(scheduler.submit(IoScheduler.Priority.RESULT_MARKING, "replay", record("replay-high", done)));
+        scheduler.submit(IoScheduler.Priority.RESULT_MARKING, record("mark", done));
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("replay-high", "mark"), ran);
+        assertEquals(2, scheduler.getCoalescedCount());
+    }
+
+    @Test
+    public void rejectsWorkPastTheQueueLimit() throws Exception {
+        CountDownLatch release = blockWorker();
+        for (int i = 0; i < IoScheduler.Priority.TELEMETRY.maxQueued; i++) {
+            assertTrue(scheduler.submit(IoScheduler.Priority.TELEMETRY, () -> { }));
+        }
+
+        assertFalse(scheduler.submit(IoScheduler.Priority.TELEMETRY, () -> { }));
+        assertTrue(scheduler.submit(IoScheduler.Priority.SESSION_DISCOVERY, () -> { }));
+        assertEquals(1, scheduler.getRejectedCount(IoScheduler.Priority.TELEMETRY));
+        release.countDown();
+    }
+
+    // The worker has taken the queued copy but not yet dequeued it when the duplicate arrives, so
+    // executor.remove misses it. Its slot must still come back, or the lane fills up for good.
+    @Test
+    public void replacingATaskAWorkerAlreadyTookReleasesItsSlot() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        synchronized (scheduler) {
+            assertTrue(scheduler.submit(IoScheduler.Priority.TELEMETRY, "sync", record("sync-low", done)));
+            // The worker blocks in dequeue on the lock held here
+            long deadline = System.currentTimeMillis() + 5000;
+            while (scheduler.getActiveCount() == 0) {
+                assertTrue(System.currentTimeMillis() < deadline);
+                Thread.sleep(5);
+            }
+            assertTrue(scheduler.submit(IoScheduler.Priority.SESSION_DISCOVERY, "sync", record("sync-high", done)));
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("sync-high"), ran);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (scheduler.getQueuedCount(IoScheduler.Priority.TELEMETRY) != 0) {
+            assertTrue("TELEMETRY slot leaked", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+        assertEquals(0, scheduler.getQueuedCount(IoScheduler.Priority.SESSION_DISCOVERY));
+    }
+
+    // Occupies the only worker so later submissions stay queued until the latch is released
+    private CountDownLatch blockWorker() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.submit(IoScheduler.Priority.SESSION_DISCOVERY, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return release;
+    }
+
+    private Runnable record(String name, CountDownLatch done) {
+        return () -> {
+            ran.add(name);
+            done.countDown();
+        };
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.mindmotion;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentilesStayWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 1; value <= 100_000; value++) {
+            histogram.record(value);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100_000, snapshot.getCount());
+        assertEquals(100_000, snapshot.getMax());
+        assertEquals(50_000, snapshot.getValueAtPercentile(50), 50_000 * 0.07);
+        assertEquals(95_000, snapshot.getValueAtPercentile(95), 95_000 * 0.07);
+        assertEquals(99_000, snapshot.getValueAtPercentile(99), 99_000 * 0.07);
+        assertEquals(50_000.5, snapshot.getMean(), 0.001);
+    }
+
+    @Test
+    public void bucketBoundsCoverEveryValue() {
+        for (long value = 0; value < 1 << 20; value += 7) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(value <= LatencyHistogram.bucketUpperBound(index));
+            if (index > 0) assertTrue(value > LatencyHistogram.bucketUpperBound(index - 1));
+        }
+    }
+
+    @Test
+    public void concurrentRecordsAreNotLost() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            pool.execute(() -> {
+                for (int i = 0; i < 250_000; i++) histogram.record(i % 5000);
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(1_000_000, histogram.snapshot().getCount());
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().getCount());
+    }
+}
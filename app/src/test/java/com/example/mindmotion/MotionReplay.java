@@ -0,0 +1,189 @@
+package com.example.mindmotion;
+
+import com.google.mediapipe.tasks.components.containers.NormalizedLandmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Replays recorded pose traces through the real detectors with an injected Config
+public final class MotionReplay {
+
+    // A tunable knob on a detector Config
+    public static final class Parameter<C> {
+        public interface Setter<C> {
+            void set(C config, double value);
+        }
+
+        public final String name;
+        public final double min;
+        public final double max;
+        public final boolean integer;
+        private final Setter<C> setter;
+
+        Parameter(String name, double min, double max, boolean integer, Setter<C> setter) {
+            this.name = name;
+            this.min = min;
+            this.max = max;
+            this.integer = integer;
+            this.setter = setter;
+        }
+
+        public double clamp(double value) {
+            double clamped = Math.max(min, Math.min(max, value));
+            return integer ? Math.round(clamped) : clamped;
+        }
+
+        void apply(C config, double value) {
+            setter.set(config, clamp(value));
+        }
+    }
+
+    // Everything the tuner needs to know about one motion type
+    public abstract static class MotionSpec<C> {
+        public final String motionType;
+        private final List<Parameter<C>> parameters = new ArrayList<>();
+
+        MotionSpec(String motionType) {
+            this.motionType = motionType;
+        }
+
+        MotionSpec<C> param(String name, double min, double max, Parameter.Setter<C> setter) {
+            parameters.add(new Parameter<>(name, min, max, false, setter));
+            return this;
+        }
+
+        MotionSpec<C> intParam(String name, int min, int max, Parameter.Setter<C> setter) {
+            parameters.add(new Parameter<>(name, min, max, true, setter));
+            return this;
+        }
+
+        public List<Parameter<C>> parameters() {
+            return Collections.unmodifiableList(parameters);
+        }
+
+        public C configFor(double[] values) {
+            C config = newConfig();
+            for (int i = 0; i < parameters.size(); i++) {
+                parameters.get(i).apply(config, values[i]);
+            }
+            return config;
+        }
+
+        public abstract C newConfig();
+
+        public abstract int requiredReps(C config);
+
+        // Runs one detector over the trace, keeping every frameStep-th frame, and returns the reps counted
+        public abstract int countReps(C config, PoseTrace trace, int frameStep);
+    }
+
+    private static final Map<String, MotionSpec<?>> SPECS = new LinkedHashMap<>();
+
+    static {
+        register(new MotionSpec<ClappingDetector.Config>("clapping") {
+            @Override public ClappingDetector.Config newConfig() { return new ClappingDetector.Config(); }
+            @Override public int requiredReps(ClappingDetector.Config c) { return c.requiredClapCount; }
+            @Override public int countReps(ClappingDetector.Config c, PoseTrace trace, int frameStep) {
+                ClappingDetector detector = new ClappingDetector(c);
+                detector.startDetection(trace.timestampAt(0));
+                List<List<NormalizedLandmark>> frames = trace.frames();
+                for (int f = 0; f < frames.size() && detector.isActive(); f += frameStep) {
+                    detector.analyzeLandmarks(frames.get(f), trace.timestampAt(f));
+                }
+                return detector.getCurrentClapCount();
+            }
+        }.param("clapDistanceThreshold", 0.05, 0.25, (c, v) -> c.clapDistanceThreshold = v)
+                .intParam("clapCooldownMs", 100, 800, (c, v) -> c.clapCooldownMs = (long) v));
+
+        register(new MotionSpec<WavingDetector.Config>("wave") {
+            @Override public WavingDetector.Config newConfig() { return new WavingDetector.Config(); }
+            @Override public int requiredReps(WavingDetector.Config c) { return c.requiredWaveCount; }
+            @Override public int countReps(WavingDetector.Config c, PoseTrace trace, int frameStep) {
+                WavingDetector detector = new WavingDetector(c);
+                detector.startDetection(trace.timestampAt(0));
+                List<List<NormalizedLandmark>> frames = trace.frames();
+                for (int f = 0; f < frames.size() && detector.isActive(); f += frameStep) {
+                    detector.analyzeLandmarks(frames.get(f), trace.timestampAt(f));
+                }
+                return detector.getCurrentWaveCount();
+            }
+        }.param("waveHorizontalThreshold", 0.005, 0.08, (c, v) -> c.waveHorizontalThreshold = v)
+                .intParam("waveCooldownMs", 50, 600, (c, v) -> c.waveCooldownMs = (long) v)
+                .param("minWristHeight", -0.3, 0.1, (c, v) -> c.minWristHeight = v));
+
+        register(new MotionSpec<JumpingDetector.Config>("jump") {
+            @Override public JumpingDetector.Config newConfig() { return new JumpingDetector.Config(); }
+            @Override public int requiredReps(JumpingDetector.Config c) { return c.requiredJumpCount; }
+            @Override public int countReps(JumpingDetector.Config c, PoseTrace trace, int frameStep) {
+                JumpingDetector detector = new JumpingDetector(c);
+                detector.startDetection(trace.timestampAt(0));
+                List<List<NormalizedLandmark>> frames = trace.frames();
+                for (int f = 0; f < frames.size() && detector.isActive(); f += frameStep) {
+                    detector.analyzeLandmarks(frames.get(f), trace.timestampAt(f));
+                }
+                return detector.getCurrentJumpCount();
+            }
+        }.param("riseVelocity", -0.02, -0.0005, (c, v) -> c.riseVelocity = v)
+                .param("riseHeight", 0.005, 0.1, (c, v) -> c.riseHeight = v)
+                .param("airborneHeight", 0.01, 0.15, (c, v) -> c.airborneHeight = v)
+                .param("fallVelocity", 0.0005, 0.02, (c, v) -> c.fallVelocity = v)
+                .param("landingVelocity", 0.004, 0.04, (c, v) -> c.landingVelocity = v)
+                .param("minJumpHeight", 0.005, 0.2, (c, v) -> c.minJumpHeight = v)
+                .intParam("minAirborneFrames", 1, 6, (c, v) -> c.minAirborneFrames = (int) v)
+                .intParam("jumpCooldownMs", 200, 800, (c, v) -> c.jumpCooldownMs = (long) v));
+
+        register(new MotionSpec<RaisingHandDetector.Config>("raise_hand") {
+            @Override public RaisingHandDetector.Config newConfig() { return new RaisingHandDetector.Config(); }
+            @Override public int requiredReps(RaisingHandDetector.Config c) { return c.requiredRaiseCount; }
+            @Override public int countReps(RaisingHandDetector.Config c, PoseTrace trace, int frameStep) {
+                RaisingHandDetector detector = new RaisingHandDetector(c);
+                detector.startDetection(trace.timestampAt(0));
+                List<List<NormalizedLandmark>> frames = trace.frames();
+                for (int f = 0; f < frames.size() && detector.isActive(); f += frameStep) {
+                    detector.analyzeLandmarks(frames.get(f), trace.timestampAt(f));
+                }
+                return detector.getCurrentRaiseCount();
+            }
+        }.param("adaptiveThresholdRatio", 0.05, 0.8, (c, v) -> c.adaptiveThresholdRatio = v)
+                .param("smoothAlpha", 0.1, 1.0, (c, v) -> c.smoothAlpha = v)
+                .intParam("minRaiseDurationMs", 100, 1000, (c, v) -> c.minRaiseDurationMs = (long) v)
+                .intParam("raiseCooldownMs", 500, 3000, (c, v) -> c.raiseCooldownMs = (long) v)
+                .param("minArmLength", 0.02, 0.15, (c, v) -> c.minArmLength = v));
+
+        register(new MotionSpec<MarchingDetector.Config>("march") {
+            @Override public MarchingDetector.Config newConfig() { return new MarchingDetector.Config(); }
+            @Override public int requiredReps(MarchingDetector.Config c) { return c.requiredMarchCount; }
+            @Override public int countReps(MarchingDetector.Config c, PoseTrace trace, int frameStep) {
+                MarchingDetector detector = new MarchingDetector(c);
+                detector.startDetection(trace.timestampAt(0));
+                List<List<NormalizedLandmark>> frames = trace.frames();
+                for (int f = 0; f < frames.size() && detector.isActive(); f += frameStep) {
+                    detector.analyzeLandmarks(frames.get(f), trace.timestampAt(f));
+                }
+                return detector.getCurrentStepCount();
+            }
+        }.param("kneeLiftThreshold", 0.02, 0.15, (c, v) -> c.kneeLiftThreshold = v)
+                .intParam("marchCooldownMs", 150, 800, (c, v) -> c.marchCooldownMs = (long) v)
+                .intParam("minFramesLifted", 1, 6, (c, v) -> c.minFramesLifted = (int) v));
+    }
+
+    private MotionReplay() {
+    }
+
+    private static void register(MotionSpec<?> spec) {
+        SPECS.put(spec.motionType, spec);
+    }
+
+    public static MotionSpec<?> specFor(String motionType) {
+        MotionSpec<?> spec = SPECS.get(motionType);
+        if (spec == null) throw new IllegalArgumentException("Unknown motion type: " + motionType);
+        return spec;
+    }
+
+    public static List<String> motionTypes() {
+        return new ArrayList<>(SPECS.keySet());
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.mindmotion;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PendingWriteQueueTest {
+
+    private long now = 1_000_000;
+
+    @Test
+    public void pendingEntriesSurviveReopening() throws Exception {
+        File log = newLogFile();
+        PendingWriteQueue queue = new PendingWriteQueue(log, () -> now);
+        PendingWriteQueue.Entry motion = queue.append("uid1", "motion", "session1", "[{\"update\":{}}]");
+        PendingWriteQueue.Entry voice = queue.append("uid1", "voice", "apple,\tball\nand more", "[]");
+        queue.append("uid2", "motion", "session9", "[]");
+        queue.acknowledge(Collections.singletonList(motion));
+
+        now += 5000;
+        PendingWriteQueue reopened = new PendingWriteQueue(log, () -> now);
+        List<PendingWriteQueue.Entry> pending = reopened.peek("uid1", 10);
+
+        assertEquals(2, reopened.getDepth());
+        assertEquals(1, pending.size());
+        assertEquals(voice.key, pending.get(0).key);
+        assertEquals("apple,\tball\nand more", pending.get(0).subject);
+        assertEquals(5000, reopened.getOldestAgeMs());
+    }
+
+    @Test
+    public void tornLastLineIsSkippedAndDoesNotSwallowTheNextAppend() throws Exception {
+        File log = newLogFile();
+        PendingWriteQueue queue = new PendingWriteQueue(log, () -> now);
+        queue.append("uid1", "motion", "session1", "[]");
+        try (FileOutputStream out = new FileOutputStream(log, true)) {
+            out.write("A\tbroken-key\t12".getBytes(StandardCharsets.UTF_8));
+        }
+
+        PendingWriteQueue reopened = new PendingWriteQueue(log, () -> now);
+        reopened.append("uid1", "motion", "session2", "[]");
+
+        PendingWriteQueue again = new PendingWriteQueue(log, () -> now);
+        List<PendingWriteQueue.Entry> pending = again.peek("uid1", 10);
+        assertEquals(2, pending.size());
+        assertEquals("session1", pending.get(0).subject);
+        assertEquals("session2", pending.get(1).subject);
+    }
+
+    @Test
+    public void boundsDepthByDroppingTheOldest() throws Exception {
+        PendingWriteQueue queue = new PendingWriteQueue(newLogFile(), () -> now);
+        for (int i = 0; i <= PendingWriteQueue.MAX_PENDING; i++) {
+            queue.append("uid1", "voice", "word" + i, "[]");
+        }
+
+        assertEquals(PendingWriteQueue.MAX_PENDING, queue.getDepth());
+        assertEquals(1, queue.getTotalDropped());
+        assertEquals("word1", queue.peek("uid1", 1).get(0).subject);
+    }
+
+    @Test
+    public void reportsFlushThroughput() throws Exception {
+        PendingWriteQueue queue = new PendingWriteQueue(newLogFile(), () -> now);
+        PendingWriteQueue.Entry a = queue.append("uid1", "voice", "a", "[]");
+        PendingWriteQueue.Entry b = queue.append("uid1", "voice", "b", "[]");
+        queue.acknowledge(Arrays.asList(a, b));
+        queue.acknowledge(Collections.singletonList(a));
+
+        assertEquals(2, queue.getTotalFlushed());
+        assertEquals(2.0, queue.getFlushedPerMinute(), 0.0);
+        now += 120_000;
+        assertEquals(0.0, queue.getFlushedPerMinute(), 0.0);
+    }
+
+    @Test
+    public void appendsWaitForNoDiskWorkAndLandInOrderAroundACompaction() throws Exception {
+        File log = newLogFile();
+        List<Runnable> diskTasks = new ArrayList<>();
+        PendingWriteQueue queue = new PendingWriteQueue(log, () -> now, diskTasks::add);
+
+        // Enough done markers to trigger a compaction, then records made after its snapshot
+        for (int i = 0; i < 250; i++) {
+            queue.acknowledge(Collections.singletonList(queue.append("uid1", "voice", "done" + i, "[]")));
+        }
+        queue.append("uid1", "motion", "session1", "[]");
+        PendingWriteQueue.Entry late = queue.append("uid1", "motion", "session2", "[]");
+        queue.acknowledge(Collections.singletonList(late));
+        queue.append("uid1", "motion", "session3", "[]");
+
+        assertEquals("nothing written on the caller's thread", 0, log.length());
+        for (Runnable task : diskTasks) task.run();
+
+        List<PendingWriteQueue.Entry> pending = new PendingWriteQueue(log, () -> now).peek("uid1", 10);
+        assertEquals(2, pending.size());
+        assertEquals("session1", pending.get(0).subject);
+        assertEquals("session3", pending.get(1).subject);
+    }
+
+    private static File newLogFile() throws IOException {
+        File file = File.createTempFile("pending_writes", ".log");
+        file.deleteOnExit();
+        return file;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.mindmotion;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PollingSchedulerTest {
+
+    private long now = 1_000_000;
+    private final PollingScheduler scheduler = new PollingScheduler(() -> now, new Random(7));
+
+    @Test
+    public void pollsFastRightAfterACompletedSession() {
+        scheduler.onSessionCompleted();
+        assertWithinJitter(PollingScheduler.FAST_INTERVAL_MS, scheduler.nextDelayMs(PollingScheduler.Outcome.EMPTY));
+
+        now += PollingScheduler.FAST_WINDOW_MS;
+        assertWithinJitter(PollingScheduler.BASE_INTERVAL_MS, scheduler.nextDelayMs(PollingScheduler.Outcome.EMPTY));
+    }
+
+    @Test
+    public void backsOffDuringLongIdleStretches() {
+        now += PollingScheduler.IDLE_BEFORE_BACKOFF_MS;
+
+        long delay = 0;
+        for (int i = 0; i < 20; i++) {
+            delay = scheduler.nextDelayMs(PollingScheduler.Outcome.EMPTY);
+            if (i == 3) assertTrue(delay > PollingScheduler.BASE_INTERVAL_MS * 2);
+            now += delay;
+        }
+        assertWithinJitter(PollingScheduler.MAX_IDLE_INTERVAL_MS, delay);
+
+        scheduler.nextDelayMs(PollingScheduler.Outcome.SESSION_FOUND);
+        assertWithinJitter(PollingScheduler.BASE_INTERVAL_MS, scheduler.nextDelayMs(PollingScheduler.Outcome.EMPTY));
+    }
+
+    @Test
+    public void serverErrorsBackOffExponentiallyUpToTheCap() {
+        assertWithinJitter(2 * PollingScheduler.BASE_INTERVAL_MS, scheduler.nextDelayMs(PollingScheduler.Outcome.SERVER_ERROR));
+        assertWithinJitter(4 * PollingScheduler.BASE_INTERVAL_MS, scheduler.nextDelayMs(PollingScheduler.Outcome.SERVER_ERROR));
+        for (int i = 0; i < 10; i++) scheduler.nextDelayMs(PollingScheduler.Outcome.NETWORK_ERROR);
+        assertWithinJitter(PollingScheduler.MAX_ERROR_INTERVAL_MS, scheduler.nextDelayMs(PollingScheduler.Outcome.SERVER_ERROR));
+
+        assertWithinJitter(PollingScheduler.BASE_INTERVAL_MS, scheduler.nextDelayMs(PollingScheduler.Outcome.EMPTY));
+        assertWithinJitter(2 * PollingScheduler.BASE_INTERVAL_MS, scheduler.nextDelayMs(PollingScheduler.Outcome.SERVER_ERROR));
+    }
+
+    @Test
+    public void keepsPollingAtTheBaseRateWhileADetectorIsActive() {
+        scheduler.setDetectorActive(true);
+        now += PollingScheduler.IDLE_BEFORE_BACKOFF_MS * 5;
+        for (int i = 0; i < 10; i++) {
+            assertWithinJitter(PollingScheduler.BASE_INTERVAL_MS, scheduler.nextDelayMs(PollingScheduler.Outcome.EMPTY));
+        }
+
+        scheduler.setDetectorActive(false);
+        now += PollingScheduler.IDLE_BEFORE_BACKOFF_MS + 1000;
+        scheduler.nextDelayMs(PollingScheduler.Outcome.EMPTY);
+        assertTrue(scheduler.nextDelayMs(PollingScheduler.Outcome.EMPTY) > PollingScheduler.BASE_INTERVAL_MS * (1 + PollingScheduler.JITTER));
+    }
+
+    @Test
+    public void reportsRequestsPerMinute() {
+        for (int i = 0; i < 30; i++) {
+            scheduler.onRequestSent();
+            now += 3000;
+        }
+        assertEquals(20.0, scheduler.getRequestsPerMinute(), 1.0);
+
+        now += 120_000;
+        assertEquals(0.0, scheduler.getRequestsPerMinute(), 0.0);
+    }
+
+    private static void assertWithinJitter(long expected, long actual) {
+        assertEquals(expected, actual, expected * PollingScheduler.JITTER + 1);
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.mindmotion;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ProcessedSessionIndexTest {
+
+    private long now = 10_000_000;
+    private final List<Runnable> pendingWrites = new ArrayList<>();
+
+    @Test
+    public void claimsEachSessionOnce() throws Exception {
+        ProcessedSessionIndex index = new ProcessedSessionIndex(newFile(), () -> now, pendingWrites::add);
+
+        assertTrue(index.claim("s1", now));
+        assertFalse(index.claim("s1", now));
+        assertTrue(index.contains("s1"));
+        assertFalse(index.contains("s2"));
+        assertEquals(0, pendingWrites.size());
+
+        index.settle("s1");
+        index.settle("s1");
+        assertEquals(1, pendingWrites.size());
+    }
+
+    @Test
+    public void survivesRestartButForgetsSessionsPastRetention() throws Exception {
+        File file = newFile();
+        ProcessedSessionIndex index = new ProcessedSessionIndex(file, () -> now, pendingWrites::add);
+        index.claim("old", now - ProcessedSessionIndex.SESSION_EXPIRY_MS);
+        index.claim("recent", now);
+        index.settle("old");
+        index.settle("recent");
+        runWrites();
+
+        now += ProcessedSessionIndex.RETENTION_MARGIN_MS + 1000;
+        ProcessedSessionIndex reopened = new ProcessedSessionIndex(file, () -> now, pendingWrites::add);
+        assertTrue(reopened.contains("recent"));
+        assertFalse(reopened.contains("old"));
+    }
+
+    @Test
+    public void sessionsStillInProgressAreFoundAgainAfterRestart() throws Exception {
+        File file = newFile();
+        ProcessedSessionIndex index = new ProcessedSessionIndex(file, () -> now, pendingWrites::add);
+        index.claim("done", now);
+        index.claim("queued", now);
+        index.claim("detecting", now);
+        index.settle("done");
+        runWrites();
+
+        // Killed here: only the settled session was written
+        ProcessedSessionIndex reopened = new ProcessedSessionIndex(file, () -> now, pendingWrites::add);
+        assertTrue(reopened.contains("done"));
+        assertFalse(reopened.contains("queued"));
+        assertFalse(reopened.contains("detecting"));
+        assertTrue(reopened.claim("queued", now));
+    }
+
+    @Test
+    public void releaseFreesOnlyUnsettledClaims() throws Exception {
+        ProcessedSessionIndex index = new ProcessedSessionIndex(newFile(), () -> now, pendingWrites::add);
+        index.claim("queued", now);
+        index.claim("done", now);
+        index.settle("done");
+
+        index.release("queued");
+        index.release("done");
+
+        assertFalse(index.contains("queued"));
+        assertTrue(index.contains("done"));
+        assertTrue(index.claim("queued", now));
+    }
+
+    @Test
+    public void staysBoundedWhenEverySessionIsRecent() throws Exception {
+        ProcessedSessionIndex index = new ProcessedSessionIndex(newFile(), () -> now, pendingWrites::add);
+        for (int i = 0; i <= ProcessedSessionIndex.MAX_ENTRIES; i++) {
+            index.claim("s" + i, now + i);
+        }
+
+        assertEquals(ProcessedSessionIndex.MAX_ENTRIES, index.size());
+        assertFalse(index.contains("s0"));
+        assertTrue(index.contains("s" + ProcessedSessionIndex.MAX_ENTRIES));
+        assertEquals(1, index.getEvictedCount());
+    }
+
+    private void runWrites() {
+        while (!pendingWrites.isEmpty()) pendingWrites.remove(0).run();
+    }
+
+    private static File newFile() throws IOException {
+        File file = File.createTempFile("processed_sessions", ".idx");
+        file.deleteOnExit();
+        return file;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.mindmotion;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class RepSummaryTest {
+
+    @Test
+    public void encodesRepTimesAsGapsAndDerivesCadence() {
+        RepSummary reps = new RepSummary(10000, Arrays.asList(12310L, 12950L, 13510L))
+                .withHeightsCm(Arrays.asList(12, 15, 9));
+
+        assertEquals(3, reps.getRepCount());
+        assertEquals("2310,640,560", reps.getRepGapsMs());
+        // Two intervals over 1.2 s
+        assertEquals(100.0, reps.getCadencePerMinute(), 0.001);
+        assertEquals("12,15,9", reps.getHeightsCm());
+        assertEquals("", reps.getSides());
+        assertEquals(-1, reps.getInferenceP95Ms());
+    }
+
+    @Test
+    public void singleRepHasNoCadence() {
+        RepSummary reps = new RepSummary(0, Collections.singletonList(900L))
+                .withSides(RepSummary.sideLetter("both"));
+
+        assertEquals("900", reps.getRepGapsMs());
+        assertEquals(0, reps.getCadencePerMinute(), 0);
+        assertEquals("B", reps.getSides());
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.mindmotion;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+// Robolectric supplies a real SQLite; the server side is a list of documents answering the sync's
+// timestamp >= cursor query
+@RunWith(RobolectricTestRunner.class)
+public class SessionHistoryStoreTest {
+    private static final String UID = "uid";
+
+    private final Map<String, Map<String, String>> remoteSessions = new LinkedHashMap<>();
+    private final Map<String, String> remoteUpdateTimes = new LinkedHashMap<>();
+    private final List<Long> sessionCursors = new ArrayList<>();
+    private long now = 5000 * 1000L;
+    // Set while a token refresh is "in flight"; the test hands the token over itself
+    private boolean holdToken = false;
+    private TokenProvider.Callback heldTokenCallback;
+    private SessionHistoryStore store;
+
+    @Before
+    public void setUp() {
+        store = new SessionHistoryStore(RuntimeEnvironment.getApplication(), null, new SessionHistoryStore.QuerySource() {
+            @Override
+            public void getToken(TokenProvider.Callback callback) {
+                if (holdToken) {
+                    heldTokenCallback = callback;
+                } else {
+                    callback.onToken("token");
+                }
+            }
+
+            @Override
+            public List<FirestoreDocumentReader.Document> runQuery(String userId, String idToken, JSONObject query,
+                                                                   String... fields) {
+                return SessionHistoryStoreTest.this.runQuery(userId, query, fields);
+            }
+        }, Runnable::run, () -> now);
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    @Test
+    public void resultsRecordedHereShowUpWithoutASync() {
+        store.recordSessionStarted(UID, "s1", "jump", 1000 * 1000L);
+        store.recordSessionSettled(UID, "s1", "completed", 1010 * 1000L,
+                new RepSummary(0, Arrays.asList(1000L, 2000L, 3000L)));
+        store.recordSessionStarted(UID, "s2", "jump", 2000 * 1000L);
+        store.recordSessionSettled(UID, "s2", "completed", 2010 * 1000L, null);
+        store.recordSessionStarted(UID, "s3", "wave", 3000 * 1000L);
+        store.recordSessionSettled(UID, "s3", "timeout", 3070 * 1000L, null);
+        store.recordVoiceWords(UID, Arrays.asList("w1", "w2"), Arrays.asList("apple", "ball"), "2024-05-01", now);
+
+        SessionHistoryStore.Stats stats = store.readStats(UID);
+        assertEquals(2, stats.completed);
+        assertEquals(1, stats.timedOut);
+        assertEquals(2, stats.completedThisWeek);
+        assertEquals("jump", stats.favouriteMotion);
+        assertEquals(2, stats.favouriteMotionCount);
+        assertEquals(2, stats.wordsSpoken);
+        assertEquals("s3", stats.recent.get(0).sessionId);
+        assertEquals(3, stats.recent.get(2).repCount);
+        assertEquals(0, stats.lastSyncedMs);
+        assertTrue(sessionCursors.isEmpty());
+        assertEquals(0, store.readStats("someone-else").completed);
+    }
+
+    @Test
+    public void syncFetchesOnlyWhatChangedAndHoldsTheCursorAtWaitingSessions() {
+        remoteSession("s1", "clapping", "completed", 1000, "2024-05-01T10:00:00.5Z");
+        remoteSession("s2", "jump", "waiting", 2000, "2024-05-01T10:00:01Z");
+        // Completed here, but the write has not reached the server yet
+        store.recordSessionStarted(UID, "s2", "jump", 2000 * 1000L);
+        store.recordSessionSettled(UID, "s2", "completed", 2010 * 1000L, null);
+
+        assertEquals(2, store.syncNow(UID, "token"));
+        assertEquals("completed", store.readStats(UID).recent.get(0).status);
+        assertEquals(2, store.readStats(UID).completed);
+
+        // Nothing changed on the server: the overlapping re-read writes nothing
+        assertEquals(0, store.syncNow(UID, "token"));
+        assertEquals(Long.valueOf(2000), sessionCursors.get(sessionCursors.size() - 1));
+
+        remoteSession("s2", "jump", "completed", 2000, "2024-05-01T10:00:02.123456789Z");
+        remoteSession("s3", "wave", "waiting", 3000, "2024-05-01T10:00:03Z");
+        remoteSession("s4", "march", "completed", 4000, "2024-05-01T10:00:04Z");
+        assertEquals(3, store.syncNow(UID, "token"));
+
+        // s3 can still change, so the next sync starts from it rather than from s4
+        store.syncNow(UID, "token");
+        assertEquals(Long.valueOf(3000), sessionCursors.get(sessionCursors.size() - 1));
+
+        // Synced in full moments ago, so this is a no-op
+        int queries = sessionCursors.size();
+        store.sync(UID, () -> fail("nothing should have changed"));
+        assertEquals(queries, sessionCursors.size());
+        assertEquals(now, store.readStats(UID).lastSyncedMs);
+    }
+
+    @Test
+    public void syncStartsOnlyOnceTheTokenArrives() {
+        remoteSession("s1", "clapping", "completed", 1000, "2024-05-01T10:00:00Z");
+        holdToken = true;
+        boolean[] changed = new boolean[1];
+        store.sync(UID, () -> changed[0] = true);
+        assertTrue("nothing queried while the refresh is out", sessionCursors.isEmpty());
+
+        heldTokenCallback.onToken("token");
+        assertTrue(changed[0]);
+        assertEquals(1, store.readStats(UID).completed);
+    }
+
+    private void remoteSession(String id, String motionType, String status, long timestamp, String updateTime) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("motionType", motionType);
+        fields.put("status", status);
+        fields.put("timestamp", String.valueOf(timestamp));
+        remoteSessions.put(id, fields);
+        remoteUpdateTimes.put(id, updateTime);
+    }
+
+    private List<FirestoreDocumentReader.Document> runQuery(String userId, JSONObject query, String... fields) {
+        JSONObject structuredQuery = query.optJSONObject("structuredQuery");
+        String collection = structuredQuery.optJSONArray("from").optJSONObject(0).optString("collectionId");
+        long since = Long.parseLong(structuredQuery.optJSONObject("where").optJSONObject("fieldFilter")
+                .optJSONObject("value").optString("integerValue"));
+        if (!SessionHistoryStore.SESSIONS.equals(collection)) return new ArrayList<>();
+        sessionCursors.add(since);
+
+        List<String> ids = new ArrayList<>();
+        for (Map.Entry<String, Map<String, String>> session : remoteSessions.entrySet()) {
+            if (Long.parseLong(session.getValue().get("timestamp")) >= since) ids.add(session.getKey());
+        }
+        ids.sort(Comparator.comparingLong(id -> Long.parseLong(remoteSessions.get(id).get("timestamp"))));
+
+        List<FirestoreDocumentReader.Document> documents = new ArrayList<>();
+        for (String id : ids.subList(0, Math.min(ids.size(), structuredQuery.optInt("limit")))) {
+            String[] values = new String[fields.length];
+            for (int i = 0; i < fields.length; i++) values[i] = remoteSessions.get(id).get(fields[i]);
+            documents.add(new FirestoreDocumentReader.Document("projects/p/databases/(default)/documents/users/"
+                    + userId + "/motion_sessions/" + id, fields, values, remoteUpdateTimes.get(id)));
+        }
+        return documents;
+    }
+}
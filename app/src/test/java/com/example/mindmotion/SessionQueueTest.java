@@ -0,0 +1,27 @@
+package com.example.mindmotion;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SessionQueueTest {
+    private final SessionQueue queue = new SessionQueue();
+
+    @Test
+    public void drainsOldestFirstWithTiesBrokenById() {
+        assertTrue(queue.offer("c", "jump", 2000));
+        assertTrue(queue.offer("b", "wave", 1000));
+        assertTrue(queue.offer("a", "clapping", 2000));
+        assertFalse("already queued", queue.offer("b", "wave", 1000));
+
+        assertEquals(3, queue.size());
+        assertEquals("b", queue.peek().sessionId);
+        assertEquals("b", queue.poll().sessionId);
+        assertEquals("a", queue.poll().sessionId);
+        assertEquals("c", queue.poll().sessionId);
+        assertNull(queue.poll());
+
+        // Gone from the queue, so it can be offered again
+        assertTrue(queue.offer("b", "wave", 1000));
+    }
+}
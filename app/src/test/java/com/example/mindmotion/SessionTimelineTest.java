@@ -0,0 +1,88 @@
+package com.example.mindmotion;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SessionTimelineTest {
+    private long now = 10000;
+    private long wallNow = 1700000000000L;
+    private final SessionTimeline timeline = new SessionTimeline(() -> now, () -> wallNow);
+
+    @Test
+    public void splitsTheWaitIntoSegments() {
+        timeline.onDiscovered("s1", wallNow - 2000);
+        advance(150);
+        timeline.onDetectorStarted("s1");
+        advance(1200);
+        timeline.onRep("s1");
+        advance(500);
+        timeline.onRep("s1");
+        advance(3000);
+
+        Map<SessionTimeline.Segment, Long> segments = timeline.onCompleted("s1");
+        assertEquals(2000L, (long) segments.get(SessionTimeline.Segment.QUEUED));
+        assertEquals(150L, (long) segments.get(SessionTimeline.Segment.STARTUP));
+        assertEquals(1200L, (long) segments.get(SessionTimeline.Segment.FIRST_REP));
+        assertEquals(3500L, (long) segments.get(SessionTimeline.Segment.DETECTION));
+        assertFalse(segments.containsKey(SessionTimeline.Segment.WRITE));
+        assertEquals(0, timeline.getSampleCount());
+
+        advance(400);
+        timeline.onCompletionAcknowledged("s1");
+        assertEquals(1, timeline.getSampleCount());
+        assertEquals(400, timeline.getPercentileMs(SessionTimeline.Segment.WRITE, 95));
+        assertEquals(2000 + 150 + 1200 + 3500 + 400, timeline.getPercentileMs(SessionTimeline.Segment.TOTAL, 50));
+    }
+
+    @Test
+    public void timeInTheSessionQueueIsNotCountedAsStartup() {
+        timeline.onDiscovered("s1", 0);
+        advance(4000);
+        timeline.onDispatched("s1");
+        advance(150);
+        timeline.onDetectorStarted("s1");
+        advance(1000);
+
+        Map<SessionTimeline.Segment, Long> segments = timeline.onCompleted("s1");
+        assertEquals(4000L, (long) segments.get(SessionTimeline.Segment.WAITING));
+        assertEquals(150L, (long) segments.get(SessionTimeline.Segment.STARTUP));
+
+        timeline.onCompletionAcknowledged("s1");
+        assertEquals(4000, timeline.getPercentileMs(SessionTimeline.Segment.WAITING, 50));
+        assertEquals(150, timeline.getPercentileMs(SessionTimeline.Segment.STARTUP, 50));
+        assertEquals(4000 + 150 + 1000, timeline.getPercentileMs(SessionTimeline.Segment.TOTAL, 50));
+    }
+
+    @Test
+    public void discardedAndUnacknowledgedSessionsStayOutOfTheWindow() {
+        timeline.onDiscovered("timed-out", 0);
+        timeline.onDetectorStarted("timed-out");
+        timeline.discard("timed-out");
+        timeline.onCompletionAcknowledged("timed-out");
+
+        timeline.onDiscovered("never-completed", 0);
+        timeline.onCompletionAcknowledged("never-completed");
+        assertEquals(0, timeline.getSampleCount());
+
+        for (int i = 0; i < SessionTimeline.WINDOW_SESSIONS + 20; i++) {
+            String id = "s" + i;
+            timeline.onDiscovered(id, 0);
+            advance(i < 20 ? 10000 : 100);
+            timeline.onDetectorStarted(id);
+            timeline.onCompleted(id);
+            timeline.onCompletionAcknowledged(id);
+        }
+        // The 20 slow sessions have rolled out of the window
+        assertEquals(SessionTimeline.WINDOW_SESSIONS, timeline.getSampleCount());
+        assertEquals(100, timeline.getPercentileMs(SessionTimeline.Segment.STARTUP, 99));
+        assertEquals(0, timeline.getPercentileMs(SessionTimeline.Segment.QUEUED, 99));
+    }
+
+    private void advance(long ms) {
+        now += ms;
+        wallNow += ms;
+    }
+}
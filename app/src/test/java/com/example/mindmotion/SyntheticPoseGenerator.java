@@ -0,0 +1,248 @@
+package com.example.mindmotion;
+
+import java.util.Random;
+
+// Parametric MediaPipe-33 skeleton generator for claps, waves, jumps, hand raises and marching.
+// Frames are written into one reused buffer so millions can be streamed without a camera.
+public class SyntheticPoseGenerator {
+    private static final int STRIDE = PoseTrace.FLOATS_PER_LANDMARK;
+    private static final float VISIBLE = 0.99f;
+    private static final float OCCLUDED = 0.3f;
+    private static final long LEAD_IN_MS = 1000;
+    private static final long TAIL_MS = 500;
+
+    // Standing pose in normalized image coordinates (x, y); the subject's left side is at smaller x
+    private static final float[][] BASE_POSE = {
+            {0.500f, 0.150f}, // 0 nose
+            {0.490f, 0.140f}, {0.485f, 0.140f}, {0.480f, 0.140f}, // 1-3 left eye
+            {0.510f, 0.140f}, {0.515f, 0.140f}, {0.520f, 0.140f}, // 4-6 right eye
+            {0.470f, 0.150f}, {0.530f, 0.150f}, // 7-8 ears
+            {0.490f, 0.170f}, {0.510f, 0.170f}, // 9-10 mouth
+            {0.420f, 0.250f}, {0.580f, 0.250f}, // 11-12 shoulders
+            {0.400f, 0.370f}, {0.600f, 0.370f}, // 13-14 elbows
+            {0.390f, 0.480f}, {0.610f, 0.480f}, // 15-16 wrists
+            {0.385f, 0.510f}, {0.615f, 0.510f}, // 17-18 pinkies
+            {0.390f, 0.520f}, {0.610f, 0.520f}, // 19-20 index fingers
+            {0.395f, 0.500f}, {0.605f, 0.500f}, // 21-22 thumbs
+            {0.450f, 0.520f}, {0.550f, 0.520f}, // 23-24 hips
+            {0.450f, 0.690f}, {0.550f, 0.690f}, // 25-26 knees
+            {0.450f, 0.860f}, {0.550f, 0.860f}, // 27-28 ankles
+            {0.445f, 0.880f}, {0.555f, 0.880f}, // 29-30 heels
+            {0.450f, 0.900f}, {0.550f, 0.900f}, // 31-32 foot index
+    };
+
+    // Pre-drawn standard normal samples; java.util.Random#nextGaussian dominates the cost otherwise
+    private static final float[] NORMAL_TABLE = new float[1 << 16];
+
+    static {
+        Random random = new Random(0);
+        for (int i = 0; i < NORMAL_TABLE.length; i++) {
+            NORMAL_TABLE[i] = (float) random.nextGaussian();
+        }
+    }
+
+    private static final int[] LEFT_HAND = {15, 17, 19, 21};
+    private static final int[] RIGHT_HAND = {16, 18, 20, 22};
+    private static final int[][] OCCLUSION_GROUPS = {
+            LEFT_HAND, RIGHT_HAND, {13, 15, 17, 19, 21}, {14, 16, 18, 20, 22},
+            {25, 27, 29, 31}, {26, 28, 30, 32}, {23, 24},
+    };
+
+    public interface FrameSink {
+        void onFrame(long timestampMs, float[] landmarks);
+    }
+
+    public static class Settings {
+        public String motionType = "clapping";
+        public int reps = 3;
+        public int frameRate = 30;
+        public double jitter = 0.0; // std-dev of per-landmark noise, normalized units
+        public double dropoutRate = 0.0; // probability a frame never reaches the detector
+        public double occlusionRate = 0.0; // probability a limb reports visibility < 0.5
+        public double bodyScale = 1.0;
+        public double cameraDistance = 1.0;
+        public long startTimeMs = 0;
+        public long seed = 1;
+        public ModelTier modelTier = ModelTier.HEAVY;
+    }
+
+    private final Settings settings;
+    private final long repPeriodMs;
+    private final float[] frame = new float[PoseTrace.LANDMARK_COUNT * STRIDE];
+    private final float[] offsets = new float[PoseTrace.LANDMARK_COUNT * 2];
+    private long randomState;
+
+    public SyntheticPoseGenerator(Settings settings) {
+        this.settings = settings;
+        this.repPeriodMs = repPeriodFor(settings.motionType);
+    }
+
+    private static long repPeriodFor(String motionType) {
+        switch (motionType) {
+            case "clapping": return 700;
+            case "wave": return 300;
+            case "jump": return 1000;
+            case "raise_hand": return 2200;
+            case "march": return 700;
+            default: throw new IllegalArgumentException("Unknown motion type: " + motionType);
+        }
+    }
+
+    public long durationMs() {
+        return LEAD_IN_MS + settings.reps * repPeriodMs + TAIL_MS;
+    }
+
+    public PoseTrace toTrace() {
+        int expectedFrames = (int) (durationMs() * settings.frameRate / 1000) + 1;
+        PoseTrace trace = new PoseTrace(settings.motionType, settings.reps, settings.modelTier,
+                settings.frameRate, expectedFrames);
+        generate((timestampMs, landmarks) -> trace.addFrame(timestampMs, landmarks, 0));
+        return trace;
+    }
+
+    // Streams every frame that survives dropout into the sink; the array is reused between calls
+    public int generate(FrameSink sink) {
+        randomState = settings.seed * 0x9E3779B97F4A7C15L | 1L;
+        double frameIntervalMs = 1000.0 / settings.frameRate;
+        long duration = durationMs();
+        int emitted = 0;
+
+        for (int i = 0; ; i++) {
+            long t = Math.round(i * frameIntervalMs);
+            if (t > duration) break;
+            if (settings.dropoutRate > 0 && nextUniform() < settings.dropoutRate) continue;
+
+            renderFrame(t);
+            sink.onFrame(settings.startTimeMs + t, frame);
+            emitted++;
+        }
+        return emitted;
+    }
+
+    private void renderFrame(long t) {
+        java.util.Arrays.fill(offsets, 0f);
+
+        long motionTime = t - LEAD_IN_MS;
+        int rep = motionTime < 0 ? -1 : (int) (motionTime / repPeriodMs);
+        boolean inMotion = rep >= 0 && rep < settings.reps;
+        double phase = inMotion ? (double) (motionTime - rep * repPeriodMs) / repPeriodMs : 0.0;
+        applyMotion(inMotion, rep, phase);
+
+        double scale = settings.bodyScale / settings.cameraDistance;
+        int occludedGroup = settings.occlusionRate > 0 && nextUniform() < settings.occlusionRate
+                ? (int) (nextUniform() * OCCLUSION_GROUPS.length) : -1;
+
+        for (int i = 0; i < PoseTrace.LANDMARK_COUNT; i++) {
+            double x = BASE_POSE[i][0] + offsets[i * 2];
+            double y = BASE_POSE[i][1] + offsets[i * 2 + 1];
+            x = 0.5 + (x - 0.5) * scale;
+            y = 0.5 + (y - 0.5) * scale;
+            if (settings.jitter > 0) {
+                x += nextNormal() * settings.jitter;
+                y += nextNormal() * settings.jitter;
+            }
+
+            int base = i * STRIDE;
+            frame[base] = (float) x;
+            frame[base + 1] = (float) y;
+            frame[base + 2] = 0f;
+            frame[base + 3] = x < 0 || x > 1 || y < 0 || y > 1 ? OCCLUDED : VISIBLE;
+        }
+
+        if (occludedGroup >= 0) {
+            for (int landmark : OCCLUSION_GROUPS[occludedGroup]) {
+                frame[landmark * STRIDE + 3] = OCCLUDED;
+            }
+        }
+    }
+
+    private void applyMotion(boolean inMotion, int rep, double phase) {
+        switch (settings.motionType) {
+            case "clapping": {
+                // Hands in front of the chest, brought together once per rep
+                double closeness = inMotion ? Math.pow(Math.sin(Math.PI * phase), 4) : 0.0;
+                float separation = (float) (0.20 * (1.0 - closeness));
+                moveGroup(LEFT_HAND, 0.5f - separation - BASE_POSE[15][0], 0.38f - BASE_POSE[15][1]);
+                moveGroup(RIGHT_HAND, 0.5f + separation - BASE_POSE[16][0], 0.38f - BASE_POSE[16][1]);
+                moveLandmark(13, 0.06f, -0.02f);
+                moveLandmark(14, -0.06f, -0.02f);
+                break;
+            }
+            case "wave": {
+                // Hands above the shoulders, each rep is one outward or inward swing
+                double swing = inMotion ? (1.0 - Math.cos(Math.PI * phase)) / 2.0 : 0.0;
+                boolean outward = rep % 2 == 0;
+                double spread = !inMotion ? (rep >= settings.reps && settings.reps % 2 == 1 ? 1.0 : 0.0)
+                        : (outward ? swing : 1.0 - swing);
+                float dx = (float) (0.25 * spread);
+                moveGroup(LEFT_HAND, 0.47f - dx - BASE_POSE[15][0], 0.18f - BASE_POSE[15][1]);
+                moveGroup(RIGHT_HAND, 0.53f + dx - BASE_POSE[16][0], 0.18f - BASE_POSE[16][1]);
+                moveLandmark(13, 0.0f, -0.1f);
+                moveLandmark(14, 0.0f, -0.1f);
+                break;
+            }
+            case "jump": {
+                // Ballistic flight for the first 40% of each rep, standing otherwise
+                double flight = phase / 0.4;
+                float lift = inMotion && flight < 1.0 ? (float) (0.10 * 4.0 * flight * (1.0 - flight)) : 0f;
+                for (int i = 0; i < PoseTrace.LANDMARK_COUNT; i++) {
+                    offsets[i * 2 + 1] -= lift;
+                }
+                break;
+            }
+            case "raise_hand": {
+                // Alternate hands, held above the head for the first 45% of each rep
+                if (inMotion && phase < 0.45) {
+                    boolean left = rep % 2 == 0;
+                    int[] hand = left ? LEFT_HAND : RIGHT_HAND;
+                    int shoulder = left ? 11 : 12;
+                    int wrist = left ? 15 : 16;
+                    float outward = left ? -0.05f : 0.05f;
+                    moveGroup(hand, BASE_POSE[shoulder][0] + outward - BASE_POSE[wrist][0],
+                            BASE_POSE[shoulder][1] - 0.17f - BASE_POSE[wrist][1]);
+                    moveLandmark(left ? 13 : 14, outward * 0.6f, BASE_POSE[shoulder][1] - 0.05f - BASE_POSE[left ? 13 : 14][1]);
+                }
+                break;
+            }
+            case "march": {
+                // Alternate knee lifts, one per rep
+                if (inMotion) {
+                    boolean left = rep % 2 == 0;
+                    float lift = (float) (0.10 * Math.sin(Math.PI * phase));
+                    moveLandmark(left ? 25 : 26, 0f, -lift);
+                    moveLandmark(left ? 27 : 28, 0f, -lift);
+                    moveLandmark(left ? 29 : 30, 0f, -lift);
+                    moveLandmark(left ? 31 : 32, 0f, -lift);
+                }
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+    // xorshift64: cheap, seedable and good enough for noise
+    private long nextRandom() {
+        randomState ^= randomState << 13;
+        randomState ^= randomState >>> 7;
+        randomState ^= randomState << 17;
+        return randomState;
+    }
+
+    private double nextUniform() {
+        return (nextRandom() >>> 11) * 0x1.0p-53;
+    }
+
+    private float nextNormal() {
+        return NORMAL_TABLE[(int) (nextRandom() >>> 48)];
+    }
+
+    private void moveGroup(int[] landmarks, float dx, float dy) {
+        for (int landmark : landmarks) moveLandmark(landmark, dx, dy);
+    }
+
+    private void moveLandmark(int landmark, float dx, float dy) {
+        offsets[landmark * 2] += dx;
+        offsets[landmark * 2 + 1] += dy;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.mindmotion;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SyntheticPoseGeneratorTest {
+
+    @Test
+    public void cleanStreamsAreCountedByDefaultDetectors() {
+        for (String motionType : MotionReplay.motionTypes()) {
+            assertEquals(motionType, 1.0, scoreDefaults(motionType, new SyntheticPoseGenerator.Settings()), 0.0);
+        }
+    }
+
+    @Test
+    public void partialSessionsCountEveryRep() {
+        for (String motionType : MotionReplay.motionTypes()) {
+            MotionReplay.MotionSpec<?> spec = MotionReplay.specFor(motionType);
+            SyntheticPoseGenerator.Settings settings = new SyntheticPoseGenerator.Settings();
+            settings.motionType = motionType;
+            settings.reps = requiredReps(spec) - 1;
+            assertEquals(motionType, 1.0, score(spec, new SyntheticPoseGenerator(settings).toTrace()), 0.0);
+        }
+    }
+
+    @Test
+    public void countsSurviveScaleAndDistanceChanges() {
+        for (String motionType : MotionReplay.motionTypes()) {
+            SyntheticPoseGenerator.Settings settings = new SyntheticPoseGenerator.Settings();
+            settings.bodyScale = 1.1;
+            settings.cameraDistance = 1.2;
+            assertEquals(motionType, 1.0, scoreDefaults(motionType, settings), 0.0);
+        }
+    }
+
+    @Test
+    public void occludedFramesAreReportedInvisible() {
+        SyntheticPoseGenerator.Settings settings = new SyntheticPoseGenerator.Settings();
+        settings.occlusionRate = 1.0;
+        PoseTrace trace = new SyntheticPoseGenerator(settings).toTrace();
+
+        for (int f = 0; f < trace.frameCount(); f++) {
+            boolean anyOccluded = false;
+            for (int i = 0; i < PoseTrace.LANDMARK_COUNT; i++) {
+                if (trace.valueAt(f, i, 3) < 0.5f) anyOccluded = true;
+            }
+            assertTrue(anyOccluded);
+        }
+    }
+
+    @Test
+    public void dropoutRemovesFrames() {
+        SyntheticPoseGenerator.Settings settings = new SyntheticPoseGenerator.Settings();
+        int full = new SyntheticPoseGenerator(settings).generate((t, landmarks) -> { });
+        settings.dropoutRate = 0.5;
+        int dropped = new SyntheticPoseGenerator(settings).generate((t, landmarks) -> { });
+        assertTrue(dropped < full * 0.7);
+    }
+
+    @Test
+    public void generatesMillionsOfFrames() {
+        SyntheticPoseGenerator.Settings settings = new SyntheticPoseGenerator.Settings();
+        settings.motionType = "march";
+        settings.reps = 50000; // ~35k seconds of marching
+        settings.jitter = 0.004;
+        settings.frameRate = 30;
+
+        // Every frame feeds the asserted values, so the generation work cannot be optimized away
+        double[] kneeY = {0, Double.MAX_VALUE};
+        int frames = new SyntheticPoseGenerator(settings).generate((t, landmarks) -> {
+            float y = landmarks[25 * PoseTrace.FLOATS_PER_LANDMARK + 1];
+            kneeY[0] += y;
+            kneeY[1] = Math.min(kneeY[1], y);
+        });
+        assertTrue(frames > 1_000_000);
+        // The left knee rests at y = 0.69 and lifts by about 0.1 on every step
+        assertEquals(0.6582, kneeY[0] / frames, 1e-3);
+        assertTrue(kneeY[1] < 0.60);
+    }
+
+    private static double scoreDefaults(String motionType, SyntheticPoseGenerator.Settings settings) {
+        MotionReplay.MotionSpec<?> spec = MotionReplay.specFor(motionType);
+        settings.motionType = motionType;
+        settings.reps = requiredReps(spec);
+        return score(spec, new SyntheticPoseGenerator(settings).toTrace());
+    }
+
+    private static <C> int requiredReps(MotionReplay.MotionSpec<C> spec) {
+        return spec.requiredReps(spec.newConfig());
+    }
+
+    private static <C> double score(MotionReplay.MotionSpec<C> spec, PoseTrace trace) {
+        C config = spec.newConfig();
+        return spec.countReps(config, trace, 1) == trace.getExpectedReps() ? 1.0 : 0.0;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.mindmotion;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TokenProviderTest {
+
+    private long now = 1_000_000;
+    private final AtomicInteger refreshCalls = new AtomicInteger();
+    private final List<Runnable> pendingWork = new ArrayList<>();
+    private final List<TokenProvider.Tokens> saved = new ArrayList<>();
+    // Runs refreshes only when the test says so, to hold one in flight
+    private final Executor manualExecutor = pendingWork::add;
+
+    @Test
+    public void handsOutCachedTokenWithoutRefreshing() {
+        TokenProvider provider = newProvider(new TokenProvider.Tokens("id1", "refresh1", now + 3600_000),
+                refreshToken -> {
+                    throw new AssertionError("refreshed a fresh token");
+                });
+        List<String> tokens = new ArrayList<>();
+        provider.getToken(false, collect(tokens, null));
+
+        assertEquals("id1", tokens.get(0));
+        assertEquals(0, provider.getRefreshCount());
+    }
+
+    @Test
+    public void concurrentCallersShareOneRefresh() {
+        TokenProvider provider = newProvider(new TokenProvider.Tokens("old", "refresh1", now + 60_000),
+                refreshToken -> {
+                    refreshCalls.incrementAndGet();
+                    return new TokenProvider.Tokens("new", "refresh2", now + 3600_000);
+                });
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < 5; i++) provider.getToken(false, collect(tokens, null));
+
+        assertEquals(1, pendingWork.size());
+        pendingWork.remove(0).run();
+
+        assertEquals(1, refreshCalls.get());
+        assertEquals(5, tokens.size());
+        for (String token : tokens) assertEquals("new", token);
+        assertEquals(4, provider.getJoinedCount());
+        assertEquals("refresh2", saved.get(saved.size() - 1).refreshToken);
+    }
+
+    @Test
+    public void rejectedRefreshTokenExpiresTheSession() {
+        TokenProvider provider = newProvider(new TokenProvider.Tokens("", "revoked", 0), refreshToken -> null);
+        List<String> errors = new ArrayList<>();
+        provider.getToken(false, collect(new ArrayList<>(), errors));
+        pendingWork.remove(0).run();
+
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).startsWith("expired:"));
+        assertEquals("", provider.getTokens().refreshToken);
+    }
+
+    @Test
+    public void networkFailureKeepsRefreshTokenForNextAttempt() {
+        TokenProvider provider = newProvider(new TokenProvider.Tokens("", "refresh1", 0), refreshToken -> {
+            throw new java.io.IOException("offline");
+        });
+        List<String> errors = new ArrayList<>();
+        provider.getToken(false, collect(new ArrayList<>(), errors));
+        pendingWork.remove(0).run();
+
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).startsWith("retry:"));
+        assertEquals("refresh1", provider.getTokens().refreshToken);
+    }
+
+    @Test
+    public void invalidatedTokenIsRefreshedOnNextRequest() {
+        TokenProvider provider = newProvider(new TokenProvider.Tokens("id1", "refresh1", now + 3600_000),
+                refreshToken -> new TokenProvider.Tokens("id2", refreshToken, now + 3600_000));
+        provider.invalidate("stale");
+        assertTrue(provider.hasValidToken());
+
+        provider.invalidate("id1");
+        List<String> tokens = new ArrayList<>();
+        provider.getToken(false, collect(tokens, null));
+        pendingWork.remove(0).run();
+        assertEquals("id2", tokens.get(0));
+    }
+
+    private TokenProvider newProvider(TokenProvider.Tokens initial, TokenProvider.Refresher refresher) {
+        return new TokenProvider(initial, refresher, saved::add, manualExecutor, () -> now);
+    }
+
+    private static TokenProvider.Callback collect(List<String> tokens, List<String> errors) {
+        return new TokenProvider.Callback() {
+            @Override
+            public void onToken(String idToken) {
+                tokens.add(idToken);
+            }
+
+            @Override
+            public void onTokenError(String error, boolean sessionExpired) {
+                if (errors != null) errors.add((sessionExpired ? "expired:" : "retry:") + error);
+            }
+        };
+    }
+}
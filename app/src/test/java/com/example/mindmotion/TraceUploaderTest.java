@@ -0,0 +1,173 @@
+package com.example.mindmotion;
+
+import org.json.JSONArray;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+// Robolectric for org.json and Base64; the commit endpoint is a fake that records document names
+@RunWith(RobolectricTestRunner.class)
+public class TraceUploaderTest {
+    private File directory;
+    private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+    private int calls = 0;
+    private int failAtCall = -1;
+    private boolean unmetered = true;
+    private TraceUploader uploader;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("pose_uploads").toFile();
+        uploader = newUploader(Runnable::run);
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) for (File file : files) file.delete();
+        directory.delete();
+    }
+
+    @Test
+    public void resumesAtTheChunkThatFailedAndWritesTheManifestLast() {
+        failAtCall = 1;
+        uploader.enqueue("uid", "session1", noisyTrace(20));
+        assertEquals(1, sent.size());
+        assertEquals(1, uploader.getPendingCount());
+
+        uploader.requestUpload();
+        assertEquals(0, uploader.getPendingCount());
+        assertEquals(1, uploader.getUploadedCount());
+
+        // chunk 0 once, chunk 1 onwards, then the manifest
+        assertTrue(sent.toString(), sent.size() >= 3);
+        assertTrue(sent.get(0).endsWith("/pose_traces/session1/chunks/0"));
+        assertTrue(sent.get(1).endsWith("/pose_traces/session1/chunks/1"));
+        assertTrue(sent.get(sent.size() - 1).endsWith("/pose_traces/session1"));
+        assertTrue(uploader.getKilobytesPerMinuteOfMotion() > 0);
+    }
+
+    @Test
+    public void waitsForTheSessionToEndAndAnUnmeteredNetwork() {
+        uploader.setSessionActive(true);
+        uploader.enqueue("uid", "session2", noisyTrace(3));
+        assertTrue(sent.isEmpty());
+        assertEquals(1, uploader.getPendingCount());
+
+        unmetered = false;
+        uploader.setSessionActive(false);
+        assertTrue(sent.isEmpty());
+
+        unmetered = true;
+        uploader.requestUpload();
+        assertEquals(0, uploader.getPendingCount());
+        assertTrue(sent.get(0).endsWith("/pose_traces/session2/chunks/0"));
+    }
+
+    // Stores and upload passes racing on separate pool threads, as they do on the TELEMETRY lane:
+    // a pass must never see, and drop, a trace that is still being written
+    @Test
+    public void storesRacingWithUploadPassesLoseNothing() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        AtomicInteger outstanding = new AtomicInteger();
+        Executor tracked = work -> {
+            outstanding.incrementAndGet();
+            pool.execute(() -> {
+                try {
+                    work.run();
+                } finally {
+                    outstanding.decrementAndGet();
+                }
+            });
+        };
+        uploader = newUploader(tracked);
+        PoseTrace trace = noisyTrace(10);
+        int traces = 16;
+        for (int i = 0; i < traces; i++) {
+            String sessionId = "race" + i;
+            tracked.execute(() -> uploader.enqueue("uid", sessionId, trace));
+            for (int pass = 0; pass < 3; pass++) tracked.execute(uploader::requestUpload);
+        }
+        awaitIdle(outstanding);
+        pool.shutdown();
+
+        assertEquals(0, uploader.getDroppedCount());
+        assertEquals(traces, uploader.getUploadedCount());
+        File[] left = directory.listFiles();
+        assertEquals(0, left == null ? 0 : left.length);
+    }
+
+    // With the TELEMETRY lane full, the trace is refused and counted instead of vanishing
+    @Test
+    public void aFullTelemetryLaneRefusesTheTraceVisibly() throws Exception {
+        IoScheduler scheduler = new IoScheduler(1);
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.submit(IoScheduler.Priority.SESSION_DISCOVERY, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        for (int i = 0; i < IoScheduler.Priority.TELEMETRY.maxQueued; i++) {
+            assertTrue(scheduler.submit(IoScheduler.Priority.TELEMETRY, () -> { }));
+        }
+        uploader = newUploader(TraceUploader.telemetryExecutor(scheduler));
+
+        assertFalse(uploader.enqueue("uid", "session3", noisyTrace(3)));
+        assertEquals(1, uploader.getDroppedCount());
+        release.countDown();
+    }
+
+    private TraceUploader newUploader(Executor executor) {
+        return new TraceUploader(directory, FirebaseEndpoints.PRODUCTION, new TraceUploader.Transport() {
+            @Override
+            public void getToken(TokenProvider.Callback callback) {
+                callback.onToken("token");
+            }
+
+            @Override
+            public int commit(String userId, String idToken, JSONArray writes, boolean isRetry) {
+                return TraceUploaderTest.this.commit(writes);
+            }
+        }, () -> unmetered, executor);
+    }
+
+    // Tasks queue their follow-ups before they finish, so zero outstanding means nothing is left
+    private static void awaitIdle(AtomicInteger outstanding) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 20000;
+        while (outstanding.get() > 0) {
+            assertTrue("uploader still busy", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private synchronized int commit(JSONArray writes) {
+        if (calls++ == failAtCall) return -1;
+        sent.add(writes.optJSONObject(0).optJSONObject("update").optString("name"));
+        return 200;
+    }
+
+    private static PoseTrace noisyTrace(int reps) {
+        SyntheticPoseGenerator.Settings settings = new SyntheticPoseGenerator.Settings();
+        settings.motionType = "raise_hand";
+        settings.reps = reps;
+        settings.jitter = 0.005;
+        return new SyntheticPoseGenerator(settings).toTrace();
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.mindmotion;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+// Robolectric's paused main looper only runs the delayed flush when the test advances its clock
+@RunWith(RobolectricTestRunner.class)
+public class WordBatcherTest {
+
+    private final List<List<String>> flushed = new ArrayList<>();
+    private final WordBatcher batcher = new WordBatcher(flushed::add, 3);
+
+    @Test
+    public void flushesAsSoonAsABatchIsFull() {
+        batcher.add("apple");
+        batcher.add("ball");
+        assertTrue(flushed.isEmpty());
+        assertEquals(2, batcher.getPendingCount());
+
+        batcher.add("cat");
+        assertEquals(Arrays.asList(Arrays.asList("apple", "ball", "cat")), flushed);
+        assertEquals(0, batcher.getPendingCount());
+    }
+
+    @Test
+    public void explicitFlushSendsPartialBatchAndIgnoresEmptyOnes() {
+        batcher.flush();
+        assertTrue(flushed.isEmpty());
+
+        batcher.add("dog");
+        batcher.flush();
+        batcher.flush();
+        assertEquals(Arrays.asList(Arrays.asList("dog")), flushed);
+    }
+
+    @Test
+    public void countsRequestsSaved() {
+        for (String word : new String[] {"a1", "a2", "a3", "b1", "b2", "b3", "c1"}) {
+            batcher.add(word);
+        }
+        batcher.flush();
+
+        assertEquals(7, batcher.getWordsFlushed());
+        assertEquals(3, batcher.getBatchesFlushed());
+        assertEquals(4, batcher.getRequestsSaved());
+        assertEquals(3, batcher.getBatchSizeSnapshot().getMax());
+    }
+
+    @Test
+    public void flushesOnceNoWordArrivesForTheQuietWindow() {
+        batcher.add("apple");
+        advance(WordBatcher.QUIET_WINDOW_MS - 1);
+        assertTrue(flushed.isEmpty());
+
+        // A new word slides the window
+        batcher.add("ball");
+        advance(WordBatcher.QUIET_WINDOW_MS - 1);
+        assertTrue(flushed.isEmpty());
+
+        advance(1);
+        assertEquals(Arrays.asList(Arrays.asList("apple", "ball")), flushed);
+        assertEquals(0, batcher.getPendingCount());
+    }
+
+    @Test
+    public void aSteadyTrickleStillFlushesAtTheMaxDelay() {
+        WordBatcher roomy = new WordBatcher(flushed::add, 100);
+        long step = WordBatcher.QUIET_WINDOW_MS - 250;
+        long elapsed = 0;
+        roomy.add("w0");
+        while (elapsed + step < WordBatcher.MAX_DELAY_MS) {
+            advance(step);
+            elapsed += step;
+            roomy.add("w" + elapsed);
+            assertTrue("flushed early at " + elapsed + " ms", flushed.isEmpty());
+        }
+
+        advance(WordBatcher.MAX_DELAY_MS - elapsed - 1);
+        assertTrue(flushed.isEmpty());
+        advance(1);
+        assertEquals(1, flushed.size());
+        assertEquals(roomy.getWordsFlushed(), flushed.get(0).size());
+
+        // The next word starts a fresh batch with its own window
+        roomy.add("late");
+        advance(WordBatcher.QUIET_WINDOW_MS);
+        assertEquals(Arrays.asList("late"), flushed.get(1));
+    }
+
+    private static void advance(long ms) {
+        ShadowLooper.idleMainLooper(ms, TimeUnit.MILLISECONDS);
+    }
+}